@@ -0,0 +1,186 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.gmp.util.numerical.matrix.CholeskyDecomposition;
+import gov.sandia.gmp.util.numerical.matrix.LUDecomposition;
+import gov.sandia.gmp.util.numerical.matrix.Matrix;
+
+/**
+ * Benchmark of the blocked, parallel dense matrix kernels: the matrix product,
+ * the Cholesky and LU decompositions, and the Cholesky and LU solves with n
+ * right hand sides, for n x n matrices.  The number of threads is set with
+ * Matrix.setParallelism().  The original dot-product matrix product is
+ * included for reference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DenseKernelBenchmark
+{
+	/**
+	 * Matrix dimension.
+	 */
+	@Param({"500", "1000", "2000"})
+	public int n;
+
+	/**
+	 * Number of threads used by the dense kernels.
+	 */
+	@Param({"1", "2", "4"})
+	public int threads;
+
+	private Matrix a, b;
+
+	/**
+	 * Symmetric positive definite matrix a * a' + n * I.
+	 */
+	private double[][] spd;
+
+	private CholeskyDecomposition chol;
+
+	private LUDecomposition lu;
+
+	private int defaultThreads;
+
+	@Setup
+	public void setup()
+	{
+		defaultThreads = Matrix.getParallelism();
+		Matrix.setParallelism(threads);
+
+		Random rnd = new Random(n);
+		a = new Matrix(n, n);
+		b = new Matrix(n, n);
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j)
+			{
+				a.set(i, j, rnd.nextDouble() - 0.5);
+				b.set(i, j, rnd.nextDouble() - 0.5);
+			}
+
+		spd = a.times(a.transpose()).getArray();
+		for (int i = 0; i < n; ++i)
+			spd[i][i] += n;
+
+		chol = new CholeskyDecomposition(spd);
+		lu = new LUDecomposition(a.getArray());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		Matrix.setParallelism(defaultThreads);
+	}
+
+	@Benchmark
+	public Matrix times()
+	{
+		return a.times(b);
+	}
+
+	/**
+	 * The original JAMA dot-product matrix product, single threaded.
+	 */
+	@Benchmark
+	public double[][] timesUnblocked()
+	{
+		double[][] A = a.getArray();
+		double[][] B = b.getArray();
+		double[][] C = new double[n][n];
+		double[] Bcolj = new double[n];
+		for (int j = 0; j < n; j++)
+		{
+			for (int k = 0; k < n; k++)
+				Bcolj[k] = B[k][j];
+
+			for (int i = 0; i < n; i++)
+			{
+				double[] Arowi = A[i];
+				double s = 0;
+				for (int k = 0; k < n; k++)
+					s += Arowi[k] * Bcolj[k];
+				C[i][j] = s;
+			}
+		}
+		return C;
+	}
+
+	@Benchmark
+	public CholeskyDecomposition cholesky()
+	{
+		return new CholeskyDecomposition(spd);
+	}
+
+	@Benchmark
+	public LUDecomposition luDecomposition()
+	{
+		return new LUDecomposition(a.getArray());
+	}
+
+	@Benchmark
+	public double[][] choleskySolve()
+	{
+		double[][] x = b.getArrayCopy();
+		chol.solve(x);
+		return x;
+	}
+
+	@Benchmark
+	public double[][] luSolve()
+	{
+		double[][] x = b.getArrayCopy();
+		lu.solvenopiv(x);
+		return x;
+	}
+}
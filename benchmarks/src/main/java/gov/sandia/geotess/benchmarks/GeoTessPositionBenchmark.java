@@ -0,0 +1,131 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.geotess.GeoTessModel;
+import gov.sandia.geotess.GeoTessPosition;
+import gov.sandia.gmp.util.globals.InterpolatorType;
+
+/**
+ * Benchmarks of GeoTessPosition.set() and getValue() for all combinations
+ * of horizontal (LINEAR, NATURAL_NEIGHBOR) and radial (LINEAR, CUBIC_SPLINE)
+ * interpolation.  Positions are random points in the mantle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoTessPositionBenchmark
+{
+	private static final int N = 4096;
+
+	/**
+	 * Triangle edge length of the grid, in degrees.
+	 */
+	@Param({"4"})
+	public double edgeLength;
+
+	@Param({"LINEAR", "NATURAL_NEIGHBOR"})
+	public String horizontalType;
+
+	@Param({"LINEAR", "CUBIC_SPLINE"})
+	public String radialType;
+
+	private GeoTessPosition position;
+
+	private double[][] vectors;
+
+	private double[] radii;
+
+	private int next;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		GeoTessModel model = SyntheticModel.getModel(edgeLength);
+		position = GeoTessPosition.getGeoTessPosition(model, 
+				InterpolatorType.valueOf(horizontalType), InterpolatorType.valueOf(radialType));
+		vectors = SyntheticModel.getRandomUnitVectors(N, 1L);
+		radii = SyntheticModel.getRandomMantleRadii(N, 2L);
+		position.set(0, vectors[0], radii[0]);
+	}
+
+	/**
+	 * Move the position to a new random point.
+	 */
+	@Benchmark
+	public GeoTessPosition set() throws Exception
+	{
+		next = (next+1) & (N-1);
+		return position.set(0, vectors[next], radii[next]);
+	}
+
+	/**
+	 * Move the position to a new random point and interpolate one attribute.
+	 */
+	@Benchmark
+	public double setGetValue() throws Exception
+	{
+		next = (next+1) & (N-1);
+		position.set(0, vectors[next], radii[next]);
+		return position.getValue(0);
+	}
+
+	/**
+	 * Change only the radius of the position and interpolate one attribute,
+	 * which exercises the radial interpolation without the triangle walk.
+	 */
+	@Benchmark
+	public double setRadiusGetValue() throws Exception
+	{
+		next = (next+1) & (N-1);
+		position.setRadius(0, radii[next]);
+		return position.getValue(0);
+	}
+}
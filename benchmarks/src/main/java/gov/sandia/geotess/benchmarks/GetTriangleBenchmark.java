@@ -0,0 +1,119 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.geotess.GeoTessGrid;
+
+/**
+ * Benchmarks of the walking triangle search, GeoTessGrid.getTriangle().
+ * Searches start either from the first triangle of the top level of the
+ * tessellation, as happens when a GeoTessPosition is first set, or from
+ * the triangle found by the previous search, as happens when a 
+ * GeoTessPosition moves a short distance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetTriangleBenchmark
+{
+	private static final int N = 4096;
+
+	/**
+	 * Triangle edge length of the grid, in degrees.
+	 */
+	@Param({"4", "1"})
+	public double edgeLength;
+
+	private GeoTessGrid grid;
+
+	private int topTriangle;
+
+	private double[][] randomVectors;
+
+	/**
+	 * Points spaced about 0.5 degrees apart along a spiral.
+	 */
+	private double[][] nearbyVectors;
+
+	private int previousTriangle;
+
+	private int next;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		grid = SyntheticModel.getGrid(edgeLength);
+		topTriangle = grid.getFirstTriangle(0, 0);
+		randomVectors = SyntheticModel.getRandomUnitVectors(N, 3L);
+		nearbyVectors = new double[N][];
+		for (int i = 0; i < N; ++i)
+		{
+			double lat = Math.toRadians(-60. + 120.*i/N);
+			double lon = Math.toRadians(0.5*i);
+			nearbyVectors[i] = new double[] {Math.cos(lat)*Math.cos(lon), 
+					Math.cos(lat)*Math.sin(lon), Math.sin(lat)};
+		}
+		previousTriangle = grid.getTriangle(topTriangle, nearbyVectors[0]);
+	}
+
+	@Benchmark
+	public int fromTopLevel()
+	{
+		next = (next+1) & (N-1);
+		return grid.getTriangle(topTriangle, randomVectors[next]);
+	}
+
+	@Benchmark
+	public int fromPreviousTriangle()
+	{
+		next = (next+1) & (N-1);
+		return previousTriangle = grid.getTriangle(previousTriangle, nearbyVectors[next]);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.geotess.GeoTessModel;
+import gov.sandia.gmp.util.globals.InterpolatorType;
+import gov.sandia.gmp.util.numerical.polygon.GreatCircle;
+
+/**
+ * Benchmarks of GeoTessModel.getWeights() and getPathIntegral() along a 
+ * ray path that follows a great circle through the mantle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathIntegralBenchmark
+{
+	/**
+	 * Triangle edge length of the grid, in degrees.
+	 */
+	@Param({"4"})
+	public double edgeLength;
+
+	@Param({"LINEAR", "NATURAL_NEIGHBOR"})
+	public String horizontalType;
+
+	@Param({"LINEAR", "CUBIC_SPLINE"})
+	public String radialType;
+
+	/**
+	 * Number of points on the ray path.
+	 */
+	@Param({"200"})
+	public int nPoints;
+
+	private GeoTessModel model;
+
+	private InterpolatorType horizontal, radial;
+
+	private ArrayList<double[]> rayPath;
+
+	private double[] radii;
+
+	private int[] layerIds;
+
+	private HashMap<Integer, Double> weights;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		model = SyntheticModel.getModel(edgeLength);
+		horizontal = InterpolatorType.valueOf(horizontalType);
+		radial = InterpolatorType.valueOf(radialType);
+
+		double[][] ends = SyntheticModel.getRandomUnitVectors(2, 4L);
+		GreatCircle gc = new GreatCircle(ends[0], ends[1]);
+		rayPath = new ArrayList<double[]>(nPoints);
+		radii = new double[nPoints];
+		layerIds = new int[nPoints];
+		for (int i = 0; i < nPoints; ++i)
+		{
+			rayPath.add(gc.getPoint(gc.getDistance()*i/(nPoints-1)));
+			// a ray that bottoms out in the middle of the path
+			radii[i] = 5000. + 1300.*Math.abs(2.*i/(nPoints-1)-1.);
+		}
+		weights = new HashMap<Integer, Double>(4*nPoints);
+	}
+
+	/**
+	 * Weights can only be computed with LINEAR radial interpolation, so
+	 * radialType is ignored.
+	 */
+	@Benchmark
+	public HashMap<Integer, Double> getWeights() throws Exception
+	{
+		model.getWeights(rayPath, radii, layerIds, horizontal, InterpolatorType.LINEAR, weights);
+		return weights;
+	}
+
+	@Benchmark
+	public double getPathIntegral() throws Exception
+	{
+		return model.getPathIntegral(0, rayPath, radii, layerIds, horizontal, radial);
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.sandia.geotess.GeoTessMetaData;
+import gov.sandia.geotess.extensions.siteterms.GeoTessModelSiteData;
+import gov.sandia.gmp.util.globals.DataType;
+
+/**
+ * Benchmarks of GeoTessModelSiteData site term lookups as a function of
+ * the number of on/off ranges in the history of each station.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SiteTermBenchmark
+{
+	private static final int N = 4096;
+
+	private static final int N_STATIONS = 100;
+
+	/**
+	 * Number of on/off ranges per station.
+	 */
+	@Param({"1", "10", "100", "1000"})
+	public int historyLength;
+
+	private GeoTessModelSiteData model;
+
+	private String[] stations;
+
+	private int[] jdates;
+
+	private double[] siteTerms;
+
+	private int next;
+
+	@Setup
+	public void setup() throws Exception
+	{
+		GeoTessMetaData metaData = new GeoTessMetaData();
+		metaData.setDescription("synthetic site term model for benchmarks");
+		metaData.setLayerNames("SURFACE");
+		metaData.setAttributes("vp", "km/sec");
+		metaData.setDataType(DataType.FLOAT);
+		metaData.setModelSoftwareVersion(getClass().getCanonicalName());
+		metaData.setModelGenerationDate(new java.util.Date().toString());
+
+		model = new GeoTessModelSiteData(SyntheticModel.getGrid(32.), metaData);
+		model.setSiteAttributes("TT_SITE_CORRECTION_P", "seconds", DataType.DOUBLE);
+
+		// every station has historyLength consecutive 30 day on/off ranges,
+		// 12 per year starting in 1900.
+		String[] names = new String[N_STATIONS];
+		double[] u = new double[] {1., 0., 0.};
+		for (int s = 0; s < N_STATIONS; ++s)
+		{
+			names[s] = String.format("STA%03d", s);
+			for (int i = 0; i < historyLength; ++i)
+			{
+				int onDate = getJDate(i, 1);
+				model.addSiteTerm(names[s], u, 6371., onDate, onDate+29, 
+						new double[] {0.01*i});
+			}
+		}
+
+		Random random = new Random(5L);
+		stations = new String[N];
+		jdates = new int[N];
+		siteTerms = new double[N];
+		for (int i = 0; i < N; ++i)
+		{
+			// use new String objects, as would come from parsing input.
+			stations[i] = new String(names[random.nextInt(N_STATIONS)]);
+			jdates[i] = getJDate(random.nextInt(historyLength), 1+random.nextInt(30));
+		}
+
+		// build the index
+		model.getSiteTermForJDate(0, stations[0], jdates[0]);
+	}
+
+	/**
+	 * jdate of the specified day of the i'th 30 day range.
+	 */
+	private static int getJDate(int range, int day)
+	{
+		return (1900 + range/12)*1000 + (range%12)*30 + day;
+	}
+
+	@Benchmark
+	public double getSiteTerm()
+	{
+		next = (next+1) & (N-1);
+		return model.getSiteTermForJDate(0, stations[next], jdates[next]);
+	}
+
+	/**
+	 * Look up N site terms with one call.  Time is per call, not per site term.
+	 */
+	@Benchmark
+	public double[] getSiteTermsBulk()
+	{
+		return model.getSiteTerms(0, stations, jdates, siteTerms);
+	}
+}
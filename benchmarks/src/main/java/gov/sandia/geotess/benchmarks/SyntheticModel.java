@@ -0,0 +1,205 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.benchmarks;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Random;
+
+import gov.sandia.geotess.GeoTessGrid;
+import gov.sandia.geotess.GeoTessMetaData;
+import gov.sandia.geotess.GeoTessModel;
+import gov.sandia.geotessbuilder.GeoTessBuilderMain;
+import gov.sandia.gmp.util.globals.DataType;
+import gov.sandia.gmp.util.numerical.vector.EarthShape;
+import gov.sandia.gmp.util.numerical.vector.VectorGeo;
+import gov.sandia.gmp.util.propertiesplus.PropertiesPlus;
+
+/**
+ * Synthetic grids and models used by the benchmarks so that no external
+ * model files are needed.  Grids are generated with GeoTessBuilderMain
+ * from a single multi-level tessellation with uniform triangle size.
+ * Models have two layers, MANTLE and CRUST, with 10 and 3 nodes per profile,
+ * and three attributes whose values vary smoothly with radius and position.
+ * 
+ * <p>Grids and models are cached so that benchmarks with several 
+ * parameter combinations do not rebuild them.
+ */
+public class SyntheticModel
+{
+	private static final HashMap<String, GeoTessGrid> grids = new HashMap<String, GeoTessGrid>();
+
+	private static final HashMap<String, GeoTessModel> models = new HashMap<String, GeoTessModel>();
+
+	private static final double RCMB = 3480., RMOHO = 6336., RSURFACE = 6371.;
+
+	/**
+	 * Retrieve a grid with the specified triangle edge length.
+	 * 
+	 * @param edgeLength triangle edge length in degrees.
+	 * @return a grid with the specified triangle edge length.
+	 * @throws Exception
+	 */
+	public static synchronized GeoTessGrid getGrid(double edgeLength) throws Exception
+	{
+		String key = Double.toString(edgeLength);
+		GeoTessGrid grid = grids.get(key);
+		if (grid == null)
+		{
+			PropertiesPlus properties = new PropertiesPlus();
+			properties.setProperty("gridConstructionMode = scratch");
+			properties.setProperty("verbosity = 0");
+			properties.setProperty("nTessellations = 1");
+			properties.setProperty("baseEdgeLengths = "+edgeLength);
+			grid = (GeoTessGrid) GeoTessBuilderMain.run(properties);
+			grids.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Retrieve a model on a grid with the specified triangle edge length.
+	 * 
+	 * @param edgeLength triangle edge length in degrees.
+	 * @return a populated model.
+	 * @throws Exception
+	 */
+	public static synchronized GeoTessModel getModel(double edgeLength) throws Exception
+	{
+		String key = Double.toString(edgeLength);
+		GeoTessModel model = models.get(key);
+		if (model == null)
+		{
+			GeoTessMetaData metaData = new GeoTessMetaData();
+			metaData.setDescription("synthetic model for benchmarks");
+			metaData.setLayerNames("MANTLE; CRUST");
+			metaData.setLayerTessIds(new int[] {0, 0});
+			metaData.setAttributes("vp; vs; rho", "km/sec; km/sec; g/cc");
+			metaData.setDataType(DataType.FLOAT);
+			metaData.setModelSoftwareVersion(SyntheticModel.class.getCanonicalName());
+			metaData.setModelGenerationDate(new java.util.Date().toString());
+			metaData.setEarthShape(EarthShape.WGS84);
+
+			model = new GeoTessModel(getGrid(edgeLength), metaData);
+			populate(model);
+			models.put(key, model);
+		}
+		return model;
+	}
+
+	private static void populate(GeoTessModel model) throws Exception
+	{
+		int[] nNodes = new int[] {10, 3};
+		double[] rbottom = new double[] {RCMB, RMOHO};
+		double[] rtop = new double[] {RMOHO, RSURFACE};
+		for (int vertex = 0; vertex < model.getNVertices(); ++vertex)
+		{
+			double[] u = model.getVertex(vertex);
+			double lat = VectorGeo.getLatDegrees(u);
+			double lon = VectorGeo.getLonDegrees(u);
+			double anomaly = 0.02*Math.sin(Math.toRadians(3*lat))*Math.cos(Math.toRadians(2*lon));
+			for (int layer = 0; layer < model.getNLayers(); ++layer)
+			{
+				float[] radii = new float[nNodes[layer]];
+				float[][] data = new float[nNodes[layer]][3];
+				for (int node = 0; node < radii.length; ++node)
+				{
+					double r = rbottom[layer] + node*(rtop[layer]-rbottom[layer])/(radii.length-1);
+					double vp = (layer == 0 ? 13.7 - 5.7*(r-RCMB)/(RMOHO-RCMB) : 6.5 - 0.7*(r-RMOHO)/(RSURFACE-RMOHO))
+							* (1.+anomaly);
+					radii[node] = (float) r;
+					data[node][0] = (float) vp;
+					data[node][1] = (float) (vp/1.75);
+					data[node][2] = (float) (1.7+0.2*vp);
+				}
+				model.setProfile(vertex, layer, radii, data);
+			}
+		}
+		model.setActiveRegion();
+	}
+
+	/**
+	 * Write a model to a temporary file in the specified format and return
+	 * the file.  The grid is stored in the model file.  The file is deleted
+	 * when the JVM exits.
+	 * 
+	 * @param model the model to write
+	 * @param format either 'binary' or 'ascii'
+	 * @return the file containing the model
+	 * @throws Exception
+	 */
+	public static File writeModel(GeoTessModel model, String format) throws Exception
+	{
+		File f = File.createTempFile("synthetic_", format.equals("ascii") ? ".ascii" : ".geotess");
+		f.deleteOnExit();
+		model.writeModel(f, "*");
+		return f;
+	}
+
+	/**
+	 * Retrieve n random unit vectors, uniformly distributed on the sphere.
+	 * 
+	 * @param n number of unit vectors
+	 * @param seed random number seed
+	 * @return n random unit vectors
+	 */
+	public static double[][] getRandomUnitVectors(int n, long seed)
+	{
+		Random random = new Random(seed);
+		double[][] v = new double[n][];
+		for (int i = 0; i < n; ++i)
+		{
+			double z = 2.*random.nextDouble()-1.;
+			double phi = 2.*Math.PI*random.nextDouble();
+			double s = Math.sqrt(1.-z*z);
+			v[i] = new double[] {s*Math.cos(phi), s*Math.sin(phi), z};
+		}
+		return v;
+	}
+
+	/**
+	 * Retrieve n random radii in the mantle.
+	 * 
+	 * @param n number of radii
+	 * @param seed random number seed
+	 * @return n random radii in km.
+	 */
+	public static double[] getRandomMantleRadii(int n, long seed)
+	{
+		Random random = new Random(seed);
+		double[] r = new double[n];
+		for (int i = 0; i < n; ++i)
+			r[i] = RCMB + 10. + (RMOHO-RCMB-20.)*random.nextDouble();
+		return r;
+	}
+}
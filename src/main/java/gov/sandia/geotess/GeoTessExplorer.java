@@ -32,8 +32,20 @@
  */
 package gov.sandia.geotess;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -46,6 +58,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import gov.sandia.geotess.extensions.libcorr3d.LibCorr3DModel;
 import gov.sandia.geotess.extensions.rstt.GeoTessModelSLBM;
@@ -113,6 +131,7 @@ import gov.sandia.gmp.util.numerical.vector.VectorUnit;
  * <li>getClassName         -- discover the class name of a specified model
  * <li>extractPathDependentUncertaintyRSTT -- extract all the path dependent uncertainty information from a GeoTessModelSLBM
  * <li>replacePathDependentUncertaintyRSTT -- replace all the path dependent uncertainty information in a GeoTessModelSLBM
+ * <li>server               -- keep models loaded and execute commands read from stdin or a local socket
  * </ul>
  * 
  * <p>For all options
@@ -315,6 +334,7 @@ public class GeoTessExplorer
 		functionMap.put("getLongitudes", "array of equally spaced longitude values");
 		functionMap.put("getDistanceDegrees", "array of equally spaced distances along a great circle");
 		functionMap.put("translatePolygon", "translate polygon between kml/kmz and ascii format");
+		functionMap.put("server", "keep models loaded and execute commands read from stdin or a local socket");
 
 		functionMap.put("GeoTessModelSiteData:", "");
 		functionMap.put("extractSiteTerms", "extract site terms from a GeoTessModelSiteData and print to screen");
@@ -338,7 +358,7 @@ public class GeoTessExplorer
 			System.out.println("Note that when a function requests a 'list of attributes'\n" +
 					"specify a string like '0' or '0,2' or '0-2' or 'n' or '1-n' or 'all'\n" +
 					"where 'n' is interpreted to be the index of the last attribute\n");
-			System.exit(0);
+			exit(0);
 		}
 
 		String cmd = args[0];
@@ -444,6 +464,8 @@ public class GeoTessExplorer
 			extractPathDependentUncertaintyRSTT(args);
 		else if (cmd.equalsIgnoreCase("replacePathDependentUncertaintyRSTT"))
 			replacePathDependentUncertaintyRSTT(args);
+		else if (cmd.equalsIgnoreCase("server"))
+			new GeoTessExplorerServer().server(args);
 		else
 			throw new Exception(String.format(
 					"%n%s is not a recognized command%n"
@@ -452,6 +474,83 @@ public class GeoTessExplorer
 							args[0]));		
 	}
 
+	/**
+	 * Retrieve the model that a command should query.  Commands that only 
+	 * read from a model obtain it through this method so that
+	 * GeoTessExplorerServer can return a model that is already loaded 
+	 * instead of loading it from disk.  Commands that modify the model 
+	 * they load must call GeoTessModel.getGeoTessModel() directly.
+	 * 
+	 * @param modelFile name of the file containing the model
+	 * @param gridDirectory relative path to grid directory
+	 * @return the model
+	 * @throws Exception
+	 */
+	protected GeoTessModel getModel(String modelFile, String gridDirectory) throws Exception
+	{
+		return GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+	}
+
+	/**
+	 * Retrieve the model that a command should query.
+	 * 
+	 * @param modelFile file containing the model
+	 * @param gridDirectory relative path to grid directory
+	 * @return the model
+	 * @throws Exception
+	 * @see #getModel(String, String)
+	 */
+	protected GeoTessModel getModel(File modelFile, String gridDirectory) throws Exception
+	{
+		return GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+	}
+
+	/**
+	 * Retrieve a GeoTessPosition object with which to interrogate the 
+	 * specified model.  GeoTessExplorerServer overrides this method to 
+	 * reuse GeoTessPosition objects from one command to the next.
+	 * 
+	 * @param model the model to be interrogated
+	 * @param horizontalType horizontal interpolation type
+	 * @param radialType radial interpolation type
+	 * @return a GeoTessPosition object
+	 * @throws GeoTessException
+	 */
+	protected GeoTessPosition getPosition(GeoTessModel model, 
+			InterpolatorType horizontalType, InterpolatorType radialType) throws GeoTessException
+	{
+		return GeoTessPosition.getGeoTessPosition(model, horizontalType, radialType);
+	}
+
+	/**
+	 * Retrieve a GeoTessPosition object with LINEAR horizontal and 
+	 * radial interpolation.
+	 * 
+	 * @param model the model to be interrogated
+	 * @return a GeoTessPosition object
+	 * @throws GeoTessException
+	 */
+	protected GeoTessPosition getPosition(GeoTessModel model) throws GeoTessException
+	{
+		return getPosition(model, InterpolatorType.LINEAR, InterpolatorType.LINEAR);
+	}
+
+	/**
+	 * Terminate the current command, usually after printing a usage 
+	 * message.  When GeoTessExplorer runs as a stand-alone application
+	 * this calls System.exit(status).  When commands are being executed 
+	 * by a GeoTessExplorerServer, an exception is thrown instead so that 
+	 * the server keeps running.
+	 * 
+	 * @param status exit status
+	 */
+	protected static void exit(int status)
+	{
+		if (GeoTessExplorerServer.isRunning())
+			throw new GeoTessExplorerServer.CommandExit(status);
+		System.exit(status);
+	}
+
 	protected void getClassName(String[] args) throws Exception
 	{
 		int nmin = 2;
@@ -463,7 +562,7 @@ public class GeoTessExplorer
 							+ "  2 -- model file name%n"
 							+ "  3 -- relative path to grid directory (optional, not used if grid stored in model file)%n",
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File inputFile = new File(args[1]);
@@ -486,7 +585,7 @@ public class GeoTessExplorer
 							+ "  5 -- path of the file to receive the GeoTessModelSLBM model%n",
 
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int a = 0;
@@ -543,7 +642,7 @@ public class GeoTessExplorer
 							+ "  5 -- format = one of [ binary | ascii | geotess ]%n",
 
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int a = 0;
@@ -598,7 +697,7 @@ public class GeoTessExplorer
 							+ "  2 -- model file name%n"
 							+ "  3 -- relative path to grid directory (optional, not used if grid stored in model file)%n",
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File inputFile = new File(args[1]);
@@ -620,7 +719,7 @@ public class GeoTessExplorer
 							+ "  2 -- model file name%n"
 							+ "  3 -- relative path to grid directory (optional, not used if grid stored in model file)%n",
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File inputFile = new File(args[1]);
@@ -645,7 +744,7 @@ public class GeoTessExplorer
 							+ "  4 -- second input model file name%n"
 							+ "  5 -- relative path to grid directory (not used if grid stored in model file)%n",
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -696,7 +795,7 @@ public class GeoTessExplorer
 							+ "         with Google Earth. Otherwise the file is written in ascii%n"
 							+ "         format with boundary points writtein in lat-lon order.%n", 
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		Polygon polygon = new Polygon(new File(args[1]));
@@ -715,7 +814,7 @@ public class GeoTessExplorer
 							+ "%n"
 							+ "Output columns: sta, lat, lon, elev, ondate, offdate, site terms%n"
 							,nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File inputFile = new File(args[1]);
@@ -744,7 +843,7 @@ public class GeoTessExplorer
 							+ "%n"
 							+ "Columns in site terms file: sta, lat, lon, elev, ondate, offdate, attributes%n"
 							,nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -802,7 +901,7 @@ public class GeoTessExplorer
 							+ "  4  --  output file (must have kml or kmz extension)%n"
 							+ "  5  --  layerIndex if 2 is a model, tessId if 2 is a grid"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -858,7 +957,7 @@ public class GeoTessExplorer
 							+ "  3  --  relative path to grid directory "
 							+ "             (only needed when (2) is a model and grid is stored in separate file)%n", 
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File f = new File(args[1]);
@@ -892,13 +991,13 @@ public class GeoTessExplorer
 							+ "  2  --  input model file name%n"
 							+ "  3  --  relative path to grid directory (not used if grid stored in model file)%n", 
 							nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		if (args.length == 2)
-			System.out.println(GeoTessModelUtils.statistics(GeoTessModel.getGeoTessModel(args[1])));
+			System.out.println(GeoTessModelUtils.statistics(getModel(args[1], "")));
 		else if (args.length == 3)
-			System.out.println(GeoTessModelUtils.statistics(GeoTessModel.getGeoTessModel(args[1], args[2])));	
+			System.out.println(GeoTessModelUtils.statistics(getModel(args[1], args[2])));	
 	}
 
 	/**
@@ -933,7 +1032,7 @@ public class GeoTessExplorer
 							+ "  5 -- if the input specified in item 2 is a GeoTessModel, specify the layer number,%n"
 							+ "       if it is a GeoTessGrid, then specify the tessellation id."
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1071,7 +1170,7 @@ public class GeoTessExplorer
 							+ "  4 -- name of file containing the new grid (if a model is specified the grid is extracted)%n"
 							+ "  5 -- output file where resampled model will be written%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1150,7 +1249,7 @@ public class GeoTessExplorer
 							+ "Output columns for 2D models: latitude, longitude, attribute values%n"
 							+ "Output columns for GeoTessGrids: latitude, longitude%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1253,7 +1352,7 @@ public class GeoTessExplorer
 							+ "3D models: latitude, longitude, depth, layer number, attribute values%n"
 							+ "2D models: latitude, longitude, attribute values%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1406,7 +1505,7 @@ public class GeoTessExplorer
 							+ "         o - If only 4 arguments are supplied, or outputGridFile = 'null', then treat the grid %n"
 							+ "             file the same way the input model did."
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		File inputFile = new File(args[1]);
@@ -1632,7 +1731,7 @@ public class GeoTessExplorer
 							+ "  8  --  ouput: some subset of [lat,lon,depth,radius,vertex,layer,node,point],%n"
 							+ "         comma separated, no spaces%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1645,9 +1744,9 @@ public class GeoTessExplorer
 
 		String[] outputList = args[arg++].toLowerCase().split(",");
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model);
+		GeoTessPosition pos = getPosition(model);
 
 		if (layerId < 0)
 			pos.set(lat, lon, depth);
@@ -1721,7 +1820,7 @@ public class GeoTessExplorer
 							+ " 10  --  interpolation type radial: linear or cubic_spline (cs)%n"
 							+ " 11  --  reciprocal (true or false)%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1744,9 +1843,9 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model, horizontalType, radialType);
+		GeoTessPosition pos = getPosition(model, horizontalType, radialType);
 
 		if (layerId < 0)
 			pos.set(lat, lon, depth);
@@ -1834,7 +1933,7 @@ public class GeoTessExplorer
 							+ "  9  --  interpolation type horizontal: linear or natural_neighbor (nn)%n"
 							+ " 10  --  interpolation type radial: linear or cubic_spline (cs)%n"
 							+ " 11  --  reciprocal (true or false)", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1857,12 +1956,12 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
 		int[] attributes = parseList(attributeList, model.getMetaData()
 				.getNAttributes() - 1);
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model, horizontalType, radialType);
+		GeoTessPosition pos = getPosition(model, horizontalType, radialType);
 
 		if (layerId < 0)
 			pos.set(lat, lon, depth);
@@ -1889,29 +1988,51 @@ public class GeoTessExplorer
 	}
 
 	/**
-	 * Output to standard out interpolated values at a single point.
+	 * Output interpolated values at points read from a file.
+	 * 
+	 * <p>Input is read in chunks by a separate thread, interpolated in parallel
+	 * by a pool of threads, each with its own GeoTessPosition object, and 
+	 * written in the original order by the calling thread.  At most a few 
+	 * chunks per thread are held in memory at any one time, so files of any 
+	 * size may be processed.
+	 * 
+	 * <p>Text input contains one point per line: lat, lon, depth and, 
+	 * optionally, layerIndex, separated by spaces or commas.  Binary input
+	 * (float or double) contains big-endian records of 4 values: lat, lon, 
+	 * depth and layerIndex.  In both cases, if layerIndex is &gt;= 0, 
+	 * interpolation is constrained to the specified layer.
+	 * 
+	 * <p>Text output echoes each line of text input with the interpolated
+	 * values appended.  Lines that cannot be interpreted are echoed without 
+	 * modification.  If the input is binary, text output lines contain only 
+	 * the interpolated values.  Binary output (float or double) contains one
+	 * big-endian record of interpolated values for every input record, with
+	 * NaN values for input records that cannot be interpreted.
 	 * 
 	 * @param args
 	 *            <ol>
-	 *            <li>getValue
+	 *            <li>getValuesFile
 	 *            <li>input model file name
 	 *            <li>relative path to grid directory (not used if grid stored in model file)
-	 *            <li>name of file with input lat, lon, depth values
-	 *            <li>layer ID. Ignored if -1
+	 *            <li>name of file with input lat, lon, depth, layerIndex values
 	 *            <li>list of attribute indexes
 	 *            <li>interpolation type horizontal: linear or natural_neighbor (nn)
 	 *            <li>interpolation type radial: linear or cubic_spline (cs)
 	 *            <li>reciprocal (true or false)
+	 *            <li>number of threads (optional, default is the number of available processors)
+	 *            <li>input format: text, float or double (optional, default is text)
+	 *            <li>output format: text, float or double (optional, default is text)
+	 *            <li>output file name (optional, default is standard out)
 	 *            </ol>
 	 * @throws Exception
 	 */
 	public void getValuesFile(String[] args) throws Exception
 	{
 		int nmin = 8;
-		if (args.length != nmin)
+		if (args.length < nmin || args.length > nmin+4)
 		{
 			System.out .println(
-					String.format("%n%nMust supply %d arguments:%n"
+					String.format("%n%nMust supply between %d and %d arguments:%n"
 							+ "  1  --  getValuesFile%n"
 							+ "  2  --  input model file name%n"
 							+ "  3  --  relative path to grid directory (not used if grid stored in model file)%n"
@@ -1921,8 +2042,14 @@ public class GeoTessExplorer
 							+ "  5  --  list of attribute indexes%n"
 							+ "  6  --  interpolation type horizontal: linear or natural_neighbor (nn)%n"
 							+ "  7  --  interpolation type radial: linear or cubic_spline (cs)%n"
-							+ "  8  --  reciprocal (true or false)", nmin));
-			System.exit(0);
+							+ "  8  --  reciprocal (true or false)%n"
+							+ "  9  --  number of threads (optional, default is the number of available processors)%n"
+							+ " 10  --  input format: text, float or double (optional, default is text)%n"
+							+ "         float and double input files contain big-endian records of lat, lon, depth, layerIndex%n"
+							+ " 11  --  output format: text, float or double (optional, default is text)%n"
+							+ "         float and double output contains one big-endian record of attribute values per input record%n"
+							+ " 12  --  output file name (optional, default is standard out)", nmin, nmin+4));
+			exit(0);
 		}
 
 		int arg = 1;
@@ -1943,60 +2070,416 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
-		DataType dataType = model.getMetaData().getDataType();
+		int nThreads = args.length > arg ? Integer.parseInt(args[arg++]) 
+				: Runtime.getRuntime().availableProcessors();
+		int inputSize = getValuesFileFormatSize(args.length > arg ? args[arg++] : "text");
+		int outputSize = getValuesFileFormatSize(args.length > arg ? args[arg++] : "text");
+		File outputFile = args.length > arg ? new File(args[arg++]) : null;
+
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
 		int[] attributes = parseList(attributeList, model.getMetaData()
 				.getNAttributes() - 1);
 
-		Scanner input = new Scanner(inputFile);
+		ArrayBlockingQueue<GeoTessPosition> positions = 
+				new ArrayBlockingQueue<GeoTessPosition>(Math.max(1, nThreads));
+		for (int i=0; i<Math.max(1, nThreads); ++i)
+			positions.add(getPosition(model, horizontalType, radialType));
+
+		OutputStream output = outputFile == null ? System.out 
+				: new FileOutputStream(outputFile);
+		try
+		{
+			new ValuesFilePipeline(attributes, model.getMetaData().getDataType(), 
+					reciprocal, inputSize, outputSize, positions)
+			.run(inputFile, output);
+		}
+		finally
+		{
+			if (outputFile != null)
+				output.close();
+		}
+	}
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model, horizontalType, radialType);
+	/**
+	 * Convert getValuesFile format 'text', 'float' or 'double' to the number
+	 * of bytes per value: 0, 4 or 8 respectively.
+	 */
+	private static int getValuesFileFormatSize(String format) throws Exception
+	{
+		if (format.equalsIgnoreCase("text"))
+			return 0;
+		if (format.equalsIgnoreCase("float"))
+			return 4;
+		if (format.equalsIgnoreCase("double"))
+			return 8;
+		throw new Exception(String.format("%nFormat %s is not supported. "
+				+ "Must be one of text, float or double%n", format));
+	}
 
-		int layerIndex;
-		double lat, lon, depth;
-		String record, separator;
-		String[] ss;
-		while (input.hasNext())
+	/**
+	 * A bounded read - interpolate - write pipeline used by getValuesFile.
+	 * One thread reads chunks of input records and submits them to a 
+	 * thread pool for parsing and interpolation.  The thread that calls 
+	 * run() writes the chunks in the order in which they were read.
+	 */
+	private static class ValuesFilePipeline
+	{
+		/**
+		 * Number of input records per chunk.
+		 */
+		private static final int CHUNK_SIZE = 4096;
+
+		private final int[] attributes;
+
+		private final DataType dataType;
+
+		private final boolean reciprocal;
+
+		/**
+		 * Bytes per input value: 0 (text), 4 (float) or 8 (double).
+		 */
+		private final int inputSize;
+
+		/**
+		 * Bytes per output value: 0 (text), 4 (float) or 8 (double).
+		 */
+		private final int outputSize;
+
+		/**
+		 * Idle GeoTessPosition objects.  One per interpolation thread.
+		 */
+		private final ArrayBlockingQueue<GeoTessPosition> positions;
+
+		/**
+		 * Exception thrown by the input thread, if any.
+		 */
+		private volatile Exception inputException;
+
+		/**
+		 * Set by the writing thread when it stops taking chunks from the 
+		 * queue, normally or because it failed.  The input thread then stops
+		 * queuing chunks.
+		 */
+		private volatile boolean stopped;
+
+		/**
+		 * A block of consecutive input records and the corresponding output.
+		 */
+		private static class Chunk
 		{
-			record = input.nextLine();
-			separator = record.contains(",") ? ", " : " ";
+			int nRecords;
+
+			/** text input, one element per line. */
+			String[] lines;
+
+			/** binary input, nRecords * 4 values. */
+			byte[] input;
+
+			/** text output, one element per line. */
+			String[] text;
+
+			/** binary output, nRecords * nAttributes values. */
+			byte[] output;
+		}
+
+		/**
+		 * Chunk that marks the end of the input.
+		 */
+		private static final Chunk END = new Chunk();
+
+		ValuesFilePipeline(int[] attributes, DataType dataType, boolean reciprocal,
+				int inputSize, int outputSize, ArrayBlockingQueue<GeoTessPosition> positions)
+		{
+			this.attributes = attributes;
+			this.dataType = dataType;
+			this.reciprocal = reciprocal;
+			this.inputSize = inputSize;
+			this.outputSize = outputSize;
+			this.positions = positions;
+		}
 
-			ss = record.replaceAll(",", " ").split("\\s+");
-			if (ss.length >= 3)
+		void run(final File inputFile, OutputStream out) throws Exception
+		{
+			int nThreads = positions.remainingCapacity() + positions.size();
+			final ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+
+			// futures of chunks that have been read but not yet written.  The 
+			// capacity of this queue limits the number of chunks in memory.
+			final ArrayBlockingQueue<Future<Chunk>> queue = 
+					new ArrayBlockingQueue<Future<Chunk>>(2*nThreads+2);
+
+			Thread reader = new Thread(new Runnable() {
+				@Override
+				public void run()
+				{
+					try
+					{
+						read(inputFile, threadPool, queue);
+					}
+					catch (Exception ex)
+					{
+						inputException = ex;
+					}
+					finally
+					{
+						if (!stopped)
+						{
+							FutureTask<Chunk> end = new FutureTask<Chunk>(new Callable<Chunk>() {
+								@Override
+								public Chunk call() { return END; }});
+							end.run();
+							try { queue.put(end); } catch (InterruptedException e) { }
+						}
+					}
+				}}, "getValuesFile reader");
+			reader.setDaemon(true);
+			reader.start();
+
+			try
 			{
-				try 
+				if (outputSize == 0)
+				{
+					Writer writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16);
+					String nl = System.lineSeparator();
+					for (Chunk chunk = queue.take().get(); chunk != END; chunk = queue.take().get())
+						for (int i=0; i<chunk.nRecords; ++i)
+						{
+							writer.write(chunk.text[i]);
+							writer.write(nl);
+						}
+					writer.flush();
+				}
+				else
 				{
-					lat = Double.parseDouble(ss[0]);
-					lon = Double.parseDouble(ss[1]);
-					depth = Double.parseDouble(ss[2]);
-					layerIndex = ss.length > 3 ? Integer.parseInt(ss[3]) : -1;
+					BufferedOutputStream writer = new BufferedOutputStream(out, 1 << 16);
+					for (Chunk chunk = queue.take().get(); chunk != END; chunk = queue.take().get())
+						writer.write(chunk.output);
+					writer.flush();
+				}
+			}
+			finally
+			{
+				// if writing failed the reader may be blocked on the full queue.
+				// Make room, wake it up and wait for it to exit.
+				stopped = true;
+				threadPool.shutdownNow();
+				queue.clear();
+				reader.interrupt();
+				try
+				{
+					reader.join();
+				}
+				catch (InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
 
-					pos.set(layerIndex, lat, lon, depth);
-					switch (dataType)
+			if (inputException != null)
+				throw inputException;
+		}
+
+		/**
+		 * Read input chunks and submit them for processing, in order, until
+		 * end of file.
+		 */
+		private void read(File inputFile, ExecutorService threadPool,
+				ArrayBlockingQueue<Future<Chunk>> queue) throws Exception
+		{
+			if (inputSize == 0)
+			{
+				BufferedReader input = new BufferedReader(new FileReader(inputFile), 1 << 16);
+				try
+				{
+					String line = input.readLine();
+					while (line != null)
 					{
-					case DOUBLE:
-						for (int j : attributes)
-							record += String.format("%s%1.16g", separator, reciprocal ? 1./ pos.getValue(j) : pos.getValue(j));
-						break;
-					case FLOAT:
-						for (int j : attributes)
-							record += String.format("%s%1.7g", separator, reciprocal ? 1./ pos.getValue(j) : pos.getValue(j));
-						break;
-					default:
-						for (int j : attributes)
-							record += String.format("%s%d", separator, reciprocal ? 
-									Math.round(1./ pos.getValue(j)) : Math.round(pos.getValue(j)));
-						break;
+						final Chunk chunk = new Chunk();
+						chunk.lines = new String[CHUNK_SIZE];
+						while (line != null && chunk.nRecords < CHUNK_SIZE)
+						{
+							chunk.lines[chunk.nRecords++] = line;
+							line = input.readLine();
+						}
+						queue.put(submit(threadPool, chunk));
 					}
-				} 
-				catch (Exception e) 
+				}
+				finally
 				{
+					input.close();
+				}
+			}
+			else
+			{
+				int recordSize = 4*inputSize;
+				DataInputStream input = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(inputFile), 1 << 16));
+				try
+				{
+					byte[] buffer = new byte[CHUNK_SIZE*recordSize];
+					while (true)
+					{
+						int n = 0, m;
+						while (n < buffer.length && (m = input.read(buffer, n, buffer.length-n)) > 0)
+							n += m;
+						if (n % recordSize != 0)
+							throw new IOException(String.format("%nInput file %s ends with a "
+									+ "partial record.%n", inputFile.getCanonicalPath()));
+						if (n == 0)
+							break;
+						Chunk chunk = new Chunk();
+						chunk.nRecords = n / recordSize;
+						chunk.input = n == buffer.length ? buffer : Arrays.copyOf(buffer, n);
+						queue.put(submit(threadPool, chunk));
+						if (n < buffer.length)
+							break;
+						buffer = new byte[buffer.length];
+					}
+				}
+				finally
+				{
+					input.close();
 				}
 			}
-			System.out.println(record);
 		}
-		input.close();
+
+		private Future<Chunk> submit(ExecutorService threadPool, final Chunk chunk)
+		{
+			return threadPool.submit(new Callable<Chunk>() {
+				@Override
+				public Chunk call() throws Exception
+				{
+					GeoTessPosition pos = positions.take();
+					try
+					{
+						process(chunk, pos);
+						return chunk;
+					}
+					finally
+					{
+						positions.put(pos);
+					}
+				}});
+		}
+
+		/**
+		 * Parse and interpolate all the records in a chunk and format the output.
+		 */
+		private void process(Chunk chunk, GeoTessPosition pos)
+		{
+			double[] values = new double[attributes.length];
+			ByteBuffer input = chunk.input == null ? null : ByteBuffer.wrap(chunk.input);
+			ByteBuffer output = null;
+			if (outputSize == 0)
+				chunk.text = new String[chunk.nRecords];
+			else
+				output = ByteBuffer.wrap(chunk.output = 
+				new byte[chunk.nRecords*attributes.length*outputSize]);
+
+			StringBuilder buf = new StringBuilder();
+			String record, separator;
+			boolean ok;
+			for (int i=0; i<chunk.nRecords; ++i)
+			{
+				if (input == null)
+				{
+					record = chunk.lines[i];
+					chunk.lines[i] = null;
+					separator = record.contains(",") ? ", " : " ";
+					ok = interpolate(pos, record, values);
+				}
+				else
+				{
+					record = null;
+					separator = " ";
+					double lat = inputSize == 4 ? input.getFloat() : input.getDouble();
+					double lon = inputSize == 4 ? input.getFloat() : input.getDouble();
+					double depth = inputSize == 4 ? input.getFloat() : input.getDouble();
+					double layer = inputSize == 4 ? input.getFloat() : input.getDouble();
+					ok = interpolate(pos, (int)layer, lat, lon, depth, values);
+				}
+
+				if (output != null)
+				{
+					for (int j=0; j<values.length; ++j)
+						if (outputSize == 4)
+							output.putFloat(ok ? (float) values[j] : Float.NaN);
+						else
+							output.putDouble(ok ? values[j] : Double.NaN);
+				}
+				else if (!ok)
+					chunk.text[i] = record == null ? "" : record;
+				else
+				{
+					buf.setLength(0);
+					if (record != null)
+						buf.append(record);
+					for (int j=0; j<values.length; ++j)
+					{
+						if (record != null || j > 0)
+							buf.append(separator);
+						switch (dataType)
+						{
+						case DOUBLE:
+							buf.append(String.format("%1.16g", values[j]));
+							break;
+						case FLOAT:
+							buf.append(String.format("%1.7g", values[j]));
+							break;
+						default:
+							buf.append(String.format("%d", Math.round(values[j])));
+							break;
+						}
+					}
+					chunk.text[i] = buf.toString();
+				}
+			}
+			chunk.lines = null;
+			chunk.input = null;
+		}
+
+		/**
+		 * Parse a line of text input and interpolate values.
+		 * @return false if the line could not be parsed or interpolated.
+		 */
+		private boolean interpolate(GeoTessPosition pos, String record, double[] values)
+		{
+			String[] ss = record.replaceAll(",", " ").split("\\s+");
+			if (ss.length < 3)
+				return false;
+			try 
+			{
+				return interpolate(pos, ss.length > 3 ? Integer.parseInt(ss[3]) : -1,
+						Double.parseDouble(ss[0]), Double.parseDouble(ss[1]), 
+						Double.parseDouble(ss[2]), values);
+			}
+			catch (NumberFormatException e) 
+			{
+				return false;
+			}
+		}
+
+		/**
+		 * Interpolate values at the specified position.
+		 * @return false if the interpolation failed.
+		 */
+		private boolean interpolate(GeoTessPosition pos, int layerIndex, 
+				double lat, double lon, double depth, double[] values)
+		{
+			try 
+			{
+				pos.set(layerIndex, lat, lon, depth);
+				for (int j=0; j<attributes.length; ++j)
+					values[j] = reciprocal ? 1./ pos.getValue(attributes[j]) 
+							: pos.getValue(attributes[j]);
+				return true;
+			}
+			catch (Exception e) 
+			{
+				return false;
+			}
+		}
 	}
 
 	/**
@@ -2043,7 +2526,7 @@ public class GeoTessExplorer
 							+ " 11  --  specify output 'depth' or 'radius'%n"
 							+ " 12  --  reciprocal [true | false], report 1./value%n"
 							+ " 13  --  list of attribute indexes%n"));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2066,9 +2549,9 @@ public class GeoTessExplorer
 		boolean convertToDepth = args[arg++].toLowerCase().startsWith("d");
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model,
+		GeoTessPosition pos = getPosition(model,
 				horizontalType, radialType);
 
 		lastLayer = Math.min(lastLayer, model.getMetaData().getNLayers() - 1);
@@ -2123,7 +2606,7 @@ public class GeoTessExplorer
 							+ "  8  --  specify output 'depth' or 'radius'%n"
 							+ "  9  --  reciprocal [true | false], report 1./value%n"
 							+ " 10  --  list of attribute indexes%n"));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2138,9 +2621,9 @@ public class GeoTessExplorer
 		boolean convertToDepth = args[arg++].toLowerCase().startsWith("d");
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFile, gridDirectory);
+		GeoTessModel model = getModel(modelFile, gridDirectory);
 
-		GeoTessPosition pos = GeoTessPosition.getGeoTessPosition(model);
+		GeoTessPosition pos = getPosition(model);
 		pos.set(lat, lon, 1000);
 
 		int vertex = pos.getIndexOfClosestVertex();
@@ -2245,7 +2728,7 @@ public class GeoTessExplorer
 							+ " 13  --  interpolation type radial: linear or cubic_spline (cs)%n"
 							+ " 14  --  reciprocal [true | false], report 1./value%n"
 							+ " 15  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2269,7 +2752,7 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		int[] attributes = parseList(args[arg++], model.getMetaData()
 				.getNAttributes() - 1);
@@ -2339,7 +2822,7 @@ public class GeoTessExplorer
 							+ " 13  --  interpolation type radial: linear or cubic_spline (cs)%n"
 							+ " 14  --  reciprocal [true | false], report 1./value%n"
 							+ " 15  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2366,7 +2849,7 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		int[] attributes = parseList(args[arg++], model.getMetaData()
 				.getNAttributes() - 1);
@@ -2503,7 +2986,7 @@ public class GeoTessExplorer
 							+ " 17  --  list of attribute indexes%n"
 							//+ " 18  --  output format (0 or 1 or 2)%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2533,7 +3016,7 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		int[] attributes = parseList(args[arg++], model.getMetaData()
 				.getNAttributes() - 1);
@@ -2616,7 +3099,7 @@ public class GeoTessExplorer
 							+ " 11  --  top or bottom of layer%n"
 							+ " 12  --  ['depth' or 'radius']%n"
 							+ " 13  --  interpolation type: linear or natural_neighbor (nn)%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2638,7 +3121,7 @@ public class GeoTessExplorer
 			s = "NATURAL_NEIGHBOR";
 		InterpolatorType horizontalType = InterpolatorType.valueOf(s);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		double[][] results = GeoTessModelUtils
 				.getMapLayerBoundary(model, latitudes, longitudes, layerId,
@@ -2693,7 +3176,7 @@ public class GeoTessExplorer
 							+ " 10  --  first layer%n"
 							+ " 11  --  last layer. Thickness will include first through last layer, inclusive%n"
 							+ " 12  --  interpolation type: linear or natural_neighbor (nn)%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2704,7 +3187,7 @@ public class GeoTessExplorer
 		double[] longitudes = GeoTessModelUtils.getLongitudes(args[arg++],
 				args[arg++], args[arg++], "true");
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		int firstLayer = Integer.parseInt(args[arg++]);
 		int lastLayer = Integer.parseInt(args[arg++]);
@@ -2776,7 +3259,7 @@ public class GeoTessExplorer
 							+ " 15  --  spatialCoordinates. Subset of distance,depth,radius,x,y,z,lat,lon%n"
 							+ " 16  --  reciprocal [true | false], report 1./value%n"
 							+ " 17  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2806,7 +3289,7 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		lastLayer = Math.min(lastLayer, model.getMetaData().getNLayers() - 1);
 
@@ -2886,7 +3369,7 @@ public class GeoTessExplorer
 							+ " 14  --  spatialCoordinates. Subset of distance,depth,radius,x,y,z,lat,lon%n"
 							+ " 15  --  reciprocal [true | false], report 1./value%n"
 							+ " 16  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -2914,7 +3397,7 @@ public class GeoTessExplorer
 
 		boolean reciprocal = Boolean.parseBoolean(args[arg++]);
 
-		GeoTessModel model = GeoTessModel.getGeoTessModel(modelFileName, gridDirectory);
+		GeoTessModel model = getModel(modelFileName, gridDirectory);
 
 		lastLayer = Math.min(lastLayer, model.getMetaData().getNLayers() - 1);
 
@@ -2952,7 +3435,7 @@ public class GeoTessExplorer
 						+ "  2  --  input model file name%n"
 						+ "  3  --  output model file name%n"
 						+ "  4  --  updated description%n", nmin));
-		System.exit(0);
+		exit(0);
 	}
 
 	/**
@@ -2993,7 +3476,7 @@ public class GeoTessExplorer
 						+ "  3  --  output file name%n"
 						+ "  4  --  layer name or index%n"
 						+ "  5  --  (optional) list of attribute names or indexes.  If none, uses all attributes.%n", nmin));
-		System.exit(0);
+		exit(0);
 	}
 
 	private static int parseIndex(String index) {
@@ -3012,11 +3495,11 @@ public class GeoTessExplorer
 		if (attIndex < 0) attIndex = parseIndex(name);
 		if (attIndex < 0) {
 			System.err.println("Attribute name or index \"" + name + "\" not recognized.");
-			System.exit(0);
+			exit(0);
 		}
 		if (attIndex < 0 || attIndex > nAttributes - 1) {
 			System.err.println("Attribute index \"" + name + "\" does not correspond to an existing attribute.");
-			System.exit(0);
+			exit(0);
 		}
 
 		pair[0] = metaData.getAttributeName(attIndex);
@@ -3060,7 +3543,7 @@ public class GeoTessExplorer
 		if (layerIndex < 0) layerIndex = parseIndex(name);
 		if (layerIndex < 0) {
 			System.err.println("Layer name or index \"" + name + "\" not recognized.");
-			System.exit(0);
+			exit(0);
 		}
 		return layerIndex;
 	}
@@ -3140,7 +3623,7 @@ public class GeoTessExplorer
 						+ "  2  --  input model file name%n"
 						+ "  3  --  output file name%n"
 						+ "  4  --  list of inverted label pairs (i.e. vel slow ...)%n", minargs));
-		System.exit(0);
+		exit(0);
 	}
 
 	private static class CaselessBiMap {
@@ -3305,7 +3788,7 @@ public class GeoTessExplorer
 							+ "  8  --  depth spacing, km%n"
 							+ "  9  --  reciprocal [true | false], report 1./value%n"
 							+ " 10  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3368,7 +3851,7 @@ public class GeoTessExplorer
 							+ "  6  --  depths: comma-separated list of depths with no spaces%n"
 							+ "  7  --  reciprocal [true | false], report 1./value%n"
 							+ "  8  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3428,7 +3911,7 @@ public class GeoTessExplorer
 							+ "  5  --  index of first layer%n"
 							+ "  6  --  index of last layer. . Thickness will include first through last layer, inclusive%n"
 							+ "  7  --  interpolation type, either linear, or natutal_neighbor (nn) %n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3480,7 +3963,7 @@ public class GeoTessExplorer
 							+ "  4  --  output file name%n"
 							+ "  5  --  either 'depth' or 'elevation'%n"
 							+ "  6  --  interpolation type, either linear, or natutal_neighbor (nn) %n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3537,7 +4020,7 @@ public class GeoTessExplorer
 							+ "  5  --  list of layer indexes%n"
 							+ "  6  --  reciprocal [true | false], report 1./value%n"
 							+ "  7  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3654,7 +4137,7 @@ public class GeoTessExplorer
 
 							+ " 15  --  InterpolatorType linear or natural_neighbor (nn)%n"
 							, args.length, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3747,7 +4230,7 @@ public class GeoTessExplorer
 							+ "  9  --  interpolation type radial: linear or cubic_spline (cs)%n"
 							+ " 10  --  reciprocal [true | false], report 1./value%n"
 							+ " 11  --  list of attribute indexes%n", nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3838,7 +4321,7 @@ public class GeoTessExplorer
 							+ " 16  --  reciprocal [true | false], report 1./value%n"
 							+ " 17  --  list of attribute indexes%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -3950,7 +4433,7 @@ public class GeoTessExplorer
 							+ " 17  --  reciprocal [true | false], report 1./value%n"
 							+ " 18  --  list of attribute indexes%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4050,7 +4533,7 @@ public class GeoTessExplorer
 							+ " 10  --  reciprocal [true | false], report 1./value%n"
 							+ " 11  --  list of attribute indexes%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4131,7 +4614,7 @@ public class GeoTessExplorer
 							+ "  7  --  reciprocal [true | false], report 1./value%n"
 							+ "  8  --  list of attribute indexes%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4201,7 +4684,7 @@ public class GeoTessExplorer
 							+ "  5  --  layerIndex if 2 is a model, tessId if 2 is a grid%n"
 							+ "  6  --  longitude of center of map in degrees%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4266,7 +4749,7 @@ public class GeoTessExplorer
 							+ "  3  --  output file%n"
 							+ "  4  --  longitude of center of map in degrees%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4327,7 +4810,7 @@ public class GeoTessExplorer
 							+ "  2  --  intput file containing lat-lon pairs%n"
 							+ "  3  --  output file%n"
 							, nmin));
-			System.exit(0);
+			exit(0);
 		}
 
 		int arg = 1;
@@ -4442,7 +4925,7 @@ public class GeoTessExplorer
 							+           "that is either the number of latitude values (if the value can be%n"
 							+ "interpreted as an integer), or the spacing of the latitude values%n"
 							+ "(if the value can be interpreted as a double)%n"));
-			System.exit(0);
+			exit(0);
 		}
 		for (double lat : GeoTessModelUtils.getLatitudes(args[1], args[2],
 				args[3]))
@@ -4481,7 +4964,7 @@ public class GeoTessExplorer
 							+ "that is either the number of longitude values (if the value can be%n"
 							+ "interpreted as an integer), or the spacing of the longitude values%n"
 							+ "(if the value can be interpreted as a double)%n"));
-			System.exit(0);
+			exit(0);
 		}
 		for (double lon : GeoTessModelUtils.getLongitudes(args[1], args[2],
 				args[3], "true"))
@@ -4513,7 +4996,7 @@ public class GeoTessExplorer
 		{
 			System.out .println(
 					String.format("%n%nMust specify lat1 lon1 lat2 lon2 and nPoints%n"));
-			System.exit(0);
+			exit(0);
 		}
 		int arg = 1;
 		double lat1 = Double.parseDouble(args[arg++]);
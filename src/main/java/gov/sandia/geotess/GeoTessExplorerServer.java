@@ -0,0 +1,769 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import gov.sandia.gmp.util.globals.InterpolatorType;
+import gov.sandia.gmp.util.statistics.Statistic;
+
+/**
+ * A long-running GeoTessExplorer that keeps models loaded in memory and 
+ * executes GeoTessExplorer commands read, one per line, from stdin or from
+ * connections to a socket on the local host.  Each line contains the same
+ * arguments that would be supplied to GeoTessExplorer on the command line, 
+ * separated by white space.  Arguments that contain white space may be 
+ * enclosed in double quotes.  Blank lines and lines that start with '#' 
+ * are ignored.
+ * 
+ * <p>Commands are executed concurrently by a pool of threads.  Since 
+ * responses may complete out of order, the output of each command is 
+ * collected and written as a single block:
+ * <pre>
+ * #begin &lt;requestId&gt; &lt;command&gt;
+ * ... output of the command ...
+ * #end &lt;requestId&gt; ok|error &lt;elapsed&gt; msec
+ * </pre>
+ * where requestId is the line number of the request, counting from 1, 
+ * within the stdin stream or socket connection.
+ * 
+ * <p>Only responses are written to stdout.  Anything written to System.out
+ * or System.err that cannot be attributed to a request, for example by a 
+ * thread that a command starts, is written to stderr so that it cannot 
+ * corrupt the framing of the responses.
+ * 
+ * <p>Models requested by the query commands (getValues, getValuesFile,
+ * interpolatePoint, borehole, profile, findClosestPoint, slice, 
+ * sliceDistAz, mapValuesDepth, mapValuesLayer, mapLayerBoundary, 
+ * mapLayerThickness, values3DBlock and statistics) are loaded the first 
+ * time they are requested and reused by subsequent requests.  A model is
+ * reloaded if its file is modified.  GeoTessPosition objects are pooled 
+ * per model and interpolation type and reused from one request to the next.
+ * All other commands behave exactly as they do when GeoTessExplorer is 
+ * run from the command line.
+ * 
+ * <p>In addition to the GeoTessExplorer commands, the server understands:
+ * <ul>
+ * <li>load &lt;modelFile&gt; [&lt;gridDirectory&gt;] -- load a model, if not already loaded
+ * <li>unload &lt;modelFile&gt; [&lt;gridDirectory&gt;] -- discard a loaded model
+ * <li>models -- list the loaded models
+ * <li>latency -- summary of the execution time of every command executed so far
+ * <li>quit -- close the current socket connection, or shut down if reading stdin
+ * <li>shutdown -- wait for pending requests to complete and shut down the server
+ * </ul>
+ */
+public class GeoTessExplorerServer extends GeoTessExplorer
+{
+	/**
+	 * true while a server is executing commands.  Used by GeoTessExplorer.exit()
+	 * to decide whether to terminate the JVM or just the current command.
+	 */
+	private static volatile boolean running = false;
+
+	/**
+	 * Thrown by GeoTessExplorer.exit() in place of System.exit() while a 
+	 * server is running.
+	 */
+	static class CommandExit extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		CommandExit(int status)
+		{
+			super("command terminated with status "+status);
+		}
+	}
+
+	/**
+	 * A model loaded by the server, along with the pools of GeoTessPosition
+	 * objects that have been used to interrogate it.
+	 */
+	private static class ModelEntry
+	{
+		final GeoTessModel model;
+
+		final long lastModified;
+
+		final long loadTime;
+
+		/**
+		 * Map from horizontalType/radialType to idle positions.
+		 */
+		final Map<String, ConcurrentLinkedQueue<GeoTessPosition>> positionPools = 
+				Collections.synchronizedMap(new TreeMap<String, ConcurrentLinkedQueue<GeoTessPosition>>());
+
+		ModelEntry(GeoTessModel model, long lastModified, long loadTime)
+		{
+			this.model = model;
+			this.lastModified = lastModified;
+			this.loadTime = loadTime;
+		}
+
+		ConcurrentLinkedQueue<GeoTessPosition> getPool(InterpolatorType horizontalType, 
+				InterpolatorType radialType)
+		{
+			String key = horizontalType.toString()+"/"+radialType.toString();
+			synchronized (positionPools)
+			{
+				ConcurrentLinkedQueue<GeoTessPosition> pool = positionPools.get(key);
+				if (pool == null)
+					positionPools.put(key, pool = new ConcurrentLinkedQueue<GeoTessPosition>());
+				return pool;
+			}
+		}
+	}
+
+	/**
+	 * Map from canonical model file name and grid directory to loaded model.
+	 */
+	private final Map<String, ModelEntry> models = new TreeMap<String, ModelEntry>();
+
+	/**
+	 * Map from model to its ModelEntry, used to find the position pools of a model.
+	 */
+	private final Map<GeoTessModel, ModelEntry> modelEntries = 
+			Collections.synchronizedMap(new IdentityHashMap<GeoTessModel, ModelEntry>());
+
+	/**
+	 * The positions borrowed by the command executing in the current thread,
+	 * along with the pools to which they will be returned when the command
+	 * completes.
+	 */
+	private final ThreadLocal<ArrayList<Object[]>> borrowedPositions = 
+			new ThreadLocal<ArrayList<Object[]>>()
+	{
+		@Override
+		protected ArrayList<Object[]> initialValue() 
+		{
+			return new ArrayList<Object[]>();
+		}
+	};
+
+	/**
+	 * Map from command name to execution time statistics in msec.
+	 */
+	private final Map<String, Statistic> latency = new TreeMap<String, Statistic>();
+
+	/**
+	 * System.out when the server was started.  Responses are written here
+	 * when reading commands from stdin.
+	 */
+	private PrintStream stdout;
+
+	/**
+	 * System.err when the server was started.  Output that cannot be 
+	 * attributed to a request is written here.
+	 */
+	private PrintStream stderr;
+
+	/**
+	 * Routes everything written to System.out by a command to the output 
+	 * buffer of the thread executing the command, and everything else to 
+	 * stderr.
+	 */
+	private CommandOutputStream commandOutput;
+
+	/**
+	 * Routes everything written to System.err by a command to the output 
+	 * buffer of the thread executing the command, and everything else to 
+	 * stderr.
+	 */
+	private CommandOutputStream commandError;
+
+	private ExecutorService threadPool;
+
+	/**
+	 * Maximum number of requests from a single stdin stream or socket 
+	 * connection that may be queued or executing at one time.  Reading
+	 * of requests pauses when this many are outstanding.
+	 */
+	private int maxPending;
+
+	private volatile boolean shutdown = false;
+
+	private ServerSocket serverSocket;
+
+	/**
+	 * Returns true while a GeoTessExplorerServer is executing commands.
+	 * @return true while a GeoTessExplorerServer is executing commands.
+	 */
+	static boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Start the server.
+	 * 
+	 * @param args
+	 *            <ol start="0">
+	 *            <li>server
+	 *            <li>'stdin' or the number of a TCP port on the local host
+	 *            on which to listen for connections
+	 *            <li>number of threads (optional).  Default is the number 
+	 *            of available processors.
+	 *            <li>any number of model files to load before accepting 
+	 *            requests (optional).  The grid must be stored in the model
+	 *            file or in the same directory as the model file.
+	 *            </ol>
+	 * @throws Exception
+	 */
+	public void server(String[] args) throws Exception
+	{
+		int nmin = 2;
+		if (args.length < nmin)
+		{
+			System.out.println(
+					String.format("%n%nMust supply at least %d arguments:%n"
+							+ "  1  --  server%n"
+							+ "  2  --  'stdin' or the TCP port on the local host on which to listen for connections%n"
+							+ "  3  --  number of threads (optional, default is the number of available processors)%n"
+							+ "  4+ --  model files to load at startup (optional)%n"
+							, nmin));
+			exit(0);
+		}
+
+		int nThreads = args.length > 2 ? Integer.parseInt(args[2]) 
+				: Runtime.getRuntime().availableProcessors();
+
+		stdout = System.out;
+		stderr = System.err;
+		commandOutput = new CommandOutputStream(stderr);
+		commandError = new CommandOutputStream(stderr);
+		System.setOut(new PrintStream(commandOutput, true));
+		System.setErr(new PrintStream(commandError, true));
+		threadPool = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		maxPending = 4*Math.max(1, nThreads);
+		running = true;
+
+		try
+		{
+			for (int i=3; i<args.length; ++i)
+				getModelEntry(new File(args[i]), "");
+
+			if (args[1].equalsIgnoreCase("stdin"))
+			{
+				stdout.printf("GeoTessExplorerServer %s ready on stdin with %d threads%n", 
+						GeoTessJava.getVersion(), nThreads);
+				stdout.flush();
+				Writer out = new OutputStreamWriter(stdout);
+				serve(new BufferedReader(new InputStreamReader(System.in)), out);
+			}
+			else
+			{
+				serverSocket = new ServerSocket(Integer.parseInt(args[1]), 50, 
+						InetAddress.getLoopbackAddress());
+				stdout.printf("GeoTessExplorerServer %s listening on %s:%d with %d threads%n", 
+						GeoTessJava.getVersion(), serverSocket.getInetAddress().getHostAddress(),
+						serverSocket.getLocalPort(), nThreads);
+				stdout.flush();
+				while (!shutdown)
+				{
+					final Socket socket;
+					try
+					{
+						socket = serverSocket.accept();
+					}
+					catch (IOException ex)
+					{
+						if (shutdown) break;
+						throw ex;
+					}
+					Thread connection = new Thread(new Runnable() {
+						@Override
+						public void run()
+						{
+							try
+							{
+								serve(new BufferedReader(new InputStreamReader(socket.getInputStream())),
+										new OutputStreamWriter(socket.getOutputStream()));
+							}
+							catch (Exception ex)
+							{
+								ex.printStackTrace();
+							}
+							finally
+							{
+								try { socket.close(); } catch (IOException e) { }
+							}
+						}}, "GeoTessExplorerServer-"+socket.getPort());
+					connection.setDaemon(true);
+					connection.start();
+				}
+			}
+		}
+		finally
+		{
+			threadPool.shutdown();
+			threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+			running = false;
+			System.setOut(stdout);
+			System.setErr(stderr);
+			if (serverSocket != null && !serverSocket.isClosed())
+				serverSocket.close();
+		}
+	}
+
+	/**
+	 * Read requests from input until end of stream, 'quit' or 'shutdown'. 
+	 * GeoTessExplorer commands are executed by the thread pool; server 
+	 * commands are executed immediately.  Every response is written to 
+	 * output as a single block.
+	 * 
+	 * @param input source of requests
+	 * @param output destination of responses
+	 * @throws IOException
+	 */
+	private void serve(BufferedReader input, final Writer output) throws IOException
+	{
+		// one permit is held by each request from this connection that has 
+		// not completed yet.
+		final Semaphore outstanding = new Semaphore(maxPending);
+		long requestId = 0;
+		String line;
+		try
+		{
+			while (!shutdown && (line = input.readLine()) != null)
+			{
+				++requestId;
+				final String[] args = tokenize(line);
+				if (args.length == 0 || args[0].startsWith("#"))
+					continue;
+
+				final String command = args[0];
+				if (command.equalsIgnoreCase("quit"))
+				{
+					if (serverSocket == null)
+						shutdown();
+					break;
+				}
+				if (command.equalsIgnoreCase("shutdown"))
+				{
+					shutdown();
+					break;
+				}
+
+				final long id = requestId;
+				if (isServerCommand(command))
+				{
+					execute(id, args, output);
+					continue;
+				}
+
+				outstanding.acquireUninterruptibly();
+				try
+				{
+					threadPool.execute(new Runnable() {
+						@Override
+						public void run()
+						{
+							try
+							{
+								execute(id, args, output);
+							}
+							finally
+							{
+								outstanding.release();
+							}
+						}});
+				}
+				catch (RejectedExecutionException ex)
+				{
+					// the server is shutting down.
+					outstanding.release();
+					break;
+				}
+			}
+		}
+		finally
+		{
+			outstanding.acquireUninterruptibly(maxPending);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Stop reading requests, close the server socket and let pending 
+	 * requests complete.
+	 */
+	private void shutdown()
+	{
+		shutdown = true;
+		if (serverSocket != null)
+			try { serverSocket.close(); } catch (IOException e) { }
+	}
+
+	private static boolean isServerCommand(String command)
+	{
+		return command.equalsIgnoreCase("load") || command.equalsIgnoreCase("unload")
+				|| command.equalsIgnoreCase("models") || command.equalsIgnoreCase("latency")
+				|| command.equalsIgnoreCase("server");
+	}
+
+	/**
+	 * Execute a single request in the current thread, capturing everything 
+	 * it writes to System.out and System.err, and write the response to output.
+	 */
+	private void execute(long requestId, String[] args, Writer output)
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(buffer, true);
+		commandOutput.setTarget(buffer);
+		commandError.setTarget(buffer);
+		boolean ok = true;
+		long start = System.nanoTime();
+		try
+		{
+			String command = args[0];
+			if (command.equalsIgnoreCase("load"))
+				load(args, out);
+			else if (command.equalsIgnoreCase("unload"))
+				unload(args, out);
+			else if (command.equalsIgnoreCase("models"))
+				out.print(getModelsString());
+			else if (command.equalsIgnoreCase("latency"))
+				out.print(getLatencyString());
+			else if (command.equalsIgnoreCase("server"))
+				throw new Exception("GeoTessExplorerServer is already running.");
+			else
+				run(args);
+		}
+		catch (CommandExit ex)
+		{
+			ok = false;
+		}
+		catch (Throwable ex)
+		{
+			ok = false;
+			ex.printStackTrace(out);
+		}
+		finally
+		{
+			releasePositions();
+			commandOutput.setTarget(null);
+			commandError.setTarget(null);
+		}
+		double msec = (System.nanoTime()-start)*1e-6;
+		addLatency(args[0], msec);
+
+		out.flush();
+		synchronized (output)
+		{
+			try
+			{
+				output.write(String.format("#begin %d %s%n", requestId, args[0]));
+				output.write(buffer.toString());
+				if (buffer.size() > 0 && buffer.toByteArray()[buffer.size()-1] != '\n')
+					output.write(String.format("%n"));
+				output.write(String.format("#end %d %s %1.3f msec%n", requestId, 
+						ok ? "ok" : "error", msec));
+				output.flush();
+			}
+			catch (IOException ex)
+			{
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	private void addLatency(String command, double msec)
+	{
+		Statistic stat;
+		synchronized (latency)
+		{
+			stat = latency.get(command);
+			if (stat == null)
+				latency.put(command, stat = new Statistic());
+		}
+		synchronized (stat)
+		{
+			stat.add(msec);
+		}
+	}
+
+	/**
+	 * Retrieve a table of the execution time statistics of every command
+	 * executed so far.
+	 * @return a table of execution time statistics.
+	 */
+	public String getLatencyString()
+	{
+		StringBuffer buf = new StringBuffer();
+		buf.append(String.format("%-24s %10s %12s %12s %12s %12s%n", 
+				"command", "count", "mean(msec)", "min(msec)", "max(msec)", "total(sec)"));
+		synchronized (latency)
+		{
+			for (Map.Entry<String, Statistic> entry : latency.entrySet())
+				synchronized (entry.getValue())
+				{
+					Statistic s = entry.getValue();
+					buf.append(String.format("%-24s %10d %12.3f %12.3f %12.3f %12.3f%n",
+							entry.getKey(), s.getCount(), s.getMean(), s.getMinimum(), 
+							s.getMaximum(), s.getSum()*1e-3));
+				}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Retrieve a list of the models currently loaded.
+	 * @return a list of the models currently loaded.
+	 */
+	public String getModelsString()
+	{
+		StringBuffer buf = new StringBuffer();
+		synchronized (models)
+		{
+			for (Map.Entry<String, ModelEntry> entry : models.entrySet())
+			{
+				int nPositions = 0;
+				synchronized (entry.getValue().positionPools)
+				{
+					for (ConcurrentLinkedQueue<GeoTessPosition> pool : 
+						entry.getValue().positionPools.values())
+						nPositions += pool.size();
+				}
+				buf.append(String.format("%s  vertices=%d  points=%d  load=%1.3f msec  idle positions=%d%n",
+						entry.getKey(), entry.getValue().model.getNVertices(),
+						entry.getValue().model.getNPoints(), entry.getValue().loadTime*1e-6, 
+						nPositions));
+			}
+		}
+		return buf.toString();
+	}
+
+	private void load(String[] args, PrintStream out) throws Exception
+	{
+		if (args.length < 2)
+			throw new Exception("Usage: load <modelFile> [<gridDirectory>]");
+		ModelEntry entry = getModelEntry(new File(args[1]), args.length > 2 ? args[2] : "");
+		out.printf("%s loaded in %1.3f msec%n", args[1], entry.loadTime*1e-6);
+	}
+
+	private void unload(String[] args, PrintStream out) throws Exception
+	{
+		if (args.length < 2)
+			throw new Exception("Usage: unload <modelFile> [<gridDirectory>]");
+		ModelEntry entry;
+		synchronized (models)
+		{
+			entry = models.remove(getKey(new File(args[1]), args.length > 2 ? args[2] : ""));
+		}
+		if (entry != null)
+			modelEntries.remove(entry.model);
+		out.printf("%s %s%n", args[1], entry == null ? "was not loaded" : "unloaded");
+	}
+
+	private static String getKey(File modelFile, String gridDirectory) throws IOException
+	{
+		return modelFile.getCanonicalPath() 
+				+ (gridDirectory == null || gridDirectory.isEmpty() ? "" : " "+gridDirectory);
+	}
+
+	/**
+	 * Retrieve the ModelEntry for the specified model, loading the model if 
+	 * it is not already loaded or if the file has been modified since it was
+	 * loaded.  Loads are serialized since GeoTessModel.reuseGridMap is not
+	 * thread-safe.
+	 */
+	private ModelEntry getModelEntry(File modelFile, String gridDirectory) throws Exception
+	{
+		String key = getKey(modelFile, gridDirectory);
+		long lastModified = modelFile.lastModified();
+		synchronized (models)
+		{
+			ModelEntry entry = models.get(key);
+			if (entry == null || entry.lastModified != lastModified)
+			{
+				if (entry != null)
+					modelEntries.remove(entry.model);
+				long start = System.nanoTime();
+				GeoTessModel model = super.getModel(modelFile, gridDirectory);
+				entry = new ModelEntry(model, lastModified, System.nanoTime()-start);
+				models.put(key, entry);
+				modelEntries.put(model, entry);
+			}
+			return entry;
+		}
+	}
+
+	@Override
+	protected GeoTessModel getModel(File modelFile, String gridDirectory) throws Exception
+	{
+		return getModelEntry(modelFile, gridDirectory).model;
+	}
+
+	@Override
+	protected GeoTessModel getModel(String modelFile, String gridDirectory) throws Exception
+	{
+		return getModelEntry(new File(modelFile), gridDirectory).model;
+	}
+
+	@Override
+	protected GeoTessPosition getPosition(GeoTessModel model, 
+			InterpolatorType horizontalType, InterpolatorType radialType) throws GeoTessException
+	{
+		ModelEntry entry = modelEntries.get(model);
+		if (entry == null)
+			return super.getPosition(model, horizontalType, radialType);
+
+		ConcurrentLinkedQueue<GeoTessPosition> pool = entry.getPool(horizontalType, radialType);
+		GeoTessPosition position = pool.poll();
+		if (position == null)
+			position = super.getPosition(model, horizontalType, radialType);
+		borrowedPositions.get().add(new Object[] {pool, position});
+		return position;
+	}
+
+	/**
+	 * Return all the positions borrowed by the command that just completed
+	 * in the current thread to their pools.
+	 */
+	@SuppressWarnings("unchecked")
+	private void releasePositions()
+	{
+		ArrayList<Object[]> borrowed = borrowedPositions.get();
+		for (Object[] b : borrowed)
+			((ConcurrentLinkedQueue<GeoTessPosition>)b[0]).add((GeoTessPosition)b[1]);
+		borrowed.clear();
+	}
+
+	/**
+	 * Split a request line into arguments separated by white space.  
+	 * Arguments may be enclosed in double quotes to include white space.
+	 */
+	static String[] tokenize(String line)
+	{
+		ArrayList<String> tokens = new ArrayList<String>();
+		StringBuilder token = new StringBuilder();
+		boolean quoted = false, inToken = false;
+		for (int i=0; i<line.length(); ++i)
+		{
+			char c = line.charAt(i);
+			if (c == '"')
+			{
+				quoted = !quoted;
+				inToken = true;
+			}
+			else if (!quoted && Character.isWhitespace(c))
+			{
+				if (inToken)
+				{
+					tokens.add(token.toString());
+					token.setLength(0);
+					inToken = false;
+				}
+			}
+			else
+			{
+				token.append(c);
+				inToken = true;
+			}
+		}
+		if (inToken)
+			tokens.add(token.toString());
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * An OutputStream that forwards everything written to it to the 
+	 * OutputStream assigned to the current thread, or to a default 
+	 * OutputStream if the current thread has not been assigned one.
+	 */
+	private static class CommandOutputStream extends OutputStream
+	{
+		private final OutputStream defaultTarget;
+
+		private final ThreadLocal<OutputStream> target = new ThreadLocal<OutputStream>();
+
+		CommandOutputStream(OutputStream defaultTarget)
+		{
+			this.defaultTarget = defaultTarget;
+		}
+
+		void setTarget(OutputStream out)
+		{
+			if (out == null)
+				target.remove();
+			else
+				target.set(out);
+		}
+
+		private OutputStream getTarget()
+		{
+			OutputStream out = target.get();
+			return out == null ? defaultTarget : out;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			getTarget().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			getTarget().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			getTarget().flush();
+		}
+	}
+
+}
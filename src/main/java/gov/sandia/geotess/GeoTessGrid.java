@@ -220,6 +220,16 @@ public class GeoTessGrid
 	 */
 	protected String gridID;
 
+	/**
+	 * If true, the gridID read from a grid file is verified against the
+	 * digest of the grid's data structures every time a grid file is loaded.
+	 * Set with the system property geotess.verifyGridID (false if undefined).
+	 * Otherwise the gridID stored in the file is trusted and never recomputed
+	 * on load.
+	 */
+	public static final boolean VERIFY_GRID_ID =
+			Boolean.getBoolean("geotess.verifyGridID");
+
 	/**
 	 * Name and version number of the software that generated this grid.
 	 */
@@ -380,7 +390,13 @@ public class GeoTessGrid
 			this.triangles[i] = other.triangles[i].clone();
 		
 		initialize();
-		recomputeGridID();
+
+		// an unrotated copy has the same data structures, and hence the same
+		// gridID, as other.
+		if (eulerRotationMatrix == null)
+			this.gridID = other.gridID;
+		else
+			recomputeGridID();
 	}
 
 	public GeoTessGrid(GeoTessGrid other, double euler0, double euler1, double euler2, boolean inDegrees)
@@ -438,6 +454,8 @@ public class GeoTessGrid
 
 		setGridInputFile(f);
 
+		long timer = System.nanoTime();
+
 		if (inputFile.endsWith(".ascii"))
 			loadGridAscii(inputFile);
 		//		else if (inputFile.endsWith(".nc"))
@@ -445,6 +463,15 @@ public class GeoTessGrid
 		else
 			loadGridBinary(inputFile);
 
+		if (VERIFY_GRID_ID && !verifyGridID())
+			throw new IOException(String.format(
+					"%nThe gridID stored in GeoTessGrid file%n%s%n"
+							+ "is %s but the grid hashes to %s%n",
+					inputFile, gridID, computeGridID()));
+
+		if (GeoTessMetrics.ENABLED)
+			GeoTessMetrics.GRID_LOAD_TIME.recordSince(timer);
+
 		return this;
 	}
 
@@ -541,14 +568,40 @@ public class GeoTessGrid
 	 * @return the gridID
 	 */
 	public String recomputeGridID()
+	{
+		gridID = computeGridID();
+		return gridID;
+	}
+
+	/**
+	 * Recompute the MD5 hash of the tessellations, levels, triangles and
+	 * vertices and return true if it equals the current gridID. The gridID
+	 * is not changed. Grids loaded from files keep the gridID stored in the
+	 * file, so this is the only way (other than the system property
+	 * geotess.verifyGridID) to check that it matches the grid.
+	 * @return true if the gridID matches the grid's data structures.
+	 */
+	public boolean verifyGridID()
+	{
+		return computeGridID().equals(gridID);
+	}
+
+	/**
+	 * Compute the MD5 hash of the tessellations, levels, triangles and
+	 * vertices, in that order. MD5Hash packs the large triangles and vertices
+	 * arrays into blocks, in parallel when more than one processor is
+	 * available, and digests the blocks in order, so the result is the same
+	 * as hashing one row at a time.
+	 * @return the gridID of this grid's data structures.
+	 */
+	private String computeGridID()
 	{
 		MD5Hash md5 = new MD5Hash();
 		md5.update(tessellations);
 		md5.update(levels);
 		md5.update(triangles);
 		md5.update(vertices);
-		gridID = md5.toString().toUpperCase();
-		return gridID;
+		return md5.toString().toUpperCase();
 	}
 
 	/**
@@ -1404,9 +1457,11 @@ public class GeoTessGrid
 	public int getTriangle(int triangleIndex, double[] vector, int level)
 	{
 		int currentLevel = getLevel(triangleIndex);
+		int steps = 0;
 
 		while (true)
 		{
+			++steps;
 			if (GeoTessUtils.dot(edgeList[triangleIndex][0].normal, vector) > -1e-15)
 			{
 				if (GeoTessUtils.dot(edgeList[triangleIndex][1].normal, vector) > -1e-15)
@@ -1414,7 +1469,11 @@ public class GeoTessGrid
 					if (GeoTessUtils.dot(edgeList[triangleIndex][2].normal, vector) > -1e-15)
 					{
 						if (currentLevel == level || descendants[triangleIndex] < 0)
+						{
+							if (GeoTessMetrics.ENABLED)
+								GeoTessMetrics.TRIANGLE_WALK_STEPS.record(steps);
 							return triangleIndex;
+						}
 						else
 						{
 							triangleIndex = descendants[triangleIndex];
@@ -1913,8 +1972,10 @@ public class GeoTessGrid
 	public int getTriangle(int triangleIndex, double[] vector)
 	{
 		//System.out.print("infinite loop?");
+		int steps = 0;
 		while (true)
 		{
+			++steps;
 			if (GeoTessUtils.dot(edgeList[triangleIndex][0].normal, vector) > -1e-15)
 			{
 				if (GeoTessUtils.dot(edgeList[triangleIndex][1].normal, vector) > -1e-15)
@@ -1924,6 +1985,8 @@ public class GeoTessGrid
 						if (descendants[triangleIndex] < 0)
 						{
 							//System.out.println(" no");
+							if (GeoTessMetrics.ENABLED)
+								GeoTessMetrics.TRIANGLE_WALK_STEPS.record(steps);
 							return triangleIndex;
 						}
 						else
@@ -173,6 +173,14 @@ public class GeoTessMetaData
 	 */
 	private boolean layerNormalAreaWeight = false;
 
+	/**
+	 * If true then the cubic spline coefficients of every profile are computed
+	 * when the model is loaded rather than the first time each profile is
+	 * interpolated with InterpolatorType.CUBIC_SPLINE. Defaults to the value of
+	 * the system property geotess.precomputeSplines (false if undefined).
+	 */
+	private boolean precomputeSplines = Boolean.getBoolean("geotess.precomputeSplines");
+
 	/**
 	 * Angles that are being used to rotate
 	 * unit vectors from grid to model coordinates, in degrees.
@@ -262,6 +270,7 @@ public class GeoTessMetaData
 		this.modelGenerationDate = md.modelGenerationDate;
 		this.tetSize = md.tetSize;
 		this.layerNormalAreaWeight = md.layerNormalAreaWeight;
+		this.precomputeSplines = md.precomputeSplines;
 		this.gridInputFileName = md.gridInputFileName;
 		md.setEulerRotationAngles(this.eulerRotationAngles);
 
@@ -1645,6 +1654,39 @@ public class GeoTessMetaData
 		layerNormalAreaWeight = lnaw;
 	}
 
+	/**
+	 * Returns true if the cubic spline coefficients of every profile are to be
+	 * computed (in parallel) when the model is loaded. See
+	 * GeoTessModel.computeSplineCoefficients().
+	 * <p>
+	 * By default, precomputeSplines is false unless the system property
+	 * geotess.precomputeSplines is set to true.
+	 * 
+	 * @return true if spline precomputation is turned on.
+	 */
+	public boolean isSplinePrecomputeOn()
+	{
+		return precomputeSplines;
+	}
+
+	/**
+	 * If precomputeSplines is on, the cubic spline coefficients of every
+	 * profile are computed (in parallel) when a model using this meta data is
+	 * loaded. Otherwise they are computed the first time each profile is
+	 * interpolated with InterpolatorType.CUBIC_SPLINE. Turn this on when many
+	 * threads will interpolate the model with cubic splines.
+	 * <p>
+	 * By default, precomputeSplines is false unless the system property
+	 * geotess.precomputeSplines is set to true.
+	 * 
+	 * @param precomputeSplines
+	 *            specify true or false to turn spline precomputation on or off.
+	 */
+	public void setPrecomputeSplines(boolean precomputeSplines)
+	{
+		this.precomputeSplines = precomputeSplines;
+	}
+
 	/**
 	 * Retrieve the index of the interface with the specified name.
 	 * If majorInterfaces can be parsed to an integer, then that value is
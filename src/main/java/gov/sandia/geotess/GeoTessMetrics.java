@@ -0,0 +1,241 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess;
+
+import gov.sandia.gmp.util.gctiming.GCTelemetry;
+import gov.sandia.gmp.util.metrics.Counter;
+import gov.sandia.gmp.util.metrics.Histogram;
+import gov.sandia.gmp.util.metrics.MetricsRegistry;
+import gov.sandia.gmp.util.metrics.MetricsSnapshot;
+
+/**
+ * Low overhead counters and histograms that describe what GeoTess is doing
+ * in a running application: how far the triangle walks go, how often
+ * positions have to restart their walk from the top level of the
+ * tessellation, how often radial interpolation coefficients are recomputed,
+ * how long models and grids take to load and how effective the grid reuse
+ * map and the LibCorr3D model cache are.
+ *
+ * <p>
+ * Metrics are off by default because the triangle walk histogram is
+ * updated on the hot interpolation paths.  Run the jvm with
+ * -Dgeotess.metrics=true to switch them on; instrumented code tests the
+ * static final flag {@link #ENABLED} so that, when metrics are off, the JIT
+ * compiler removes the instrumentation entirely.  Also set
+ * -Dgeotess.metrics.jmx=true to publish the metrics through JMX as MBean
+ * {@value #OBJECT_NAME} as soon as this class is loaded, or call
+ * {@link #registerMBean()} from application code.
+ *
+ * <p>
+ * Garbage collection, heap and allocation telemetry of the expensive GeoTess
+ * operations (model loads, resampling, ray path weights and LibCorr3D model
+ * loads) is off by default because it reads several management beans per
+ * operation.  Run with -Dgeotess.metrics=true -Dgeotess.telemetry=true
+ * to record it in {@link #TELEMETRY}, and output it with
+ * TELEMETRY.getSummaryString("").
+ */
+public final class GeoTessMetrics
+{
+	/**
+	 * If false, no metrics are collected.
+	 */
+	public static final boolean ENABLED =
+			Boolean.getBoolean("geotess.metrics");
+
+	/**
+	 * JMX ObjectName under which the metrics are published.
+	 */
+	public static final String OBJECT_NAME = "gov.sandia.geotess:type=Metrics";
+
+	private static final MetricsRegistry registry = new MetricsRegistry("GeoTess");
+
+	/**
+	 * If true, GC, heap and allocation telemetry is recorded in
+	 * {@link #TELEMETRY} around tagged GeoTess operations.
+	 */
+	public static final boolean TELEMETRY_ENABLED =
+			ENABLED && Boolean.getBoolean("geotess.telemetry");
+
+	/**
+	 * Per operation GC, heap and allocation telemetry.  Operations are tagged
+	 * "loadModel", "resample", "getWeights" and "libcorr3dLoad".
+	 */
+	public static final GCTelemetry TELEMETRY = new GCTelemetry("GeoTess");
+
+	/**
+	 * Number of triangles visited by each triangle walk, including the
+	 * descents from one tessellation level to the next.
+	 */
+	public static final Histogram TRIANGLE_WALK_STEPS = registry.histogram(
+			"triangleWalkSteps", "Triangles visited per triangle walk", "steps");
+
+	/**
+	 * Number of times a GeoTessPosition's 2D position changed.
+	 */
+	public static final Counter POSITION_UPDATES = registry.counter(
+			"positionUpdates2D", "Number of horizontal position changes");
+
+	/**
+	 * Number of times a GeoTessPosition could not continue its walk from
+	 * the current triangle and had to restart from the top level of the
+	 * tessellation.
+	 */
+	public static final Counter POSITION_TOP_LEVEL_RESTARTS = registry.counter(
+			"positionTopLevelRestarts", "Position updates that restarted the walk from the top level");
+
+	/**
+	 * Number of times radial interpolation coefficients were requested.
+	 */
+	public static final Counter RADIAL_COEFFICIENT_REQUESTS = registry.counter(
+			"radialCoefficientRequests", "Requests for radial interpolation coefficients");
+
+	/**
+	 * Number of times radial interpolation coefficients actually had to be
+	 * recomputed.
+	 */
+	public static final Counter RADIAL_COEFFICIENT_UPDATES = registry.counter(
+			"radialCoefficientUpdates", "Radial interpolation coefficient recomputations");
+
+	/**
+	 * Time required to load models from file.
+	 */
+	public static final Histogram MODEL_LOAD_TIME = registry.histogram(
+			"modelLoadTime", "Time to load a model from file", "usec");
+
+	/**
+	 * Time required to load grids from file.
+	 */
+	public static final Histogram GRID_LOAD_TIME = registry.histogram(
+			"gridLoadTime", "Time to load a grid from file", "usec");
+
+	/**
+	 * Number of grids found in the grid reuse map.
+	 */
+	public static final Counter GRID_REUSE_HITS = registry.counter(
+			"gridReuseHits", "Grids found in the grid reuse map");
+
+	/**
+	 * Number of grids not found in the grid reuse map.
+	 */
+	public static final Counter GRID_REUSE_MISSES = registry.counter(
+			"gridReuseMisses", "Grids not found in the grid reuse map");
+
+	/**
+	 * Number of LibCorr3D model requests satisfied by models already in memory.
+	 */
+	public static final Counter LIBCORR3D_CACHE_HITS = registry.counter(
+			"libcorr3dCacheHits", "LibCorr3D model requests satisfied from memory");
+
+	/**
+	 * Number of LibCorr3D model requests that required a model to be loaded
+	 * from file.
+	 */
+	public static final Counter LIBCORR3D_CACHE_MISSES = registry.counter(
+			"libcorr3dCacheMisses", "LibCorr3D model requests that loaded a model from file");
+
+	static
+	{
+		if (ENABLED && Boolean.getBoolean("geotess.metrics.jmx"))
+			try
+			{
+				registerMBean();
+			}
+			catch (Exception e)
+			{
+				System.err.println("Unable to register GeoTess metrics with JMX: " + e.getMessage());
+			}
+	}
+
+	private GeoTessMetrics()
+	{
+	}
+
+	/**
+	 * Begin a tagged operation if telemetry is enabled.
+	 * @param tag the operation tag
+	 * @return the scope to pass to {@link #endOperation(GCTelemetry.Scope)},
+	 * or null if telemetry is disabled.
+	 */
+	public static GCTelemetry.Scope beginOperation(String tag)
+	{
+		return TELEMETRY_ENABLED ? TELEMETRY.begin(tag) : null;
+	}
+
+	/**
+	 * Record the end of an operation begun with
+	 * {@link #beginOperation(String)}.
+	 * @param scope the scope returned by beginOperation(), may be null.
+	 */
+	public static void endOperation(GCTelemetry.Scope scope)
+	{
+		if (scope != null)
+			scope.end();
+	}
+
+	/**
+	 * Retrieve a copy of the current values of all GeoTess metrics.
+	 * @return a copy of the current values of all GeoTess metrics.
+	 */
+	public static MetricsSnapshot snapshot()
+	{
+		return registry.snapshot();
+	}
+
+	/**
+	 * Set all GeoTess metrics back to zero.
+	 */
+	public static void reset()
+	{
+		registry.reset();
+		TELEMETRY.clear();
+	}
+
+	/**
+	 * Retrieve the registry that holds all GeoTess metrics.
+	 * @return the registry that holds all GeoTess metrics.
+	 */
+	public static MetricsRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	/**
+	 * Publish GeoTess metrics through JMX as MBean {@value #OBJECT_NAME}.
+	 * Calling this method more than once has no effect.
+	 * @throws Exception
+	 */
+	public static void registerMBean() throws Exception
+	{
+		registry.registerMBean(OBJECT_NAME);
+	}
+}
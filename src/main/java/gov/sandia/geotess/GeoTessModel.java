@@ -52,7 +52,10 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import gov.sandia.geotess.extensions.amplitude.GeoTessModelAmplitude;
 import gov.sandia.geotess.extensions.libcorr3d.LibCorr3DModel;
@@ -64,6 +67,7 @@ import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
 import gov.sandia.gmp.util.containers.hash.maps.HashMapIntegerDouble;
 import gov.sandia.gmp.util.containers.hash.sets.HashSetInteger;
 import gov.sandia.gmp.util.containers.hash.sets.HashSetInteger.Iterator;
+import gov.sandia.gmp.util.gctiming.GCTelemetry;
 import gov.sandia.gmp.util.globals.DataType;
 import gov.sandia.gmp.util.globals.Globals;
 import gov.sandia.gmp.util.globals.InterpolatorType;
@@ -431,7 +435,7 @@ public class GeoTessModel
 				// grid reuse is on ... see if grid exists in map
 
 				String gridID = GeoTessGrid.getGridID(gridFileName);
-				grid = reuseGridMap.get(gridID);
+				grid = getReusedGrid(gridID);
 				if (grid == null)
 				{
 					// not in map ... create and add
@@ -500,7 +504,7 @@ public class GeoTessModel
 		if (metaData.isGridReuseOn())
 		{
 			// see if we already have a reference to a grid with the same gridID
-			GeoTessGrid savedGrid = reuseGridMap.get(grid.getGridID());
+			GeoTessGrid savedGrid = getReusedGrid(grid.getGridID());
 
 			// if not, save a reference to this grid in the reuseGridMap
 			if (savedGrid == null)
@@ -549,6 +553,23 @@ public class GeoTessModel
 		return reuseGridMap == null ? 0 : reuseGridMap.size();
 	}
 
+	/**
+	 * Retrieve the grid with the specified gridID from the reuseGridMap, or
+	 * null if it is not there, recording the hit or miss in GeoTessMetrics.
+	 */
+	private static GeoTessGrid getReusedGrid(String gridID)
+	{
+		GeoTessGrid g = reuseGridMap.get(gridID);
+		if (GeoTessMetrics.ENABLED)
+		{
+			if (g == null)
+				GeoTessMetrics.GRID_REUSE_MISSES.increment();
+			else
+				GeoTessMetrics.GRID_REUSE_HITS.increment();
+		}
+		return g;
+	}
+
 	/**
 	 * Retrieve a reference to the reuseGridMap.
 	 * @return a reference to the reuseGridMap.
@@ -1809,6 +1830,7 @@ public class GeoTessModel
 			InterpolatorType radialType,
 			Map<Integer, Double> weights ) throws GeoTessException
 	{
+		GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("getWeights");
 		weights.clear();
 
 		GeoTessPosition pos = getGeoTessPosition(horizontalType, radialType);
@@ -1831,6 +1853,7 @@ public class GeoTessModel
 			pos.set(layer, v, (r1+r2) / 2.);
 			pos.getWeights(weights, GeoTessUtils.getDistance3D(v1,r1,v2,r2));
 		}
+		GeoTessMetrics.endOperation(telemetry);
 		return !weights.containsKey(Integer.valueOf(-1));
 	}
 
@@ -1876,6 +1899,7 @@ public class GeoTessModel
 	{
 		// the code here is identical to another method with the same name but this method
 		// populates a HashMapIntegerDouble instead of a HashMap<Integer, Double>.
+		GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("getWeights");
 		weights.clear();
 
 		GeoTessPosition pos = getGeoTessPosition(horizontalType, radialType);
@@ -1898,6 +1922,7 @@ public class GeoTessModel
 			pos.set(layer, v, (r1+r2) / 2.);
 			pos.getWeights(weights, GeoTessUtils.getDistance3D(v1,r1,v2,r2));
 		}
+		GeoTessMetrics.endOperation(telemetry);
 		return !weights.contains(-1);
 	}
 
@@ -1947,6 +1972,7 @@ public class GeoTessModel
 		if (!is2D())
 			throw new GeoTessException("\nCan only apply this method to 2D models.\n");
 
+		GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("getWeights");
 		weights.clear();
 
 		int nIntervals = (int) Math.ceil(greatCircle.getDistance()/pointSpacing);
@@ -1965,6 +1991,7 @@ public class GeoTessModel
 				pos.getWeights(weights, delta*r);
 			}
 		}
+		GeoTessMetrics.endOperation(telemetry);
 		return !weights.containsKey(Integer.valueOf(-1));
 	}
 
@@ -2017,6 +2044,7 @@ public class GeoTessModel
 		if (!is2D())
 			throw new GeoTessException("\nCan only apply this method to 2D models.\n");
 
+		GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("getWeights");
 		weights.clear();
 
 		int nIntervals = (int) Math.ceil(greatCircle.getDistance()/pointSpacing);
@@ -2035,6 +2063,7 @@ public class GeoTessModel
 				pos.getWeights(weights, delta*r);
 			}
 		}
+		GeoTessMetrics.endOperation(telemetry);
 		return !weights.contains(-1);
 	}
 
@@ -3046,6 +3075,7 @@ public class GeoTessModel
 				relGridFilePath = "";
 
 			long timer = System.nanoTime();
+			GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("loadModel");
 
 			if (inputFile.getName().endsWith(".ascii"))
 				loadModelAscii(inputFile, relGridFilePath);
@@ -3054,8 +3084,15 @@ public class GeoTessModel
 			else
 				loadModelBinary(inputFile, relGridFilePath);
 
+			if (metaData.isSplinePrecomputeOn())
+				computeSplineCoefficients();
+
 			metaData.setLoadTimeModel((System.nanoTime() - timer) * 1e-9);
 
+			if (GeoTessMetrics.ENABLED)
+				GeoTessMetrics.MODEL_LOAD_TIME.recordSince(timer);
+			GeoTessMetrics.endOperation(telemetry);
+
 			return this;
 		}
 		catch (GeoTessException e)
@@ -3383,7 +3420,7 @@ public class GeoTessModel
 	{
 		// now process the grid.
 		if (metaData.isGridReuseOn())
-			grid = reuseGridMap.get(gridID);
+			grid = getReusedGrid(gridID);
 		else
 			grid = null;
 
@@ -3472,7 +3509,7 @@ public class GeoTessModel
 
 		if (metaData.isGridReuseOn())
 		{
-			this.grid = reuseGridMap.get(newGrid.getGridID());
+			this.grid = getReusedGrid(newGrid.getGridID());
 			if (this.grid == null)
 			{
 				this.grid = newGrid;
@@ -4261,6 +4298,62 @@ public class GeoTessModel
 		}
 	}
 
+	/**
+	 * Compute and store the cubic spline coefficients of every profile in the
+	 * model. Otherwise each profile computes its coefficients the first time it
+	 * is interpolated with InterpolatorType.CUBIC_SPLINE. Either way the
+	 * coefficients are published without locking, so concurrent cubic spline
+	 * interpolation is as contention free as linear interpolation, but calling
+	 * this method once avoids threads racing to compute the same coefficients
+	 * and moves the cost to model load time. Batches of vertices are processed
+	 * concurrently on the common ForkJoinPool.
+	 * <p>
+	 * Called automatically when the model is loaded if
+	 * GeoTessMetaData.isSplinePrecomputeOn() is true.
+	 * 
+	 * @throws GeoTessException
+	 */
+	public void computeSplineCoefficients() throws GeoTessException
+	{
+		final int verticesPerTask = 1000;
+		int n = profiles.length;
+		if (Runtime.getRuntime().availableProcessors() == 1 || n <= verticesPerTask)
+		{
+			computeSplineCoefficients(0, n);
+			return;
+		}
+
+		try
+		{
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(n / verticesPerTask + 1);
+			for (int first = 0; first < n; first += verticesPerTask)
+			{
+				final int from = first, to = Math.min(n, first + verticesPerTask);
+				tasks.add(() -> {
+					computeSplineCoefficients(from, to);
+					return null;
+				});
+			}
+			for (Future<Object> f : ForkJoinPool.commonPool().invokeAll(tasks))
+				f.get();
+		}
+		catch (Exception e)
+		{
+			throw new GeoTessException(e);
+		}
+	}
+
+	/**
+	 * Compute the cubic spline coefficients of all profiles of vertices from
+	 * to to-1.
+	 */
+	private void computeSplineCoefficients(int from, int to)
+	{
+		for (int vertex = from; vertex < to; ++vertex)
+			for (Profile p : profiles[vertex])
+				p.computeSplineCoefficients();
+	}
+
 	/**
 	 * Retrieve the requested attribute gradient at the specified active point
 	 * index. If reciprocal is true the gradient of the inverse attribute is
@@ -4627,6 +4720,8 @@ public class GeoTessModel
 
 	public GeoTessModel resample(GeoTessGrid newGrid) throws Exception
 	{
+		GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("resample");
+
 		// create a new GeoTessModel model with the new grid and a copy of 
 		// the metadata from the this model.  If this GeoTessModel is an instance 
 		// of a derived class, then newModel will also be an instance of the derived 
@@ -4782,6 +4877,7 @@ public class GeoTessModel
 		// we now have a new GeoTessModel with all the same data as 
 		// this model but re-sampled onto the new grid.
 
+		GeoTessMetrics.endOperation(telemetry);
 		return newModel;
 	}
 
@@ -1205,6 +1205,8 @@ public abstract class GeoTessPosition
 				|| unitVector[1] != uVector[1] || unitVector[2] != uVector[2])
 		{
 			// the vector position has changed. Update everything.
+			if (GeoTessMetrics.ENABLED)
+				GeoTessMetrics.POSITION_UPDATES.increment();
 
 			// nullify the triangle index for all tessellations other than the
 			// current one.
@@ -1221,6 +1223,8 @@ public abstract class GeoTessPosition
 			{
 				triangle[tessid] = model.getGrid().getTriangle(tessid, 0, 0);
 				tessLevels[tessid] = 0;
+				if (GeoTessMetrics.ENABLED)
+					GeoTessMetrics.POSITION_TOP_LEVEL_RESTARTS.increment();
 			}
 
 			unitVector[0] = uVector[0];
@@ -1338,9 +1342,13 @@ public abstract class GeoTessPosition
 		double r = radius;
 		double depth = depthSpecified ? getEarthRadius()-radius : Double.NaN;
 		
+		if (GeoTessMetrics.ENABLED)
+			GeoTessMetrics.RADIAL_COEFFICIENT_REQUESTS.increment();
 		if (radialCoeffUpdateLayerId != layer) clearRadialCoefficients();
 		if (radialIndexes.get(0).size() == 0)
 		{
+			if (GeoTessMetrics.ENABLED)
+				GeoTessMetrics.RADIAL_COEFFICIENT_UPDATES.increment();
 			int[] v = vertices.get(tid).getArray();
 			for (int i = 0; i < vertices.get(tid).size(); ++i)
 			{
@@ -1376,9 +1384,11 @@ public abstract class GeoTessPosition
 		double[] u = this.unitVector;
 		if (model.getMetaData().getEulerModelToGrid() != null)
 			u = VectorUnit.eulerRotation(u, model.getMetaData().getEulerModelToGrid());
+		int steps = 0;
 		
 		while (true)
 		{
+			++steps;
 			c[0] = GeoTessUtils.dot(gridEdges[t][0].normal, u);
 			if (c[0] > -1e-15)
 			{
@@ -1408,6 +1418,8 @@ public abstract class GeoTessPosition
 								// results depend on the interpolator type.
 								update2D(tessid, u);
 								
+								if (GeoTessMetrics.ENABLED)
+									GeoTessMetrics.TRIANGLE_WALK_STEPS.record(steps);
 								return;
 							}
 							else
@@ -683,6 +683,17 @@ public abstract class Profile
 	  // do nothing
 	}
 
+	/**
+	 * Compute and store any coefficients needed for cubic spline interpolation
+	 * so that later evaluations do not have to compute them. Does nothing for
+	 * profile types that do not support cubic spline interpolation (the
+	 * implementation below).
+	 */
+	protected void computeSplineCoefficients()
+	{
+		// do nothing
+	}
+
 	protected void addToGradient(int attributeIndex, double radius,
 			                         double coefficient, double[] gradient)
 	{
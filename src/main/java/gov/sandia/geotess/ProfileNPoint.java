@@ -68,12 +68,16 @@ public class ProfileNPoint extends Profile
 	protected Data[] data;
 
 	/**
-	 * nAttributes x nPoints array containing the second derivatives at the node
-	 * points. Used when doing cubic spline interpolation. Lazy evaluation is
-	 * used, so elements of this variable are only instantiated when requested
-	 * the first time, then they are permanently stored.
+	 * nPoints x nAttributes flat array containing the second derivatives at the
+	 * node points, stored point by point like the Data attribute values
+	 * (element [nodeIndex * nAttributes + attributeIndex]). Used when doing
+	 * cubic spline interpolation. The second derivatives of all attributes are
+	 * computed together the first time any is requested (or when
+	 * computeSplineCoefficients() is called) and published through this
+	 * volatile reference, so readers never lock. Threads that race to compute
+	 * the array compute identical arrays, and any one of them may be kept.
 	 */
-	private double[][] y2;
+	private volatile double[] y2;
 	
 	/**
 	 * nAttributes x nPoints x 3 array containing the gradients of each attribute
@@ -246,6 +250,7 @@ public class ProfileNPoint extends Profile
 		if (data.length != radii.length)
 			throw new IllegalArgumentException("data.length != radii.length");
 		this.data = data;
+		y2 = null;
 	}
 	
 	/**
@@ -259,7 +264,10 @@ public class ProfileNPoint extends Profile
 	public void setData(int index, Data data) 
 	{
 		if (index < this.data.length)
+		{
 			this.data[index] = data;
+			y2 = null;
+		}
 		else 
 			throw new java.lang.ArrayIndexOutOfBoundsException();
 	}
@@ -273,7 +281,10 @@ public class ProfileNPoint extends Profile
 	@Override
 	public void setRadius(int node, float radius) {
 		if (node >= 0 && node < radii.length) 
+		{
 			radii[node] = radius;
+			y2 = null;
+		}
 	}
 	
 	@Override
@@ -365,12 +376,16 @@ public class ProfileNPoint extends Profile
 		case LINEAR:
 			return v;
 		case CUBIC_SPLINE:
-			check(attributeIndex);
+			double[] d2 = y2;
+			if (d2 == null)
+				d2 = computeY2();
+			int nAttributes = d2.length / radii.length;
+			int k = index * nAttributes + attributeIndex;
 			double b = 1. - a;
 			// implement splint()
 			return v
-					+ ((a * a * a - a) * y2[attributeIndex][index] 
-					+  (b * b * b - b) * y2[attributeIndex][index + 1]) 
+					+ ((a * a * a - a) * d2[k] 
+					+  (b * b * b - b) * d2[k + nAttributes]) 
 					* (r1 - r0) * (r1 - r0) / 6.0;
 
 		default:
@@ -516,12 +531,36 @@ public class ProfileNPoint extends Profile
 		return getRadiusIndex((float)radius);
 	}
 
-	synchronized private void check(int attributeIndex)
+	/**
+	 * Compute the cubic spline second derivatives of all attributes, if they
+	 * have not already been computed. GeoTessModel.computeSplineCoefficients()
+	 * calls this for every profile so that no evaluation has to compute them.
+	 */
+	@Override
+	protected void computeSplineCoefficients()
 	{
 		if (y2 == null)
-			y2 = new double[data[0].size()][];
-		if (y2[attributeIndex] == null)
-			y2[attributeIndex] = spline(radii, data, attributeIndex, 1e30, 1e30);
+			computeY2();
+	}
+
+	/**
+	 * Compute the cubic spline second derivatives of all attributes into a new
+	 * flat array and publish it.
+	 * 
+	 * @return the new second derivative array.
+	 */
+	private double[] computeY2()
+	{
+		int nAttributes = data[0].size();
+		double[] d2 = new double[radii.length * nAttributes];
+		for (int i = 0; i < nAttributes; ++i)
+		{
+			double[] s = spline(radii, data, i, 1e30, 1e30);
+			for (int k = 0; k < s.length; ++k)
+				d2[k * nAttributes + i] = s[k];
+		}
+		y2 = d2;
+		return d2;
 	}
 
 	private double[] spline(float[] x, Data[] y, int attributeIndex,
@@ -50,10 +50,12 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import gov.sandia.geotess.GeoTessJava;
+import gov.sandia.geotess.GeoTessMetrics;
 import gov.sandia.geotess.GeoTessModel;
 import gov.sandia.geotess.GeoTessPosition;
 import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
 import gov.sandia.gmp.util.containers.multilevelmap.MultiLevelMap;
+import gov.sandia.gmp.util.gctiming.GCTelemetry;
 import gov.sandia.gmp.util.globals.GMTFormat;
 import gov.sandia.gmp.util.globals.InterpolatorType;
 import gov.sandia.gmp.util.globals.Site;
@@ -541,6 +543,14 @@ public class LibCorr3DModels
 		{
 			GeoTessPosition model = models.get(index);
 
+			if (GeoTessMetrics.ENABLED)
+			{
+				if (model == null)
+					GeoTessMetrics.LIBCORR3D_CACHE_MISSES.increment();
+				else
+					GeoTessMetrics.LIBCORR3D_CACHE_HITS.increment();
+			}
+
 			if (model == null)
 			{
 				try
@@ -548,7 +558,9 @@ public class LibCorr3DModels
 					File f = getModelFile(station, phase, attribute);
 					if (f != null)
 					{
+						GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("libcorr3dLoad");
 						model = new LibCorr3DModel(f, gridRelPath).getGeoTessPosition(interpTypeHorz, interpTypeRadial);
+						GeoTessMetrics.endOperation(telemetry);
 						Site site = ((LibCorr3DModel) model.getModel()).getSite();
 						
 						for (String ph : ((LibCorr3DModel) model.getModel()).getSupportedPhases())
@@ -589,6 +601,13 @@ public class LibCorr3DModels
 		synchronized (models)
 		{
 			model = models.get(lookupTableIndex);
+			if (GeoTessMetrics.ENABLED)
+			{
+				if (model == null)
+					GeoTessMetrics.LIBCORR3D_CACHE_MISSES.increment();
+				else
+					GeoTessMetrics.LIBCORR3D_CACHE_HITS.increment();
+			}
 			if (model == null)
 			{
 				File modelFile = getModelFile(lookupTableIndex);
@@ -596,7 +615,9 @@ public class LibCorr3DModels
 				//System.out.println("Loading model " + modelFile.getCanonicalPath());
 
 				long timer = System.nanoTime();
+				GCTelemetry.Scope telemetry = GeoTessMetrics.beginOperation("libcorr3dLoad");
 				model = new LibCorr3DModel(modelFile, gridRelPath).getGeoTessPosition(interpTypeHorz, interpTypeRadial);
+				GeoTessMetrics.endOperation(telemetry);
 				timer = System.nanoTime() - timer;
 
 				ArrayListInt indexes = modelIndexes.get(modelFile);
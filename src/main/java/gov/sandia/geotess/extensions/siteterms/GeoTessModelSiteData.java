@@ -74,6 +74,13 @@ public class GeoTessModelSiteData extends GeoTessModel
 	 */
 	private int nSiteTerms = 0;
 
+	/**
+	 * Sorted, binary searchable view of rcvrSiteTerms used by the getSiteTerm()
+	 * methods.  Built lazily on first use and discarded whenever the site
+	 * terms are modified through the methods of this class.
+	 */
+	private volatile SiteDataIndex siteDataIndex;
+
 	protected AttributeDataDefinitions siteDataAttributes = new AttributeDataDefinitions();
 
     /**
@@ -89,6 +96,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 		super.copyDerivedClassData(other);
 		this.rcvrSiteTerms = ((GeoTessModelSiteData)other).rcvrSiteTerms;    
 		this.nSiteTerms = ((GeoTessModelSiteData)other).nSiteTerms;
+		this.siteDataIndex = null;
 		this.siteDataAttributes = ((GeoTessModelSiteData)other).siteDataAttributes;
 	}
 
@@ -484,6 +492,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 			}
 			st.add(new SiteData(input, getMetaData().getEarthShape(), siteDataAttributes, formatVersion));
 		}
+		siteDataIndex = null;
 	}
 
 	/**
@@ -597,6 +606,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 			}
 			st.add(new SiteData(input, getMetaData().getEarthShape(), siteDataAttributes, formatVersion));
 		}		
+		siteDataIndex = null;
 	}
 
 	/**
@@ -666,6 +676,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 	public void clearSiteTerms(String sta)
 	{
 		rcvrSiteTerms.remove(sta);
+		resetSiteTermIndex();
 	}
 
 	/**
@@ -684,6 +695,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 		nSiteTerms = 0;
 		for (ArrayList<SiteData> list : siteTerms.values())
 			nSiteTerms += list.size();
+		resetSiteTermIndex();
 	}
 
 	/**
@@ -735,6 +747,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 			//System.out.printf("%6d %8s %s%n", nSiteTerms, sta, siteTerm);
 		}
 		input.close();
+		resetSiteTermIndex();
 	}
 
 	/**
@@ -765,6 +778,7 @@ public class GeoTessModelSiteData extends GeoTessModel
 		for (int i = 0; i < siteTerm.length; ++i) sd.setSiteTerm(i, siteTerm[i]);
 		list.add(sd);
 		++nSiteTerms;
+		resetSiteTermIndex();
 	}
 
 	/**
@@ -798,10 +812,13 @@ public class GeoTessModelSiteData extends GeoTessModel
 		for (int i = 0; i < siteTerm.length; ++i) sd.setSiteTerm(i, siteTerm[i]);
 		list.add(sd);
 		++nSiteTerms;
+		resetSiteTermIndex();
 	}
 
 	/**
-	 * Returns this models site term map.
+	 * Returns this models site term map.  If the returned map, or any of the 
+	 * lists it contains, are modified by the caller, resetSiteTermIndex() must
+	 * be called before the next call to getSiteTerm().
 	 * 
 	 * @return This models site term map.
 	 */
@@ -810,6 +827,36 @@ public class GeoTessModelSiteData extends GeoTessModel
 		return rcvrSiteTerms;
 	}
 
+	/**
+	 * Discard the index used by getSiteTerm() to find the SiteData that is 
+	 * active at a given time.  The index will be rebuilt from the current 
+	 * contents of the site term map the next time it is needed.  This is 
+	 * called automatically by all the methods of this class that modify the 
+	 * site terms but must be called by applications that modify the map 
+	 * returned by getSiteTermMap() directly.
+	 */
+	public void resetSiteTermIndex()
+	{
+		siteDataIndex = null;
+	}
+
+	/**
+	 * Retrieve the index used to find site terms, building it if necessary.
+	 * @return the index used to find site terms.
+	 */
+	private SiteDataIndex getSiteDataIndex()
+	{
+		SiteDataIndex index = siteDataIndex;
+		if (index == null)
+			synchronized(this)
+			{
+				index = siteDataIndex;
+				if (index == null)
+					siteDataIndex = index = new SiteDataIndex(rcvrSiteTerms);
+			}
+		return index;
+	}
+
 	/**
 	 * Returns the site term associated with the input station name and epoch
 	 * time (seconds). The input epoch time lies within the sites on time and
@@ -823,18 +870,74 @@ public class GeoTessModelSiteData extends GeoTessModel
 	 */
 	public double getSiteTerm(int attributeIndex, String station, double epochTime)
 	{
-		// find the set of SiteTerm objects for the station.
-		ArrayList<SiteData> list = rcvrSiteTerms.get(station);
-		if (list != null)
+		return getSiteTermForJDate(attributeIndex, station, GMTFormat.getJDate(epochTime));
+	}
+
+	/**
+	 * Returns the site term associated with the input station name and jdate.
+	 * The input jdate lies within the sites onDate and offDate, inclusive.
+	 * 
+	 * @param station The name of the station whose site term is returned.
+	 * @param jdate   The julian date (yyyyddd) that lies between the sites 
+	 *                onDate and offDate.
+	 * @return The site term (in seconds) for the specified station at the 
+	 *         specified jdate, or Globals.NA_VALUE if the station does not
+	 *         have a site term that was active on that date.
+	 */
+	public double getSiteTermForJDate(int attributeIndex, String station, int jdate)
+	{
+		SiteData st = getSiteDataIndex().getSiteData(station, jdate);
+		return st == null ? Globals.NA_VALUE : st.getSiteTerm(attributeIndex);
+	}
+
+	/**
+	 * Bulk version of getSiteTerm(attributeIndex, station, epochTime).  For 
+	 * each i, siteTerms[i] is populated with the site term of stations[i] at 
+	 * epochTimes[i], or Globals.NA_VALUE if there is no such site term.
+	 * 
+	 * @param attributeIndex the index of the site term attribute.
+	 * @param stations       the names of the stations.
+	 * @param epochTimes     the epoch times (seconds), one per station.
+	 * @param siteTerms      on output, the site terms (seconds).  Must be at
+	 *                       least as long as stations.
+	 * @return reference to siteTerms
+	 */
+	public double[] getSiteTerms(int attributeIndex, String[] stations, 
+			double[] epochTimes, double[] siteTerms)
+	{
+		SiteDataIndex index = getSiteDataIndex();
+		SiteData st;
+		for (int i=0; i<stations.length; ++i)
 		{
-			// if one is found that has on/off times that includes the 
-			// arrival time at the station, return the site term value.
-			for (SiteData st : list)
-				if (st.inRange(GMTFormat.getJDate(epochTime)))
-					return st.getSiteTerm(attributeIndex);
+			st = index.getSiteData(stations[i], GMTFormat.getJDate(epochTimes[i]));
+			siteTerms[i] = st == null ? Globals.NA_VALUE : st.getSiteTerm(attributeIndex);
+		}
+		return siteTerms;
+	}
 
+	/**
+	 * Bulk version of getSiteTermForJDate(attributeIndex, station, jdate).  For 
+	 * each i, siteTerms[i] is populated with the site term of stations[i] on 
+	 * jdates[i], or Globals.NA_VALUE if there is no such site term.
+	 * 
+	 * @param attributeIndex the index of the site term attribute.
+	 * @param stations       the names of the stations.
+	 * @param jdates         the julian dates (yyyyddd), one per station.
+	 * @param siteTerms      on output, the site terms (seconds).  Must be at
+	 *                       least as long as stations.
+	 * @return reference to siteTerms
+	 */
+	public double[] getSiteTerms(int attributeIndex, String[] stations, 
+			int[] jdates, double[] siteTerms)
+	{
+		SiteDataIndex index = getSiteDataIndex();
+		SiteData st;
+		for (int i=0; i<stations.length; ++i)
+		{
+			st = index.getSiteData(stations[i], jdates[i]);
+			siteTerms[i] = st == null ? Globals.NA_VALUE : st.getSiteTerm(attributeIndex);
 		}
-		return Globals.NA_VALUE;
+		return siteTerms;
 	}
 
 	/**
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotess.extensions.siteterms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only lookup structure built from the station -&gt; ArrayList&lt;SiteData&gt;
+ * map owned by a GeoTessModelSiteData.  For each station the SiteData objects
+ * are sorted by onDate and stored in parallel primitive arrays so that the
+ * SiteData active at a given jdate can be found with a binary search
+ * instead of a linear scan over the station history.
+ * 
+ * <p>Station names used as keys are interned, so lookups with station names
+ * that were themselves interned (e.g., those retrieved from Site objects)
+ * resolve with a reference comparison.
+ * 
+ * <p>If the on/off ranges of a station overlap, the binary search could 
+ * return a different SiteData than the original list order would.  For such
+ * stations the original list order is retained and searched linearly so
+ * that results are identical to the original behavior.
+ * 
+ * <p>Instances are immutable and may be shared by multiple threads.
+ */
+class SiteDataIndex
+{
+	/**
+	 * Map from interned station name to the on/off history of that station.
+	 */
+	private final HashMap<String, StationHistory> stations;
+
+	/**
+	 * The on/off history of a single station.
+	 */
+	private static final class StationHistory
+	{
+		/**
+		 * onDates sorted in increasing order (unless overlapping is true,
+		 * in which case the original list order is retained).
+		 */
+		final int[] onDates;
+
+		/**
+		 * offDates parallel to onDates.
+		 */
+		final int[] offDates;
+
+		/**
+		 * SiteData objects parallel to onDates.
+		 */
+		final SiteData[] siteData;
+
+		/**
+		 * true if any of the on/off ranges of this station overlap.
+		 */
+		final boolean overlapping;
+
+		StationHistory(ArrayList<SiteData> list)
+		{
+			SiteData[] sorted = list.toArray(new SiteData[list.size()]);
+			Arrays.sort(sorted, new Comparator<SiteData>() {
+				@Override
+				public int compare(SiteData a, SiteData b) {
+					return Integer.compare(a.onDate, b.onDate);
+				}});
+
+			boolean overlap = false;
+			for (int i=1; i<sorted.length; ++i)
+				if (sorted[i].onDate <= sorted[i-1].offDate)
+				{
+					overlap = true;
+					break;
+				}
+
+			overlapping = overlap;
+			siteData = overlap ? list.toArray(new SiteData[list.size()]) : sorted;
+			onDates = new int[siteData.length];
+			offDates = new int[siteData.length];
+			for (int i=0; i<siteData.length; ++i)
+			{
+				onDates[i] = siteData[i].onDate;
+				offDates[i] = siteData[i].offDate;
+			}
+		}
+
+		/**
+		 * Find the SiteData that is active on the specified jdate.
+		 * @param jdate
+		 * @return the SiteData active on jdate or null if there is none.
+		 */
+		SiteData find(int jdate)
+		{
+			if (overlapping)
+			{
+				for (int i=0; i<onDates.length; ++i)
+					if (jdate >= onDates[i] && jdate <= offDates[i])
+						return siteData[i];
+				return null;
+			}
+
+			// find the index of the last onDate that is <= jdate
+			int lo = 0, hi = onDates.length-1, mid;
+			while (lo <= hi)
+			{
+				mid = (lo + hi) >>> 1;
+				if (onDates[mid] <= jdate)
+					lo = mid+1;
+				else
+					hi = mid-1;
+			}
+			return hi >= 0 && jdate <= offDates[hi] ? siteData[hi] : null;
+		}
+	}
+
+	/**
+	 * Build a new index from the supplied site term map.
+	 * 
+	 * @param siteTerms map from station name to list of SiteData objects.
+	 */
+	SiteDataIndex(Map<String, ArrayList<SiteData>> siteTerms)
+	{
+		stations = new HashMap<String, StationHistory>(2*siteTerms.size()+1);
+		for (Map.Entry<String, ArrayList<SiteData>> entry : siteTerms.entrySet())
+			if (entry.getValue() != null && !entry.getValue().isEmpty())
+				stations.put(entry.getKey().intern(), new StationHistory(entry.getValue()));
+	}
+
+	/**
+	 * Retrieve the SiteData object for the specified station that is active on
+	 * the specified jdate.
+	 * 
+	 * @param station station name
+	 * @param jdate julian date (yyyyddd)
+	 * @return the SiteData active on jdate or null if there is none.
+	 */
+	SiteData getSiteData(String station, int jdate)
+	{
+		StationHistory history = stations.get(station);
+		return history == null ? null : history.find(jdate);
+	}
+
+}
@@ -0,0 +1,1120 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotessbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import gov.sandia.geotess.GeoTessException;
+import gov.sandia.gmp.util.containers.arraylist.ArrayListByte;
+import gov.sandia.gmp.util.containers.arraylist.ArrayListDouble;
+import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
+import gov.sandia.gmp.util.numerical.polygon.Polygon;
+import gov.sandia.gmp.util.numerical.vector.VectorUnit;
+
+/**
+ * CompactTessellation builds exactly the same multi-level tessellation as
+ * {@link Tessellation} but stores triangle corners, neighbors, edges,
+ * descendants and vertex marks in primitive arrays instead of Triangle, Edge
+ * and Vertex objects. The unit vectors of the vertices, and of the points,
+ * are stored as consecutive x, y, z components in growable arrays of doubles.
+ * The vertex-to-triangle membership sets that Tessellation maintains on every
+ * Vertex, for every level, are replaced by a scratch index that is rebuilt
+ * each time the neighbors of a level are established.
+ *
+ * <p>
+ * Per level, the triangles are held in a slab of primitive arrays. Data that
+ * is only needed during construction is released as soon as it is no longer
+ * needed: vertex marks once the polygons have been applied, and the edges and
+ * edge levels of a level as soon as the next level is finalized. If the
+ * tessellation will not be searched after it is built (see setSearchable()),
+ * the neighbors and descendants of a level are released at the same time.
+ * Once GridBuilder has copied a level into a GeoTessGrid, the whole slab is
+ * released with releaseLevel(). This makes it possible to build very high
+ * resolution global grids within a fixed memory budget.
+ *
+ * <p>
+ * Triangles are identified by their level and their index within the level.
+ * Within a level, element 3*t+i of the corner, neighbor and edge arrays
+ * refers to corner/side i of triangle t. The i'th neighbor of a triangle is
+ * the triangle on the other side of the edge that does not contain corner i.
+ *
+ * <p>
+ * When constructed with maxProcessors &gt; 1, the vertices contained in
+ * polygons are marked on a fork-join pool, one task per triangle on level 0.
+ * All other work is performed serially, so the tessellation produced is
+ * identical regardless of the number of processors.
+ */
+public class CompactTessellation {
+
+	/**
+	 * The triangles that reside on one tessellation level.
+	 */
+	static final class Level {
+		/**
+		 * Vertex indices of the 3 corners of each triangle.
+		 */
+		ArrayListInt corners = new ArrayListInt(192);
+
+		/**
+		 * Level index of the 3 neighbors of each triangle, or -1.
+		 */
+		ArrayListInt neighbors = new ArrayListInt(192);
+
+		/**
+		 * Index of the 3 edges of each triangle in the edge arrays.
+		 */
+		ArrayListInt edges = new ArrayListInt(192);
+
+		/**
+		 * Index of the descendant of each triangle on the next level, or -1.
+		 */
+		ArrayListInt descendants = new ArrayListInt(64);
+
+		/**
+		 * Number of triangles on the next level into which each triangle was divided.
+		 */
+		ArrayListByte nDescendants = new ArrayListByte(64);
+
+		/**
+		 * Number of times the ancestors of each triangle were divided into 4.
+		 */
+		ArrayListByte edgeLevels = new ArrayListByte(64);
+
+		private int size;
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * The index of the last uniform tessellation level.
+	 */
+	protected int baseTessLevel;
+
+	protected ArrayList<PolygonGB> polygons;
+
+	protected InitialSolid initialSolid;
+
+	/**
+	 * Map from tessellation level to the unit vectors of a list of points. Element
+	 * 3*k+i is component i of point k.
+	 */
+	private HashMap<Integer, ArrayListDouble> points;
+
+	/**
+	 * Unit vectors of all the vertices of all levels. Element 3*v+i is component
+	 * i of vertex v.
+	 */
+	protected ArrayListDouble vertices;
+
+	/**
+	 * Non-zero for vertices marked by populateNodes().
+	 */
+	private ArrayListByte vertexMarks;
+
+	/**
+	 * Edges are shared by the two triangles on either side of them. For each
+	 * edge: the index of the vertex at the center of the edge (or -1), the number
+	 * of times the edge and its descendants were divided, the index of the
+	 * ancestor edge (or -1), and the level indices of the triangles on either
+	 * side (or -1).
+	 */
+	private ArrayListInt edgeVertex, edgeNDivisions, edgeAncestor, edgeSide1, edgeSide2;
+
+	protected ArrayList<Level> levels;
+
+	/**
+	 * Scratch arrays used by establishNeighbors(): for each vertex, the range of
+	 * elements of vertexTriangles that contain the indices of the triangles on the
+	 * current level of which the vertex is a corner.
+	 */
+	private int[] vertexFirst, vertexTriangles;
+
+	/**
+	 * If false, the neighbors and descendants of each level are released during
+	 * build() and the tessellation cannot be searched once it is built.
+	 */
+	private boolean searchable = true;
+
+	private int maxProcessors;
+
+	/**
+	 * Pool used to mark the vertices contained in polygons. Only exists while
+	 * build() is executing and only if maxProcessors &gt; 1.
+	 */
+	private ForkJoinPool pool;
+
+	public CompactTessellation(InitialSolid initialSolid, int baseTessLevel) {
+		this(initialSolid, baseTessLevel, 1);
+	}
+
+	public CompactTessellation(InitialSolid initialSolid, int baseTessLevel, int maxProcessors) {
+		this.initialSolid = initialSolid;
+		this.baseTessLevel = baseTessLevel;
+		this.maxProcessors = maxProcessors;
+		polygons = new ArrayList<PolygonGB>();
+		points = new HashMap<Integer, ArrayListDouble>();
+	}
+
+	/**
+	 * Make a CompactTessellation that will build the same tessellation that the
+	 * supplied, unbuilt, Tessellation would build.
+	 *
+	 * @param template a Tessellation that has been configured with polygons and
+	 *                 points but not built. Its maxProcessors is used as well.
+	 */
+	public CompactTessellation(Tessellation template) {
+		this(template.initialSolid, template.baseTessLevel, template.getMaxProcessors());
+		polygons.addAll(template.polygons);
+		for (Entry<Integer, ArrayList<double[]>> e : template.getPointMap().entrySet())
+			addPoints(e.getValue(), e.getKey());
+	}
+
+	public CompactTessellation addPoints(Collection<double[]> points, int tessLevelPoints) {
+		for (double[] point : points)
+			addPoint(point, tessLevelPoints);
+		return this;
+	}
+
+	public CompactTessellation addPoint(double[] point, int tessLevel) {
+		ArrayListDouble pointList = this.points.get(tessLevel);
+		if (pointList == null) {
+			pointList = new ArrayListDouble();
+			this.points.put(tessLevel, pointList);
+		}
+		pointList.add(point[0]);
+		pointList.add(point[1]);
+		pointList.add(point[2]);
+		return this;
+	}
+
+	public CompactTessellation addPolygon(Polygon polygon) {
+		polygons.add(new PolygonGB(polygon));
+		return this;
+	}
+
+	public CompactTessellation addPolygons(Collection<Polygon> polygons) {
+		for (Polygon p : polygons)
+			addPolygon(p);
+		return this;
+	}
+
+	/**
+	 * Specify whether this tessellation will be searched after it is built. If
+	 * not, the neighbors and descendants of each level are released during
+	 * build() as soon as the next level is finalized, and findTriangle(),
+	 * findVertex(), getNDescendants() and testTessellation() may not be called.
+	 * Only the corners of the triangles and the vertices, which is all that
+	 * GridBuilder needs for a single tessellation, remain. Default is true.
+	 *
+	 * @param searchable
+	 * @return a reference to this
+	 */
+	public CompactTessellation setSearchable(boolean searchable) {
+		this.searchable = searchable;
+		return this;
+	}
+
+	/**
+	 * Builds the tessellation. The same rules, applied in the same order, as
+	 * Tessellation.build() are used so the resulting triangles, in the same
+	 * order, are produced.
+	 *
+	 * @return a reference to this
+	 * @throws GeoTessException
+	 */
+	public CompactTessellation build() throws GeoTessException {
+		if (maxProcessors > 1)
+			pool = new ForkJoinPool(maxProcessors);
+		try {
+			buildLevels();
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+			pool = null;
+		}
+		return this;
+	}
+
+	private void buildLevels() throws GeoTessException {
+		vertices = new ArrayListDouble();
+		vertexMarks = new ArrayListByte();
+		edgeVertex = new ArrayListInt();
+		edgeNDivisions = new ArrayListInt();
+		edgeAncestor = new ArrayListInt();
+		edgeSide1 = new ArrayListInt();
+		edgeSide2 = new ArrayListInt();
+		levels = new ArrayList<Level>();
+
+		// get vertices at the corners of the initialSolid
+		for (double[] vertex : initialSolid.getVertices())
+			addVertex(vertex.clone());
+
+		// construct a triangle for each face of the initialSolid on
+		// tessellation level 0.
+		levels.add(new Level());
+		for (int j = 0; j < initialSolid.getNFaces(); ++j) {
+			int[] i = initialSolid.getFace(j);
+			addTriangle(levels.get(0), i[0], i[1], i[2], 0);
+		}
+
+		establishNeighbors(0);
+
+		boolean more;
+		int currentLevel = 0;
+
+		try {
+			do {
+				// populate nodes on the top level added so far.
+				populateNodes(currentLevel);
+
+				// visit every triangle and divide it if required.
+				Level level = levels.get(currentLevel);
+				Level next = new Level();
+				for (int t = 0; t < level.size(); ++t)
+					if (isDivisible(currentLevel, t))
+						divide(level, t, next);
+
+				if (next.size() > 0) {
+					levels.add(next);
+
+					establishNeighbors(currentLevel + 1);
+
+					++currentLevel;
+
+					more = true;
+				} else
+					more = false;
+
+				if (polygons.size() > 0)
+					unmarkVertices(currentLevel);
+
+			} while (more);
+
+		} catch (Exception e) {
+			throw new GeoTessException(e);
+		}
+
+		// vertex marks are never consulted again.
+		vertexMarks = null;
+
+		// visit triangles again, looking for ones that have had more than one
+		// vertex on an edge, then divide. Tessellation also marks the vertices
+		// on each level contained in polygons during this phase but the marks
+		// are never consulted again, so that is not done here.
+		do {
+			more = false;
+			for (int tessLevel = 0; tessLevel < levels.size() - 1; ++tessLevel) {
+				Level level = levels.get(tessLevel);
+				Level next = levels.get(tessLevel + 1);
+				int n = next.size();
+				for (int t = 0; t < level.size(); ++t)
+					if (needsDivision(level, t))
+						divide(level, t, next);
+
+				if (next.size() > n) {
+					establishNeighbors(tessLevel + 1);
+					more = true;
+				}
+			}
+		} while (more);
+
+		// visit triangles on all but the highest tessellation level searching
+		// for ones that do not have descendants. If no descendant, add
+		// transition triangles. Once the transition triangles of a level have
+		// been added, the next level is final, so the connectivity of the level
+		// can be set and the data it no longer needs released.
+		for (int tessLevel = 0; tessLevel < levels.size() - 1; ++tessLevel) {
+			Level level = levels.get(tessLevel);
+			Level next = levels.get(tessLevel + 1);
+			int n = next.size();
+			for (int t = 0; t < level.size(); ++t)
+				if (level.descendants.get(t) < 0)
+					addTransitionTriangles(level, t, next);
+
+			if (next.size() > n)
+				establishNeighbors(tessLevel + 1);
+
+			setConnectivity(tessLevel);
+			finishLevel(tessLevel);
+		}
+		finishLevel(levels.size() - 1);
+
+		// release everything that was only needed during construction.
+		edgeVertex = edgeNDivisions = edgeAncestor = edgeSide1 = edgeSide2 = null;
+		vertexFirst = vertexTriangles = null;
+		vertices.trimToSize();
+	}
+
+	/**
+	 * Test a level whose connectivity has been set and release the parts of its
+	 * slab that are no longer needed.
+	 *
+	 * @param tessLevel
+	 * @throws GeoTessException
+	 */
+	private void finishLevel(int tessLevel) throws GeoTessException {
+		testLevel(tessLevel);
+
+		Level level = levels.get(tessLevel);
+		level.edges = null;
+		level.edgeLevels = null;
+		level.corners.trimToSize();
+		if (searchable) {
+			level.neighbors.trimToSize();
+			level.descendants.trimToSize();
+			level.nDescendants.trimToSize();
+		} else {
+			level.neighbors = null;
+			level.descendants = null;
+			level.nDescendants = null;
+		}
+	}
+
+	/**
+	 * Return true if the specified triangle should be subdivided into smaller
+	 * elements.
+	 *
+	 * @param tessLevel index of the level on which the triangle resides
+	 * @param triangle  index of the triangle on tessLevel
+	 * @return true if the triangle should be subdivided.
+	 * @throws GeoTessException
+	 */
+	protected boolean isDivisible(int tessLevel, int triangle) throws GeoTessException {
+		// all triangles on tessellation levels less than baseTessLevel should be
+		// divided.
+		if (tessLevel < baseTessLevel)
+			return true;
+
+		// if any vertices of triangle were marked in method
+		// populateNodes() then triangle needs to be subdivided.
+		ArrayListInt corners = levels.get(tessLevel).corners;
+		for (int i = 0; i < 3; ++i)
+			if (vertexMarks.get(corners.get(3 * triangle + i)) != 0)
+				return true;
+
+		// if triangle contains any points that define any of the polygons
+		// then subdivide this triangle
+		for (PolygonGB polygon : polygons)
+			if (tessLevel < polygon.getTessLevel())
+				for (double[] point : polygon.getPoints(false))
+					if (contains(tessLevel, triangle, point))
+						return true;
+
+		for (Entry<Integer, ArrayListDouble> e : points.entrySet())
+			if (tessLevel < e.getKey()) {
+				double[] xyz = e.getValue().getArray();
+				for (int k = 0; k < e.getValue().size(); k += 3)
+					if (contains(tessLevel, triangle, xyz, k))
+						return true;
+			}
+
+		return false;
+	}
+
+	/**
+	 * Mark the vertices on the specified level that are contained in polygons
+	 * associated with higher tessellation levels. The triangles below each
+	 * triangle on level 0 are searched by a separate task, on the pool if there
+	 * is one.
+	 *
+	 * @param tessLevel
+	 * @throws GeoTessException
+	 */
+	private void populateNodes(int tessLevel) throws GeoTessException {
+		if (tessLevel < baseTessLevel || polygons.isEmpty())
+			return;
+
+		ArrayList<PolygonGB> active = new ArrayList<PolygonGB>(polygons.size());
+		for (PolygonGB p : polygons)
+			if (p.getTessLevel() > tessLevel)
+				active.add(p);
+		if (active.isEmpty())
+			return;
+
+		// vertices on the boundaries between the subtrees of the level 0
+		// triangles may be visited by more than one task. That is harmless
+		// since every task marks exactly the vertices that are inside a polygon.
+		boolean[] visited = new boolean[getNVertices()];
+		int n = levels.get(0).size();
+		if (pool == null) {
+			for (int t = 0; t < n; ++t)
+				markVertices(0, t, tessLevel, active, visited);
+			return;
+		}
+
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(n);
+		for (int t = 0; t < n; ++t) {
+			final int top = t;
+			tasks.add(() -> {
+				markVertices(0, top, tessLevel, active, visited);
+				return null;
+			});
+		}
+		try {
+			for (Future<Object> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (Exception e) {
+			throw new GeoTessException(e);
+		}
+	}
+
+	/**
+	 * Mark the corners of the triangles on tessLevel that reside below triangle
+	 * t on the specified level and are contained in one of the candidate
+	 * polygons. Only descends into triangles that might intersect a polygon (see
+	 * PolygonGB.mightIntersect()). Before the transition triangles are added,
+	 * every triangle above level 0 is one of the 4 consecutive descendants of a
+	 * triangle on the previous level, so no vertex is missed.
+	 */
+	private void markVertices(int level, int t, int tessLevel, ArrayList<PolygonGB> candidates,
+			boolean[] visited) {
+		ArrayListInt corners = levels.get(level).corners;
+		double[][] u = new double[3][];
+		for (int i = 0; i < 3; ++i)
+			u[i] = getVertex(corners.get(3 * t + i));
+
+		ArrayList<PolygonGB> intersecting = new ArrayList<PolygonGB>(candidates.size());
+		for (PolygonGB p : candidates)
+			if (p.mightIntersect(u))
+				intersecting.add(p);
+		if (intersecting.isEmpty())
+			return;
+
+		if (level == tessLevel) {
+			for (int i = 0; i < 3; ++i) {
+				int v = corners.get(3 * t + i);
+				if (!visited[v]) {
+					visited[v] = true;
+					for (PolygonGB p : intersecting)
+						if (vertexMarks.get(v) == 0 && p.contains(u[i]))
+							vertexMarks.set(v, (byte) 1);
+				}
+			}
+		} else if (levels.get(level).nDescendants.get(t) == 4) {
+			int d = levels.get(level).descendants.get(t);
+			for (int k = 0; k < 4; ++k)
+				markVertices(level + 1, d + k, tessLevel, intersecting, visited);
+		}
+	}
+
+	private void unmarkVertices(int tessLevel) {
+		ArrayListInt corners = levels.get(tessLevel).corners;
+		for (int k = 0; k < corners.size(); ++k)
+			vertexMarks.set(corners.get(k), (byte) 0);
+	}
+
+	private int addVertex(double[] u) {
+		vertices.add(u[0]);
+		vertices.add(u[1]);
+		vertices.add(u[2]);
+		if (vertexMarks != null)
+			vertexMarks.add((byte) 0);
+		return vertices.size() / 3 - 1;
+	}
+
+	private int addEdge() {
+		edgeVertex.add(-1);
+		edgeNDivisions.add(0);
+		edgeAncestor.add(-1);
+		edgeSide1.add(-1);
+		edgeSide2.add(-1);
+		return edgeVertex.size() - 1;
+	}
+
+	/**
+	 * Append a new triangle, with 3 new edges, to a level.
+	 *
+	 * @return the index of the new triangle on the level.
+	 */
+	private int addTriangle(Level level, int v0, int v1, int v2, int edgeLevel) {
+		level.corners.add(v0);
+		level.corners.add(v1);
+		level.corners.add(v2);
+		for (int i = 0; i < 3; ++i) {
+			level.neighbors.add(-1);
+			level.edges.add(addEdge());
+		}
+		level.descendants.add(-1);
+		level.nDescendants.add((byte) 0);
+		level.edgeLevels.add((byte) edgeLevel);
+		return level.size++;
+	}
+
+	/**
+	 * Increment the number of times an edge has been subdivided, and the
+	 * subdivision count of all of its ancestors.
+	 */
+	private void incNDivisions(int edge) {
+		while (edge >= 0) {
+			edgeNDivisions.increment(edge, 1);
+			edge = edgeAncestor.get(edge);
+		}
+	}
+
+	/**
+	 * Divide a triangle into 4 new triangles which are appended to the next level.
+	 * Same as Triangle.divide().
+	 */
+	private void divide(Level level, int t, Level next) {
+		int[] center = new int[3];
+		for (int i = 0; i < 3; ++i) {
+			int edge = level.edges.get(3 * t + i);
+			if (edgeVertex.get(edge) < 0)
+				edgeVertex.set(edge, addVertex(midpoint(level.corners.get(3 * t + (i + 1) % 3),
+						level.corners.get(3 * t + (i + 2) % 3))));
+			center[i] = edgeVertex.get(edge);
+			incNDivisions(edge);
+		}
+
+		int edgeLevel = level.edgeLevels.get(t) + 1;
+
+		// the center triangle does not share edges with this triangle.
+		level.descendants.set(t, addTriangle(next, center[0], center[1], center[2], edgeLevel));
+
+		// the other 3 triangles share 2 of their edges with this triangle's
+		// edges. Specify ancestor relationships.
+		for (int i = 0; i < 3; ++i) {
+			int d = addTriangle(next, level.corners.get(3 * t + i), center[(i + 2) % 3], center[(i + 1) % 3],
+					edgeLevel);
+			setEdgeAncestor(next, d, 1, level, t, (i + 1) % 3);
+			setEdgeAncestor(next, d, 2, level, t, (i + 2) % 3);
+		}
+
+		level.nDescendants.set(t, (byte) 4);
+	}
+
+	private void setEdgeAncestor(Level level, int t, int side, Level ancestorLevel, int ancestor, int ancestorSide) {
+		edgeAncestor.set(level.edges.get(3 * t + side), ancestorLevel.edges.get(3 * ancestor + ancestorSide));
+	}
+
+	/**
+	 * Unit vector halfway between two vertices, computed exactly as the
+	 * Vertex(Vertex...) constructor does.
+	 */
+	private double[] midpoint(int v0, int v1) {
+		double[] xyz = vertices.getArray();
+		double[] u = new double[3];
+		for (int v : new int[] { 3 * v0, 3 * v1 }) {
+			u[0] += xyz[v];
+			u[1] += xyz[v + 1];
+			u[2] += xyz[v + 2];
+		}
+		VectorUnit.normalize(u);
+		return u;
+	}
+
+	/**
+	 * Angular distance between two vertices, computed exactly as
+	 * VectorUnit.angle() does.
+	 */
+	private double angle(int v0, int v1) {
+		double[] xyz = vertices.getArray();
+		v0 *= 3;
+		v1 *= 3;
+		double dot = xyz[v0] * xyz[v1] + xyz[v0 + 1] * xyz[v1 + 1] + xyz[v0 + 2] * xyz[v1 + 2];
+		if (dot >= 1.)
+			return 0.;
+		else if (dot <= -1.)
+			return Math.PI;
+		else
+			return Math.acos(dot);
+	}
+
+	/**
+	 * Same as Triangle.needsDivision().
+	 */
+	private boolean needsDivision(Level level, int t) {
+		if (level.descendants.get(t) < 0)
+			for (int i = 0; i < 3; ++i)
+				if (edgeNDivisions.get(level.edges.get(3 * t + i)) > 1)
+					return true;
+		return false;
+	}
+
+	/**
+	 * Make transition triangles based on a triangle and append them to the next
+	 * level. Same as Triangle.getTransitionTriangles().
+	 */
+	private void addTransitionTriangles(Level level, int t, Level next) throws GeoTessException {
+		int[] c = new int[] { level.corners.get(3 * t), level.corners.get(3 * t + 1), level.corners.get(3 * t + 2) };
+		int[] newNodes = new int[3];
+		int n = 0;
+		for (int i = 0; i < 3; ++i)
+			if ((newNodes[i] = edgeVertex.get(level.edges.get(3 * t + i))) >= 0)
+				++n;
+
+		int edgeLevel = level.edgeLevels.get(t);
+		int d;
+
+		if (n == 0) {
+			level.nDescendants.set(t, (byte) 1);
+			d = addTriangle(next, c[0], c[1], c[2], edgeLevel);
+			level.descendants.set(t, d);
+			for (int i = 0; i < 3; ++i)
+				setEdgeAncestor(next, d, i, level, t, i);
+			return;
+		} else if (n == 1) {
+			for (int i = 0; i < 3; ++i)
+				if (newNodes[i] >= 0) {
+					level.nDescendants.set(t, (byte) 2);
+					d = addTriangle(next, c[i], newNodes[i], c[(i + 2) % 3], edgeLevel);
+					level.descendants.set(t, d);
+					setEdgeAncestor(next, d, 1, level, t, (i + 1) % 3);
+					setEdgeAncestor(next, d, 2, level, t, (i + 2) % 3);
+
+					d = addTriangle(next, c[i], c[(i + 1) % 3], newNodes[i], edgeLevel);
+					setEdgeAncestor(next, d, 0, level, t, i);
+					setEdgeAncestor(next, d, 1, level, t, (i + 1) % 3);
+					return;
+				}
+		} else if (n == 2) {
+			for (int i = 0; i < 3; ++i)
+				if (newNodes[i] < 0) {
+					level.nDescendants.set(t, (byte) 3);
+					d = addTriangle(next, c[i], newNodes[(i + 2) % 3], newNodes[(i + 1) % 3], edgeLevel);
+					setEdgeAncestor(next, d, 0, level, t, i);
+					setEdgeAncestor(next, d, 2, level, t, (i + 2) % 3);
+
+					double d1 = angle(newNodes[(i + 2) % 3], c[(i + 2) % 3]);
+					double d2 = angle(newNodes[(i + 1) % 3], c[(i + 1) % 3]);
+
+					int j;
+					if (d1 > d2) {
+						j = (i + 1) % 3;
+						d = addTriangle(next, c[(i + 1) % 3], c[(i + 2) % 3], newNodes[j], edgeLevel);
+						setEdgeAncestor(next, d, 0, level, t, (i + 1) % 3);
+						setEdgeAncestor(next, d, 1, level, t, (i + 2) % 3);
+
+						d = addTriangle(next, c[j], newNodes[(i + 1) % 3], newNodes[(i + 2) % 3], edgeLevel);
+						setEdgeAncestor(next, d, 2, level, t, i);
+					} else {
+						j = (i + 2) % 3;
+						d = addTriangle(next, c[(i + 1) % 3], c[(i + 2) % 3], newNodes[j], edgeLevel);
+						setEdgeAncestor(next, d, 0, level, t, (i + 1) % 3);
+						setEdgeAncestor(next, d, 2, level, t, i);
+
+						d = addTriangle(next, c[j], newNodes[(i + 1) % 3], newNodes[(i + 2) % 3], edgeLevel);
+						setEdgeAncestor(next, d, 2, level, t, (i + 2) % 3);
+					}
+
+					level.descendants.set(t, d);
+					return;
+				}
+		} else if (n == 3) {
+			level.nDescendants.set(t, (byte) 4);
+			d = addTriangle(next, newNodes[0], newNodes[1], newNodes[2], edgeLevel + 1);
+			level.descendants.set(t, d);
+
+			for (int i = 0; i < 3; ++i) {
+				d = addTriangle(next, c[i], newNodes[(i + 2) % 3], newNodes[(i + 1) % 3], edgeLevel + 1);
+				setEdgeAncestor(next, d, 0, level, t, i);
+				setEdgeAncestor(next, d, 2, level, t, (i + 2) % 3);
+			}
+			return;
+		}
+		// This "cant't" happen.
+		throw new GeoTessException("Not good.");
+	}
+
+	/**
+	 * Find the neighbors of every triangle on the specified level. Equivalent to
+	 * Tessellation.establishNeighbors(), including the way Edges are shared
+	 * between neighbors.
+	 *
+	 * @param tessLevel
+	 */
+	private void establishNeighbors(int tessLevel) {
+		Level level = levels.get(tessLevel);
+		int n = level.size();
+		int nv = getNVertices();
+
+		// build an index from vertex to the triangles on this level of which
+		// it is a corner, with triangles in increasing order.
+		if (vertexFirst == null || vertexFirst.length < nv + 1)
+			vertexFirst = new int[nv + 1 + nv / 4];
+		if (vertexTriangles == null || vertexTriangles.length < 3 * n)
+			vertexTriangles = new int[3 * n + n / 4];
+		int[] first = vertexFirst;
+		int[] list = vertexTriangles;
+		int[] corners = level.corners.getArray();
+
+		Arrays.fill(first, 0, nv + 1, 0);
+		for (int k = 0; k < 3 * n; ++k)
+			++first[corners[k]];
+		for (int v = 1; v < nv; ++v)
+			first[v] += first[v - 1];
+		first[nv] = 3 * n;
+		for (int k = 3 * n - 1; k >= 0; --k)
+			list[--first[corners[k]]] = k / 3;
+
+		for (int triangle = 0; triangle < n; ++triangle)
+			for (int i = 0; i < 3; ++i) {
+				// visit all the triangles of which corner i+1 is a corner.
+				// There will be at most one triangle, other than triangle,
+				// which also has corner i+2 as a corner. That triangle is a
+				// neighbor of triangle.
+				int a = corners[3 * triangle + (i + 1) % 3];
+				int b = corners[3 * triangle + (i + 2) % 3];
+				for (int p = first[a]; p < first[a + 1]; ++p) {
+					int t = list[p];
+					if (t != triangle && (corners[3 * t] == b || corners[3 * t + 1] == b || corners[3 * t + 2] == b)) {
+						setNeighbor(level, triangle, i, t);
+						break;
+					}
+				}
+			}
+	}
+
+	/**
+	 * Same as Triangle.setNeighbor(side, neighbor).
+	 */
+	private void setNeighbor(Level level, int triangle, int side, int neighbor) {
+		level.neighbors.set(3 * triangle + side, neighbor);
+
+		// search through neighbor's edges to see if this triangle is already
+		// one of its neighbors. If so, share the neighbor's Edge.
+		for (int k = 0; k < 3; ++k) {
+			int edge = level.edges.get(3 * neighbor + k);
+			if (getEdgeNeighbor(edge, neighbor) == triangle) {
+				level.edges.set(3 * triangle + side, edge);
+				return;
+			}
+		}
+
+		int edge = level.edges.get(3 * triangle + side);
+		edgeSide1.set(edge, triangle);
+		edgeSide2.set(edge, neighbor);
+	}
+
+	private int getEdgeNeighbor(int edge, int triangle) {
+		if (triangle == edgeSide1.get(edge))
+			return edgeSide2.get(edge);
+		if (triangle == edgeSide2.get(edge))
+			return edgeSide1.get(edge);
+		return -1;
+	}
+
+	/**
+	 * Set the descendant of every triangle on a level to the triangle on the
+	 * next level that contains its center, and count the descendants of every
+	 * triangle. The neighbors of the next level must already be established.
+	 * Same as Tessellation.setConnectivity() for one level.
+	 *
+	 * @param lid a level below the highest level
+	 */
+	private void setConnectivity(int lid) {
+		double[] center = new double[3];
+		double[] neighborCenter = new double[3];
+		Level level = levels.get(lid);
+		Level next = levels.get(lid + 1);
+		int t0 = 0;
+		for (int t = 0; t < level.size(); ++t) {
+			getCenter(lid, t, center);
+			t0 = (int) findTriangle(lid + 1, t0, lid + 1, center);
+			level.descendants.set(t, t0);
+			int nDescendants = 1;
+			for (int i = 0; i < 3; ++i) {
+				getCenter(lid + 1, next.neighbors.get(3 * t0 + i), neighborCenter);
+				if (contains(lid, t, neighborCenter))
+					++nDescendants;
+			}
+			level.nDescendants.set(t, (byte) nDescendants);
+		}
+	}
+
+	/**
+	 * Ensure that every triangle has 3 neighbors, that neighbor relations are
+	 * symmetric and that every triangle below the top level has a descendant.
+	 * May only be called on a searchable tessellation.
+	 *
+	 * @throws GeoTessException if anything is amiss.
+	 */
+	public void testTessellation() throws GeoTessException {
+		for (int lid = 0; lid < levels.size(); ++lid)
+			testLevel(lid);
+	}
+
+	/**
+	 * Same as testTessellation() for a single level.
+	 *
+	 * @param lid
+	 * @throws GeoTessException if anything is amiss.
+	 */
+	private void testLevel(int lid) throws GeoTessException {
+		Level level = levels.get(lid);
+		for (int t = 0; t < level.size(); ++t) {
+			for (int i = 0; i < 3; ++i) {
+				int n = level.neighbors.get(3 * t + i);
+				if (n < 0)
+					throw new GeoTessException(String.format("%nTriangle %d, tessLevel %d, neighbor %d is null.%n",
+							t, lid, i));
+				int k = 0;
+				while (k < 3 && level.neighbors.get(3 * n + k) != t)
+					++k;
+				if (k == 3)
+					throw new GeoTessException(String.format(
+							"%nTriangle %d, tessLevel %d, is a neighbor of triangle %d, but reverse is not true.%n",
+							n, lid, t));
+			}
+			if (lid < levels.size() - 1 && level.descendants.get(t) < 0)
+				throw new GeoTessException(String.format(
+						"%nTriangle %d resides on tessellation level %d of %d but its descendant is null", t, lid,
+						levels.size()));
+		}
+	}
+
+	/**
+	 * Returns true if the specified point is inside or on the boundary of a
+	 * triangle. Same as Triangle.contains().
+	 */
+	protected boolean contains(int tessLevel, int t, double[] point) {
+		return contains(tessLevel, t, point, 0);
+	}
+
+	/**
+	 * Same as contains(tessLevel, t, point) where point is the 3 elements of w
+	 * starting at element k.
+	 */
+	private boolean contains(int tessLevel, int t, double[] w, int k) {
+		ArrayListInt corners = levels.get(tessLevel).corners;
+		for (int i = 0; i < 3; i++)
+			if (scalarTripleProduct(corners.get(3 * t + (i + 2) % 3), corners.get(3 * t + (i + 1) % 3), w,
+					k) < -1e-15)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Retrieve the normalized center of a triangle. Same as Triangle.getCenter().
+	 */
+	protected void getCenter(int tessLevel, int t, double[] center) {
+		ArrayListInt corners = levels.get(tessLevel).corners;
+		double[] xyz = vertices.getArray();
+		int v0 = 3 * corners.get(3 * t);
+		int v1 = 3 * corners.get(3 * t + 1);
+		int v2 = 3 * corners.get(3 * t + 2);
+		center[0] = xyz[v0] + xyz[v1] + xyz[v2];
+		center[1] = xyz[v0 + 1] + xyz[v1 + 1] + xyz[v2 + 1];
+		center[2] = xyz[v0 + 2] + xyz[v1 + 2] + xyz[v2 + 2];
+		VectorUnit.normalize(center);
+	}
+
+	private double scalarTripleProduct(int tessLevel, int t, int i, int j, double[] u) {
+		ArrayListInt corners = levels.get(tessLevel).corners;
+		return scalarTripleProduct(corners.get(3 * t + i), corners.get(3 * t + j), u, 0);
+	}
+
+	/**
+	 * Scalar triple product of vertex a, vertex b and the 3 elements of w
+	 * starting at element k, computed exactly as
+	 * VectorUnit.scalarTripleProduct() does.
+	 */
+	private double scalarTripleProduct(int a, int b, double[] w, int k) {
+		double[] xyz = vertices.getArray();
+		a *= 3;
+		b *= 3;
+		return xyz[a] * xyz[b + 1] * w[k + 2] + xyz[b] * w[k + 1] * xyz[a + 2] + w[k] * xyz[a + 1] * xyz[b + 2]
+				- w[k] * xyz[b + 1] * xyz[a + 2] - xyz[a] * w[k + 1] * xyz[b + 2] - xyz[b] * xyz[a + 1] * w[k + 2];
+	}
+
+	/**
+	 * Perform walking triangle search, starting from a triangle on some level, to
+	 * find the triangle that contains position u and which resides on the
+	 * specified tessellation level, or the highest level if tessLevel is larger
+	 * than that. Same as Tessellation.findTriangle(t, tessLevel, u).
+	 *
+	 * @param level     the level of the triangle from which to start the search.
+	 * @param t         the triangle from which to start the search.
+	 * @param tessLevel search no higher than this level.
+	 * @param u         the unit vector of the position for which to search.
+	 * @return the level of the triangle that contains u in the upper 32 bits and
+	 *         the index of the triangle on that level in the lower 32 bits.
+	 */
+	public long findTriangle(int level, int t, int tessLevel, double[] u) {
+		while (true) {
+			Level lev = levels.get(level);
+			if (scalarTripleProduct(level, t, 2, 1, u) > -1e-15) {
+				if (scalarTripleProduct(level, t, 0, 2, u) > -1e-15) {
+					if (scalarTripleProduct(level, t, 1, 0, u) > -1e-15) {
+						if (lev.descendants.get(t) < 0 || level == tessLevel)
+							return ((long) level << 32) | t;
+						else {
+							t = lev.descendants.get(t);
+							++level;
+						}
+					} else
+						t = lev.neighbors.get(3 * t + 2);
+				} else
+					t = lev.neighbors.get(3 * t + 1);
+			} else
+				t = lev.neighbors.get(3 * t);
+		}
+	}
+
+	/**
+	 * Search, starting from triangle 0 on level 0, for a vertex that coincides
+	 * with unit vector u, looking no higher than tessLevel. Same as
+	 * Tessellation.findVertex(t, tessLevel, u, c).
+	 *
+	 * @return the index of the vertex, or -1 if no such vertex was found.
+	 */
+	public int findVertex(int tessLevel, double[] u) {
+		int level = 0, t = 0;
+		double[] c = new double[3];
+		while (true) {
+			Level lev = levels.get(level);
+			c[0] = scalarTripleProduct(level, t, 2, 1, u);
+			if (c[0] > -1e-15) {
+				c[1] = scalarTripleProduct(level, t, 0, 2, u);
+				if (c[1] > -1e-15) {
+					c[2] = scalarTripleProduct(level, t, 1, 0, u);
+					if (c[2] > -1e-15) {
+						if (lev.descendants.get(t) < 0 || level == tessLevel) {
+							double sum = c[0] + c[1] + c[2];
+							for (int i = 0; i < 3; ++i)
+								if (c[i] / sum > .999999999)
+									return lev.corners.get(3 * t + i);
+							return -1;
+						} else {
+							t = lev.descendants.get(t);
+							++level;
+						}
+					} else
+						t = lev.neighbors.get(3 * t + 2);
+				} else
+					t = lev.neighbors.get(3 * t + 1);
+			} else
+				t = lev.neighbors.get(3 * t);
+		}
+	}
+
+	/**
+	 * Retrieve the number of levels in this tessellation.
+	 *
+	 * @return the number of levels in this tessellation.
+	 */
+	public int getNLevels() {
+		return levels.size();
+	}
+
+	/**
+	 * Retrieve the number of triangles on a level.
+	 *
+	 * @param tessLevel
+	 * @return the number of triangles on a level.
+	 */
+	public int getNTriangles(int tessLevel) {
+		return levels.get(tessLevel).size();
+	}
+
+	/**
+	 * Retrieve the index of corner i of triangle t on the specified level.
+	 *
+	 * @param tessLevel
+	 * @param t
+	 * @param i
+	 * @return the index of a vertex.
+	 */
+	public int getCorner(int tessLevel, int t, int i) {
+		return levels.get(tessLevel).corners.get(3 * t + i);
+	}
+
+	/**
+	 * Retrieve the number of triangles on the next level that are contained in
+	 * triangle t.
+	 *
+	 * @param tessLevel
+	 * @param t
+	 * @return the number of triangles on the next level that are contained in
+	 *         triangle t.
+	 */
+	public int getNDescendants(int tessLevel, int t) {
+		return levels.get(tessLevel).nDescendants.get(t);
+	}
+
+	/**
+	 * Retrieve the number of vertices.
+	 *
+	 * @return the number of vertices.
+	 */
+	public int getNVertices() {
+		return vertices.size() / 3;
+	}
+
+	/**
+	 * Retrieve a copy of the unit vector of the specified vertex.
+	 *
+	 * @param vertex
+	 * @return a new array containing the unit vector of the specified vertex.
+	 */
+	public double[] getVertex(int vertex) {
+		return Arrays.copyOfRange(vertices.getArray(), 3 * vertex, 3 * vertex + 3);
+	}
+
+	/**
+	 * Release all the memory associated with a level. Once released, the level
+	 * can no longer be accessed, nor can triangles be searched for.
+	 *
+	 * @param tessLevel
+	 */
+	public void releaseLevel(int tessLevel) {
+		levels.set(tessLevel, null);
+	}
+
+	/**
+	 * Release all memory held by this tessellation.
+	 */
+	public void release() {
+		levels = null;
+		vertices = null;
+	}
+
+	/**
+	 * Retrieve the PlatonicSolid that serves as tessellation level zero.
+	 *
+	 * @return the PlatonicSolid that serves as tessellation level zero.
+	 */
+	public InitialSolid getInitialSolid() {
+		return initialSolid;
+	}
+
+}
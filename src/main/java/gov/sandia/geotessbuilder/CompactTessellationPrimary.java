@@ -0,0 +1,157 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.geotessbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import gov.sandia.geotess.GeoTessException;
+
+/**
+ * Compact equivalent of TessellationPrimary: a CompactTessellation whose
+ * vertices are the union of the vertices of a set of other
+ * CompactTessellations. Since compact tessellations identify vertices by
+ * index, the vertices of the supplied tessellations are not replaced. Instead,
+ * a map from the vertex indices of each supplied tessellation to vertex indices
+ * in this primary tessellation is computed.
+ */
+public class CompactTessellationPrimary extends CompactTessellation {
+	private ArrayList<CompactTessellation> tessellations;
+
+	private double[] center;
+
+	/**
+	 * For each supplied tessellation, map from vertex index in that tessellation
+	 * to vertex index in this primary tessellation.
+	 */
+	private int[][] vertexMaps;
+
+	private long timer;
+
+	public CompactTessellationPrimary(Collection<CompactTessellation> tessList) throws GeoTessException {
+		super(tessList.iterator().next().initialSolid, -1);
+		timer = System.currentTimeMillis();
+		tessellations = new ArrayList<CompactTessellation>(tessList);
+		center = new double[3];
+		build();
+		mergeNodes();
+		timer = System.currentTimeMillis() - timer;
+	}
+
+	/**
+	 * Return true if the specified triangle should be subdivided into smaller
+	 * elements.
+	 *
+	 * @param tessLevel index of the level on which the triangle resides
+	 * @param triangle  index of the triangle on tessLevel
+	 * @return boolean
+	 */
+	@Override
+	protected boolean isDivisible(int tessLevel, int triangle) {
+		getCenter(tessLevel, triangle, center);
+
+		// loop over all supplied tessellations
+		for (CompactTessellation tess : tessellations) {
+			// find the triangle in tessellation that contains center
+			long t = tess.findTriangle(0, 0, tessLevel, center);
+
+			// if the triangle was divided into 4
+			// sub-triangles, then this triangle also needs to be subdivided.
+			if (tess.getNDescendants((int) (t >>> 32), (int) t) == 4)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Search through all the tessellations that were supplied in the constructor.
+	 * It should be true that every vertex in those tessellations has a colocated
+	 * vertex in this primary tessellation. Record the index of that vertex in
+	 * vertexMaps.
+	 *
+	 * @throws GeoTessException
+	 */
+	private void mergeNodes() throws GeoTessException {
+		vertexMaps = new int[tessellations.size()][];
+		for (int k = 0; k < tessellations.size(); ++k) {
+			CompactTessellation tess = tessellations.get(k);
+			int[] map = new int[tess.getNVertices()];
+			Arrays.fill(map, -1);
+
+			// visit every vertex of every triangle of every level of the
+			// supplied tessellation, searching no higher than the level on
+			// which the vertex first appears.
+			for (int level = 0; level < tess.getNLevels(); ++level)
+				for (int t = 0; t < tess.getNTriangles(level); ++t)
+					for (int i = 0; i < 3; ++i) {
+						int vertex = tess.getCorner(level, t, i);
+						if (map[vertex] < 0) {
+							map[vertex] = findVertex(level, tess.getVertex(vertex));
+
+							// if this primary does not contain a vertex that is
+							// colocated with a vertex in the supplied tessellation,
+							// throw error.
+							if (map[vertex] < 0)
+								throw new GeoTessException("Vertex not found.");
+						}
+					}
+			vertexMaps[k] = map;
+		}
+	}
+
+	/**
+	 * Retrieve the map from the vertex indices of one of the tessellations
+	 * supplied to the constructor to vertex indices in this primary tessellation.
+	 *
+	 * @param tessid index of one of the tessellations supplied to the
+	 *               constructor.
+	 * @return map from vertex index in the specified tessellation to vertex index
+	 *         in this primary tessellation.
+	 */
+	public int[] getVertexMap(int tessid) {
+		return vertexMaps[tessid];
+	}
+
+	/**
+	 * Retrieve the time required to constuct this CompactTessellationPrimary in
+	 * msec.
+	 *
+	 * @return the time required to constuct this CompactTessellationPrimary in
+	 *         msec.
+	 */
+	public long getTimer() {
+		return timer;
+	}
+
+}
@@ -240,7 +240,8 @@ public class GeoTessBuilderMain {
 								+ "in order for that triangle to be subdivided.", minCorners));
 
 			GeoTessModel newModel = RefineModel.refineModel(modelToRefine, pointsToRefine, maxTriangleEdgeLevel,
-					minCorners, properties.getInt("verbosity", 1), properties.getFile("vtkDir"));
+					minCorners, properties.getInt("verbosity", 1), properties.getFile("vtkDir"),
+					properties.getInt("maxProcessors", Runtime.getRuntime().availableProcessors()));
 
 			// should already be a delaunay tessellation, but just to make sure...
 			newModel.getGrid().delaunay();
@@ -416,10 +417,25 @@ public class GeoTessBuilderMain {
 					}
 
 			long timer = System.currentTimeMillis();
-			for (Tessellation t : tessellations)
-				t.build();
 
-			GridBuilder grid = new GridBuilder(tessellations);
+			GridBuilder grid;
+			if (properties.getBoolean("compactBuilder", false)) {
+				// build the tessellations with primitive arrays instead of
+				// Triangle, Edge and Vertex objects. Produces the same grid
+				// using much less memory.
+				CompactTessellation[] compact = new CompactTessellation[tessellations.size()];
+				for (int i = 0; i < compact.length; ++i)
+					// a lone tessellation is never searched once it is built.
+					compact[i] = new CompactTessellation(tessellations.get(i)).setSearchable(compact.length > 1)
+							.build();
+				tessellations.clear();
+				grid = new GridBuilder(compact);
+			} else {
+				for (Tessellation t : tessellations)
+					t.build();
+
+				grid = new GridBuilder(tessellations);
+			}
 
 			// should already be a delaunay tessellation, but just to make sure...
 			grid.delaunay();
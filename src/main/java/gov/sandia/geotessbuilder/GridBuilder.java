@@ -33,6 +33,7 @@
 package gov.sandia.geotessbuilder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 
@@ -50,6 +51,22 @@ public class GridBuilder extends GeoTessGrid {
 		process();
 	}
 
+	/**
+	 * Build a grid from a set of CompactTessellations that have already been
+	 * built. The resulting grid is identical to the one that would be built from
+	 * equivalent Tessellations. The levels of the supplied tessellations are
+	 * released as soon as they have been copied into this grid, so the
+	 * tessellations cannot be used after this constructor returns.
+	 * 
+	 * @param tessList the compact tessellations
+	 * @throws GeoTessException
+	 */
+	public GridBuilder(CompactTessellation... tessList) throws GeoTessException {
+		gridSoftwareVersion = "GridBuilder." + GeoTessBuilder.getVersion();
+		gridGenerationDate = new Date().toString();
+		process(tessList);
+	}
+
 	/**
 	 * Construct the primary tessellation which includes the union of all vertices
 	 * in all the separate Tessellations that have been added to this Grid. Then
@@ -119,6 +136,104 @@ public class GridBuilder extends GeoTessGrid {
 			tessellations[nTess++][1] = nLevels;
 		}
 
+		finish();
+
+		// release for garbage collection all the Tessellation objects.
+		tessList.clear();
+
+		return System.currentTimeMillis() - timer;
+	}
+
+	/**
+	 * Equivalent of process() for CompactTessellations.
+	 * 
+	 * @param tessList the compact tessellations
+	 * @return execution time in msec.
+	 * @throws GeoTessException
+	 */
+	private long process(CompactTessellation[] tessList) throws GeoTessException {
+		long timer = System.currentTimeMillis();
+
+		// discover the set of common vertices in all tessellations and, for
+		// each tessellation, a map from its vertex indices to indices in the
+		// common set of vertices.
+		CompactTessellation primary = tessList[0];
+		int[][] vertexMaps = new int[tessList.length][];
+		if (tessList.length > 1) {
+			CompactTessellationPrimary p = new CompactTessellationPrimary(Arrays.asList(tessList));
+			for (int i = 0; i < tessList.length; ++i)
+				vertexMaps[i] = p.getVertexMap(i);
+			primary = p;
+		}
+
+		// index the vertices in the order in which they are first encountered
+		// in the primary tessellation, same as Tessellation.getVertices().
+		int[] index = new int[primary.getNVertices()];
+		Arrays.fill(index, -1);
+		int nVertices = 0;
+		for (int level = 0; level < primary.getNLevels(); ++level)
+			for (int t = 0; t < primary.getNTriangles(level); ++t)
+				for (int i = 0; i < 3; ++i) {
+					int v = primary.getCorner(level, t, i);
+					if (index[v] < 0)
+						index[v] = nVertices++;
+				}
+
+		vertices = new double[nVertices][];
+		for (int v = 0; v < index.length; ++v)
+			if (index[v] >= 0)
+				vertices[index[v]] = primary.getVertex(v);
+
+		if (tessList.length > 1)
+			primary.release();
+
+		int nLevels = 0;
+		int nTriangles = 0;
+		for (CompactTessellation tess : tessList) {
+			nLevels += tess.getNLevels();
+			for (int level = 0; level < tess.getNLevels(); ++level)
+				nTriangles += tess.getNTriangles(level);
+		}
+
+		triangles = new int[nTriangles][3];
+		levels = new int[nLevels][2];
+		tessellations = new int[tessList.length][2];
+
+		nTriangles = 0;
+		nLevels = 0;
+
+		for (int tessid = 0; tessid < tessList.length; ++tessid) {
+			CompactTessellation tess = tessList[tessid];
+			int[] map = vertexMaps[tessid];
+			tessellations[tessid][0] = nLevels;
+			for (int level = 0; level < tess.getNLevels(); ++level) {
+				levels[nLevels][0] = nTriangles;
+				for (int t = 0; t < tess.getNTriangles(level); ++t) {
+					for (int i = 0; i < 3; ++i) {
+						int v = tess.getCorner(level, t, i);
+						triangles[nTriangles][i] = index[map == null ? v : map[v]];
+					}
+					++nTriangles;
+				}
+				levels[nLevels++][1] = nTriangles;
+				tess.releaseLevel(level);
+			}
+			tessellations[tessid][1] = nLevels;
+			tess.release();
+		}
+
+		finish();
+
+		return System.currentTimeMillis() - timer;
+	}
+
+	/**
+	 * Given vertices, triangles, levels and tessellations, build all the other
+	 * GeoTessGrid data structures, compute the gridID and test the grid.
+	 * 
+	 * @throws GeoTessException
+	 */
+	private void finish() throws GeoTessException {
 		initialize();
 
 		delaunay();
@@ -132,11 +247,6 @@ public class GridBuilder extends GeoTessGrid {
 		gridSoftwareVersion = "GridBuilder " + GeoTessBuilder.getVersion();
 
 		testGrid();
-
-		// release for garbage collection all the Tessellation objects.
-		tessList.clear();
-
-		return System.currentTimeMillis() - timer;
 	}
 
 }
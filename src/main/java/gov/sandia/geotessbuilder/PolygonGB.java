@@ -32,34 +32,194 @@
  */
 package gov.sandia.geotessbuilder;
 
-import static java.lang.Math.ceil;
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.min;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import gov.sandia.geotess.GeoTessException;
 import gov.sandia.gmp.util.numerical.polygon.Polygon;
+import gov.sandia.gmp.util.numerical.vector.VectorUnit;
 
 /**
  * Wrapper around Polygon that implements methods to work with Vertex objects
  * instead of unit vectors. Vertex is derived from ArrayListDouble and hence
  * represents a unit vector.
  * 
+ * <p>
+ * When constructed, PolygonGB computes a spherical cap that encloses the
+ * boundary of the polygon. Every point outside the cap is on the same side of
+ * the boundary, so the expensive Polygon.contains() test is only performed on
+ * points inside the cap. The Polygon should not be modified after the PolygonGB
+ * that wraps it has been constructed.
+ * 
  * @author sballar
  */
-public class PolygonGB implements Cloneable, Callable<Object> {
+public class PolygonGB implements Cloneable {
+	/**
+	 * Number of vertices tested by each task in markContainedVertices().
+	 */
+	private static final int VERTICES_PER_TASK = 1000;
+
+	/**
+	 * The cap radius is padded by this amount, in radians, so that points outside
+	 * the cap are well clear of the polygon boundary. Much larger than the
+	 * tolerance used by Polygon.onBoundary().
+	 */
+	private static final double CAP_MARGIN = 1e-6;
+
 	private Polygon polygon;
 
-	private Collection<Vertex> vertices;
+	/**
+	 * Unit vector at the center of the cap that encloses the polygon boundary, or
+	 * null if no useful cap could be defined (global polygons, polygons that
+	 * span more than a hemisphere, etc.).
+	 */
+	private double[] capCenter;
+
+	/**
+	 * Cosine of the radius of the cap.
+	 */
+	private double capCosRadius;
+
+	/**
+	 * Radius of the cap, in radians.
+	 */
+	private double capRadius;
+
+	/**
+	 * Whether or not points outside the cap are contained in the polygon.
+	 */
+	private boolean outsideContained;
 
 	public PolygonGB(Polygon polygon) {
 		this.polygon = polygon;
+		setBoundingCap();
+	}
+
+	/**
+	 * Find a spherical cap that contains the entire boundary of the polygon. The
+	 * cap is centered on the normalized vector sum of the polygon points and its
+	 * radius is large enough to contain every edge: each edge lies within
+	 * half its length of its midpoint.
+	 */
+	private void setBoundingCap() {
+		if (polygon.size() < 2)
+			return;
+
+		double[][] points = polygon.getPoints(false);
+		double[] center = new double[3];
+		for (double[] p : points) {
+			center[0] += p[0];
+			center[1] += p[1];
+			center[2] += p[2];
+		}
+		if (VectorUnit.normalize(center) == 0.)
+			return;
+
+		double radius = 0.;
+		double[] mid = new double[3];
+		for (int i = 0; i < points.length; ++i) {
+			double[] a = points[i];
+			double[] b = points[(i + 1) % points.length];
+			mid[0] = a[0] + b[0];
+			mid[1] = a[1] + b[1];
+			mid[2] = a[2] + b[2];
+			if (VectorUnit.normalize(mid) == 0.)
+				return;
+			radius = Math.max(radius, VectorUnit.angle(center, mid) + 0.5 * VectorUnit.angle(a, b));
+		}
+		radius += CAP_MARGIN;
+
+		// the cap has to leave room on the far side of the globe to
+		// determine which side of the boundary the outside of the cap is on.
+		if (radius >= 0.9 * PI)
+			return;
+
+		capCenter = center;
+		capRadius = radius;
+		capCosRadius = cos(radius);
+		outsideContained = polygon.contains(new double[] { -center[0], -center[1], -center[2] });
+	}
+
+	/**
+	 * Return true if u might be contained in this polygon. If false is returned,
+	 * u is definitely not contained in this polygon.
+	 * 
+	 * @param u unit vector
+	 * @return false if u is definitely not contained in this polygon.
+	 */
+	public boolean mightContain(double[] u) {
+		return capCenter == null || outsideContained || VectorUnit.dot(u, capCenter) >= capCosRadius;
+	}
+
+	/**
+	 * Return true if the points that might be contained in this polygon (see
+	 * mightContain()) are confined to the bounding cap, i.e., if
+	 * mightIntersect() can be used to exclude triangles.
+	 * 
+	 * @return true if the candidate points are confined to the bounding cap.
+	 */
+	public boolean isBounded() {
+		return capCenter != null && !outsideContained;
+	}
+
+	/**
+	 * Return true if the triangle might contain a point for which mightContain()
+	 * returns true. If false is returned, none of the points in the triangle,
+	 * including its corners, can be contained in this polygon. The test compares
+	 * the cap that encloses the triangle's corners with the bounding cap of this
+	 * polygon.
+	 * 
+	 * @param triangle
+	 * @return false if the triangle is definitely outside this polygon.
+	 */
+	public boolean mightIntersect(Triangle triangle) {
+		if (!isBounded())
+			return true;
+
+		double[][] corners = new double[triangle.size()][];
+		for (int i = 0; i < corners.length; ++i)
+			corners[i] = triangle.get(i).getArray();
+		return mightIntersect(corners);
+	}
+
+	/**
+	 * Same as mightIntersect(Triangle) for a triangle specified by the unit
+	 * vectors of its corners.
+	 * 
+	 * @param corners the unit vectors of the corners of a triangle
+	 * @return false if the triangle is definitely outside this polygon.
+	 */
+	public boolean mightIntersect(double[][] corners) {
+		if (!isBounded())
+			return true;
+
+		double[] center = new double[3];
+		for (double[] u : corners) {
+			center[0] += u[0];
+			center[1] += u[1];
+			center[2] += u[2];
+		}
+		if (VectorUnit.normalize(center) == 0.)
+			return true;
+
+		double radius = 0.;
+		for (double[] u : corners)
+			radius = Math.max(radius, VectorUnit.angle(center, u));
+
+		// a cap no larger than a hemisphere contains the great circle edges
+		// between its points.
+		if (radius >= 0.5 * PI)
+			return true;
+
+		return VectorUnit.angle(center, capCenter) <= radius + capRadius;
 	}
 
 	public double[][] getPoints(boolean repeatFirstPoint) {
@@ -75,12 +235,16 @@ public class PolygonGB implements Cloneable, Callable<Object> {
 		return ((Integer) polygon.attachment).intValue();
 	}
 
-	@Override
-	public PolygonGB call() {
-		for (Vertex v : vertices)
-			if (!v.isMarked() && polygon.contains(v.getArray()))
-				v.mark();
-		return null;
+	/**
+	 * Return true if the supplied unit vector resides inside this polygon.
+	 * 
+	 * @param u unit vector
+	 * @return true if u resides inside this polygon.
+	 */
+	public boolean contains(double[] u) {
+		if (capCenter != null && VectorUnit.dot(u, capCenter) < capCosRadius)
+			return outsideContained;
+		return polygon.contains(u);
 	}
 
 	/**
@@ -88,53 +252,68 @@ public class PolygonGB implements Cloneable, Callable<Object> {
 	 * marked and the vertex resides inside this polygon, then mark it.
 	 * <p>
 	 * If the list of vertices is &gt;= 1000 and nProcessors is &gt; 1, then
-	 * concurrency is used to speed up the evaluation process.
+	 * concurrency is used to speed up the evaluation process, using the common
+	 * fork-join pool.
 	 * 
 	 * @param vertices
 	 * @param nProcessors number of processors to use.
 	 * @throws GeoTessException
 	 */
 	public void markContainedVertices(Collection<Vertex> vertices, int nProcessors) throws GeoTessException {
+		markContainedVertices(vertices, nProcessors > 1 ? ForkJoinPool.commonPool() : null);
+	}
+
+	/**
+	 * Visit each of the supplied Vertex objects. If the vertex is not currently
+	 * marked and the vertex resides inside this polygon, then mark it.
+	 * <p>
+	 * If the list of vertices is &gt;= 1000 and executor is not null, then
+	 * batches of vertices are evaluated concurrently on the executor.
+	 * 
+	 * @param vertices
+	 * @param executor executor shared by the caller, or null to evaluate all the
+	 *                 vertices in the calling thread.
+	 * @throws GeoTessException
+	 */
+	public void markContainedVertices(Collection<Vertex> vertices, ExecutorService executor) throws GeoTessException {
+		// discard vertices that are already marked or that are definitely
+		// outside the polygon.
+		Vertex[] candidates = new Vertex[vertices.size()];
+		int n = 0;
+		for (Vertex v : vertices)
+			if (!v.isMarked() && mightContain(v.getArray()))
+				candidates[n++] = v;
+
+		if (executor == null || n <= VERTICES_PER_TASK) {
+			// do not use concurrency because either there is no executor or
+			// because there simply are not enough vertices to make it worth it.
+			mark(candidates, 0, n);
+			return;
+		}
+
+		// visit every vertex and mark it if it resides inside this polygon.
+		// Use concurrency to process batches of vertices in parallel. Each
+		// task marks a different set of vertices.
 		try {
-			int verticesPerTask = 1000;
-			int nTasks = (int) ceil(vertices.size() / (double) verticesPerTask);
-
-			if (nProcessors <= 1 || nTasks <= 1) {
-				// do not use concurrency because either there is only one
-				// processor available or because there simply are not enough
-				// triangles to make it worth it.
-
-				for (Vertex v : vertices)
-					if (!v.isMarked() && polygon.contains(v.getArray()))
-						v.mark();
-			} else {
-				// visit every vertex and mark it if it resides inside this polygon.
-				// Use concurrency to process batches of vertices in parallel.
-
-				// set up the thread pool.
-				ThreadPoolExecutor threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(nProcessors);
-
-				CompletionService<Object> queue = new ExecutorCompletionService<Object>(threadPool);
-
-				Iterator<Vertex> it = vertices.iterator();
-				for (int task = 0; task < nTasks; ++task) {
-					ArrayList<Vertex> taskVertices = new ArrayList<Vertex>(verticesPerTask);
-					for (int i = 0; i < verticesPerTask && it.hasNext(); ++i)
-						taskVertices.add(it.next());
-					PolygonGB copy = (PolygonGB) clone();
-					copy.vertices = taskVertices;
-					queue.submit(copy);
-				}
-
-				// pause until all the tasks are complete.
-				for (int task = 0; task < nTasks; ++task)
-					queue.take().get();
-
-				threadPool.shutdown();
+			ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(n / VERTICES_PER_TASK + 1);
+			for (int first = 0; first < n; first += VERTICES_PER_TASK) {
+				final int from = first, to = min(n, first + VERTICES_PER_TASK);
+				tasks.add(() -> {
+					mark(candidates, from, to);
+					return null;
+				});
 			}
+			for (Future<Object> f : executor.invokeAll(tasks))
+				f.get();
 		} catch (Exception e) {
 			throw new GeoTessException(e);
 		}
 	}
 
+	private void mark(Vertex[] vertices, int from, int to) {
+		for (int i = from; i < to; ++i)
+			if (contains(vertices[i].getArray()))
+				vertices[i].mark();
+	}
+
 }
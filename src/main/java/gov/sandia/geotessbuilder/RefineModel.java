@@ -38,6 +38,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import gov.sandia.geotess.Data;
 import gov.sandia.geotess.GeoTessGrid;
@@ -45,6 +50,7 @@ import gov.sandia.geotess.GeoTessMetaData;
 import gov.sandia.geotess.GeoTessModel;
 import gov.sandia.geotess.GeoTessModelUtils;
 import gov.sandia.geotess.GeoTessPosition;
+import gov.sandia.geotess.GeoTessUtils;
 import gov.sandia.geotess.Profile;
 import gov.sandia.geotess.ProfileConstant;
 import gov.sandia.geotess.ProfileEmpty;
@@ -55,12 +61,24 @@ import gov.sandia.geotess.ProfileThin;
 import gov.sandia.geotess.ProfileType;
 import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
 import gov.sandia.gmp.util.containers.hash.sets.HashSetInteger;
-import gov.sandia.gmp.util.containers.hash.sets.HashSetInteger.Iterator;
 import gov.sandia.gmp.util.globals.Globals;
 import gov.sandia.gmp.util.globals.InterpolatorType;
 
 public class RefineModel extends GeoTessModel {
 
+	/**
+	 * Number of new vertices whose profiles are populated by a single task when
+	 * the new model is populated on more than one thread.
+	 */
+	private static final int VERTICES_PER_TASK = 256;
+
+	/**
+	 * Populates the profiles of new vertices first through last-1.
+	 */
+	private interface VertexRangeTask {
+		void apply(GeoTessPosition posOld, int first, int last) throws Exception;
+	}
+
 	/**
 	 * 
 	 * @param model
@@ -101,6 +119,29 @@ public class RefineModel extends GeoTessModel {
 	 */
 	public static GeoTessModel refineModel(GeoTessModel oldModel, ArrayListInt pointsToRefine, int[] maxTessLevels,
 			int markThreshold, int verbosity, File vtkDir) throws Exception {
+		return refineModel(oldModel, pointsToRefine, maxTessLevels, markThreshold, verbosity, vtkDir, 1);
+	}
+
+	/**
+	 * Refine a model. The whole grid is re-tessellated, but the search for the
+	 * original triangle that matches each new triangle starts from the match of
+	 * its ancestor, so triangles away from the pointsToRefine are matched in one
+	 * or two steps. When maxProcessors &gt; 1 the new tessellations are built on
+	 * a fork-join pool and the profiles of the new vertices are populated in
+	 * parallel. The refined model does not depend on maxProcessors.
+	 * 
+	 * @param oldModel
+	 * @param pointsToRefine
+	 * @param maxTessLevels
+	 * @param markThreshold
+	 * @param verbosity
+	 * @param vtkDir
+	 * @param maxProcessors maximum number of threads to use.
+	 * @return
+	 * @throws Exception
+	 */
+	public static GeoTessModel refineModel(GeoTessModel oldModel, ArrayListInt pointsToRefine, int[] maxTessLevels,
+			int markThreshold, int verbosity, File vtkDir, int maxProcessors) throws Exception {
 		long timer = System.currentTimeMillis();
 
 		if (verbosity > 1)
@@ -116,7 +157,7 @@ public class RefineModel extends GeoTessModel {
 
 		long tmr = System.currentTimeMillis();
 
-		GeoTessGrid newGrid = buildNewGrid(oldModel, pointsToRefine, maxTessLevels, markThreshold);
+		GeoTessGrid newGrid = buildNewGrid(oldModel, pointsToRefine, maxTessLevels, markThreshold, maxProcessors);
 
 		tmr = System.currentTimeMillis() - tmr;
 		if (verbosity > 0)
@@ -134,15 +175,15 @@ public class RefineModel extends GeoTessModel {
 		ArrayListInt newToOld = new ArrayListInt();
 
 		// Find the newVertices connected to each other in the newModel, by layer.
-		ArrayList<HashSet<Integer>> newVertices = getNewVertices(oldModel, newGrid, oldToNew, newToOld);
+		ArrayList<ArrayListInt> newVertices = getNewVertexLists(oldModel, newGrid, oldToNew, newToOld);
 
 		if (verbosity > 0) {
 			System.out.println("\nVertices that are connected in the newGrid but not in oldGrid:");
 			for (int layer = 0; layer < newVertices.size(); ++layer) {
-				HashSet<Integer> list = newVertices.get(layer);
+				ArrayListInt list = newVertices.get(layer);
 				System.out.printf("   layer=%d size=%d: ", layer, list.size());
-				for (int vertex : list)
-					System.out.printf(" %d", vertex);
+				for (int i = 0; i < list.size(); ++i)
+					System.out.printf(" %d", list.get(i));
 				System.out.println();
 			}
 			System.out.println();
@@ -152,7 +193,8 @@ public class RefineModel extends GeoTessModel {
 
 		tmr = System.currentTimeMillis();
 
-		GeoTessModel newModel = buildNewModel(oldModel, newGrid, newVertices, oldToNew, newToOld, pointsToRefine);
+		GeoTessModel newModel = buildNewModel(oldModel, newGrid, newVertices, oldToNew, newToOld, pointsToRefine,
+				maxProcessors);
 
 		// check every Profile in the new model and throw an exception if it is null.
 		for (int layer = 0; layer < newModel.getNLayers(); ++layer)
@@ -188,6 +230,27 @@ public class RefineModel extends GeoTessModel {
 	 */
 	static public GeoTessGrid buildNewGrid(GeoTessModel oldModel, ArrayListInt pointsToRefine, int[] maxTessLevels,
 			int markThreshold) throws Exception {
+		return buildNewGrid(oldModel, pointsToRefine, maxTessLevels, markThreshold, 1);
+	}
+
+	/**
+	 * Build a new, refined GeoTessGrid that includes all the multi-level
+	 * tessellations. Every tessellation is rebuilt from scratch; no triangles
+	 * or vertices of the old grid are reused. Only the matching of each new
+	 * triangle to a triangle of the old grid is localized (see
+	 * TessellationRefined).
+	 * 
+	 * @param oldModel
+	 * @param pointsToRefine
+	 * @param maxTessLevels
+	 * @param markThreshold
+	 * @param maxProcessors maximum number of threads used to build each
+	 *                      tessellation.
+	 * @return
+	 * @throws Exception
+	 */
+	static public GeoTessGrid buildNewGrid(GeoTessModel oldModel, ArrayListInt pointsToRefine, int[] maxTessLevels,
+			int markThreshold, int maxProcessors) throws Exception {
 
 		GeoTessGrid oldGrid = oldModel.getGrid();
 
@@ -227,7 +290,7 @@ public class RefineModel extends GeoTessModel {
 			// triangles that have at least markThreshold corners on a vertex in
 			// pointsToRefine will be subdivided an extra time.
 			TessellationRefined tess = new TessellationRefined(oldGrid, solid, tessid, vertices,
-					maxTessLevels == null ? Integer.MAX_VALUE : maxTessLevels[tessid], markThreshold);
+					maxTessLevels == null ? Integer.MAX_VALUE : maxTessLevels[tessid], markThreshold, maxProcessors);
 
 			// add the Tessellation to the list of Tessellations included in newGrid.
 			tessellations.add(tess);
@@ -261,53 +324,113 @@ public class RefineModel extends GeoTessModel {
 	 */
 	static public ArrayList<HashSet<Integer>> getNewVertices(GeoTessModel oldModel, GeoTessGrid newGrid,
 			ArrayListInt oldToNew, ArrayListInt newToOld) {
+		ArrayList<ArrayListInt> lists = getNewVertexLists(oldModel, newGrid, oldToNew, newToOld);
+
+		// layers supported by the same tessellation share the same set.
+		ArrayList<HashSet<Integer>> newVertices = new ArrayList<>(lists.size());
+		for (int layer = 0; layer < lists.size(); ++layer) {
+			int previous = layer - 1;
+			while (previous >= 0 && lists.get(previous) != lists.get(layer))
+				--previous;
+			if (previous >= 0)
+				newVertices.add(newVertices.get(previous));
+			else {
+				ArrayListInt list = lists.get(layer);
+				HashSet<Integer> newvtx = new HashSet<Integer>();
+				if (list != null)
+					for (int i = 0; i < list.size(); ++i)
+						newvtx.add(list.get(i));
+				newVertices.add(list == null ? null : newvtx);
+			}
+		}
+		return newVertices;
+	}
+
+	/**
+	 * For each layer of the oldModel, find the indices of the vertices in the
+	 * newGrid that are not connected in the oldGrid. Same as getNewVertices()
+	 * except that the new vertices of each layer are returned in an
+	 * ArrayListInt, sorted in increasing order. Layers supported by the same
+	 * tessellation share the same list.
+	 * <p>
+	 * The old vertex colocated with each new vertex is found by a walking
+	 * triangle search that starts from the triangle found for the previous
+	 * vertex. Since the vertices are visited in the order of the triangles on
+	 * the top level of the new tessellation, consecutive vertices are close
+	 * together and each search takes only a few steps.
+	 * 
+	 * @param oldModel
+	 * @param newGrid
+	 * @param oldToNew populated with the index of the vertex in newGrid that is
+	 *                 colocated with each vertex in the oldModel.
+	 * @param newToOld populated with the index of the vertex in the oldModel that
+	 *                 is colocated with each vertex in newGrid, or -1.
+	 * @return array of length nLayers containing the vertices in newGrid that
+	 *         are not connected in the oldModel in the corresponding layer.
+	 */
+	static public ArrayList<ArrayListInt> getNewVertexLists(GeoTessModel oldModel, GeoTessGrid newGrid,
+			ArrayListInt oldToNew, ArrayListInt newToOld) {
+		GeoTessGrid oldGrid = oldModel.getGrid();
 
-		ArrayList<HashSet<Integer>> newVertices = new ArrayList<>();
+		ArrayList<ArrayListInt> newVertices = new ArrayList<>();
 		// ensure an entry for each layer
 		for (int i = 0; i < oldModel.getNLayers(); ++i)
 			newVertices.add(null);
 
 		// instantiate arrays oldToNew and newToOld
-		int[] x = new int[oldModel.getNVertices()];
-		Arrays.fill(x, -1);
 		oldToNew.setArray(new int[oldModel.getNVertices()]);
 
-		x = new int[newGrid.getNVertices()];
+		int[] x = new int[newGrid.getNVertices()];
 		Arrays.fill(x, -1);
 		newToOld.setArray(x);
 
-		// loop over all the multi-level tessellations
-		for (int tessId = 0; tessId < oldModel.getGrid().getNTessellations(); ++tessId) {
+		boolean[] visited = new boolean[newGrid.getNVertices()];
+		double cosTolerance = Math.cos(1e-7);
 
-			// instantiate a new set of integers to contain the indices of the vertices
-			// in the new model and add a reference to newVertices for each layer that
-			// is associated with that tessellation
-			HashSet<Integer> newvtx = new HashSet<Integer>();
+		// loop over all the multi-level tessellations
+		for (int tessId = 0; tessId < oldGrid.getNTessellations(); ++tessId) {
+			ArrayListInt newvtx = new ArrayListInt();
 			for (int layer : oldModel.getMetaData().getLayers(tessId))
 				newVertices.set(layer, newvtx);
 
-			// Iterator over all the vertices that are connected together by triangles on
-			// the top level of the specified tessellation.
-			Iterator it = newGrid.getVertexIndicesTopLevel(tessId).iterator();
-			while (it.hasNext()) {
-				// the index of a vertex in the new grid.
-				int newGridVertex = it.next();
-
-				// find the index of the newGridVertex in the oldGrid, considering only vertices
-				// connected at this tessellation. will = -1 if does not exist.
-				int oldGridVertex = oldModel.getGrid().getVertexIndex(newGrid.getVertex(newGridVertex), tessId);
-
-				// if the current vertex is not connected by triangles in the oldGrid in the
-				// current multi-level tessellation, then add it to newvtx.
-				// Otherwise, add the vertex index to the newToOld array.
-				if (oldGridVertex < 0)
-					newvtx.add(newGridVertex);
-				else
-					oldToNew.set(oldGridVertex, newGridVertex);
-
-				// make an entry in the map from newToOld vertex indices.
-				newToOld.set(newGridVertex, oldGridVertex);
-			}
+			Arrays.fill(visited, false);
+
+			// the triangle on the top level of the old tessellation from which
+			// the next search will start.
+			int oldTriangle = oldGrid.getFirstTriangle(tessId, 0);
+
+			int level = newGrid.getNLevels(tessId) - 1;
+			int last = newGrid.getLastTriangle(tessId, level);
+			for (int t = newGrid.getFirstTriangle(tessId, level); t <= last; ++t)
+				for (int corner = 0; corner < 3; ++corner) {
+					// the index of a vertex in the new grid.
+					int newGridVertex = newGrid.getTriangleVertexIndex(t, corner);
+					if (visited[newGridVertex])
+						continue;
+					visited[newGridVertex] = true;
+
+					// find the index of the newGridVertex in the oldGrid, considering only
+					// vertices connected at this tessellation. will = -1 if does not exist.
+					double[] u = newGrid.getVertex(newGridVertex);
+					oldTriangle = oldGrid.getTriangle(oldTriangle, u);
+					int oldGridVertex = -1;
+					for (int i = 0; i < 3 && oldGridVertex < 0; ++i)
+						if (GeoTessUtils.dot(u, oldGrid.getVertex(oldGrid.getTriangleVertexIndex(oldTriangle, i))) > cosTolerance)
+							oldGridVertex = oldGrid.getTriangleVertexIndex(oldTriangle, i);
+
+					// if the current vertex is not connected by triangles in the oldGrid in the
+					// current multi-level tessellation, then add it to newvtx.
+					// Otherwise, add the vertex index to the newToOld array.
+					if (oldGridVertex < 0)
+						newvtx.add(newGridVertex);
+					else
+						oldToNew.set(oldGridVertex, newGridVertex);
+
+					// make an entry in the map from newToOld vertex indices.
+					newToOld.set(newGridVertex, oldGridVertex);
+				}
+
+			Arrays.sort(newvtx.getArray(), 0, newvtx.size());
 		}
 		return newVertices;
 	}
@@ -328,6 +451,46 @@ public class RefineModel extends GeoTessModel {
 	static public GeoTessModel buildNewModel(GeoTessModel oldModel, GeoTessGrid newGrid,
 			ArrayList<HashSet<Integer>> newVertices, ArrayListInt oldToNew, ArrayListInt newToOld,
 			ArrayListInt pointsToRefine) throws Exception {
+		ArrayList<ArrayListInt> lists = new ArrayList<>(newVertices.size());
+		for (int layer = 0; layer < newVertices.size(); ++layer) {
+			int previous = layer - 1;
+			while (previous >= 0 && newVertices.get(previous) != newVertices.get(layer))
+				--previous;
+			if (previous >= 0)
+				lists.add(lists.get(previous));
+			else {
+				int[] vertices = new int[newVertices.get(layer).size()];
+				int i = 0;
+				for (int vertex : newVertices.get(layer))
+					vertices[i++] = vertex;
+				Arrays.sort(vertices);
+				lists.add(new ArrayListInt(vertices));
+			}
+		}
+		return buildNewModel(oldModel, newGrid, lists, oldToNew, newToOld, pointsToRefine, 1);
+	}
+
+	/**
+	 * Create a new GeoTessModel using the newGrid and populate it with data copied
+	 * or interpolated from the oldModel. When maxProcessors &gt; 1, the profiles
+	 * of the new vertices are populated in parallel. Each new vertex is
+	 * populated independently of all the others so the result does not depend
+	 * on maxProcessors.
+	 * 
+	 * @param oldModel
+	 * @param newGrid
+	 * @param newVertices the new vertices in each layer, as returned by
+	 *                    getNewVertexLists().
+	 * @param oldToNew
+	 * @param newToOld
+	 * @param pointsToRefine
+	 * @param maxProcessors maximum number of threads to use.
+	 * @return
+	 * @throws Exception
+	 */
+	static public GeoTessModel buildNewModel(GeoTessModel oldModel, GeoTessGrid newGrid,
+			ArrayList<ArrayListInt> newVertices, ArrayListInt oldToNew, ArrayListInt newToOld,
+			ArrayListInt pointsToRefine, int maxProcessors) throws Exception {
 
 		// create a new model of the same derived class as the old model, using the new
 		// Grid and a copy of the metaData from the oldModel.
@@ -342,24 +505,26 @@ public class RefineModel extends GeoTessModel {
 			for (int layer = 0; layer < oldModel.getNLayers(); ++layer)
 				newModel.setProfile(oldToNew.get(vertex), layer, oldModel.getProfile(vertex, layer).copy());
 
-		// Create a GeoTessPosition object to use to interpolate model data from the
-		// oldModel.
-		GeoTessPosition posOld = oldModel.getGeoTessPosition(InterpolatorType.LINEAR);
+		// the vertices in the new model that are not in the old model.
+		ArrayListInt added = new ArrayListInt();
+		for (int v = 0; v < newModel.getNVertices(); ++v)
+			if (newToOld.get(v) < 0)
+				added.add(v);
 
 		// for all vertices in the new model that are not in the old model, populate the
 		// Profiles with empty profiles.
 		if (newModel.is2D()) 
 		{
-			for (int v = 0; v < newModel.getNVertices(); ++v)
-				if (newToOld.get(v) < 0)
-					newModel.setProfile(v);
+			for (int i = 0; i < added.size(); ++i)
+				newModel.setProfile(added.get(i));
 		} 
 		else 
 		{
-			float rbot=0, rtop=0;
-			for (int v = 0; v < newModel.getNVertices(); ++v)
-				if (newToOld.get(v) < 0) 
+			forEachVertexRange(oldModel, added.size(), maxProcessors, (posOld, first, last) -> {
+				float rbot=0, rtop=0;
+				for (int i = first; i < last; ++i)
 				{
+					int v = added.get(i);
 					// ensure that radii at the top of layer(i-1) == bottom of layer(i)
 					for (int layer = 0; layer < newModel.getNLayers(); ++layer)
 					{
@@ -374,6 +539,7 @@ public class RefineModel extends GeoTessModel {
 						rbot = rtop;
 					}
 				}
+			});
 		}
 
 		// build a map VertexIndex -> LayerIndex -> ArrayList of NodeIndex
@@ -454,82 +620,95 @@ public class RefineModel extends GeoTessModel {
 		// newVertices is an array (of length nLayers) where each element is
 		// the Set of new vertices in the newModel that are connected at the
 		// corresponding layer, and which need to be populated.
-		for (int layer = 0; layer < newVertices.size(); ++layer) {
-			HashSet<Integer> vertices = newVertices.get(layer);
+		for (int l = 0; l < newVertices.size(); ++l) {
+			int layer = l;
+			ArrayListInt vertices = newVertices.get(layer);
 			// get the id of the multi-level tessellation that supports this layer.
 			int tessId = newModel.getMetaData().getTessellation(layer);
 			// find the index of the top tessellation level in this multi-level
 			// tessellation.
 			int level = newGrid.getNLevels(tessId) - 1;
-			for (int newVertex : vertices) {
 
-				// set the interpolator in the oldModel to the current layer and vertex
-				// location. The radius is set to 1e4 and is not relevant at this point.
-				posOld.set(layer, newGrid.getVertex(newVertex), 1e4);
+			// isNew[v] is true if vertex v of the newGrid is one of the vertices.
+			boolean[] isNew = new boolean[newGrid.getNVertices()];
+			for (int i = 0; i < vertices.size(); ++i)
+				isNew[vertices.get(i)] = true;
+
+			// every new vertex is populated from profiles at neighboring vertices that
+			// are connected in the oldModel, so the vertices can be populated in any
+			// order and in parallel.
+			forEachVertexRange(oldModel, vertices.size(), maxProcessors, (posOld, first, last) -> {
+				for (int i = first; i < last; ++i) {
+					int newVertex = vertices.get(i);
+
+					// set the interpolator in the oldModel to the current layer and vertex
+					// location. The radius is set to 1e4 and is not relevant at this point.
+					posOld.set(layer, newGrid.getVertex(newVertex), 1e4);
 				
-				Profile profile = newModel.getProfile(newVertex, layer);
-
-				// now search for a profile that is a neighbor of the new vertex and which
-				// is populated in the oldModel, and which has the highest number of nodes
-				// (Data objects).
-				Profile neighborProfile = null;
-
-				// retrieve the set of vertices that are neighbors of the new vertex in the
-				// newGrid at the current tessellation and tessellation level.
-				HashSet<Integer> neighbors = newGrid.getVertexNeighbors(tessId, level, newVertex);
-				for (int neighbor : neighbors)
-					// ignore neighbors that are newVertices (i.e., consider only vertices that
-					// are connected in the oldModel).
-					if (!vertices.contains(neighbor)) {
-						// get the neighbor's Profile object.
-						Profile p = newModel.getProfile(neighbor, layer);
-						// if the neighbor has more Nodes (Data value), select it.
-						if (neighborProfile == null || p.getNData() > neighborProfile.getNData())
-							neighborProfile = p;
-					}
+					Profile profile = newModel.getProfile(newVertex, layer);
+
+					// now search for a profile that is a neighbor of the new vertex and which
+					// is populated in the oldModel, and which has the highest number of nodes
+					// (Data objects).
+					Profile neighborProfile = null;
+
+					// retrieve the set of vertices that are neighbors of the new vertex in the
+					// newGrid at the current tessellation and tessellation level.
+					HashSet<Integer> neighbors = newGrid.getVertexNeighbors(tessId, level, newVertex);
+					for (int neighbor : neighbors)
+						// ignore neighbors that are newVertices (i.e., consider only vertices that
+						// are connected in the oldModel).
+						if (!isNew[neighbor]) {
+							// get the neighbor's Profile object.
+							Profile p = newModel.getProfile(neighbor, layer);
+							// if the neighbor has more Nodes (Data value), select it.
+							if (neighborProfile == null || p.getNData() > neighborProfile.getNData())
+								neighborProfile = p;
+						}
 				
-				// so now neighborProfile is the Profile object which is a neighbor of the
-				// newVertex in the current layer, which is connected in this layer in the
-				// oldModel, and which has the highest number of Data values.
-				// Now make a new Profile of the same ProfileType using the same radii and
-				// new data values interpolated from the oldModel.
-				switch (neighborProfile.getType()) {
-				case EMPTY:
-					// empty layer defined by two radii and no data
-					newModel.setProfile(newVertex, layer, new ProfileEmpty(profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1]));
-					break;
-				case THIN:
-					// zero-thickness layer defined by one radius and one data
-					newModel.setProfile(newVertex, layer, new ProfileThin(profile.getRadii()[0], posOld.getData()));
-					break;
-				case CONSTANT:
-					// constant layer defined by two radii and one data object
-					newModel.setProfile(newVertex, layer,
-							new ProfileConstant(profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1], posOld.getData()));
-					break;
-				case NPOINT:
-					// n radii and n data objects, n >= 2
-					float[] radii = radii(neighborProfile.getRadii(), profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1]);
-					Data dataArray[] = new Data[radii.length];
-
-					for (int j = 0; j < radii.length; ++j) {
-						posOld.setRadius(layer, radii[j]);
-						dataArray[j] = posOld.getData();
+					// so now neighborProfile is the Profile object which is a neighbor of the
+					// newVertex in the current layer, which is connected in this layer in the
+					// oldModel, and which has the highest number of Data values.
+					// Now make a new Profile of the same ProfileType using the same radii and
+					// new data values interpolated from the oldModel.
+					switch (neighborProfile.getType()) {
+					case EMPTY:
+						// empty layer defined by two radii and no data
+						newModel.setProfile(newVertex, layer, new ProfileEmpty(profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1]));
+						break;
+					case THIN:
+						// zero-thickness layer defined by one radius and one data
+						newModel.setProfile(newVertex, layer, new ProfileThin(profile.getRadii()[0], posOld.getData()));
+						break;
+					case CONSTANT:
+						// constant layer defined by two radii and one data object
+						newModel.setProfile(newVertex, layer,
+								new ProfileConstant(profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1], posOld.getData()));
+						break;
+					case NPOINT:
+						// n radii and n data objects, n >= 2
+						float[] radii = radii(neighborProfile.getRadii(), profile.getRadii()[0], profile.getRadii()[profile.getNRadii()-1]);
+						Data dataArray[] = new Data[radii.length];
+
+						for (int j = 0; j < radii.length; ++j) {
+							posOld.setRadius(layer, radii[j]);
+							dataArray[j] = posOld.getData();
+						}
+						newModel.setProfile(newVertex, layer, new ProfileNPoint(radii, dataArray));
+						break;
+					case SURFACE:
+						// layer with 0 radii and one data object
+						newModel.setProfile(newVertex, layer, new ProfileSurface(posOld.getData()));
+						break;
+					case SURFACE_EMPTY:
+						// empty layer defined by no radii and no data (pretty simple!)
+						newModel.setProfile(newVertex, layer, new ProfileSurfaceEmpty());
+						break;
+					default:
+						throw new Exception("Unrecognized ProfileType");
 					}
-					newModel.setProfile(newVertex, layer, new ProfileNPoint(radii, dataArray));
-					break;
-				case SURFACE:
-					// layer with 0 radii and one data object
-					newModel.setProfile(newVertex, layer, new ProfileSurface(posOld.getData()));
-					break;
-				case SURFACE_EMPTY:
-					// empty layer defined by no radii and no data (pretty simple!)
-					newModel.setProfile(newVertex, layer, new ProfileSurfaceEmpty());
-					break;
-				default:
-					throw new Exception("Unrecognized ProfileType");
 				}
-			}
+			});
 		}
 			
 		// throw an exception if any of the nVertices x nLayers Profiles in the
@@ -548,6 +727,63 @@ public class RefineModel extends GeoTessModel {
 		return newModel;
 	}
 
+	/**
+	 * Apply task to the new vertices 0 through n-1. The range is split into
+	 * chunks of VERTICES_PER_TASK vertices and each chunk is processed with its
+	 * own GeoTessPosition. If maxProcessors &gt; 1 the chunks are processed on a
+	 * fixed thread pool, otherwise they are processed in the calling thread.
+	 * <p>
+	 * The walking triangle search of a GeoTessPosition starts from wherever the
+	 * previous search ended. A new vertex that lies exactly on an edge of the old
+	 * grid can therefore be found in either of the two triangles that share the
+	 * edge, and the interpolation coefficients computed from the two triangles
+	 * may differ in the last bit. The chunks are the same regardless of
+	 * maxProcessors so the refined model does not depend on the number of
+	 * threads. The serial code this replaced visited the new vertices in
+	 * HashSet order with a single GeoTessPosition, so the values it produced at
+	 * such vertices depended on visiting order in the same way; they can differ
+	 * from the values produced here by one unit in the last place of a float.
+	 * 
+	 * @param oldModel      the model from which GeoTessPosition objects are
+	 *                      obtained.
+	 * @param n             number of vertices.
+	 * @param maxProcessors maximum number of threads to use.
+	 * @param task          the task to apply.
+	 * @throws Exception
+	 */
+	static private void forEachVertexRange(GeoTessModel oldModel, int n, int maxProcessors,
+			VertexRangeTask task) throws Exception {
+		if (maxProcessors <= 1 || n <= VERTICES_PER_TASK) {
+			for (int first = 0; first < n; first += VERTICES_PER_TASK)
+				task.apply(oldModel.getGeoTessPosition(InterpolatorType.LINEAR), first,
+						Math.min(n, first + VERTICES_PER_TASK));
+			return;
+		}
+
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(n / VERTICES_PER_TASK + 1);
+		for (int first = 0; first < n; first += VERTICES_PER_TASK) {
+			int f = first, l = Math.min(n, first + VERTICES_PER_TASK);
+			tasks.add(() -> {
+				task.apply(oldModel.getGeoTessPosition(InterpolatorType.LINEAR), f, l);
+				return null;
+			});
+		}
+
+		ExecutorService threads = Executors.newFixedThreadPool(Math.min(maxProcessors, tasks.size()));
+		try {
+			for (Future<Void> f : threads.invokeAll(tasks))
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+		} finally {
+			threads.shutdown();
+		}
+	}
+
 	/**
 	 * Given an array of radii, retrieve a new array of radii where r[0] and r[n]
 	 * are set to rbot and rtop and the intervening radii maintain the same
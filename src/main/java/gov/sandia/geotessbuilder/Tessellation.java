@@ -32,10 +32,13 @@
  */
 package gov.sandia.geotessbuilder;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import gov.sandia.geotess.GeoTessException;
 import gov.sandia.geotess.GeoTessGrid;
@@ -54,6 +57,15 @@ import gov.sandia.gmp.util.numerical.polygon.Polygon;
  * index spans the levels of the multi-level tessellation and the inner index
  * spans the triangles that reside on each level.
  * 
+ * <p>
+ * When constructed with maxProcessors &gt; 1, build() subdivides triangles,
+ * establishes neighbors and generates transition triangles on a fork-join pool.
+ * Work that modifies Edges shared by neighboring triangles is performed serially
+ * in triangle order and results are always assembled in triangle order, so the
+ * tessellation produced is identical regardless of the number of processors.
+ * Derived classes that override isDivisible() must make it safe to call
+ * concurrently.
+ * 
  * @author sballar
  * 
  */
@@ -79,6 +91,17 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 
 	private int maxProcessors = Runtime.getRuntime().availableProcessors();
 
+	/**
+	 * Pool used to process the triangles on a level in parallel. Only exists while
+	 * build() is executing and only if maxProcessors &gt; 1.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * Levels with fewer triangles than this are always processed serially.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2048;
+
 	public Tessellation(InitialSolid initialSolid, int baseTessLevel) {
 		this(initialSolid, baseTessLevel, 1);
 	}
@@ -93,6 +116,15 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 		points = new HashMap<Integer, ArrayList<double[]>>();
 	}
 
+	/**
+	 * Retrieve the maximum number of threads used by build().
+	 * 
+	 * @return the maximum number of threads used by build().
+	 */
+	int getMaxProcessors() {
+		return maxProcessors;
+	}
+
 	/**
 	 * Return true if the specified triangle should be subdivided into smaller
 	 * elements.
@@ -148,15 +180,49 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 	public void populateNodes(int tessLevel) throws GeoTessException
 
 	{
-		if (tessLevel >= baseTessLevel) {
-			HashSet<Vertex> vertices = new HashSet<Vertex>(get(tessLevel).size());
-			for (Triangle t : get(tessLevel))
-				for (Vertex v : t)
-					vertices.add(v);
-
+		if (tessLevel >= baseTessLevel)
 			for (PolygonGB p : polygons)
-				if (p.getTessLevel() > tessLevel)
-					p.markContainedVertices(vertices, maxProcessors);
+				if (p.getTessLevel() > tessLevel) {
+					HashSet<Vertex> vertices = new HashSet<Vertex>();
+					if (p.isBounded())
+						// descend from the lowest level into the triangles that
+						// reach into the polygon's bounding cap, so the cost
+						// scales with the area of the polygon.
+						addCandidateVertices(p, tessLevel, vertices);
+					else
+						for (Triangle t : get(tessLevel))
+							for (Vertex v : t)
+								vertices.add(v);
+
+					p.markContainedVertices(vertices, pool);
+				}
+	}
+
+	/**
+	 * Add to vertices the corners of the triangles on tessLevel that might
+	 * intersect polygon p. The search starts with the triangles on level 0 and
+	 * only descends into the sub-triangles of triangles that might intersect
+	 * the polygon. Every triangle above level 0 that exists before the
+	 * transition triangles are added is a sub-triangle of a triangle on the
+	 * previous level, so no candidate is missed.
+	 * 
+	 * @param p         the polygon
+	 * @param tessLevel the tessellation level of the vertices
+	 * @param vertices  the candidate vertices are added to this set
+	 */
+	private void addCandidateVertices(PolygonGB p, int tessLevel, HashSet<Vertex> vertices) {
+		ArrayDeque<Triangle> stack = new ArrayDeque<Triangle>(get(0));
+		while (!stack.isEmpty()) {
+			Triangle t = stack.pop();
+			if (!p.mightIntersect(t))
+				continue;
+			if (t.getTessLevel() == tessLevel) {
+				for (Vertex v : t)
+					if (p.mightContain(v.getArray()))
+						vertices.add(v);
+			} else if (t.getTessLevel() < tessLevel && t.getChildren() != null)
+				for (Triangle child : t.getChildren())
+					stack.push(child);
 		}
 	}
 
@@ -180,6 +246,14 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 		return this;
 	}
 
+	/**
+	 * Retrieve the map from tessellation level to the list of points that must
+	 * reside in triangles no larger than that level.
+	 */
+	HashMap<Integer, ArrayList<double[]>> getPointMap() {
+		return points;
+	}
+
 	public Tessellation addPolygon(Polygon polygon) {
 		polygons.add(new PolygonGB(polygon));
 		return this;
@@ -250,6 +324,20 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 			get(0).add(new Triangle(null, tnodes.get(i[0]), tnodes.get(i[1]), tnodes.get(i[2]), 0, 0));
 		}
 
+		if (maxProcessors > 1)
+			pool = new ForkJoinPool(maxProcessors);
+		try {
+			build(tnodes);
+		} finally {
+			if (pool != null)
+				pool.shutdown();
+			pool = null;
+		}
+
+		return this;
+	}
+
+	private void build(ArrayList<Vertex> tnodes) throws GeoTessException {
 		// define triangle neighbor relations for all the elements on
 		// tessellation level 0.
 		establishNeighbors(0);
@@ -264,12 +352,11 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 				// populate nodes on the top level added so far.
 				populateNodes(currentLevel);
 
-				trianglesNextLevel = new ArrayList<Triangle>(get(currentLevel).size() * 4);
-
 				// visit every triangle and divide it if required.
-				for (Triangle triangle : get(currentLevel))
-					if (isDivisible(triangle))
-						triangle.divide(trianglesNextLevel);
+				ArrayList<Triangle> level = get(currentLevel);
+				boolean[] divisible = new boolean[level.size()];
+				forEach(level.size(), i -> divisible[i] = isDivisible(level.get(i)));
+				trianglesNextLevel = divide(level, divisible);
 
 				if (trianglesNextLevel.size() > 0) {
 					add(trianglesNextLevel);
@@ -293,16 +380,22 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 			throw new GeoTessException(e);
 		}
 
-		trianglesNextLevel = new ArrayList<Triangle>(get(currentLevel).size());
 		do {
 			more = false;
 			for (int tessLevel = 0; tessLevel < size() - 1; ++tessLevel) {
-				trianglesNextLevel.clear();
 				// visit elements again, looking for ones that have had more
-				// than one grid node on an edge then divide.
-				for (Triangle triangle : get(tessLevel))
-					if (triangle.needsDivision())
-						triangle.divide(trianglesNextLevel);
+				// than one grid node on an edge then divide. Dividing a
+				// triangle can make later triangles on the same level need
+				// division so the needsDivision() tests and edge updates are
+				// performed serially in triangle order.
+				ArrayList<Triangle> level = get(tessLevel);
+				boolean[] divisible = new boolean[level.size()];
+				for (int i = 0; i < level.size(); ++i)
+					if (level.get(i).needsDivision()) {
+						divisible[i] = true;
+						level.get(i).divideEdges();
+					}
+				trianglesNextLevel = addDescendants(level, divisible);
 
 				if (trianglesNextLevel.size() > 0) {
 					get(tessLevel + 1).addAll(trianglesNextLevel);
@@ -321,10 +414,13 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 		// for ones that do not have descendants. If no descendant, get
 		// transition triangles.
 		for (int tessLevel = 0; tessLevel < size() - 1; ++tessLevel) {
-			trianglesNextLevel.clear();
-			for (Triangle triangle : get(tessLevel))
-				if (!triangle.hasDescendant())
-					trianglesNextLevel.addAll((triangle.getTransitionTriangles()));
+			ArrayList<Triangle> level = get(tessLevel);
+			Triangle[][] transition = new Triangle[level.size()][];
+			forEach(level.size(), i -> {
+				if (!level.get(i).hasDescendant())
+					transition[i] = level.get(i).getTransitionTriangles().toArray(new Triangle[0]);
+			});
+			trianglesNextLevel = concatenate(transition);
 
 			if (trianglesNextLevel.size() > 0) {
 				get(tessLevel + 1).addAll(trianglesNextLevel);
@@ -335,8 +431,130 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 		setConnectivity();
 
 		// delaunay(false);
+	}
 
-		return this;
+	/**
+	 * Divide the triangles on a level for which divisible[i] is true. The new
+	 * triangles are returned in the same order that serial calls to
+	 * triangle.divide() would have produced them.
+	 * 
+	 * @param level     the triangles on one tessellation level
+	 * @param divisible flags indicating which triangles to divide
+	 * @return the new triangles.
+	 * @throws GeoTessException
+	 */
+	private ArrayList<Triangle> divide(ArrayList<Triangle> level, boolean[] divisible) throws GeoTessException {
+		// edges are shared by neighboring triangles so set edge vertices and
+		// division counts serially.
+		for (int i = 0; i < divisible.length; ++i)
+			if (divisible[i])
+				level.get(i).divideEdges();
+		return addDescendants(level, divisible);
+	}
+
+	/**
+	 * Create the 4 descendants of every triangle on a level for which
+	 * divisible[i] is true, after divideEdges() has been called on those
+	 * triangles.
+	 * 
+	 * @param level     the triangles on one tessellation level
+	 * @param divisible flags indicating which triangles to divide
+	 * @return the new triangles, in triangle order.
+	 * @throws GeoTessException
+	 */
+	private ArrayList<Triangle> addDescendants(ArrayList<Triangle> level, boolean[] divisible)
+			throws GeoTessException {
+		Triangle[][] descendants = new Triangle[level.size()][];
+		forEach(level.size(), i -> {
+			if (divisible[i]) {
+				ArrayList<Triangle> d = new ArrayList<Triangle>(4);
+				level.get(i).addDescendants(d);
+				descendants[i] = d.toArray(new Triangle[d.size()]);
+			}
+		});
+		return concatenate(descendants);
+	}
+
+	/**
+	 * Concatenate the non-null elements of a ragged array of triangles.
+	 */
+	private static ArrayList<Triangle> concatenate(Triangle[][] triangles) {
+		int n = 0;
+		for (Triangle[] t : triangles)
+			if (t != null)
+				n += t.length;
+		ArrayList<Triangle> list = new ArrayList<Triangle>(n);
+		for (Triangle[] t : triangles)
+			if (t != null)
+				for (Triangle triangle : t)
+					list.add(triangle);
+		return list;
+	}
+
+	/**
+	 * An operation applied to the element of a list with a given index.
+	 */
+	private interface IndexedOperation {
+		void apply(int index) throws GeoTessException;
+	}
+
+	/**
+	 * Apply operation to every index in [0, n). If a pool is available and n is
+	 * large enough, the indices are processed in parallel, otherwise they are
+	 * processed serially in order.
+	 * 
+	 * @param n         number of indices
+	 * @param operation the operation to apply.
+	 * @throws GeoTessException
+	 */
+	private void forEach(int n, IndexedOperation operation) throws GeoTessException {
+		if (pool == null || n < PARALLEL_THRESHOLD) {
+			for (int i = 0; i < n; ++i)
+				operation.apply(i);
+			return;
+		}
+		int grain = Math.max(PARALLEL_THRESHOLD / 4, n / (8 * maxProcessors));
+		try {
+			pool.invoke(new IndexedTask(operation, 0, n, grain));
+		} catch (RuntimeException e) {
+			for (Throwable cause = e; cause != null; cause = cause.getCause())
+				if (cause instanceof GeoTessException)
+					throw (GeoTessException) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Recursively splits a range of indices until it is small enough to process
+	 * serially.
+	 */
+	@SuppressWarnings("serial")
+	private static class IndexedTask extends RecursiveAction {
+		private final IndexedOperation operation;
+		private final int first, last, grain;
+
+		IndexedTask(IndexedOperation operation, int first, int last, int grain) {
+			this.operation = operation;
+			this.first = first;
+			this.last = last;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first <= grain) {
+				try {
+					for (int i = first; i < last; ++i)
+						operation.apply(i);
+				} catch (GeoTessException e) {
+					throw new RuntimeException(e);
+				}
+			} else {
+				int middle = (first + last) >>> 1;
+				invokeAll(new IndexedTask(operation, first, middle, grain),
+						new IndexedTask(operation, middle, last, grain));
+			}
+		}
 	}
 
 	/**
@@ -416,27 +634,43 @@ public class Tessellation extends ArrayList<ArrayList<Triangle>> {
 				v.addTriangle(tessLevel, t);
 
 		// For every element find the neighbors of the element at the specified
-		// level.
-		for (Triangle triangle : get(tessLevel))
+		// level. The search only reads the vertex triangle membership sets so
+		// it can be done in parallel.
+		ArrayList<Triangle> level = get(tessLevel);
+		Triangle[][] neighbors = new Triangle[level.size()][3];
+		forEach(level.size(), j -> {
+			Triangle triangle = level.get(j);
 			for (int i = 0; i < 3; ++i) {
-				// mark all the triangles that are at current level of the
-				// tessellation and which have node i-1 as a corner.
-				triangle.get((i + 2) % 3).markTriangles(tessLevel);
-
 				// find the next node in this triangle. Visit all of
 				// the triangles of which it is a corner. There will
 				// be at most one triangle which is not triangle triangle and
-				// which is currently marked. That triangle is a
+				// which also has node i-1 as a corner. That triangle is a
 				// neighbor of triangle.
+				Collection<Triangle> previous = triangle.get((i + 2) % 3).getTriangles(tessLevel);
 				for (Triangle t : triangle.get((i + 1) % 3).getTriangles(tessLevel))
-					if (t.isMarked() && t != triangle) {
-						triangle.setNeighbor(i, t);
+					if (t != triangle && containsReference(previous, t)) {
+						neighbors[j][i] = t;
 						break;
 					}
-
-				// unmark node i membership.
-				triangle.get((i + 2) % 3).unmarkTriangles(tessLevel);
 			}
+		});
+
+		// setNeighbor() shares Edge objects between neighbors, so apply the
+		// neighbor relations serially, in triangle order.
+		for (int j = 0; j < level.size(); ++j)
+			for (int i = 0; i < 3; ++i)
+				if (neighbors[j][i] != null)
+					level.get(j).setNeighbor(i, neighbors[j][i]);
+	}
+
+	/**
+	 * Return true if triangles contains a reference to triangle (== not equals()).
+	 */
+	private static boolean containsReference(Collection<Triangle> triangles, Triangle triangle) {
+		for (Triangle t : triangles)
+			if (t == triangle)
+				return true;
+		return false;
 	}
 
 	/**
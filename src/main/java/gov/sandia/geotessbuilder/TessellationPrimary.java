@@ -33,6 +33,7 @@
 package gov.sandia.geotessbuilder;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import gov.sandia.geotess.GeoTessException;
@@ -42,31 +43,44 @@ public class TessellationPrimary extends Tessellation {
 
 	private Collection<Tessellation> tessellations;
 
-	private double[] center;
-
-	private Triangle t;
-
 	private long timer;
 
+	/**
+	 * Build a primary tessellation using the same maximum number of processors
+	 * as the first of the supplied tessellations.
+	 * 
+	 * @param tessList
+	 * @throws GeoTessException
+	 */
 	public TessellationPrimary(Collection<Tessellation> tessList) throws GeoTessException {
-		super(tessList.iterator().next().initialSolid, -1);
-		timer = System.currentTimeMillis();
-		tessellations = new ArrayList<Tessellation>(tessList.size());
-		for (Tessellation tess : tessList)
-			tessellations.add(tess);
-		center = new double[3];
-		build();
-		mergeNodes();
-		timer = System.currentTimeMillis() - timer;
+		this(tessList, tessList.iterator().next().getMaxProcessors());
 	}
 
+	/**
+	 * Build a primary tessellation using the same maximum number of processors
+	 * as the first of the supplied tessellations.
+	 * 
+	 * @param tessList
+	 * @throws GeoTessException
+	 */
 	public TessellationPrimary(Tessellation... tessList) throws GeoTessException {
-		super(tessList[0].initialSolid, -1);
+		this(Arrays.asList(tessList));
+	}
+
+	/**
+	 * Build a primary tessellation.
+	 * 
+	 * @param tessList
+	 * @param maxProcessors maximum number of threads used to build the primary
+	 *                      tessellation.
+	 * @throws GeoTessException
+	 */
+	public TessellationPrimary(Collection<Tessellation> tessList, int maxProcessors) throws GeoTessException {
+		super(tessList.iterator().next().initialSolid, -1, maxProcessors);
 		timer = System.currentTimeMillis();
-		tessellations = new ArrayList<Tessellation>(tessList.length);
+		tessellations = new ArrayList<Tessellation>(tessList.size());
 		for (Tessellation tess : tessList)
 			tessellations.add(tess);
-		center = new double[3];
 		build();
 		mergeNodes();
 		timer = System.currentTimeMillis() - timer;
@@ -74,18 +88,20 @@ public class TessellationPrimary extends Tessellation {
 
 	/**
 	 * Return true if the specified triangle should be subdivided into smaller
-	 * elements.
+	 * elements. Safe to call concurrently: the supplied tessellations are only
+	 * read.
 	 * 
 	 * @param triangle Triangle
 	 * @return boolean
 	 */
 	public boolean isDivisible(Triangle triangle) {
+		double[] center = new double[3];
 		triangle.getCenter(center);
 
 		// loop over all supplied tessellations
 		for (Tessellation tess : tessellations) {
 			// find the triangle in tessellation that contains center
-			t = tess.findTriangle(tess.get(0).get(0), triangle.getTessLevel(), center);
+			Triangle t = tess.findTriangle(tess.get(0).get(0), triangle.getTessLevel(), center);
 			// if the triangle was divided into 4
 			// sub-triangles, then this triangle also needs to be subdivided.
 			if (t.getNDescendants() == 4)
@@ -34,6 +34,9 @@ package gov.sandia.geotessbuilder;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import gov.sandia.geotess.GeoTessException;
 import gov.sandia.geotess.GeoTessGrid;
@@ -53,6 +56,17 @@ public class TessellationRefined extends Tessellation {
 
 	private long timer;
 
+	/**
+	 * Map from each triangle of this tessellation that has been tested by
+	 * isDivisible() to the triangle in the originalTessellation that
+	 * contains its center on the same tessellation level. The search for the
+	 * match of a triangle starts at the match of its ancestor, so only the
+	 * subtree beneath each original triangle is ever searched instead of
+	 * walking down from the top level of the originalTessellation.
+	 * Synchronized because isDivisible() may be called concurrently.
+	 */
+	private Map<Triangle, Triangle> matches;
+
 	/**
 	 * Given an exiting tessellation and an array of vertices this constructor will
 	 * build a new tessellation where all the triangles that touch any of the
@@ -68,7 +82,30 @@ public class TessellationRefined extends Tessellation {
 	 */
 	public TessellationRefined(GeoTessGrid grid, InitialSolid initialSolid, int tessellationIndex,
 			Collection<double[]> verticesToRefine, int maxEdgeLevel, int markThreshold) throws GeoTessException {
-		super(initialSolid, -1);
+		this(grid, initialSolid, tessellationIndex, verticesToRefine, maxEdgeLevel, markThreshold, 1);
+	}
+
+	/**
+	 * Given an exiting tessellation and an array of vertices this constructor will
+	 * build a new tessellation where all the triangles that touch any of the
+	 * verticesToRefine will be subdivided an additional time. The whole
+	 * tessellation is rebuilt; the search for the original triangle that
+	 * matches each new triangle starts from the match of its ancestor.
+	 * 
+	 * @param grid              existing grid that is to be refined.
+	 * @param tessellationIndex index of the tessellation in grid that is to be
+	 *                          refined.
+	 * @param verticesToRefine  an array of unit vectors containing the locations of
+	 *                          the vertices that are to be refined.
+	 * @param maxProcessors     maximum number of threads used to build the new
+	 *                          tessellation. The result does not depend on it.
+	 * @throws GeoTessException if any of the specified vertices are not colocated
+	 *                          with a vertex in grid.
+	 */
+	public TessellationRefined(GeoTessGrid grid, InitialSolid initialSolid, int tessellationIndex,
+			Collection<double[]> verticesToRefine, int maxEdgeLevel, int markThreshold, int maxProcessors)
+			throws GeoTessException {
+		super(initialSolid, -1, maxProcessors);
 		this.maxEdgeLevel = maxEdgeLevel;
 
 		this.markThreshold = markThreshold;
@@ -94,8 +131,12 @@ public class TessellationRefined extends Tessellation {
 					t.mark();
 		}
 
+		matches = Collections.synchronizedMap(new IdentityHashMap<Triangle, Triangle>());
+
 		build();
 
+		matches = null;
+
 		// unmark all the triangles (and vertices) in the original tessellation
 		originalTessellation.unMark();
 
@@ -116,12 +157,21 @@ public class TessellationRefined extends Tessellation {
 		if (triangle.getTessLevel() == originalTessellation.size())
 			return false;
 
-		Triangle t0 = originalTessellation.get(0).get(0);
+		// start the search from the original triangle that matched the closest
+		// ancestor of triangle. Triangles that were not divided in the original
+		// tessellation are thereby found after a single step.
+		Triangle t0 = null;
+		for (Triangle a = triangle.ancestor; a != null && t0 == null; a = a.ancestor)
+			t0 = matches.get(a);
+		if (t0 == null)
+			t0 = originalTessellation.get(0).get(0);
 
 		// find the triangle in the original tessellation that resides on
 		// same tessellation level as t, and contains the center of t.
 		t0 = originalTessellation.findTriangle(t0, triangle.getTessLevel(), triangle.getCenter());
 
+		matches.put(triangle, t0);
+
 		// if original triangle was divided into 4 subtriangles on next level,
 		// return true
 		if (t0.getNDescendants() == 4 || (t0.getMarked() >= markThreshold && triangle.equals(t0)))
@@ -109,6 +109,13 @@ public class Triangle extends ArrayList<Vertex> {
 	 */
 	private Triangle descendant;
 
+	/**
+	 * The 4 triangles into which this triangle was subdivided by
+	 * addDescendants(), or null if it was not subdivided. Used to search the
+	 * tessellation from the top down.
+	 */
+	private Triangle[] children;
+
 	/**
 	 * A triangle on the next lower tessellation level that contains this triangle.
 	 * The triangles on the lowest tessellation level (the icosahedron) do not have
@@ -247,9 +254,41 @@ public class Triangle extends ArrayList<Vertex> {
 	 * descendant of this triangle to the central triangle of the 4 new triangles.
 	 * All tessLevels are set properly. Does nothing about neighbors.
 	 * 
+	 * <p>
+	 * Equivalent to calling divideEdges() followed by addDescendants().
+	 * 
 	 * @param triangles
 	 */
 	public void divide(Collection<Triangle> triangles) {
+		divideEdges();
+		addDescendants(triangles);
+	}
+
+	/**
+	 * First half of divide(): make sure there is a Vertex at the center of each of
+	 * the 3 edges of this triangle and increment the division count of each edge
+	 * (and its ancestors). Edges are shared with neighboring triangles, so calls to
+	 * this method on triangles that share edges must not run concurrently.
+	 */
+	void divideEdges() {
+		// visit each edge. If it has a node then make that node a corner of
+		// descendant. If not, make a new Node.
+		for (int i = 0; i < 3; i++) {
+			if (getEdges()[i].getVertex() == null)
+				getEdges()[i].setVertex(new Vertex(get((i + 1) % 3), get((i + 2) % 3)));
+			getEdges()[i].incNDivisions();
+		}
+	}
+
+	/**
+	 * Second half of divide(): make the 4 new triangles that subdivide this
+	 * triangle, using the vertices previously set at the centers of the edges by
+	 * divideEdges(). Only this triangle and the new triangles are modified so
+	 * calls to this method on different triangles can run concurrently.
+	 * 
+	 * @param triangles the 4 new triangles are added to this collection.
+	 */
+	void addDescendants(Collection<Triangle> triangles) {
 		// 0
 		// / \
 		// / \
@@ -270,20 +309,12 @@ public class Triangle extends ArrayList<Vertex> {
 		// / \ / \
 		// 2 --------------- 0 --------------- 1
 		//
-		// make 3 new nodes in centers of the edges of the current triangle.
+		// the 3 new nodes in centers of the edges of the current triangle
+		// were set by divideEdges().
 		//
-
-		// visit each edge. If it has a node then make that node a corner of
-		// descendant. If not, make a new Node.
-		for (int i = 0; i < 3; i++)
-			if (getEdges()[i].getVertex() == null)
-				getEdges()[i].setVertex(new Vertex(get((i + 1) % 3), get((i + 2) % 3)));
-
 		Vertex[] centerVertex = new Vertex[3];
-		for (int i = 0; i < 3; ++i) {
+		for (int i = 0; i < 3; ++i)
 			centerVertex[i] = getEdges()[i].getVertex();
-			getEdges()[i].incNDivisions();
-		}
 
 		// make the center triangle out of the 3 supplied nodes.
 		// The center triangle does not share edges with this triangle,
@@ -292,6 +323,8 @@ public class Triangle extends ArrayList<Vertex> {
 				edgeLevel + 1);
 		this.descendant = triangle;
 		triangles.add(triangle);
+		children = new Triangle[4];
+		children[3] = triangle;
 
 		// make the other 3 triangles
 		for (int i = 0; i < 3; ++i) {
@@ -302,6 +335,7 @@ public class Triangle extends ArrayList<Vertex> {
 			triangle.getEdges()[1].setAncestor(this.getEdges()[(i + 1) % 3]);
 			triangle.getEdges()[2].setAncestor(this.getEdges()[(i + 2) % 3]);
 			triangles.add(triangle);
+			children[i] = triangle;
 		}
 
 		nDescendants = 4;
@@ -646,6 +680,16 @@ public class Triangle extends ArrayList<Vertex> {
 		return descendant;
 	}
 
+	/**
+	 * Retrieve the 4 triangles into which this triangle was subdivided, or null
+	 * if it has not been subdivided (transition triangles are not included).
+	 * 
+	 * @return the 4 sub-triangles of this triangle, or null.
+	 */
+	Triangle[] getChildren() {
+		return children;
+	}
+
 	/**
 	 * Set the descendant of this triangle. The descendant of this triangle resides
 	 * on the next higher tessellation level from this triangle.
@@ -104,6 +104,7 @@ public class ArrayListBoolean extends ArrayListIntrinsic
    */
   public ArrayListBoolean(String filename) throws IOException
   {
+  	this();
   	read(filename);
   }
 
@@ -112,6 +113,7 @@ public class ArrayListBoolean extends ArrayListIntrinsic
    */
   public ArrayListBoolean(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
@@ -103,6 +103,7 @@ public class ArrayListByte extends ArrayListIntrinsic
    */
   public ArrayListByte(String filename) throws IOException
   {
+  	this();
   	read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListByte extends ArrayListIntrinsic
    */
   public ArrayListByte(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
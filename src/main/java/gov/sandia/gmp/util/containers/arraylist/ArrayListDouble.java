@@ -103,6 +103,7 @@ public class ArrayListDouble extends ArrayListIntrinsic
    */
   public ArrayListDouble(String filename) throws IOException
   {
+  	this();
   	read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListDouble extends ArrayListIntrinsic
    */
   public ArrayListDouble(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
@@ -103,6 +103,7 @@ public class ArrayListFloat extends ArrayListIntrinsic
    */
   public ArrayListFloat(String filename) throws IOException
   {
+  	this();
   	read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListFloat extends ArrayListIntrinsic
    */
   public ArrayListFloat(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
@@ -103,6 +103,7 @@ public class ArrayListInt extends ArrayListIntrinsic
    */
   public ArrayListInt(String filename) throws IOException
   {
+    this();
     read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListInt extends ArrayListIntrinsic
    */
   public ArrayListInt(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
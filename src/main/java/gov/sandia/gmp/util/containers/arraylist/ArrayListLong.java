@@ -103,6 +103,7 @@ public class ArrayListLong extends ArrayListIntrinsic
    */
   public ArrayListLong(String filename) throws IOException
   {
+    this();
     read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListLong extends ArrayListIntrinsic
    */
   public ArrayListLong(FileInputBuffer fib) throws IOException
   {
+    this();
     read(fib);
   }
 
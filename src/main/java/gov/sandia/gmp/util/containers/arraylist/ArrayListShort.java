@@ -103,6 +103,7 @@ public class ArrayListShort extends ArrayListIntrinsic
    */
   public ArrayListShort(String filename) throws IOException
   {
+    this();
     read(filename);
   }
 
@@ -111,6 +112,7 @@ public class ArrayListShort extends ArrayListIntrinsic
    */
   public ArrayListShort(FileInputBuffer fib) throws IOException
   {
+    this();
     read(fib);
   }
 
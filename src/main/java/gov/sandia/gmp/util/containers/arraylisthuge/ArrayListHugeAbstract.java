@@ -53,6 +53,13 @@ public abstract class ArrayListHugeAbstract
    */
   protected static final int segArraySize = (Integer.MAX_VALUE - 16) / 8;
 
+  /**
+   * The size of each segment stored by the off-heap ArrayListHugeXXXOffHeap
+   * containers. Off-heap segments are allocated in much smaller pieces so that
+   * small lists do not reserve (or map) gigabytes of memory.
+   */
+  protected static final int offHeapSegArraySize = 1 << 24;
+
   /**
    * The total number of entries stored in the parent ArrayListHuge container.
    */
@@ -74,6 +81,18 @@ public abstract class ArrayListHugeAbstract
    */
   public abstract int intrinsicSize();
 
+  /**
+   * Returns true if this list stores its segments outside of the Java heap
+   * (see ArrayListHugeXXXOffHeap). Off-heap lists do not support
+   * getArraySegment().
+   * 
+   * @return True if this list stores its segments outside of the Java heap.
+   */
+  public boolean isOffHeap()
+  {
+    return false;
+  }
+
   /**
    * Returns the segment array size (i.e. the number of entries allocated for
    * each segment created by the list).
@@ -118,6 +118,7 @@ public class ArrayListHugeDouble extends ArrayListHugeAbstract
    */
   public ArrayListHugeDouble(String filename) throws IOException
   {
+  	this();
     read(filename);
   }
 
@@ -126,6 +127,7 @@ public class ArrayListHugeDouble extends ArrayListHugeAbstract
    */
   public ArrayListHugeDouble(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
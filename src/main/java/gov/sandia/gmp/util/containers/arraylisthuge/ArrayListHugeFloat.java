@@ -118,6 +118,7 @@ public class ArrayListHugeFloat extends ArrayListHugeAbstract
    */
   public ArrayListHugeFloat(String filename) throws IOException
   {
+  	this();
     read(filename);
   }
 
@@ -126,6 +127,7 @@ public class ArrayListHugeFloat extends ArrayListHugeAbstract
    */
   public ArrayListHugeFloat(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
@@ -118,6 +118,7 @@ public class ArrayListHugeInt extends ArrayListHugeAbstract
    */
   public ArrayListHugeInt(String filename) throws IOException
   {
+  	this();
     read(filename);
   }
 
@@ -126,6 +127,7 @@ public class ArrayListHugeInt extends ArrayListHugeAbstract
    */
   public ArrayListHugeInt(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
@@ -0,0 +1,497 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.containers.arraylisthuge;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
+
+/**
+ * Off-heap variant of ArrayListHugeInt. The list segments are stored in direct
+ * or memory-mapped ByteBuffers instead of int[] arrays, so the list contents
+ * are not part of the Java heap, are never scanned or moved by the garbage
+ * collector, and (in file-backed mode) may exceed physical memory. The same
+ * add/get/set/setVector/increment/incrementVector/scale/scaleVector/swap/
+ * swapVector/clear/ensureCapacity/trimToSegmentSize/read/write functions are
+ * supported, and since this class extends ArrayListHugeInt it can be used
+ * anywhere an ArrayListHugeInt is expected.
+ *
+ * Segments hold offHeapSegArraySize entries (much smaller than the on-heap
+ * segment size) so that small lists do not reserve gigabytes of memory.
+ *
+ * Two storage modes are available:
+ *
+ *    new ArrayListHugeIntOffHeap();          // direct buffers
+ *    new ArrayListHugeIntOffHeap(directory); // mapped temporary file in
+ *                                            // directory
+ *
+ * getArraySegment() is not supported since no backing int[] exists. Callers
+ * that process whole segments should test isOffHeap() and use
+ * get(si, ei) / set(si, ei, val) instead. Call close() to release a
+ * file-backed list's storage as soon as it is no longer needed.
+ */
+public class ArrayListHugeIntOffHeap extends ArrayListHugeInt
+{
+  /**
+   * The segment allocator.
+   */
+  private OffHeapSegmentStore aStore = null;
+
+  /**
+   * Typed views of the allocated segments (aSegs.length may exceed the
+   * number of segments).
+   */
+  private IntBuffer[]       aSegs  = new IntBuffer [0];
+
+  /**
+   * Default constructor. Segments are direct buffers.
+   */
+  public ArrayListHugeIntOffHeap()
+  {
+    this((File) null);
+  }
+
+  /**
+   * Creates a new empty list whose segments are mapped from a temporary file
+   * in the input directory. If directory is null segments are direct
+   * buffers.
+   *
+   * @param directory The directory in which the backing file is created, or
+   *                  null.
+   */
+  public ArrayListHugeIntOffHeap(File directory)
+  {
+    super();
+    aStore = new OffHeapSegmentStore(offHeapSegArraySize * intrinsicSize(),
+                                     directory);
+  }
+
+  /**
+   * Creates a new list with at least the input capacity, stored in a
+   * temporary file in the input directory (or direct buffers if directory is
+   * null).
+   *
+   * @param capacity  The minimum set capacity of the list at construction.
+   * @param directory The directory in which the backing file is created, or
+   *                  null.
+   */
+  public ArrayListHugeIntOffHeap(long capacity, File directory)
+  {
+    this(directory);
+    ensureCapacity(capacity);
+  }
+
+  /**
+   * Creates a new list filled from the input FileInputBuffer, stored in a
+   * temporary file in the input directory (or direct buffers if directory is
+   * null).
+   *
+   * @param fib       The FileInputBuffer from which the list is filled.
+   * @param directory The directory in which the backing file is created, or
+   *                  null.
+   * @throws IOException
+   */
+  public ArrayListHugeIntOffHeap(FileInputBuffer fib, File directory)
+         throws IOException
+  {
+    this(directory);
+    read(fib);
+  }
+
+  /**
+   * Returns true.
+   *
+   * @return True.
+   */
+  @Override
+  public boolean isOffHeap()
+  {
+    return true;
+  }
+
+  /**
+   * Returns true if the list segments are mapped from a file.
+   *
+   * @return True if the list segments are mapped from a file.
+   */
+  public boolean isFileBacked()
+  {
+    return aStore.isFileBacked();
+  }
+
+  /**
+   * Returns the directory of the backing file, or null if the segments are
+   * direct buffers.
+   *
+   * @return The directory of the backing file, or null.
+   */
+  public File getDirectory()
+  {
+    return aStore.getDirectory();
+  }
+
+  /**
+   * Return the current number of segments stored by this list.
+   *
+   * @return The current number of segments stored by this list.
+   */
+  @Override
+  public int getSegmentCount()
+  {
+    return aStore.size();
+  }
+
+  /**
+   * Returns the off-heap segment array size.
+   *
+   * @return The off-heap segment array size.
+   */
+  @Override
+  public int getSegmentArraySize()
+  {
+    return offHeapSegArraySize;
+  }
+
+  /**
+   * Allocates a new segment and appends its typed view to aSegs.
+   */
+  private void allocateSegment()
+  {
+    int si = aStore.size();
+    IntBuffer b = aStore.allocate().asIntBuffer();
+    if (si == aSegs.length)
+    {
+      IntBuffer[] segs = new IntBuffer [Math.max(4, 2 * si)];
+      System.arraycopy(aSegs, 0, segs, 0, si);
+      aSegs = segs;
+    }
+    aSegs[si] = b;
+  }
+
+  /**
+   * Returns a copy of this list using the same storage mode (a file-backed
+   * list is copied into a new file in the same directory).
+   *
+   * @return a clone of this list.
+   */
+  @Override
+  public Object clone()
+  {
+    ArrayListHugeIntOffHeap v = new ArrayListHugeIntOffHeap(getDirectory());
+    v.aStore = aStore.copy();
+    v.aSegs = new IntBuffer [Math.max(4, aSegs.length)];
+    for (int i = 0; i < v.aStore.size(); ++i)
+      v.aSegs[i] = v.aStore.get(i).asIntBuffer();
+    v.aldASize = aldASize;
+    return v;
+  }
+
+  /**
+   * Ensures that the capacity of this list is as least as big as the input
+   * capacity.
+   *
+   * @param capacity The new capacity of this list which will be at least as
+   *                 big as the input capacity.
+   */
+  @Override
+  public void ensureCapacity(long capacity)
+  {
+    if (capacity() < capacity)
+    {
+      int si = getSegmentIndex(capacity);
+      if (getElementIndex(capacity) != 0) ++si;
+      while (aStore.size() < si) allocateSegment();
+    }
+  }
+
+  /**
+   * Trims the excess capacity to the nearest segment allocation that can
+   * safely contain the current size.
+   */
+  @Override
+  public void trimToSegmentSize()
+  {
+    int si = getSegmentIndex(aldASize);
+    if (getElementIndex(aldASize) != 0) ++si;
+    aStore.truncate(si);
+    for (int i = si; i < aSegs.length; ++i) aSegs[i] = null;
+  }
+
+  /**
+   * Not supported. Off-heap segments have no backing array.
+   *
+   * @throws UnsupportedOperationException
+   */
+  @Override
+  public int[] getArraySegment(int seg)
+  {
+    throw new UnsupportedOperationException(
+        "Off-heap lists have no backing array segments ...");
+  }
+
+  /**
+   * Clears the list and releases all segments (and the backing file if the
+   * list is file-backed).
+   */
+  @Override
+  public void clear()
+  {
+    close();
+  }
+
+  /**
+   * Clears the list, releases all segments, and deletes the backing file if
+   * the list is file-backed. The list remains usable.
+   */
+  public void close()
+  {
+    aStore.close();
+    aSegs = new IntBuffer [0];
+    resetSize();
+  }
+
+  /**
+   * Appends the specified element to the end of this list.
+   *
+   * @param val element to be appended to this list
+   */
+  @Override
+  public void add(int val)
+  {
+    // see if a new segment is required and add it if so
+
+    int si = getSegmentIndex(aldASize);
+    if (si == aStore.size()) allocateSegment();
+
+    // add element to segment and increment size
+
+    aSegs[si].put(getElementIndex(aldASize), val);
+    ++aldASize;
+  }
+
+  /**
+   * Returns the value stored at segment (si) and element (ei) indices.
+   *
+   * @param si The segment index.
+   * @param ei The element index.
+   * @return The value stored at index si,ei.
+   */
+  @Override
+  public int get(int si, int ei)
+  {
+    return aSegs[si].get(ei);
+  }
+
+  /**
+   * Returns the element stored as the first entry in the list.
+   *
+   * @return The element stored as the first entry in the list.
+   */
+  @Override
+  public int getFirst()
+  {
+    return aSegs[0].get(0);
+  }
+
+  /**
+   * Replaces the element at the specified segment (si) and element (ei)
+   * indices in this list with the specified element (val).
+   *
+   * @param  si  The segment index.
+   * @param  ei  The element index.
+   * @param  val Element to be stored at the specified index position.
+   * @return The element previously stored at the specified position.
+   */
+  @Override
+  public int set(int si, int ei, int val)
+  {
+    validateIndex(si, ei, 0);
+
+    IntBuffer b = aSegs[si];
+    int tmp = b.get(ei);
+    b.put(ei, val);
+    return tmp;
+  }
+
+  /**
+   * Replaces n elements beginning at the input segment (si) and element (ei)
+   * index and progressing forward with the specified element (val).
+   *
+   * @param  si  The starting segment index.
+   * @param  ei  The starting element index.
+   * @param  val Element to be stored at each index position.
+   * @param  n   The number of elements to be replaced beginning with si,ei.
+   */
+  @Override
+  public void setVector(int si, int ei, int val, int n)
+  {
+    validateIndex(si, ei, n);
+    IntBuffer b = aSegs[si];
+    for (int i = 0; i < n; ++i)
+    {
+      if (ei == offHeapSegArraySize) {ei = 0; b = aSegs[++si];}
+      b.put(ei++, val);
+    }
+  }
+
+  /**
+   * Increments the element at the specified segment (si) and element (ei)
+   * indices in this list by the amount inc.
+   *
+   * @param  si  The segment index.
+   * @param  ei  The element index.
+   * @param  inc The amount by which the element is incremented.
+   * @return The previous value of the element stored at the index si,ei.
+   */
+  @Override
+  public int increment(int si, int ei, int inc)
+  {
+    validateIndex(si, ei, 0);
+
+    IntBuffer b = aSegs[si];
+    int tmp = b.get(ei);
+    b.put(ei, tmp + inc);
+    return tmp;
+  }
+
+  /**
+   * Increments n elements beginning with the input segment (si) and element
+   * (ei) index and progressing forward by the amount inc.
+   *
+   * @param  si  The starting segment index.
+   * @param  ei  The starting element index.
+   * @param  inc The amount by which the elements are to be incremented.
+   * @param  n   The number of elements to be incremented beginning with si,ei.
+   */
+  @Override
+  public void incrementVector(int si, int ei, int inc, int n)
+  {
+    validateIndex(si, ei, n);
+    IntBuffer b = aSegs[si];
+    for (int i = 0; i < n; ++i)
+    {
+      if (ei == offHeapSegArraySize) {ei = 0; b = aSegs[++si];}
+      b.put(ei, b.get(ei) + inc);
+      ++ei;
+    }
+  }
+
+  /**
+   * Scales the element at the specified segment (si) and element (ei)
+   * indices in this list by the amount scl.
+   *
+   * @param  si  The segment index.
+   * @param  ei  The element index.
+   * @param  scl The amount by which the element is scaled.
+   * @return The previous value of the element stored at the index si,ei.
+   */
+  @Override
+  public int scale(int si, int ei, int scl)
+  {
+    validateIndex(si, ei, 0);
+
+    IntBuffer b = aSegs[si];
+    int tmp = b.get(ei);
+    b.put(ei, tmp * scl);
+    return tmp;
+  }
+
+  /**
+   * Scales n elements beginning with the input segment (si) and element (ei)
+   * index and progressing forward by the amount scl.
+   *
+   * @param  si  The starting segment index.
+   * @param  ei  The starting element index.
+   * @param  scl The amount by which the elements are to be scaled.
+   * @param  n   The number of elements to be scaled beginning with si,ei.
+   */
+  @Override
+  public void scaleVector(int si, int ei, int scl, int n)
+  {
+    validateIndex(si, ei, n);
+    IntBuffer b = aSegs[si];
+    for (int i = 0; i < n; ++i)
+    {
+      if (ei == offHeapSegArraySize) {ei = 0; b = aSegs[++si];}
+      b.put(ei, b.get(ei) * scl);
+      ++ei;
+    }
+  }
+
+  /**
+   * Swaps the elements at segment/element indices si1/ei1 with those at
+   * segment/element indices si2/ei2.
+   *
+   * @param si1 First segment index to be swapped.
+   * @param ei1 First element index to be swapped.
+   * @param si2 Second segment index to be swapped.
+   * @param ei2 Second element index to be swapped.
+   */
+  @Override
+  public void swap(int si1, int ei1, int si2, int ei2)
+  {
+    IntBuffer b1 = aSegs[si1];
+    IntBuffer b2 = aSegs[si2];
+    int tmp = b1.get(ei1);
+    b1.put(ei1, b2.get(ei2));
+    b2.put(ei2, tmp);
+  }
+
+  /**
+   * Swaps n elements beginning with segment/element indices si1/ei1 and
+   * segment/element indices si2/ei2.
+   *
+   * @param si1 First segment index to be swapped.
+   * @param ei1 First element index to be swapped.
+   * @param si2 Second segment index to be swapped.
+   * @param ei2 Second element index to be swapped.
+   * @param n   Number of elements to be swapped beginning with si1,ei1 and
+   *            si2,ei2.
+   */
+  @Override
+  public void swapVector(int si1, int ei1, int si2, int ei2, int n)
+  {
+    IntBuffer b1 = aSegs[si1];
+    IntBuffer b2 = aSegs[si2];
+    for (int i = 0; i < n; ++i)
+    {
+      if (ei1 == offHeapSegArraySize) {ei1 = 0; b1 = aSegs[++si1];}
+      if (ei2 == offHeapSegArraySize) {ei2 = 0; b2 = aSegs[++si2];}
+      int tmp = b1.get(ei1);
+      b1.put(ei1++, b2.get(ei2));
+      b2.put(ei2++, tmp);
+    }
+  }
+}
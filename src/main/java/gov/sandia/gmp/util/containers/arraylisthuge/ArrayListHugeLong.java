@@ -118,6 +118,7 @@ public class ArrayListHugeLong extends ArrayListHugeAbstract
    */
   public ArrayListHugeLong(String filename) throws IOException
   {
+  	this();
     read(filename);
   }
 
@@ -126,6 +127,7 @@ public class ArrayListHugeLong extends ArrayListHugeAbstract
    */
   public ArrayListHugeLong(FileInputBuffer fib) throws IOException
   {
+  	this();
   	read(fib);
   }
 
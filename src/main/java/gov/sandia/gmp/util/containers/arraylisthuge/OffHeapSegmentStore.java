@@ -0,0 +1,255 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.containers.arraylisthuge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+
+/**
+ * Segment allocator used by the off-heap ArrayListHugeXXXOffHeap lists. Each
+ * segment is a fixed size ByteBuffer that lives outside of the Java heap, so
+ * the contents are never copied or scanned by the garbage collector.
+ * 
+ * Two modes are supported:
+ * 
+ *    direct:      segments are allocated with ByteBuffer.allocateDirect() and
+ *                 occupy process memory.
+ *    file-backed: segments are consecutive READ_WRITE mappings of a temporary
+ *                 file created in a caller supplied directory. The operating
+ *                 system pages the mappings in and out of the page cache as
+ *                 they are touched, so the list may exceed physical memory.
+ *                 The file is deleted by close() (or at JVM exit).
+ * 
+ * Segments are in native byte order since they are never shared between
+ * platforms (ArrayListHugeXXX.write() is used for persistence).
+ */
+class OffHeapSegmentStore
+{
+  /**
+   * The byte size of each segment.
+   */
+  private final int                   aSegByteSize;
+
+  /**
+   * The directory in which the backing file is created, or null for direct
+   * segments.
+   */
+  private final File                  aDirectory;
+
+  /**
+   * The backing file (file-backed mode only).
+   */
+  private File                        aFile    = null;
+
+  /**
+   * The open backing file (file-backed mode only).
+   */
+  private RandomAccessFile            aRAF     = null;
+
+  /**
+   * The allocated segments.
+   */
+  private final ArrayList<ByteBuffer> aSegments = new ArrayList<ByteBuffer>();
+
+  /**
+   * Creates a new empty store with segments of segByteSize bytes. If
+   * directory is null segments are direct buffers, otherwise they are mapped
+   * from a temporary file created in directory when the first segment is
+   * allocated.
+   * 
+   * @param segByteSize The byte size of each segment.
+   * @param directory   The backing file directory, or null.
+   */
+  OffHeapSegmentStore(int segByteSize, File directory)
+  {
+    aSegByteSize = segByteSize;
+    aDirectory   = directory;
+  }
+
+  /**
+   * Returns the backing file directory, or null if segments are direct.
+   * 
+   * @return The backing file directory, or null if segments are direct.
+   */
+  File getDirectory()
+  {
+    return aDirectory;
+  }
+
+  /**
+   * Returns true if segments are mapped from a file.
+   * 
+   * @return True if segments are mapped from a file.
+   */
+  boolean isFileBacked()
+  {
+    return aDirectory != null;
+  }
+
+  /**
+   * Returns the number of allocated segments.
+   * 
+   * @return The number of allocated segments.
+   */
+  int size()
+  {
+    return aSegments.size();
+  }
+
+  /**
+   * Returns segment si.
+   * 
+   * @param si The segment index.
+   * @return Segment si.
+   */
+  ByteBuffer get(int si)
+  {
+    return aSegments.get(si);
+  }
+
+  /**
+   * Allocates, appends, and returns a new zero filled segment.
+   * 
+   * @return The new segment.
+   */
+  ByteBuffer allocate()
+  {
+    ByteBuffer b;
+    if (aDirectory == null)
+      b = ByteBuffer.allocateDirect(aSegByteSize);
+    else
+    {
+      try
+      {
+        if (aRAF == null)
+        {
+          aFile = File.createTempFile("ArrayListHuge", ".seg", aDirectory);
+          aFile.deleteOnExit();
+          aRAF = new RandomAccessFile(aFile, "rw");
+        }
+
+        // mapping past the end of the file extends it (sparse on most file
+        // systems, so untouched pages consume no disk)
+
+        b = aRAF.getChannel().map(MapMode.READ_WRITE,
+                                  (long) aSegments.size() * aSegByteSize,
+                                  aSegByteSize);
+      }
+      catch (IOException ex)
+      {
+        throw new UncheckedIOException(String.format(
+            "%nError: Could not map segment %d of file \"%s\" ...%n",
+            aSegments.size(), aFile), ex);
+      }
+    }
+
+    b.order(ByteOrder.nativeOrder());
+    aSegments.add(b);
+    return b;
+  }
+
+  /**
+   * Discards all segments beyond the first n. Discarded file-backed segments
+   * are zeroed first so that a later allocate() (which re-maps the same file
+   * region) returns zero filled memory, as a direct allocation would.
+   * 
+   * @param n The number of segments to retain.
+   */
+  void truncate(int n)
+  {
+    while (aSegments.size() > n)
+    {
+      ByteBuffer b = aSegments.remove(aSegments.size() - 1);
+      if (aDirectory != null) zero(b);
+    }
+  }
+
+  /**
+   * Zero fills the input segment.
+   * 
+   * @param b The segment to be zeroed.
+   */
+  private static void zero(ByteBuffer b)
+  {
+    for (int i = 0; i + 8 <= b.capacity(); i += 8) b.putLong(i, 0L);
+  }
+
+  /**
+   * Copies the contents of this store into a new store with the same segment
+   * size and mode (a file-backed store creates a new file in the same
+   * directory).
+   * 
+   * @return The copy.
+   */
+  OffHeapSegmentStore copy()
+  {
+    OffHeapSegmentStore s = new OffHeapSegmentStore(aSegByteSize, aDirectory);
+    for (int i = 0; i < aSegments.size(); ++i)
+    {
+      ByteBuffer src = aSegments.get(i).duplicate();
+      src.clear();
+      s.allocate().duplicate().put(src);
+    }
+    return s;
+  }
+
+  /**
+   * Discards all segments, closes the backing file, and deletes it. The
+   * store may be reused afterwards (a new file is created on demand).
+   */
+  void close()
+  {
+    aSegments.clear();
+    if (aRAF != null)
+    {
+      try
+      {
+        aRAF.close();
+      }
+      catch (IOException ex)
+      {
+        // nothing to recover ... the file is deleted below or at exit
+      }
+      aRAF = null;
+      aFile.delete();
+      aFile = null;
+    }
+  }
+}
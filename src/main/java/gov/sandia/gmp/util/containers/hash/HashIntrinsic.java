@@ -270,6 +270,26 @@ public abstract class HashIntrinsic implements Serializable
     return result;
   }
 
+  /**
+   * Returns the home slot of an open-addressed (linear probing) table given an
+   * input type hash code. Linear probing is far more sensitive to clustering
+   * than chaining, so the hash code is scrambled with a Fibonacci multiplier
+   * and the high bits folded back down before masking. This spreads both
+   * sequential keys and keys that differ only in their upper bits evenly over
+   * the table.
+   * 
+   * @param hc
+   *          The input type hash code.
+   * @param lm1
+   *          The table length minus 1.
+   * @return The home slot for the input hash code.
+   */
+  protected static int probeIndex(int hc, int lm1)
+  {
+    hc *= 0x9E3779B9;
+    return (hc ^ (hc >>> 16)) & lm1;
+  }
+
   /**
    * Returns the table index given an input type hash code. The function applies
    * a supplemental hash function to a given input type hashCode, which defends
@@ -33,123 +33,164 @@
 package gov.sandia.gmp.util.containers.hash.maps;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import gov.sandia.gmp.util.containers.hash.HashIntrinsic;
 
 /**
- * Space saving intrinsic float --> double map. Saves space by storing entries
- * using a float for the key associated with a double value and a next
- * linked-list pointer to the next entry object. This is a total of 4 bytes for
- * the key, 8 bytes for the next reference (64-bit), and 8 bytes for the double
- * value. Contrast this with the heavy duty Java HashMap interface which stores
- * a Float object to save the key (8 byte address with a 4 byte value), a
- * Double object to store the value (8 byte address with a 8 byte value), a next
- * entry pointer (8 bytes), and an integer to store the hash code (4 bytes).
- * This is a total of 8+4+8+8+8+4 = 40 bytes for the Java HashSet as compared to
- * 20 bytes for this memory efficient version.
- * 
+ * Space saving intrinsic float --> double map. Saves space by storing the keys
+ * and values in two parallel primitive arrays that are addressed with open
+ * addressing (linear probing), along with a boolean occupancy array. There are
+ * no per-entry objects, so each slot costs 4 bytes for the key, 8 bytes for the
+ * double value, and 1 byte for the occupancy flag, or 13 bytes per slot (17
+ * bytes per key for a table filled to the default load factor of 0.75).
+ * Contrast this with the heavy duty Java HashMap interface which stores a Float
+ * object to save the key (8 byte address with a 4 byte value), a Double object
+ * to store the value (8 byte address with a 8 byte value), a next entry pointer
+ * (8 bytes), and an integer to store the hash code (4 bytes). This is a total
+ * of 8+4+8+8+8+4 = 40 bytes for the Java HashMap, each of which is also an
+ * object the garbage collector must trace.
+ *
  * <p>
- * In terms of performance the HashMapFloatDouble is generally an improvement
- * also in that most of the object mechanics have been removed in element
- * testing which should give much faster add/remove/contains tests. An
- * exception to this rule occurs when a table resize is necessary. In the Java
- * HashMap version the Entry.hash is used to identify the index of each entry
- * from the old table into the new extended table. In this implementation the
- * hash code must be recalculated for each entry transfer from old to new. This
- * means the intrinsic resize operation is somewhat slower than the Java HashMap
- * version. Whenever possible the HashMapFloatDouble should be created using
- * the final or close to final size.
- * 
+ * Lookups probe consecutive slots of the arrays starting at the home slot of
+ * the key, which keeps collision resolution within one or two cache lines.
+ * Removal uses backward-shift deletion so that no tombstones accumulate and
+ * probe sequences never lengthen over time. The table is always at least one
+ * slot larger than the threshold so that every probe sequence terminates on an
+ * empty slot. The {@link #clear()} function empties the map in place and keeps
+ * the current capacity, so a map can be reused across many fill/drain cycles
+ * without reallocation. Whenever possible the HashMapFloatDouble should be created
+ * using the final or close to final size, since a resize must rehash every key.
+ *
+ * <p>
+ * The {@link Entry} objects returned by {@link #getEntry(float)} and
+ * {@link Iterator#nextEntry()} are views onto a slot of the table. They read
+ * and write through to the map but are only valid until the next structural
+ * modification (put of a new key, remove, or clear). The iterator reuses a
+ * single cursor entry for every call to nextEntry(), so iteration is allocation
+ * free. Callers that need to retain an entry should copy its key and value.
+ *
  * @author jrhipp
- * 
+ *
  */
 @SuppressWarnings("serial")
 public class HashMapFloatDouble extends HashIntrinsic
 {
   /**
-   * Internal Entry class which holds each float --> double entry in the hash
-   * map. The Entry object also holds a single reference to the next Entry
-   * object in a singly-linked list of collisions that have the same hash code
-   * (occurs when different input floats generate the same hash code). The
-   * Entry object has a constructor and getKey(), getValue(), setValue(),
-   * equals(int keytst), and toString functions.
-   * 
+   * Entry class which exposes a single float --> double pair of the hash map. An
+   * entry is either bound to a slot of a map, in which case getValue() and
+   * setValue() read and write through to that slot, or it is detached and holds
+   * its own key and value (entries returned by remove(float) and entries created
+   * with the public constructor are detached). The Entry object has a
+   * constructor and getKey(), getValue(), setValue(), equals(), and toString
+   * functions.
+   *
    * @author Jim Hipp
-   * 
+   *
    */
   public static class Entry implements Serializable
   {
     /**
-     * The integer key for this particular entry.
+     * The key for a detached entry.
+     */
+    private float                        key;
+
+    /**
+     * The value for a detached entry.
      */
-    private final float key;
+    private double                        value;
 
     /**
-     * A reference to value associated with the key.
+     * The map into which this entry is bound, or null if detached.
      */
-    private double      value;
+    private transient HashMapFloatDouble map;
 
     /**
-     * A reference to the next Entry object in the singly-linked collision list.
+     * The slot of map to which this entry is bound.
      */
-    private Entry       next;
+    private transient int              slot;
 
     /**
-     * Standard constructor.
-     * 
+     * Standard constructor. Creates a detached entry.
+     *
      * @param key
      *          The float key to be stored in the HashMap.
      * @param val
      *          The double value associated with the key.
      * @param n
-     *          The next entry in the collision list which may be null if this
-     *          is the first entry.
+     *          Unused. Retained for compatibility with the former chained
+     *          implementation, where it was the next entry in the collision
+     *          list.
      */
     public Entry(float key, double val, Entry n)
     {
       this.key = key;
       value = val;
-      next = n;
+    }
+
+    /**
+     * Creates an entry bound to the input slot of the input map.
+     *
+     * @param m
+     *          The map into which this entry is bound.
+     * @param s
+     *          The slot of the map.
+     */
+    private Entry(HashMapFloatDouble m, int s)
+    {
+      map = m;
+      slot = s;
     }
 
     /**
      * The key for this entry.
-     * 
+     *
      * @return Key for this entry.
      */
     public final float getKey()
     {
-      return key;
+      return (map == null) ? key : map.keys[slot];
     }
 
     /**
      * The value for this entry.
-     * 
+     *
      * @return Value for this entry.
      */
     public final double getValue()
     {
-      return value;
+      return (map == null) ? value : map.values[slot];
     }
 
     /**
-     * Sets the value of this entry and returns the old value.
-     * 
+     * Sets the value of this entry and returns the old value. If this entry is
+     * bound the new value is written through to the map.
+     *
      * @param newValue
      *          The new value to be set.
      * @return The old value of the entry.
      */
     public final double setValue(double newValue)
     {
-      double oldValue = value;
-      value = newValue;
+      double oldValue;
+      if (map == null)
+      {
+        oldValue = value;
+        value = newValue;
+      }
+      else
+      {
+        oldValue = map.values[slot];
+        map.values[slot] = newValue;
+      }
       return oldValue;
     }
 
     /**
-     * Returns true if the key equals the input object o.
-     * 
+     * Returns true if the key and value of this entry equal those of the input
+     * object o.
+     *
      * @param o
      *          The input entry to be tested for equality.
      * @return True if the input entry and this entry are equal.
@@ -157,35 +198,57 @@ public class HashMapFloatDouble extends HashIntrinsic
     @Override
     public final boolean equals(Object o)
     {
-      if (!(o instanceof HashMapIntegerKey.Entry)) return false;
+      if (!(o instanceof Entry)) return false;
       Entry e = (Entry) o;
-      if ((key == e.key) && (value == e.value))
+      if ((getKey() == e.getKey()) && (getValue() == e.getValue()))
         return true;
       else
         return false;
     }
 
+    /**
+     * Returns the hash code of this entries key.
+     *
+     * @return The hash code of this entries key.
+     */
+    @Override
+    public final int hashCode()
+    {
+      return hashCodeFloat(getKey());
+    }
+
     /**
      * Returns the entry as a string.
-     * 
+     *
      * @return The entry as a string.
      */
     @Override
     public final String toString()
     {
-      return key + " = " + value;
+      return getKey() + " = " + getValue();
     }
   }
 
   /**
-   * The table, resized as necessary. Length MUST Always be a power of two.
+   * The keys, resized as necessary. Length MUST Always be a power of two.
+   */
+  private float[]     keys;
+
+  /**
+   * The values associated with each slot of keys.
+   */
+  private double[]     values;
+
+  /**
+   * True for each slot of keys that holds an entry. Any float is a valid key so
+   * occupancy cannot be encoded in the key array itself.
    */
-  private Entry[] table;
+  private boolean[] used;
 
   /**
-   * Constructs an empty <tt>HashSetLng</tt> with the specified initial capacity
-   * and load factor.
-   * 
+   * Constructs an empty <tt>HashMapFloatDouble</tt> with the specified initial
+   * capacity and load factor.
+   *
    * @param initialCapacity
    *          the initial capacity
    * @param loadFactor
@@ -197,13 +260,13 @@ public class HashMapFloatDouble extends HashIntrinsic
   public HashMapFloatDouble(int initialCapacity, float loadFactor)
   {
     super(initialCapacity, loadFactor);
-    table = createTable(capMinus1 + 1);
+    createTable(capMinus1 + 1);
   }
 
   /**
-   * Constructs an empty <tt>HashSetLng</tt> with the specified initial capacity
-   * and the default load factor (0.75).
-   * 
+   * Constructs an empty <tt>HashMapFloatDouble</tt> with the specified initial
+   * capacity and the default load factor (0.75).
+   *
    * @param initialCapacity
    *          the initial capacity.
    * @throws IllegalArgumentException
@@ -215,8 +278,8 @@ public class HashMapFloatDouble extends HashIntrinsic
   }
 
   /**
-   * Constructs an empty <tt>HashSetLng</tt> with the default initial capacity
-   * (16) and the default load factor (0.75).
+   * Constructs an empty <tt>HashMapFloatDouble</tt> with the default initial
+   * capacity (16) and the default load factor (0.75).
    */
   public HashMapFloatDouble()
   {
@@ -224,26 +287,41 @@ public class HashMapFloatDouble extends HashIntrinsic
   }
 
   /**
-   * Returns true if the input key is contained in the set.
+   * Returns the slot containing the input key or -1 if the key is not in the
+   * map.
+   *
+   * @param key
+   *          The key to find.
+   * @return The slot containing the input key or -1.
    */
-  public final boolean contains(float key)
+  private int find(float key)
   {
-    // get the table index from the key and find it, if it exists, in the
-    // indexes collision list
+    // probe from the home slot until the key or an empty slot is found
 
-    int i = tableIndex(hashCodeFloat(key), capMinus1);
-    for (Entry e = table[i]; e != null; e = e.next)
-      if (e.key == key) return true;
+    int i = probeIndex(hashCodeFloat(key), capMinus1);
+    while (used[i])
+    {
+      if (keys[i] == key) return i;
+      i = (i + 1) & capMinus1;
+    }
 
-    // returns false if not found
+    // returns -1 if not found
 
-    return false;
+    return -1;
+  }
+
+  /**
+   * Returns true if the input key is contained in the set.
+   */
+  public final boolean contains(float key)
+  {
+    return find(key) >= 0;
   }
 
   /**
    * Returns <tt>true</tt> if this map maps one or more keys to the specified
    * value.
-   * 
+   *
    * @param value
    *          value whose presence in this map is to be tested
    * @return <tt>true</tt> if this map maps one or more keys to the specified
@@ -251,11 +329,10 @@ public class HashMapFloatDouble extends HashIntrinsic
    */
   public boolean containsValue(double value)
   {
-    // loop over all map entries and see if value is contained
+    // loop over all occupied slots and see if value is contained
 
-    for (int i = 0; i < table.length; i++)
-      for (Entry e = table[i]; e != null; e = e.next)
-        if (value == e.value) return true;
+    for (int i = 0; i < used.length; i++)
+      if (used[i] && (value == values[i])) return true;
 
     // not found ... return false
 
@@ -264,46 +341,37 @@ public class HashMapFloatDouble extends HashIntrinsic
 
   /**
    * Returns the value to which the specified key is mapped, or {@code
-   * Double.Nan} if this map contains no mapping for the key.
-   * 
+   * Double.MIN_VALUE} if this map contains no mapping for the key.
+   *
    * <p>
    * More formally, if this map contains a mapping from a key {@code k} to a
-   * value {@code v} such that {@code key.equals(k))}, then this method returns
-   * {@code v}; otherwise it returns {@code Double.MIN_VALUE}. (There can be at most
-   * one such mapping.)
+   * value {@code v} such that {@code key == k}, then this method returns
+   * {@code v}; otherwise it returns {@code Double.MIN_VALUE}. (There can be at
+   * most one such mapping.)
    */
   public double get(float key)
   {
-    // get the table index from the key and find it, if it exists, in the
-    // indexes collision list and return the associated value.
+    // find the slot containing key and return the associated value.
 
-    int i = tableIndex(hashCodeFloat(key), capMinus1);
-    for (Entry e = table[i]; e != null; e = e.next)
-      if (key == e.key) return e.value;
+    int i = find(key);
+    if (i >= 0) return values[i];
 
-    // return null if the key is not mapped
+    // return MIN_VALUE if the key is not mapped
 
     return Double.MIN_VALUE;
   }
 
   /**
-   * Returns the value to which the specified key is mapped, or {@code
-   * null} if this map contains no mapping for the key.
-   * 
-   * <p>
-   * More formally, if this map contains a mapping from a key {@code k} to a
-   * value {@code v} such that {@code key.equals(k))}, then this method returns
-   * {@code v}; otherwise it returns {@code null}. (There can be at most
-   * one such mapping.)
+   * Returns an entry bound to the slot containing the specified key, or
+   * {@code null} if this map contains no mapping for the key. The entry is
+   * only valid until the next structural modification of this map.
    */
   public Entry getEntry(float key)
   {
-    // get the table index from the key and find it, if it exists, in the
-    // indexes collision list and return the associated value.
+    // find the slot containing key and return an entry bound to it.
 
-    int i = tableIndex(hashCodeFloat(key), capMinus1);
-    for (Entry e = table[i]; e != null; e = e.next)
-      if (key == e.key) return e;
+    int i = find(key);
+    if (i >= 0) return new Entry(this, i);
 
     // return null if the key is not mapped
 
@@ -313,72 +381,51 @@ public class HashMapFloatDouble extends HashIntrinsic
   /**
    * Associates the specified value with the specified key in this map. If the
    * map previously contained a mapping for the key, the old value is replaced.
-   * 
+   *
    * @param key
    *          key with which the specified value is to be associated
    * @param value
    *          value to be associated with the specified key
    * @return the previous value associated with <tt>key</tt>, or
-   *         <tt>Double.MIN_VALUE</tt> if there was no mapping for <tt>key</tt>. (A
-   *         <tt>Double.MIN_VALUE</tt> return can also indicate that the map
-   *         previously associated <tt>Double.MIN_VALUE</tt> with <tt>key</tt>.)
+   *         <tt>Double.MIN_VALUE</tt> if there was no mapping for <tt>key</tt>.
    */
   public double put(float key, double value)
   {
-    // Get the table index from the input key and see if the key exists in the
-    // table.
+    // probe from the home slot of key until the key or an empty slot is found
 
-    int i = tableIndex(hashCodeFloat(key), capMinus1);
-    for (Entry e = table[i]; e != null; e = e.next)
+    int i = probeIndex(hashCodeFloat(key), capMinus1);
+    while (used[i])
     {
-      if (key == e.key)
+      if (keys[i] == key)
       {
         // key exists ... save old value for return and assign new value
 
-        double oldValue = e.value;
-        e.value = value;
+        double oldValue = values[i];
+        values[i] = value;
         return oldValue;
       }
+      i = (i + 1) & capMinus1;
     }
 
-    // key not found ... create a new entry at table index i assigning the
-    // input key to the input value ... return Double.MIN_VALUE
+    // key not found ... fill the empty slot i with the input key and value and
+    // resize if necessary ... return Double.MIN_VALUE
 
-    addEntry(key, value, i);
+    used[i] = true;
+    keys[i] = key;
+    values[i] = value;
+    if (++size >= threshold) resize(2 * used.length);
     return Double.MIN_VALUE;
   }
 
   /**
-   * Adds a new entry with the specified key to the specified table index. It is
-   * the responsibility of this method to resize the table if appropriate.
-   * 
-   * @param key
-   *          The new key to be added to the HashSet.
-   * @param value
-   *          The value to be associated with the input key.
-   * @param index
-   *          The table index into which the key/value pair will be inserted.
-   */
-  private void addEntry(float key, double value, int index)
-  {
-    // get the current head of the collision list for this table index and
-    // create a new entry that will reside at the head of the list. Resize
-    // the list if necessary.
-
-    Entry e = table[index];
-    table[index] = new Entry(key, value, e);
-    if (size++ >= threshold) resize(2 * table.length);
-  }
-
-  /**
-   * Rehashes the contents of this map into a new array with a larger capacity.
+   * Rehashes the contents of this map into new arrays with a larger capacity.
    * This method is called automatically when the number of keys in this map
    * reaches its threshold.
-   * 
+   *
    * If current capacity is MAXIMUM_CAPACITY, this method does not resize the
-   * map, but sets threshold to Integer.MAX_VALUE. This has the effect of
-   * preventing future calls.
-   * 
+   * map, but sets threshold to one less than the capacity. The map can then
+   * continue to grow until it is full.
+   *
    * @param newCapacity
    *          the new capacity, MUST be a power of two; must be greater than
    *          current capacity unless current capacity is MAXIMUM_CAPACITY (in
@@ -387,230 +434,281 @@ public class HashMapFloatDouble extends HashIntrinsic
   private void resize(int newCapacity)
   {
     // if the current capacity is the maximum allowed then set the threshold to
-    // Integer.MAX_VALUE and return
+    // the last free slot and return
 
-    int oldCapacity = table.length;
+    int oldCapacity = used.length;
     if (oldCapacity == MAXIMUM_CAPACITY)
     {
-      threshold = Integer.MAX_VALUE;
+      if (size >= oldCapacity - 1)
+        throw new IllegalStateException("HashMapFloatDouble is full");
+      threshold = oldCapacity - 1;
       return;
     }
 
-    // create a new table ... transfer the entries to the new table and set the
-    // new table as current. Re-adjust the threshold and capacity values.
+    // save the old arrays, create the new arrays, and re-insert each entry of
+    // the old arrays into the new arrays
 
-    Entry[] newTable = createTable(newCapacity);
-    capMinus1 = newCapacity - 1;
-    transfer(newTable);
-    table = newTable;
-    threshold = (int) (newCapacity * loadFactor);
+    float[] oldKeys = keys;
+    double[] oldValues = values;
+    boolean[] oldUsed = used;
+    createTable(newCapacity);
+    for (int j = 0; j < oldCapacity; j++)
+    {
+      if (oldUsed[j])
+      {
+        int i = probeIndex(hashCodeFloat(oldKeys[j]), capMinus1);
+        while (used[i]) i = (i + 1) & capMinus1;
+        used[i] = true;
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
   }
 
   /**
-   * Transfers all entries from current table to newTable.
-   * 
-   * @param newTable
-   *          The newTable that is twice the size of the old table.
+   * Removes the entry in the input slot and closes the hole by shifting back
+   * any following entries of the same probe cluster whose home slot does not
+   * lie cyclically in (hole, slot]. This keeps every remaining key reachable
+   * from its home slot without tombstones.
+   *
+   * @param slot
+   *          The occupied slot to be emptied.
    */
-  private void transfer(Entry[] newTable)
+  private void removeSlot(int slot)
   {
-    // loop over each entry of the old table and move them to the new table
-
-    for (int j = 0; j < table.length; j++)
+    int hole = slot;
+    int i = (slot + 1) & capMinus1;
+    while (used[i])
     {
-      // get the jth entry of the old table and see if it is null
-
-      Entry e = table[j];
-      if (e != null)
-      {
-        // the entry is not null ... set the old table entry to null for the
-        // garbage collector and loop over each entry in the collision list
-
-        table[j] = null;
-        do
-        {
-          // get the next entry in the list and insert the current entry (e)
-          // into the new table
-
-          Entry next = e.next;
-          int i = tableIndex(hashCodeFloat(e.key), capMinus1);
-          e.next = newTable[i];
-          newTable[i] = e;
+      int home = probeIndex(hashCodeFloat(keys[i]), capMinus1);
 
-          // set the next entry as current and continue with the remaining
-          // entries in the list
+      // move entry i into the hole if its home slot is not in (hole, i]
 
-          e = next;
-        } while (e != null);
+      if (((i - home) & capMinus1) >= ((i - hole) & capMinus1))
+      {
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        hole = i;
       }
+      i = (i + 1) & capMinus1;
     }
+    used[hole] = false;
+    --size;
   }
 
   /**
    * Removes and returns the entry associated with the specified key in the
-   * HashMap. Returns null if the HashMap contains no mapping for this key.
-   * 
+   * HashMap. Returns null if the HashMap contains no mapping for this key. The
+   * returned entry is detached from the map.
+   *
    * @param key
    *          The key to be removed from the HashMap.
    */
   public final Entry remove(float key)
   {
-    // get the table index for the input key and save the head entry into the
-    // local variables prev and e
-
-    int i = tableIndex(hashCodeFloat(key), capMinus1);
-    Entry prev = table[i];
-    Entry e = prev;
-
-    // loop over each entry in the collision list searching for the entry to be
-    // removed
-
-    while (e != null)
-    {
-      Entry next = e.next;
-      if (key == e.key)
-      {
-        // found entry to be removed ... decrement size and set table[i] to next
-        // if e is the first entry in the list or prev.next to next if otherwise
-        // ... return
-
-        size--;
-        if (prev == e)
-          table[i] = next;
-        else
-          prev.next = next;
-        return e;
-      }
+    // find the slot containing key ... return null if not found
 
-      // e is not the entry to be removed ... set prev to e and e to the next
-      // entry and try again
+    int i = find(key);
+    if (i < 0) return null;
 
-      prev = e;
-      e = next;
-    }
-
-    // return the value associated with the entry that was removed.
+    // save the removed pair in a detached entry, empty the slot, and return the
+    // entry
 
+    Entry e = new Entry(key, values[i], null);
+    removeSlot(i);
     return e;
   }
 
   /**
    * Removes all of the mappings from this map. The map will be empty after this
-   * call returns.
+   * call returns. The current capacity is retained.
    */
   @Override
   public void clear()
   {
-    for (int i = 0; i < table.length; i++)
-      table[i] = null;
+    Arrays.fill(used, false);
     size = 0;
   }
 
   /**
-   * Creates a new entry array (table) of size equal to the input capacity.
-   * 
+   * Creates new key, value, and occupancy arrays of size equal to the input
+   * capacity and resets capMinus1 and threshold to match. The threshold is
+   * always kept below the capacity so that at least one slot is empty.
+   *
    * @param capacity
-   *          The size of the entry array.
-   * @return A reference to the new entry array.
+   *          The size of the arrays.
    */
-  private Entry[] createTable(int capacity)
+  private void createTable(int capacity)
   {
-    return new Entry[capacity];
+    keys = new float[capacity];
+    values = new double[capacity];
+    used = new boolean[capacity];
+    capMinus1 = capacity - 1;
+    threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
   }
 
   /**
    * Returns an estimate of the bulk memory size used by this object. The
    * input pointer size (ptrsize) should be 8 for 64-bit and 4 for 32-bit.
-   * 
+   *
    * @param ptrsize The pointer size set to 8 for 64-bit and 4 for 32-bit.
    * @return The bulk memory estimate in bytes.
    */
   public long memoryEstimate(int ptrsize)
   {
-    return (long) ptrsize * (capMinus1 + size + 1) +
-                  size * (Float.SIZE  + Double.SIZE) / 8;
+    return 3L * ptrsize + (long) (capMinus1 + 1) *
+           (Float.SIZE + Double.SIZE + Byte.SIZE) / 8;
   }
 
   /**
-   * A built in iterator class used to iterate over all elements of the set.
-   * 
+   * A built in iterator class used to iterate over all elements of the map.
+   * The iterator walks the slots of the table starting just past an empty
+   * slot. Because backward-shift deletion never moves an entry across an empty
+   * slot, and only moves entries from later slots into earlier ones, removing
+   * the current entry through remove() never causes an entry to be skipped or
+   * returned twice. The entry returned by nextEntry() is a single cursor that
+   * is rebound on each call.
+   *
    * @author Jim Hipp
-   * 
+   *
    */
   public class Iterator
   {
     /**
-     * The next entry in the HashSet to return.
+     * The slot of the last entry returned (or the starting empty slot).
      */
-    Entry next;
+    int   index;
 
     /**
-     * The current index in the hash table.
+     * The number of entries not yet returned.
      */
-    int   index;
+    int   remaining;
+
+    /**
+     * True if the current entry may be removed.
+     */
+    boolean removable;
 
     /**
-     * The current entry.
+     * The reusable cursor entry.
      */
-    Entry current;
+    final Entry cursor = new Entry(HashMapFloatDouble.this, -1);
 
     /**
-     * Default constructor sets the next entry to the first non-null entry in
-     * the HashMap.
+     * Default constructor positions the iterator on an empty slot of the
+     * HashMap.
      */
     Iterator()
     {
+      remaining = size;
       if (size > 0)
       {
-        // advance to first entry
+        // find an empty slot from which to start (one always exists)
 
-        while (index < table.length && (next = table[index++]) == null);
+        while (used[index]) ++index;
       }
     }
 
     /**
-     * Returns true if the next element is not null.
-     * 
-     * @return True if the next element is not null.
+     * Returns true if more entries remain.
+     *
+     * @return True if more entries remain.
      */
     public final boolean hasNext()
     {
-      return next != null;
+      return remaining > 0;
     }
 
     /**
-     * Returns the next entry in the HashMap.
-     * 
-     * @return The next entry in the HashMap.
+     * Advances to the next occupied slot and returns it.
+     *
+     * @return The next occupied slot.
      */
-    public Entry nextEntry()
+    private int nextSlot()
     {
-      // if the next entry is null throw error.
+      // if no entries remain throw error.
 
-      Entry e = next;
-      if (e == null) throw new NoSuchElementException();
+      if (remaining == 0) throw new NoSuchElementException();
 
-      // if the next entry is null find the next non-null entry in the table
+      // find the next occupied slot, decrement the remaining count, and return
+      // the slot
 
-      if ((next = e.next) == null)
-      {
-        while (index < table.length && (next = table[index++]) == null);
-      }
+      do
+        index = (index + 1) & capMinus1;
+      while (!used[index]);
+      --remaining;
+      removable = true;
+      return index;
+    }
 
-      // set the current entry and return the key
+    /**
+     * Returns the next entry in the HashMap. The returned entry is the
+     * iterators cursor which is rebound to the next slot on each call.
+     *
+     * @return The next entry in the HashMap.
+     */
+    public Entry nextEntry()
+    {
+      cursor.slot = nextSlot();
+      return cursor;
+    }
 
-      current = e;
-      return e;
+    /**
+     * Advances to the next entry and returns its key. The associated value can
+     * then be obtained from getValue() without allocating an entry.
+     *
+     * @return The next entries key.
+     */
+    public float nextKey()
+    {
+      return keys[nextSlot()];
     }
 
     /**
      * Sets the next entry and return its associated value.
-     * 
+     *
      * @return The next entries associated value.
      */
     public double next()
     {
-      return nextEntry().value;
+      return values[nextSlot()];
+    }
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @return The key of the current entry.
+     */
+    public float getKey()
+    {
+      if (!removable) throw new IllegalStateException();
+      return keys[index];
+    }
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @return The value of the current entry.
+     */
+    public double getValue()
+    {
+      if (!removable) throw new IllegalStateException();
+      return values[index];
+    }
+
+    /**
+     * Sets the value of the current entry and returns the old value.
+     *
+     * @param newValue
+     *          The new value to be set.
+     * @return The old value of the current entry.
+     */
+    public double setValue(double newValue)
+    {
+      if (!removable) throw new IllegalStateException();
+      double oldValue = values[index];
+      values[index] = newValue;
+      return oldValue;
     }
 
     /**
@@ -618,16 +716,20 @@ public class HashMapFloatDouble extends HashIntrinsic
      */
     public void remove()
     {
-      if (current == null) throw new IllegalStateException();
-      float k = current.key;
-      current = null;
-      HashMapFloatDouble.this.remove(k);
+      if (!removable) throw new IllegalStateException();
+      removable = false;
+
+      // empty the current slot and back up one slot so that any entry shifted
+      // into it is visited next
+
+      removeSlot(index);
+      index = (index - 1) & capMinus1;
     }
   }
 
   /**
    * Returns an instance of the iterator class.
-   * 
+   *
    * @return An instance of the iterator class.
    */
   public Iterator iterator()
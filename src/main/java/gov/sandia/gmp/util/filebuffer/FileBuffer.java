@@ -41,12 +41,14 @@ import java.io.Serializable;
  * (FileInputBuffer and FileOutputBuffer) are used when large amounts of binary
  * data must be written and read efficiently to and from disk.
  * 
- * The derived classes maintain a byte[] array that is used to read and write
- * data into and out of using a standard DataInputStream and DataOutputStream
- * Java object. In input mode the buffer is filled directly from disk using a
- * single read where the byte count is fixed to some number less than or equal
- * to all file bytes. In output mode the buffer is written directly to disk and
- * then refilled to be written again if necessary.
+ * The derived classes maintain a direct ByteBuffer that is used to read and
+ * write data into and out of through a FileChannel. In input mode the buffer
+ * is filled directly from disk using a single read where the byte count is
+ * fixed to some number less than or equal to all file bytes (or it is a slice
+ * of the memory mapped file). In output mode the buffer is written directly to
+ * disk and then refilled to be written again if necessary. The on-disk layout
+ * (an int byte count followed by that many big-endian bytes per buffer) is
+ * that of a standard DataOutputStream.
  *
  * See the derived concrete classes for an interface description
  *     
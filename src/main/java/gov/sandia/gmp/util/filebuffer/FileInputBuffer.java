@@ -33,23 +33,32 @@
 package gov.sandia.gmp.util.filebuffer;
 
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Input file buffer object allows for easy buffered file input when large
  * amounts of binary data must be read efficiently from disk.
  * 
- * This class maintains a byte[] array that is used to contain data read
- * directly from a file based DataInputStream using byte[] array input.
- * A new buffer is read from disk every time the current internal buffer
- * has been completely parsed by high level read functions. This action
- * is automatic and does not require any user intervention. Buffering
- * the input data avoids many small reads from disk and speeds up overall
- * operation for large files.
+ * This class maintains a direct ByteBuffer that is used to contain data read
+ * directly from a FileChannel. A new buffer is read from disk every time the
+ * current internal buffer has been completely parsed by high level read
+ * functions. This action is automatic and does not require any user
+ * intervention. Buffering the input data avoids many small reads from disk
+ * and speeds up overall operation for large files. Array reads are
+ * transferred out of the buffer in bulk through typed views of the buffer
+ * (e.g. asDoubleBuffer()) rather than one element at a time.
+ * 
+ * If the object is constructed in mapped mode the file is memory mapped
+ * instead (in windows of at most MAP_WINDOW_SIZE bytes) and each buffer is a
+ * slice of the mapping, which avoids copying the file data altogether.
+ * Either mode reads files written by FileOutputBuffer, which stores each
+ * buffer as an int byte count followed by that many bytes of big-endian data.
  * 
  * This function extends the standard interface of the Java DataInput object
  * to include array reads. The following read functions are defined
@@ -89,26 +98,44 @@ import java.io.IOException;
 public class FileInputBuffer extends FileBuffer
 {
   /**
-   * Array of bytes that backs the ByteArrayInputStream aBAIS.
+   * The largest file window mapped at one time in mapped mode.
+   */
+  public static final long MAP_WINDOW_SIZE = 1L << 30;
+
+  /**
+   * The current internal buffer from which all data is read. In channel mode
+   * this is a direct buffer that is allocated when the first buffer is read
+   * (and grown if a larger buffer is encountered). In mapped mode this is a
+   * slice of aMap.
+   */
+  private transient ByteBuffer aBuf  = null;
+
+  /**
+   * Small direct buffer used to read the buffer byte count preceding each
+   * buffer in channel mode.
    */
-  private byte[] aBytes = new byte [aBufSize];
+  private transient ByteBuffer aCount = null;
 
   /**
-   * ByteArrayInputStream that handles low-level input processing.
+   * Disk based FileChannel that reads chucks of data at a time from the disk
+   * into the internal buffer.
    */
-  private ByteArrayInputStream aBAIS = new ByteArrayInputStream(aBytes);
+  transient FileChannel aChannel     = null;
 
   /**
-   * DataInputStream that provides a high level interface for writing into
-   * the low level ByteArrayInputStream (aBAIS).
+   * The currently mapped file window in mapped mode, null otherwise.
    */
-  private DataInputStream aBufDIS    = new DataInputStream(aBAIS);
+  private transient MappedByteBuffer aMap = null;
 
   /**
-   * Disk based DataInputStream that reads chucks of data (byte arrays) at a
-   * time from the disk into the internal buffer.
+   * The file position of the first byte of aMap.
    */
-  DataInputStream aDIS               = null;
+  private long    aMapPos            = 0;
+
+  /**
+   * The file size in mapped mode.
+   */
+  private long    aFileSize          = 0;
 
   /**
    * The current internal buffer read count.
@@ -129,14 +156,54 @@ public class FileInputBuffer extends FileBuffer
   public FileInputBuffer(String filenm) throws FileNotFoundException
   {
     aFileName = filenm;
-    aDIS      = new DataInputStream(new FileInputStream(filenm));
+    aChannel  = new FileInputStream(filenm).getChannel();
+  }
+
+  /**
+   * Constructor that optionally memory maps the file. Mapped mode avoids
+   * copying the file data into an internal buffer and is best suited to large
+   * files that are read once.
+   * 
+   * @param filenm The file name from which data will be read.
+   * @param mapped If true the file is memory mapped.
+   * @throws IOException
+   */
+  public FileInputBuffer(String filenm, boolean mapped) throws IOException
+  {
+    this(filenm);
+    if (mapped)
+    {
+      try
+      {
+        aFileSize = aChannel.size();
+        mapWindow(0, 0);
+      }
+      catch (IOException ex)
+      {
+        aChannel.close();
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Returns true if this input buffer reads from a memory mapped file.
+   * 
+   * @return True if this input buffer reads from a memory mapped file.
+   */
+  public boolean isMapped()
+  {
+    return (aMap != null);
   }
 
   /**
    * Changes the size of the input buffer used to hold data read from disk.
    * This size should only be changed before reading begins. If an internal
    * buffer is read only part way before calling this function all remaining
-   * data will be lost and program operation may be compromised.
+   * data will be lost and program operation may be compromised. Note that
+   * the internal buffer is always grown, if necessary, to hold the largest
+   * buffer written to the file so this setting only defines its initial
+   * size.
    * 
    * @param sze The size of the new internal buffer.
    */
@@ -144,9 +211,7 @@ public class FileInputBuffer extends FileBuffer
   public void setByteBufferSize(int sze)
   {
     aBufSize = sze;
-    aBytes   = new byte [aBufSize];
-    aBAIS    = new ByteArrayInputStream(aBytes);
-    aBufDIS  = new DataInputStream(aBAIS);
+    if (aMap == null) aBuf = null;
   }
 
   /**
@@ -160,7 +225,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next byte is available and read it
 
     checkReadNextType(FileBuffer.BYTE_SIZE);
-    return aBufDIS.readByte();
+    return aBuf.get();
   }
 
   /**
@@ -181,7 +246,7 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readByte();
+      aBuf.get(a, aIStrt, aIEnd - aIStrt);
     }
 
     // return result
@@ -200,7 +265,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next boolean is available and read it
 
     checkReadNextType(FileBuffer.BOOLEAN_SIZE);
-    return aBufDIS.readBoolean();
+    return (aBuf.get() != 0);
   }
 
   /**
@@ -221,7 +286,7 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readBoolean();
+      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = (aBuf.get() != 0);
     }
 
     // return result
@@ -240,7 +305,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next short is available and read it
 
     checkReadNextType(FileBuffer.SHORT_SIZE);
-    return aBufDIS.readShort();
+    return aBuf.getShort();
   }
 
   /**
@@ -261,7 +326,8 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readShort();
+      aBuf.asShortBuffer().get(a, aIStrt, aIEnd - aIStrt);
+      advance();
     }
 
     // return result
@@ -280,7 +346,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next int is available and read it
 
     checkReadNextType(FileBuffer.INT_SIZE);
-    return aBufDIS.readInt();
+    return aBuf.getInt();
   }
 
   /**
@@ -301,7 +367,8 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readInt();
+      aBuf.asIntBuffer().get(a, aIStrt, aIEnd - aIStrt);
+      advance();
     }
 
     // return result
@@ -320,7 +387,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next long is available and read it
 
     checkReadNextType(FileBuffer.LONG_SIZE);
-    return aBufDIS.readLong();
+    return aBuf.getLong();
   }
 
   /**
@@ -341,7 +408,8 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readLong();
+      aBuf.asLongBuffer().get(a, aIStrt, aIEnd - aIStrt);
+      advance();
     }
 
     // return result
@@ -360,7 +428,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next float is available and read it
 
     checkReadNextType(FileBuffer.FLOAT_SIZE);
-    return aBufDIS.readFloat();
+    return aBuf.getFloat();
   }
 
   /**
@@ -381,7 +449,8 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readFloat();
+      aBuf.asFloatBuffer().get(a, aIStrt, aIEnd - aIStrt);
+      advance();
     }
 
     // return result
@@ -400,7 +469,7 @@ public class FileInputBuffer extends FileBuffer
     // make sure the next double is available and read it
 
     checkReadNextType(FileBuffer.DOUBLE_SIZE);
-    return aBufDIS.readDouble();
+    return aBuf.getDouble();
   }
 
   /**
@@ -421,7 +490,8 @@ public class FileInputBuffer extends FileBuffer
 
     while (readNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) a[i] = aBufDIS.readDouble();
+      aBuf.asDoubleBuffer().get(a, aIStrt, aIEnd - aIStrt);
+      advance();
     }
 
     // return result
@@ -522,18 +592,93 @@ public class FileInputBuffer extends FileBuffer
    */
   private void readBufferX() throws IOException
   {
-    // read in the buffer size and reset the byte buffer stream
+    if (aMap != null)
+    {
+      // mapped mode ... read in the buffer size and slice the buffer from
+      // the mapped window (remap if the buffer extends past the window)
+
+      if (aMap.remaining() < FileBuffer.INT_SIZE)
+        mapWindow(aMapPos + aMap.position(), FileBuffer.INT_SIZE);
+      aBufCount = aMap.getInt();
+      if (aMap.remaining() < aBufCount)
+        mapWindow(aMapPos + aMap.position(), aBufCount);
+
+      int pos = aMap.position();
+      aBuf = aMap.duplicate();
+      aBuf.limit(pos + aBufCount);
+      aBuf = aBuf.slice();
+      aMap.position(pos + aBufCount);
+    }
+    else
+    {
+      // read in the buffer size and make sure the internal buffer can hold it
 
-    aBufCount = aDIS.readInt();
-    aBAIS.reset();
+      if (aCount == null) aCount = ByteBuffer.allocateDirect(FileBuffer.INT_SIZE);
+      aCount.clear();
+      readFully(aCount);
+      aBufCount = aCount.getInt(0);
+      if ((aBuf == null) || (aBuf.capacity() < aBufCount))
+        aBuf = ByteBuffer.allocateDirect(Math.max(aBufCount, aBufSize));
+
+      // read in all bytes into the internal buffer
+
+      aBuf.clear();
+      aBuf.limit(aBufCount);
+      readFully(aBuf);
+      aBuf.flip();
+    }
 
-    // read in all bytes into the byte buffer backing array (abytes) and
     // reset the read count to 0
 
-    aDIS.read(aBytes, 0, aBufCount);
     aReadCount = 0;
   }
 
+  /**
+   * Reads from the channel until the input buffer is full.
+   * 
+   * @param b The buffer to be filled.
+   * @throws IOException
+   */
+  private void readFully(ByteBuffer b) throws IOException
+  {
+    while (b.hasRemaining())
+    {
+      if (aChannel.read(b) < 0)
+        throw new EOFException(String.format("%nError: Unexpected end of file " +
+                                             "reading \"%s\" ...%n", aFileName));
+    }
+  }
+
+  /**
+   * Maps the file window beginning at file position pos. The window is
+   * MAP_WINDOW_SIZE bytes long, or larger if minSize exceeds it, but never
+   * extends beyond the end of the file.
+   * 
+   * @param pos The file position of the start of the window.
+   * @param minSize The number of bytes that must be available in the window.
+   * @throws IOException
+   */
+  private void mapWindow(long pos, long minSize) throws IOException
+  {
+    if (pos + minSize > aFileSize)
+      throw new EOFException(String.format("%nError: Unexpected end of file " +
+                                           "reading \"%s\" ...%n", aFileName));
+
+    long sze = Math.min(aFileSize - pos, Math.max(minSize, MAP_WINDOW_SIZE));
+    aMap = aChannel.map(FileChannel.MapMode.READ_ONLY, pos, sze);
+    aMapPos = pos;
+  }
+
+  /**
+   * Advances the buffer position past the aIStrt to aIEnd array entries just
+   * transferred out of the buffer through a typed view (views do not move
+   * the position of the buffer from which they were created).
+   */
+  private void advance()
+  {
+    aBuf.position(aBuf.position() + (aIEnd - aIStrt) * aTypSize);
+  }
+
   /**
    * Checks the read buffer to see if another buffer load is required.
    * 
@@ -554,6 +699,8 @@ public class FileInputBuffer extends FileBuffer
   @Override
   public void close() throws IOException
   {
-    aDIS.close();
+    aChannel.close();
+    aBuf = null;
+    aMap = null;
   }
 }
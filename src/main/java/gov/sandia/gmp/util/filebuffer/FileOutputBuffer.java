@@ -33,11 +33,11 @@
 package gov.sandia.gmp.util.filebuffer;
 
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
 
@@ -46,14 +46,18 @@ import java.io.IOException;
  * This object is used when large amounts of binary data must be written
  * efficiently to disk.
  * 
- * This class maintains a ByteArrayOutputStream that is used to contain data
- * from a standard DataOutputStream Java object. These two objects comprise the
- * in-core temporary storage for all data written into the FileOutputBuffer.
- * The class also maintains a out-of-core disk-based DataOutputStream opened
- * for a user defined file name into which all data in the ByteArrayOutputStream
- * is written after the byte array becomes full. Every time the internal buffer
- * is filled it is automatically written to disk. This avoids many small writes
- * to disk and speeds up overall operation for large files.
+ * This class maintains a direct ByteBuffer that is used as the in-core
+ * temporary storage for all data written into the FileOutputBuffer. The class
+ * also maintains a FileChannel opened for a user defined file name into which
+ * the ByteBuffer is written after it becomes full. Every time the internal
+ * buffer is filled it is automatically written to disk. This avoids many small
+ * writes to disk and speeds up overall operation for large files. Array writes
+ * are transferred into the buffer in bulk through typed views of the buffer
+ * (e.g. asDoubleBuffer()) rather than one element at a time.
+ * 
+ * Each buffer is written to disk as an int byte count followed by that many
+ * bytes of big-endian data, which is the same layout produced by a standard
+ * DataOutputStream. Elements are never split across two buffers.
  * 
  * This function extends the standard interface of the Java DataOutput object
  * to include array writes. The following write functions are defined
@@ -96,22 +100,19 @@ import java.io.IOException;
 public class FileOutputBuffer extends FileBuffer
 {
   /**
-   * The in-core byte array of size aBuffSize used to contain all written
-   * information before it is written in its entirety to the disk based
-   * stream.
-   */
-  private ByteArrayOutputStream aBAOS = new ByteArrayOutputStream(aBufSize);
-
-  /**
-   * The in-core file stream through which all information is written in a
-   * standard formatted fashion into the in-core byte buffer.
+   * The in-core direct byte buffer used to contain all written information
+   * before it is written in its entirety to the disk based channel. The first
+   * INT_SIZE bytes are reserved for the buffer byte count which is filled in
+   * just before the buffer is written so that the count and the data are
+   * written to disk with a single channel write. The buffer capacity is
+   * aBufSize + INT_SIZE.
    */
-  private DataOutputStream aBufDOS    = new DataOutputStream(aBAOS);
+  private transient ByteBuffer aBuf   = allocate(aBufSize);
 
   /**
-   * The output disk-based file stream assigned at construction.
+   * The output disk-based file channel assigned at construction.
    */
-  DataOutputStream aDOS               = null;
+  transient FileChannel aChannel      = null;
 
   /**
    * Standard constructor. Creates an internal in-core data output stream and an
@@ -125,7 +126,7 @@ public class FileOutputBuffer extends FileBuffer
   public FileOutputBuffer(String filenm) throws FileNotFoundException
   {
     aFileName = filenm;
-    aDOS = new DataOutputStream(new FileOutputStream(filenm));
+    aChannel  = new FileOutputStream(filenm).getChannel();
   }
 
   /**
@@ -141,8 +142,7 @@ public class FileOutputBuffer extends FileBuffer
   public void setByteBufferSize(int sze)
   {
     aBufSize = sze;
-    aBAOS    = new ByteArrayOutputStream(aBufSize);
-    aBufDOS  = new DataOutputStream(aBAOS);
+    aBuf     = allocate(aBufSize);
   }
 
   /**
@@ -157,7 +157,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the byte to the buffer
 
     checkWriteNextType(FileBuffer.BYTE_SIZE);
-    aBufDOS.writeByte(b);
+    aBuf.put(b);
   }
 
   /**
@@ -173,7 +173,7 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(b.length, FileBuffer.BYTE_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeByte(b[i]);
+      aBuf.put(b, aIStrt, aIEnd - aIStrt);
     }
   }
 
@@ -192,7 +192,7 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.BYTE_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeByte(b[i+offst]);
+      aBuf.put(b, aIStrt + offst, aIEnd - aIStrt);
     }
   }
 
@@ -208,7 +208,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the boolean to the buffer
 
     checkWriteNextType(FileBuffer.BOOLEAN_SIZE);
-    aBufDOS.writeBoolean(b);
+    aBuf.put((byte) (b ? 1 : 0));
   }
 
   /**
@@ -224,7 +224,7 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(b.length, FileBuffer.BOOLEAN_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeBoolean(b[i]);
+      for (int i = aIStrt; i < aIEnd ; ++i) aBuf.put((byte) (b[i] ? 1 : 0));
     }
   }
 
@@ -243,7 +243,7 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.BOOLEAN_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeBoolean(b[i+offst]);
+      for (int i = aIStrt; i < aIEnd ; ++i) aBuf.put((byte) (b[i+offst] ? 1 : 0));
     }
   }
 
@@ -259,7 +259,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the short to the buffer
 
     checkWriteNextType(FileBuffer.SHORT_SIZE);
-    aBufDOS.writeInt(s);
+    aBuf.putShort(s);
   }
 
   /**
@@ -275,7 +275,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(s.length, FileBuffer.SHORT_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeShort(s[i]);
+      aBuf.asShortBuffer().put(s, aIStrt, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -294,7 +295,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.SHORT_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeShort(s[i+offst]);
+      aBuf.asShortBuffer().put(s, aIStrt + offst, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -310,7 +312,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the int to the buffer
 
     checkWriteNextType(FileBuffer.INT_SIZE);
-    aBufDOS.writeInt(i);
+    aBuf.putInt(i);
   }
 
   /**
@@ -326,7 +328,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(i.length, FileBuffer.INT_SIZE);
     while (writeNext())
     {
-      for (int j = aIStrt; j < aIEnd ; ++j) aBufDOS.writeInt(i[j]);
+      aBuf.asIntBuffer().put(i, aIStrt, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -345,7 +348,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.INT_SIZE);
     while (writeNext())
     {
-      for (int j = aIStrt; j < aIEnd ; ++j) aBufDOS.writeInt(i[j+offst]);
+      aBuf.asIntBuffer().put(i, aIStrt + offst, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -361,7 +365,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the long to the buffer
 
     checkWriteNextType(FileBuffer.LONG_SIZE);
-    aBufDOS.writeLong(l);
+    aBuf.putLong(l);
   }
 
   /**
@@ -377,7 +381,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(l.length, FileBuffer.LONG_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeLong(l[i]);
+      aBuf.asLongBuffer().put(l, aIStrt, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -396,7 +401,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.LONG_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeLong(l[i+offst]);
+      aBuf.asLongBuffer().put(l, aIStrt + offst, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -412,7 +418,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the float to the buffer
 
     checkWriteNextType(FileBuffer.FLOAT_SIZE);
-    aBufDOS.writeFloat(f);
+    aBuf.putFloat(f);
   }
 
   /**
@@ -428,7 +434,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(f.length, FileBuffer.FLOAT_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeFloat(f[i]);
+      aBuf.asFloatBuffer().put(f, aIStrt, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -447,7 +454,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.FLOAT_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeFloat(f[i+offst]);
+      aBuf.asFloatBuffer().put(f, aIStrt + offst, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -463,7 +471,7 @@ public class FileOutputBuffer extends FileBuffer
     // write the double to the buffer
 
     checkWriteNextType(FileBuffer.DOUBLE_SIZE);
-    aBufDOS.writeDouble(d);
+    aBuf.putDouble(d);
   }
 
   /**
@@ -479,7 +487,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(d.length, FileBuffer.DOUBLE_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeDouble(d[i]);
+      aBuf.asDoubleBuffer().put(d, aIStrt, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -498,7 +507,8 @@ public class FileOutputBuffer extends FileBuffer
     setBufferSize(len - offst, FileBuffer.DOUBLE_SIZE);
     while (writeNext())
     {
-      for (int i = aIStrt; i < aIEnd ; ++i) aBufDOS.writeDouble(d[i+offst]);
+      aBuf.asDoubleBuffer().put(d, aIStrt + offst, aIEnd - aIStrt);
+      advance();
     }
   }
 
@@ -543,7 +553,7 @@ public class FileOutputBuffer extends FileBuffer
     // write array size and array to disk
 
     writeInt(len - offst);
-    for (int i = 0; i < s.length; ++i) writeString(s[i+offst]);
+    for (int i = 0; i < len - offst; ++i) writeString(s[i+offst]);
   }
 
   /**
@@ -579,7 +589,7 @@ public class FileOutputBuffer extends FileBuffer
     checkWriteNextType(aTypSize);
 
     aIStrt = aIEnd;
-    aIEnd += (aBufSize - aBAOS.size()) / aTypSize;
+    aIEnd += (aBufSize - dataSize()) / aTypSize;
     if (aIEnd > aArrayCount) aIEnd = aArrayCount;
 
     return true;
@@ -593,15 +603,17 @@ public class FileOutputBuffer extends FileBuffer
    */
   private void writeBufferX() throws IOException
   {
-    // write the buffer size and the buffer to disk
-    
-    aDOS.writeInt(aBAOS.size());
-    aBAOS.writeTo(aDOS);
+    // set the buffer size in the reserved leading int and write the size and
+    // the buffer to disk
+
+    aBuf.putInt(0, dataSize());
+    aBuf.flip();
+    while (aBuf.hasRemaining()) aChannel.write(aBuf);
 
-    // flush the buffer and reset the internal buffer\
+    // reset the internal buffer to receive data following the reserved size
 
-    aDOS.flush();
-    aBAOS.reset();
+    aBuf.clear();
+    aBuf.position(FileBuffer.INT_SIZE);
   }
 
   /**
@@ -611,7 +623,42 @@ public class FileOutputBuffer extends FileBuffer
    */
   private void checkWriteNextType(int typesze) throws IOException
   {
-    if (aBAOS.size() + typesze > aBufSize) writeBufferX();    
+    if (dataSize() + typesze > aBufSize) writeBufferX();    
+  }
+
+  /**
+   * Advances the buffer position past the aIStrt to aIEnd array entries just
+   * transferred into the buffer through a typed view (views do not move the
+   * position of the buffer from which they were created).
+   */
+  private void advance()
+  {
+    aBuf.position(aBuf.position() + (aIEnd - aIStrt) * aTypSize);
+  }
+
+  /**
+   * Returns the number of data bytes currently held in the buffer.
+   * 
+   * @return The number of data bytes currently held in the buffer.
+   */
+  private int dataSize()
+  {
+    return aBuf.position() - FileBuffer.INT_SIZE;
+  }
+
+  /**
+   * Allocates a new direct buffer capable of holding sze data bytes following
+   * the reserved leading buffer size int. The position is set to the first
+   * data byte.
+   * 
+   * @param sze The number of data bytes the buffer can hold.
+   * @return The new buffer.
+   */
+  private static ByteBuffer allocate(int sze)
+  {
+    ByteBuffer b = ByteBuffer.allocateDirect(sze + FileBuffer.INT_SIZE);
+    b.position(FileBuffer.INT_SIZE);
+    return b;
   }
 
   /**
@@ -621,7 +668,7 @@ public class FileOutputBuffer extends FileBuffer
    */
   public void flush() throws IOException
   {
-    if (aBAOS.size() > 0) writeBufferX();
+    if (dataSize() > 0) writeBufferX();
   }
 
   /**
@@ -633,6 +680,6 @@ public class FileOutputBuffer extends FileBuffer
   public void close() throws IOException
   {
     flush();
-    aDOS.close();
+    aChannel.close();
   }
 }
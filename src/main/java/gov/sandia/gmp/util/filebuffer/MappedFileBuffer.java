@@ -0,0 +1,274 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.filebuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A fixed size binary file mapped into memory through a FileChannel. The file
+ * contents live in the operating system page cache, not on the Java heap, so
+ * arrays that are much larger than the heap can be addressed directly. Any
+ * number of processes can map the same file read-only and share the same
+ * physical pages.
+ * 
+ * The file is mapped in segments of SEGMENT_SIZE bytes (a single
+ * MappedByteBuffer is limited to 2 GB) and is addressed with long element
+ * indices for each of the primitive types int, long, and double:
+ * 
+ *    getInt(i)    / putInt(i, v)      byte offset = 4 * i
+ *    getLong(i)   / putLong(i, v)     byte offset = 8 * i
+ *    getDouble(i) / putDouble(i, v)   byte offset = 8 * i
+ * 
+ * Since the segment size is a multiple of 8 no element ever spans two
+ * segments. Data is stored big-endian (the same byte order as the
+ * DataOutputStream used by FileOutputBuffer) so files are portable between
+ * platforms.
+ * 
+ * A mapping remains valid after the FileChannel that created it is closed, so
+ * no file handle is held open by this object. The mapping is released when
+ * this object is garbage collected.
+ */
+public class MappedFileBuffer
+{
+  /**
+   * The base 2 log of the segment byte size.
+   */
+  private static final int  SEGMENT_SHIFT = 30;
+
+  /**
+   * The byte size of each mapped segment (1 GB).
+   */
+  public  static final long SEGMENT_SIZE  = 1L << SEGMENT_SHIFT;
+
+  /**
+   * Mask used to extract the byte offset within a segment.
+   */
+  private static final long SEGMENT_MASK  = SEGMENT_SIZE - 1;
+
+  /**
+   * The name of the mapped file.
+   */
+  private String             aFileName = "";
+
+  /**
+   * The total byte size of the mapped file.
+   */
+  private long               aByteSize = 0;
+
+  /**
+   * True if the file was mapped read-write.
+   */
+  private boolean            aWritable = false;
+
+  /**
+   * The mapped segments of the file.
+   */
+  private MappedByteBuffer[] aSegments = null;
+
+  /**
+   * Creates (or truncates) the file filenm with a size of byteSize bytes and
+   * maps it read-write. The new file content is zero.
+   * 
+   * @param filenm   The name of the file to be created.
+   * @param byteSize The size of the file in bytes.
+   * @throws IOException
+   */
+  public MappedFileBuffer(String filenm, long byteSize) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(filenm, "rw"))
+    {
+      raf.setLength(0);
+      raf.setLength(byteSize);
+      map(filenm, raf.getChannel(), byteSize, true);
+    }
+  }
+
+  /**
+   * Maps the existing file filenm in its entirety. If writable is false the
+   * file is mapped read-only and may be shared with other processes. If
+   * writable is true changes are written through to the file.
+   * 
+   * @param filenm   The name of the file to be mapped.
+   * @param writable True if the file is mapped read-write.
+   * @throws IOException
+   */
+  public MappedFileBuffer(String filenm, boolean writable) throws IOException
+  {
+    if (!(new File(filenm)).exists())
+      throw new IOException(String.format("%nError: File \"%s\" does not exist ...%n",
+                                          filenm));
+
+    try (RandomAccessFile raf = new RandomAccessFile(filenm, writable ? "rw" : "r"))
+    {
+      map(filenm, raf.getChannel(), raf.length(), writable);
+    }
+  }
+
+  /**
+   * Maps byteSize bytes of the input channel in SEGMENT_SIZE pieces.
+   */
+  private void map(String filenm, FileChannel fc, long byteSize,
+                   boolean writable) throws IOException
+  {
+    MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+    int nseg = (int) ((byteSize + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+
+    aSegments = new MappedByteBuffer [nseg];
+    for (int i = 0; i < nseg; ++i)
+    {
+      long pos = (long) i << SEGMENT_SHIFT;
+      aSegments[i] = fc.map(mode, pos, Math.min(SEGMENT_SIZE, byteSize - pos));
+    }
+
+    aFileName = filenm;
+    aByteSize = byteSize;
+    aWritable = writable;
+  }
+
+  /**
+   * Returns the name of the mapped file.
+   * 
+   * @return The name of the mapped file.
+   */
+  public String getFileName()
+  {
+    return aFileName;
+  }
+
+  /**
+   * Returns the size of the mapped file in bytes.
+   * 
+   * @return The size of the mapped file in bytes.
+   */
+  public long size()
+  {
+    return aByteSize;
+  }
+
+  /**
+   * Returns true if the file was mapped read-write.
+   * 
+   * @return True if the file was mapped read-write.
+   */
+  public boolean isWritable()
+  {
+    return aWritable;
+  }
+
+  /**
+   * Returns the int stored at int index i.
+   * 
+   * @param i The int index.
+   * @return The int stored at int index i.
+   */
+  public int getInt(long i)
+  {
+    long b = i << 2;
+    return aSegments[(int) (b >>> SEGMENT_SHIFT)].getInt((int) (b & SEGMENT_MASK));
+  }
+
+  /**
+   * Stores v at int index i.
+   * 
+   * @param i The int index.
+   * @param v The value to be stored.
+   */
+  public void putInt(long i, int v)
+  {
+    long b = i << 2;
+    aSegments[(int) (b >>> SEGMENT_SHIFT)].putInt((int) (b & SEGMENT_MASK), v);
+  }
+
+  /**
+   * Returns the long stored at long index i.
+   * 
+   * @param i The long index.
+   * @return The long stored at long index i.
+   */
+  public long getLong(long i)
+  {
+    long b = i << 3;
+    return aSegments[(int) (b >>> SEGMENT_SHIFT)].getLong((int) (b & SEGMENT_MASK));
+  }
+
+  /**
+   * Stores v at long index i.
+   * 
+   * @param i The long index.
+   * @param v The value to be stored.
+   */
+  public void putLong(long i, long v)
+  {
+    long b = i << 3;
+    aSegments[(int) (b >>> SEGMENT_SHIFT)].putLong((int) (b & SEGMENT_MASK), v);
+  }
+
+  /**
+   * Returns the double stored at double index i.
+   * 
+   * @param i The double index.
+   * @return The double stored at double index i.
+   */
+  public double getDouble(long i)
+  {
+    long b = i << 3;
+    return aSegments[(int) (b >>> SEGMENT_SHIFT)].getDouble((int) (b & SEGMENT_MASK));
+  }
+
+  /**
+   * Stores v at double index i.
+   * 
+   * @param i The double index.
+   * @param v The value to be stored.
+   */
+  public void putDouble(long i, double v)
+  {
+    long b = i << 3;
+    aSegments[(int) (b >>> SEGMENT_SHIFT)].putDouble((int) (b & SEGMENT_MASK), v);
+  }
+
+  /**
+   * Forces any changes made to a read-write mapping out to the storage
+   * device. Does nothing for a read-only mapping.
+   */
+  public void force()
+  {
+    if (aWritable)
+      for (int i = 0; i < aSegments.length; ++i) aSegments[i].force();
+  }
+}
@@ -0,0 +1,884 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.gctiming;
+
+import static gov.sandia.gmp.util.globals.Globals.NL;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
+import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
+import gov.sandia.gmp.util.globals.Globals;
+
+/**
+ * Garbage collection, heap and allocation telemetry accumulated around tagged
+ * operations (e.g. "loadModel" or "getWeights"). Where GCTiming reports the
+ * process wide collection counts and times of each collector when update()
+ * is called, this object records, for every completed operation with a given
+ * tag,
+ * 
+ * <ul>
+ *   <li> the elapsed time of the operation,
+ *   <li> the bytes allocated by the thread that performed the operation
+ *        (if the JVM supports per thread allocation counters),
+ *   <li> the number of collections and the collection time (msec) that
+ *        occurred while the operation ran,
+ *   <li> the peak heap in use while the operation ran,
+ * </ul>
+ * 
+ * and summarizes them per tag (count, total, mean and maximum). The values are
+ * read from the standard platform management beans. Note that collections
+ * are process wide, so the collections attributed to an operation include
+ * those triggered by other threads running at the same time, while the
+ * allocated bytes include only the thread that called begin(...) and end().
+ * Work that the operation hands to other threads (e.g. the common fork-join
+ * pool or a private thread pool) is not included in its allocated bytes.
+ * 
+ * <p> The peak heap of an operation is the largest heap in use when it began,
+ * when it ended, or immediately before any collection that overlapped it.
+ * The heap in use before each collection is taken from the collection
+ * notifications of the garbage collector beans, which are delivered
+ * asynchronously, so a collection that completes just before end() is
+ * called may be missed.
+ * 
+ * <p> Usage:
+ * 
+ * <pre>
+ *   GCTelemetry.Scope scope = telemetry.begin("loadModel");
+ *   ... operation ...
+ *   scope.end();
+ * </pre>
+ * 
+ * Operations that do not call end() (e.g. because an exception was thrown)
+ * are not recorded. The summaries can be output with getSummaryString(),
+ * written to and read from file buffers, and added together like GCTiming
+ * objects to agglomerate the results of several hosts.
+ */
+@SuppressWarnings("serial")
+public final class GCTelemetry implements Serializable
+{
+  /**
+   * The garbage collector management beans (fixed for the life of the JVM).
+   */
+  private static final List<GarbageCollectorMXBean> aGCBeans =
+      ManagementFactory.getGarbageCollectorMXBeans();
+
+  /**
+   * The heap memory management bean.
+   */
+  private static final MemoryMXBean aMemoryBean =
+      ManagementFactory.getMemoryMXBean();
+
+  /**
+   * The runtime management bean (JVM uptime).
+   */
+  private static final RuntimeMXBean aRuntimeBean =
+      ManagementFactory.getRuntimeMXBean();
+
+  /**
+   * The thread management bean if it supports per thread allocation counters
+   * that are enabled, otherwise null.
+   */
+  private static final com.sun.management.ThreadMXBean aThreadBean =
+      allocationBean();
+
+  /**
+   * The operations in progress in all telemetry objects. Scopes that are
+   * never ended are discarded by the garbage collector.
+   */
+  private static final Set<Scope> aOpenScopes =
+      Collections.synchronizedSet(
+          Collections.newSetFromMap(new WeakHashMap<Scope, Boolean>()));
+
+  /**
+   * True once the collection notification listener has been added to the
+   * garbage collector beans.
+   */
+  private static boolean aListening = false;
+
+  /**
+   * An operation in progress returned by begin(...). Call end() when the
+   * operation completes to record it.
+   */
+  public final class Scope
+  {
+    /**
+     * The operation tag.
+     */
+    private final String tag;
+
+    /**
+     * The id of the thread that began the operation.
+     */
+    private final long   threadId;
+
+    /**
+     * The time at which the operation began (nanoseconds).
+     */
+    private final long   startTime;
+
+    /**
+     * The bytes allocated by the thread when the operation began (-1 if not
+     * supported).
+     */
+    private final long   startAlloc;
+
+    /**
+     * The total collection count when the operation began.
+     */
+    private final long   startGCCount;
+
+    /**
+     * The total collection time (msec) when the operation began.
+     */
+    private final long   startGCTime;
+
+    /**
+     * The JVM uptime (msec) when the operation began. Collections that end
+     * before this time do not overlap the operation.
+     */
+    private final long   startUptime;
+
+    /**
+     * The largest heap in use (bytes) observed so far during the operation.
+     * Updated by the collection notification listener.
+     */
+    private long         peakHeap;
+
+    /**
+     * Standard constructor. Records the start values of the operation.
+     * 
+     * @param tag The operation tag.
+     */
+    private Scope(String tag)
+    {
+      this.tag     = tag;
+      threadId     = Thread.currentThread().getId();
+      startAlloc   = allocatedBytes(threadId);
+      long[] gc    = gcTotals();
+      startGCCount = gc[0];
+      startGCTime  = gc[1];
+      startUptime  = aRuntimeBean.getUptime();
+      peakHeap     = aMemoryBean.getHeapMemoryUsage().getUsed();
+      aOpenScopes.add(this);
+      startTime    = System.nanoTime();
+    }
+
+    /**
+     * Raises the peak heap of this operation to heapUsed if the collection
+     * that ended at uptime gcEnd (msec) overlapped the operation.
+     */
+    private synchronized void collected(long gcEnd, long heapUsed)
+    {
+      if (gcEnd >= startUptime) peakHeap = Math.max(peakHeap, heapUsed);
+    }
+
+    /**
+     * Ends the operation and records it with the telemetry that created this
+     * scope. Calling end() more than once records the operation more than
+     * once.
+     */
+    public void end()
+    {
+      long elapsed = System.nanoTime() - startTime;
+      aOpenScopes.remove(this);
+      long[] gc    = gcTotals();
+      long alloc   = (startAlloc < 0) ? -1 :
+                     allocatedBytes(threadId) - startAlloc;
+      long peak;
+      synchronized (this)
+      {
+        peak = Math.max(peakHeap, aMemoryBean.getHeapMemoryUsage().getUsed());
+      }
+      getOperation(tag).record(elapsed, alloc, gc[0] - startGCCount,
+                               gc[1] - startGCTime, peak);
+    }
+  }
+
+  /**
+   * The summary of all recorded operations with the same tag. Allocated
+   * bytes are those of the thread that began and ended each operation only;
+   * allocations by other threads doing work for the operation (e.g. tasks
+   * run on the common fork-join pool or a builder thread pool) are not
+   * counted.
+   */
+  public static final class Operation implements Serializable
+  {
+    /**
+     * The operation tag.
+     */
+    private String tag;
+
+    /**
+     * The number of recorded operations.
+     */
+    private long   count;
+
+    /**
+     * The total and maximum elapsed time (nanoseconds).
+     */
+    private long   totalTime, maxTime;
+
+    /**
+     * The number of recorded operations whose allocated bytes are known, and
+     * the total and maximum allocated bytes of those operations.
+     */
+    private long   allocCount, totalAlloc, maxAlloc;
+
+    /**
+     * The total number of collections during the operations and the maximum
+     * in any single operation.
+     */
+    private long   totalGCCount, maxGCCount;
+
+    /**
+     * The total collection time (msec) during the operations and the maximum
+     * in any single operation.
+     */
+    private long   totalGCTime, maxGCTime;
+
+    /**
+     * The largest peak heap in use (bytes) during any operation (see
+     * GCTelemetry).
+     */
+    private long   maxPeakHeap;
+
+    /**
+     * Standard constructor.
+     * 
+     * @param tag The operation tag.
+     */
+    private Operation(String tag)
+    {
+      this.tag = tag;
+    }
+
+    /**
+     * Records one operation.
+     */
+    private synchronized void record(long time, long alloc, long gcCount,
+                                     long gcTime, long peakHeap)
+    {
+      ++count;
+      totalTime += time;
+      maxTime    = Math.max(maxTime, time);
+      if (alloc >= 0)
+      {
+        ++allocCount;
+        totalAlloc += alloc;
+        maxAlloc    = Math.max(maxAlloc, alloc);
+      }
+      totalGCCount += gcCount;
+      maxGCCount    = Math.max(maxGCCount, gcCount);
+      totalGCTime  += gcTime;
+      maxGCTime     = Math.max(maxGCTime, gcTime);
+      maxPeakHeap   = Math.max(maxPeakHeap, peakHeap);
+    }
+
+    /**
+     * Adds the input operation summary to this one.
+     * 
+     * @param op The operation summary to be added to this one.
+     */
+    private synchronized void add(Operation op)
+    {
+      synchronized (op)
+      {
+        count        += op.count;
+        totalTime    += op.totalTime;
+        maxTime       = Math.max(maxTime, op.maxTime);
+        allocCount   += op.allocCount;
+        totalAlloc   += op.totalAlloc;
+        maxAlloc      = Math.max(maxAlloc, op.maxAlloc);
+        totalGCCount += op.totalGCCount;
+        maxGCCount    = Math.max(maxGCCount, op.maxGCCount);
+        totalGCTime  += op.totalGCTime;
+        maxGCTime     = Math.max(maxGCTime, op.maxGCTime);
+        maxPeakHeap   = Math.max(maxPeakHeap, op.maxPeakHeap);
+      }
+    }
+
+    /**
+     * Returns a copy of this operation summary.
+     * 
+     * @return A copy of this operation summary.
+     */
+    private Operation copy()
+    {
+      Operation op = new Operation(tag);
+      op.add(this);
+      return op;
+    }
+
+    /**
+     * Writes this operation summary to the input file output buffer.
+     */
+    private synchronized void write(FileOutputBuffer fob) throws IOException
+    {
+      fob.writeString(tag);
+      fob.writeLongs(new long [] {count, totalTime, maxTime, allocCount,
+                                  totalAlloc, maxAlloc, totalGCCount,
+                                  maxGCCount, totalGCTime, maxGCTime,
+                                  maxPeakHeap});
+    }
+
+    /**
+     * Reads and returns an operation summary from the input file input
+     * buffer.
+     */
+    private static Operation read(FileInputBuffer fib) throws IOException
+    {
+      Operation op    = new Operation(fib.readString());
+      long[] v        = fib.readLongs();
+      op.count        = v[0];
+      op.totalTime    = v[1];
+      op.maxTime      = v[2];
+      op.allocCount   = v[3];
+      op.totalAlloc   = v[4];
+      op.maxAlloc     = v[5];
+      op.totalGCCount = v[6];
+      op.maxGCCount   = v[7];
+      op.totalGCTime  = v[8];
+      op.maxGCTime    = v[9];
+      op.maxPeakHeap  = v[10];
+      return op;
+    }
+
+    /**
+     * Returns the operation tag.
+     * 
+     * @return The operation tag.
+     */
+    public String getTag()
+    {
+      return tag;
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     * 
+     * @return The number of recorded operations.
+     */
+    public synchronized long getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Returns the total elapsed time of all operations (msec).
+     * 
+     * @return The total elapsed time of all operations (msec).
+     */
+    public synchronized double getTotalTime()
+    {
+      return 1.0e-6 * totalTime;
+    }
+
+    /**
+     * Returns the mean elapsed time per operation (msec).
+     * 
+     * @return The mean elapsed time per operation (msec).
+     */
+    public synchronized double getMeanTime()
+    {
+      return (count == 0) ? 0.0 : 1.0e-6 * totalTime / count;
+    }
+
+    /**
+     * Returns the maximum elapsed time of any operation (msec).
+     * 
+     * @return The maximum elapsed time of any operation (msec).
+     */
+    public synchronized double getMaxTime()
+    {
+      return 1.0e-6 * maxTime;
+    }
+
+    /**
+     * Returns the total bytes allocated by all operations, or -1 if the JVM
+     * does not support per thread allocation counters.
+     * 
+     * @return The total bytes allocated by all operations.
+     */
+    public synchronized long getTotalAllocatedBytes()
+    {
+      return (allocCount == 0) ? -1 : totalAlloc;
+    }
+
+    /**
+     * Returns the mean bytes allocated per operation, or -1 if the JVM does
+     * not support per thread allocation counters.
+     * 
+     * @return The mean bytes allocated per operation.
+     */
+    public synchronized double getMeanAllocatedBytes()
+    {
+      return (allocCount == 0) ? -1 : (double) totalAlloc / allocCount;
+    }
+
+    /**
+     * Returns the maximum bytes allocated by any operation, or -1 if the JVM
+     * does not support per thread allocation counters.
+     * 
+     * @return The maximum bytes allocated by any operation.
+     */
+    public synchronized long getMaxAllocatedBytes()
+    {
+      return (allocCount == 0) ? -1 : maxAlloc;
+    }
+
+    /**
+     * Returns the total number of collections that occurred during all
+     * operations.
+     * 
+     * @return The total number of collections.
+     */
+    public synchronized long getTotalCollectionCount()
+    {
+      return totalGCCount;
+    }
+
+    /**
+     * Returns the maximum number of collections that occurred during any
+     * operation.
+     * 
+     * @return The maximum number of collections in any operation.
+     */
+    public synchronized long getMaxCollectionCount()
+    {
+      return maxGCCount;
+    }
+
+    /**
+     * Returns the total collection time (msec) during all operations.
+     * 
+     * @return The total collection time (msec).
+     */
+    public synchronized long getTotalCollectionTime()
+    {
+      return totalGCTime;
+    }
+
+    /**
+     * Returns the maximum collection time (msec) during any operation.
+     * 
+     * @return The maximum collection time (msec) in any operation.
+     */
+    public synchronized long getMaxCollectionTime()
+    {
+      return maxGCTime;
+    }
+
+    /**
+     * Returns the largest peak heap in use (bytes) during any operation.
+     * 
+     * @return The largest peak heap in use (bytes) during any operation.
+     */
+    public synchronized long getMaxPeakHeap()
+    {
+      return maxPeakHeap;
+    }
+
+    /**
+     * Returns this operation summary as a single formatted line (see
+     * GCTelemetry.getSummaryString()).
+     */
+    @Override
+    public synchronized String toString()
+    {
+      double mb  = 1.0 / (1024.0 * 1024.0);
+      long   max = aMemoryBean.getHeapMemoryUsage().getMax();
+      return String.format("%-24s %9d %11.3f %11.3f %11s %11s %7d %9d %9s",
+          tag, count, getMeanTime(), getMaxTime(),
+          (allocCount == 0) ? "n/a" :
+              String.format("%.3f", getMeanAllocatedBytes() * mb),
+          (allocCount == 0) ? "n/a" : String.format("%.3f", maxAlloc * mb),
+          totalGCCount, totalGCTime,
+          (max <= 0) ? "n/a" :
+                       String.format("%.1f", 100.0 * maxPeakHeap / max));
+    }
+  }
+
+  /**
+   * The name of this telemetry.
+   */
+  private String                 aName       = "";
+
+  /**
+   * The operation summaries associated with their tags.
+   */
+  private TreeMap<String, Operation> aOperations = null;
+
+  /**
+   * Standard constructor.
+   * 
+   * @param name The name of this telemetry (used in the summary string).
+   */
+  public GCTelemetry(String name)
+  {
+    aName       = name;
+    aOperations = new TreeMap<String, Operation>();
+  }
+
+  /**
+   * Returns the thread management bean if it supports per thread allocation
+   * counters, enabling them if necessary, or null.
+   * 
+   * @return The thread management bean or null.
+   */
+  private static com.sun.management.ThreadMXBean allocationBean()
+  {
+    try
+    {
+      ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+      if (tmx instanceof com.sun.management.ThreadMXBean)
+      {
+        com.sun.management.ThreadMXBean stmx =
+            (com.sun.management.ThreadMXBean) tmx;
+        if (stmx.isThreadAllocatedMemorySupported())
+        {
+          if (!stmx.isThreadAllocatedMemoryEnabled())
+            stmx.setThreadAllocatedMemoryEnabled(true);
+          return stmx;
+        }
+      }
+    }
+    catch (UnsupportedOperationException | SecurityException ex)
+    {
+      // allocation counters are not available
+    }
+    return null;
+  }
+
+  /**
+   * Returns the bytes allocated so far by the input thread, or -1 if not
+   * supported.
+   * 
+   * @param threadId The thread id.
+   * @return The bytes allocated so far by the thread.
+   */
+  private static long allocatedBytes(long threadId)
+  {
+    return (aThreadBean == null) ? -1 :
+           aThreadBean.getThreadAllocatedBytes(threadId);
+  }
+
+  /**
+   * Returns the total collection count and time (msec) of all collectors.
+   * 
+   * @return {count, time}.
+   */
+  private static long[] gcTotals()
+  {
+    long[] total = new long [2];
+    for (GarbageCollectorMXBean gc: aGCBeans)
+    {
+      total[0] += Math.max(gc.getCollectionCount(), 0);
+      total[1] += Math.max(gc.getCollectionTime(), 0);
+    }
+    return total;
+  }
+
+  /**
+   * Returns true if the JVM supports per thread allocation counters.
+   * 
+   * @return True if allocated bytes are recorded.
+   */
+  public static boolean isAllocationSupported()
+  {
+    return aThreadBean != null;
+  }
+
+  /**
+   * Returns the name of this telemetry.
+   * 
+   * @return The name of this telemetry.
+   */
+  public String getName()
+  {
+    return aName;
+  }
+
+  /**
+   * Begins an operation with the input tag performed by the calling thread.
+   * Call end() on the returned scope, from the same thread, when the
+   * operation completes.
+   * 
+   * @param tag The operation tag.
+   * @return The scope of the operation.
+   */
+  public Scope begin(String tag)
+  {
+    listen();
+    return new Scope(tag);
+  }
+
+  /**
+   * Adds the collection notification listener to every garbage collector
+   * bean that emits notifications, the first time it is called.
+   */
+  private static synchronized void listen()
+  {
+    if (aListening) return;
+    aListening = true;
+
+    final Set<String> heapPools = new HashSet<String>();
+    for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+
+    for (GarbageCollectorMXBean gc: aGCBeans)
+    {
+      if (gc instanceof NotificationEmitter)
+        ((NotificationEmitter) gc).addNotificationListener(
+            (Notification n, Object handback) -> collected(n, heapPools),
+            null, null);
+    }
+  }
+
+  /**
+   * Raises the peak heap of every open operation that overlapped the
+   * collection described by the input notification to the heap in use
+   * immediately before the collection.
+   * 
+   * @param n         The collection notification.
+   * @param heapPools The names of the heap memory pools.
+   */
+  private static void collected(Notification n, Set<String> heapPools)
+  {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.
+        equals(n.getType()))
+      return;
+
+    GcInfo info = GarbageCollectionNotificationInfo.from(
+        (CompositeData) n.getUserData()).getGcInfo();
+    long used = 0;
+    for (Map.Entry<String, MemoryUsage> e:
+         info.getMemoryUsageBeforeGc().entrySet())
+    {
+      if (heapPools.contains(e.getKey())) used += e.getValue().getUsed();
+    }
+
+    Scope[] open;
+    synchronized (aOpenScopes)
+    {
+      open = aOpenScopes.toArray(new Scope [0]);
+    }
+    for (Scope scope: open) scope.collected(info.getEndTime(), used);
+  }
+
+  /**
+   * Returns the summary for the input tag, creating it if necessary.
+   * 
+   * @param tag The operation tag.
+   * @return The summary for the input tag.
+   */
+  private synchronized Operation getOperation(String tag)
+  {
+    Operation op = aOperations.get(tag);
+    if (op == null)
+    {
+      op = new Operation(tag);
+      aOperations.put(tag, op);
+    }
+    return op;
+  }
+
+  /**
+   * Returns a copy of the summary of all operations recorded with the input
+   * tag, or null if none have been recorded.
+   * 
+   * @param tag The operation tag.
+   * @return A copy of the summary or null.
+   */
+  public synchronized Operation getSummary(String tag)
+  {
+    Operation op = aOperations.get(tag);
+    return (op == null) ? null : op.copy();
+  }
+
+  /**
+   * Returns copies of all operation summaries associated with their tags
+   * (sorted by tag).
+   * 
+   * @return Copies of all operation summaries.
+   */
+  public synchronized Map<String, Operation> getSummaries()
+  {
+    TreeMap<String, Operation> ops = new TreeMap<String, Operation>();
+    for (Map.Entry<String, Operation> e: aOperations.entrySet())
+      ops.put(e.getKey(), e.getValue().copy());
+    return ops;
+  }
+
+  /**
+   * Removes all operation summaries.
+   */
+  public synchronized void clear()
+  {
+    aOperations.clear();
+  }
+
+  /**
+   * Adds the input telemetry results to this one. This is used to
+   * agglomerate several different host results into a single result.
+   * 
+   * @param a The GCTelemetry whose results will be added to this one.
+   */
+  public void add(GCTelemetry a)
+  {
+    for (Operation op: a.getSummaries().values())
+      getOperation(op.tag).add(op);
+  }
+
+  /**
+   * Writes this GCTelemetry to the input file output buffer.
+   * 
+   * @param fob The file output buffer into which this GCTelemetry is written.
+   * @throws IOException
+   */
+  public void write(FileOutputBuffer fob) throws IOException
+  {
+    Map<String, Operation> ops = getSummaries();
+    fob.writeString(aName);
+    fob.writeInt(ops.size());
+    for (Operation op: ops.values()) op.write(fob);
+  }
+
+  /**
+   * Reads this GCTelemetry from the input file input buffer, replacing any
+   * current content.
+   * 
+   * @param fib The file input buffer from which this GCTelemetry is
+   *            initialized.
+   * @throws IOException
+   */
+  public void read(FileInputBuffer fib) throws IOException
+  {
+    String name = fib.readString();
+    int n = fib.readInt();
+    TreeMap<String, Operation> ops = new TreeMap<String, Operation>();
+    for (int i = 0; i < n; ++i)
+    {
+      Operation op = Operation.read(fib);
+      ops.put(op.tag, op);
+    }
+
+    synchronized (this)
+    {
+      aName       = name;
+      aOperations = ops;
+    }
+  }
+
+  /**
+   * Returns all operation summaries as a formatted table, followed by the
+   * current heap usage and the process wide totals of each collector (from
+   * GCTiming). Each line is prepended with prepnd. The columns are the
+   * operation count, the mean and maximum elapsed time (msec), the mean and
+   * maximum allocated MB of the calling thread, the number and total time
+   * (msec) of collections during the operations, and the largest peak heap
+   * in use during an operation as a percentage of the maximum heap
+   * (PeakHeap%).
+   * 
+   * @param prepnd Buffer string prepended to each line.
+   * @return The formatted summary string.
+   */
+  public String getSummaryString(String prepnd)
+  {
+    StringBuffer sb = new StringBuffer(4096);
+    sb.append(prepnd + "GC Telemetry \"" + aName + "\" (" +
+              Globals.getTimeStamp() + ")" + NL);
+    sb.append(prepnd + "Allocated MB counts only the thread that began " +
+              "each operation, not work it ran on other threads" + NL);
+    sb.append(prepnd + String.format(
+        "%-24s %9s %11s %11s %11s %11s %7s %9s %9s", "Operation", "Count",
+        "Mean msec", "Max msec", "Mean MB", "Max MB", "GCs", "GC msec",
+        "PeakHeap%") + NL);
+    sb.append(prepnd + Globals.repeat("=", 110) + NL);
+    for (Operation op: getSummaries().values())
+      sb.append(prepnd + op.toString() + NL);
+
+    // append the current heap usage and process wide collector totals
+
+    MemoryUsage heap = aMemoryBean.getHeapMemoryUsage();
+    double mb = 1.0 / (1024.0 * 1024.0);
+    sb.append(NL + prepnd + String.format(
+        "Heap: used %.1f MB, committed %.1f MB, max %s", heap.getUsed() * mb,
+        heap.getCommitted() * mb, (heap.getMax() < 0) ? "undefined" :
+        String.format("%.1f MB", heap.getMax() * mb)) + NL);
+
+    GCTiming gct = new GCTiming();
+    gct.update();
+    String[] names = gct.getNames().toArray(new String [0]);
+    Arrays.sort(names);
+    for (String name: names)
+      sb.append(prepnd + String.format("GC %-22s %9d collections %9d msec",
+                name, gct.getCollectionCount(name),
+                gct.getCollectionTime(name)) + NL);
+    return sb.toString();
+  }
+
+  /**
+   * Returns all operation summaries as a formatted table (see
+   * getSummaryString(String)).
+   */
+  @Override
+  public String toString()
+  {
+    return getSummaryString("");
+  }
+}
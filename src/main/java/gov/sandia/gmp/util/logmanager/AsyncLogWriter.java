@@ -0,0 +1,558 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.logmanager;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A background writer that performs log output for LogManager and
+ * ScreenWriterOutput objects placed in asynchronous mode, so that threads
+ * logging from inside compute loops never wait on slow terminals or remote
+ * log files.
+ * 
+ * <p> Logging threads submit output actions into a bounded, lock-free ring
+ * buffer (multiple producers, single consumer). A single daemon thread
+ * removes actions in order, performs them, and flushes each output target
+ * once per batch rather than once per message. Actions submitted by any one
+ * thread are performed in the order submitted.
+ * 
+ * <p> If the ring buffer is full the OverflowPolicy decides what happens:
+ * <ul>
+ * <li>BLOCK - the logging thread waits until space is available (no
+ * messages are lost).
+ * <li>DROP - the message is discarded and counted.
+ * <li>SAMPLE - one of every sampleInterval overflowing messages is kept
+ * (waiting for space as in BLOCK) and the others are discarded and counted.
+ * </ul>
+ * 
+ * <p> When the writer is closed, explicitly or by the shutdown hook it
+ * registers, all pending output is written and flushed, and the number of
+ * dropped messages, if any, is reported on System.err. Output submitted
+ * after close() is performed immediately on the calling thread.
+ */
+public class AsyncLogWriter
+{
+	/**
+	 * Action taken when a message is submitted to a full ring buffer.
+	 */
+	public enum OverflowPolicy
+	{
+		BLOCK,
+		DROP,
+		SAMPLE
+	}
+
+	/**
+	 * The default ring buffer capacity.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * The default SAMPLE policy interval.
+	 */
+	public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+	/**
+	 * The maximum number of actions performed between flushes.
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * The time the writer thread sleeps when there is nothing to write, and
+	 * the time a blocked producer waits before checking for space again.
+	 */
+	private static final long IDLE_NANOS = 1000000L;
+	private static final long BLOCKED_NANOS = 50000L;
+
+	/**
+	 * The shared default writer (see getDefault()).
+	 */
+	private static AsyncLogWriter defaultWriter = null;
+
+	/**
+	 * A queued output action and the target flushed after the batch that
+	 * contains it.
+	 */
+	private static final class Entry
+	{
+		final Runnable action;
+		final Flushable target;
+
+		Entry(Runnable action, Flushable target)
+		{
+			this.action = action;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * The name reported with the dropped message count.
+	 */
+	private final String aName;
+
+	/**
+	 * The overflow policy and SAMPLE interval.
+	 */
+	private final OverflowPolicy aPolicy;
+	private final int            aSampleInterval;
+
+	/**
+	 * The ring buffer slots and their sequence numbers. A slot i may be
+	 * written by the producer holding ticket t when sequence[i] == t, and
+	 * may be read by the consumer at position h when sequence[i] == h + 1.
+	 */
+	private final Entry[]         aSlots;
+	private final AtomicLongArray aSequence;
+	private final int             aMask;
+
+	/**
+	 * The next producer ticket.
+	 */
+	private final AtomicLong aTail = new AtomicLong();
+
+	/**
+	 * The next position read by the writer thread (writer thread only).
+	 */
+	private long aHead = 0;
+
+	/**
+	 * The number of actions performed and flushed.
+	 */
+	private volatile long aWritten = 0;
+
+	/**
+	 * Message counters.
+	 */
+	private final AtomicLong aSubmitted = new AtomicLong();
+	private final AtomicLong aDropped   = new AtomicLong();
+	private final AtomicLong aOverflows = new AtomicLong();
+
+	/**
+	 * Writer thread state.
+	 */
+	private final Thread     aThread;
+	private volatile boolean aRunning = true;
+	private volatile boolean aIdle    = false;
+	private final Thread     aShutdownHook;
+
+	/**
+	 * Standard constructor. Starts the daemon writer thread.
+	 * 
+	 * @param name           The name of the writer (used for the thread name
+	 *                       and the dropped message report).
+	 * @param capacity       The ring buffer capacity (rounded up to a power
+	 *                       of 2).
+	 * @param policy         The overflow policy.
+	 * @param sampleInterval The SAMPLE policy interval (one of every
+	 *                       sampleInterval overflowing messages is kept).
+	 */
+	public AsyncLogWriter(String name, int capacity, OverflowPolicy policy,
+			                  int sampleInterval)
+	{
+		if (capacity < 2) capacity = 2;
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+
+		aName           = name;
+		aPolicy         = policy;
+		aSampleInterval = Math.max(sampleInterval, 1);
+		aSlots          = new Entry [size];
+		aSequence       = new AtomicLongArray(size);
+		aMask           = size - 1;
+		for (int i = 0; i < size; ++i) aSequence.set(i, i);
+
+		aThread = new Thread(this::run, "AsyncLogWriter-" + name);
+		aThread.setDaemon(true);
+		aThread.start();
+
+		aShutdownHook = new Thread(this::close);
+		Runtime.getRuntime().addShutdownHook(aShutdownHook);
+	}
+
+	/**
+	 * Constructs a writer with the default SAMPLE interval.
+	 * 
+	 * @param name     The name of the writer.
+	 * @param capacity The ring buffer capacity.
+	 * @param policy   The overflow policy.
+	 */
+	public AsyncLogWriter(String name, int capacity, OverflowPolicy policy)
+	{
+		this(name, capacity, policy, DEFAULT_SAMPLE_INTERVAL);
+	}
+
+	/**
+	 * Returns the shared default writer, creating it if necessary. Its
+	 * capacity and overflow policy are read from the system properties
+	 * logmanager.async.capacity (default DEFAULT_CAPACITY) and
+	 * logmanager.async.overflow (BLOCK, DROP or SAMPLE, default BLOCK).
+	 * 
+	 * @return The shared default writer.
+	 */
+	public static synchronized AsyncLogWriter getDefault()
+	{
+		if (defaultWriter == null)
+		{
+			int capacity = Integer.getInteger("logmanager.async.capacity",
+			                                  DEFAULT_CAPACITY);
+			OverflowPolicy policy = OverflowPolicy.valueOf(System.getProperty(
+					"logmanager.async.overflow", "BLOCK").trim().toUpperCase());
+			defaultWriter = new AsyncLogWriter("default", capacity, policy);
+		}
+		return defaultWriter;
+	}
+
+	/**
+	 * Submits an output action. The action is performed by the writer thread
+	 * and target (if not null) is flushed after the batch containing it. If
+	 * this writer is closed the action is performed, and target flushed, on
+	 * the calling thread. Returns false if the message was dropped because
+	 * the ring buffer was full.
+	 * 
+	 * @param action The output action.
+	 * @param target The output target flushed after the action.
+	 * @return False if the message was dropped.
+	 */
+	public boolean submit(Runnable action, Flushable target)
+	{
+		aSubmitted.incrementAndGet();
+		Entry e = new Entry(action, target);
+		if (aRunning && offer(e))
+		{
+			if (!aRunning) drainClosed();
+			return true;
+		}
+
+		if (aRunning && aPolicy != OverflowPolicy.BLOCK)
+		{
+			long n = aOverflows.incrementAndGet();
+			if (aPolicy == OverflowPolicy.DROP || n % aSampleInterval != 0)
+			{
+				aDropped.incrementAndGet();
+				return false;
+			}
+		}
+
+		// wait for space (BLOCK or a sampled message)
+
+		while (aRunning)
+		{
+			if (offer(e))
+			{
+				if (!aRunning) drainClosed();
+				return true;
+			}
+			LockSupport.unpark(aThread);
+			LockSupport.parkNanos(this, BLOCKED_NANOS);
+		}
+
+		perform(e);
+		flush(target);
+		return true;
+	}
+
+	/**
+	 * Adds e to the ring buffer. Returns false if the buffer is full.
+	 */
+	private boolean offer(Entry e)
+	{
+		long t = aTail.get();
+		while (true)
+		{
+			int i = (int) (t & aMask);
+			long d = aSequence.get(i) - t;
+			if (d == 0)
+			{
+				if (aTail.compareAndSet(t, t + 1))
+				{
+					aSlots[i] = e;
+					aSequence.set(i, t + 1);
+					if (aIdle) LockSupport.unpark(aThread);
+					return true;
+				}
+				t = aTail.get();
+			}
+			else if (d < 0)
+				return false;
+			else
+				t = aTail.get();
+		}
+	}
+
+	/**
+	 * Removes and returns the next entry, or null if none is available
+	 * (writer thread only).
+	 */
+	private Entry poll()
+	{
+		int i = (int) (aHead & aMask);
+		if (aSequence.get(i) != aHead + 1) return null;
+
+		Entry e = aSlots[i];
+		aSlots[i] = null;
+		aSequence.set(i, aHead + aSlots.length);
+		++aHead;
+		return e;
+	}
+
+	/**
+	 * The writer thread loop. Performs up to BATCH_SIZE actions, then flushes
+	 * each distinct target of the batch, until closed and empty.
+	 */
+	private void run()
+	{
+		Flushable[] targets = new Flushable [8];
+		while (true)
+		{
+			int n = 0, nTargets = 0;
+			Entry e;
+			while (n < BATCH_SIZE && (e = poll()) != null)
+			{
+				perform(e);
+				++n;
+				if (e.target != null)
+				{
+					int j = 0;
+					while (j < nTargets && targets[j] != e.target) ++j;
+					if (j == nTargets)
+					{
+						if (nTargets == targets.length)
+							targets = Arrays.copyOf(targets, 2 * nTargets);
+						targets[nTargets++] = e.target;
+					}
+				}
+			}
+			for (int j = 0; j < nTargets; ++j)
+			{
+				flush(targets[j]);
+				targets[j] = null;
+			}
+			aWritten = aHead;
+
+			if (n == 0)
+			{
+				if (!aRunning && aTail.get() == aHead) return;
+				aIdle = true;
+				if (aSequence.get((int) (aHead & aMask)) != aHead + 1)
+					LockSupport.parkNanos(this, IDLE_NANOS);
+				aIdle = false;
+			}
+		}
+	}
+
+	/**
+	 * Performs the action of e, reporting any failure on System.err.
+	 */
+	private static void perform(Entry e)
+	{
+		try
+		{
+			e.action.run();
+		}
+		catch (Throwable t)
+		{
+			System.err.println("AsyncLogWriter Error: log output failed");
+			t.printStackTrace();
+		}
+	}
+
+	/**
+	 * Flushes target, reporting any failure on System.err.
+	 */
+	private static void flush(Flushable target)
+	{
+		if (target == null) return;
+		try
+		{
+			target.flush();
+		}
+		catch (IOException ex)
+		{
+			System.err.println("AsyncLogWriter Error: log flush failed");
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Waits until every action submitted before this call has been performed
+	 * and flushed.
+	 */
+	public void flush()
+	{
+		long t = aTail.get();
+		while (aWritten < t && aThread.isAlive())
+		{
+			LockSupport.unpark(aThread);
+			LockSupport.parkNanos(this, BLOCKED_NANOS);
+		}
+	}
+
+	/**
+	 * Writes and flushes all pending output, stops the writer thread, and
+	 * reports the number of dropped messages on System.err if any were
+	 * dropped. Output submitted afterwards is performed on the calling
+	 * thread.
+	 */
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (!aRunning) return;
+			aRunning = false;
+		}
+
+		LockSupport.unpark(aThread);
+		try
+		{
+			aThread.join();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		drainClosed();
+
+		if (Thread.currentThread() != aShutdownHook)
+		{
+			try
+			{
+				Runtime.getRuntime().removeShutdownHook(aShutdownHook);
+			}
+			catch (IllegalStateException ex)
+			{
+				// already shutting down
+			}
+		}
+
+		if (aDropped.get() > 0)
+			System.err.println(getDropReport());
+	}
+
+	/**
+	 * Performs any entries that were added while the writer thread was
+	 * stopping, once it has stopped.
+	 */
+	private synchronized void drainClosed()
+	{
+		try
+		{
+			aThread.join();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		while (aHead < aTail.get())
+		{
+			Entry e = poll();
+			if (e == null)
+				Thread.onSpinWait();
+			else
+			{
+				perform(e);
+				flush(e.target);
+			}
+		}
+		aWritten = aHead;
+	}
+
+	/**
+	 * Returns a one line summary of the dropped message count.
+	 * 
+	 * @return A one line summary of the dropped message count.
+	 */
+	public String getDropReport()
+	{
+		return String.format("AsyncLogWriter %s: dropped %d of %d log messages "
+				+ "(overflow policy %s, capacity %d)", aName, aDropped.get(),
+				aSubmitted.get(), aPolicy, aSlots.length);
+	}
+
+	/**
+	 * Returns the number of messages dropped because the ring buffer was
+	 * full.
+	 * 
+	 * @return The number of dropped messages.
+	 */
+	public long getDroppedCount()
+	{
+		return aDropped.get();
+	}
+
+	/**
+	 * Returns the number of messages submitted (including dropped messages).
+	 * 
+	 * @return The number of messages submitted.
+	 */
+	public long getSubmittedCount()
+	{
+		return aSubmitted.get();
+	}
+
+	/**
+	 * Returns the overflow policy.
+	 * 
+	 * @return The overflow policy.
+	 */
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return aPolicy;
+	}
+
+	/**
+	 * Returns the ring buffer capacity.
+	 * 
+	 * @return The ring buffer capacity.
+	 */
+	public int getCapacity()
+	{
+		return aSlots.length;
+	}
+
+	/**
+	 * Returns true until close() is called.
+	 * 
+	 * @return True until close() is called.
+	 */
+	public boolean isRunning()
+	{
+		return aRunning;
+	}
+}
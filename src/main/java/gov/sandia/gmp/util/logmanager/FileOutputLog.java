@@ -34,12 +34,13 @@ package gov.sandia.gmp.util.logmanager;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
-public class FileOutputLog extends AbstractLogOutput {
+public class FileOutputLog extends AbstractLogOutput implements Flushable {
 
 	/**
 	 * Strings for storing the file paths to the output log files.
@@ -55,6 +56,13 @@ public class FileOutputLog extends AbstractLogOutput {
 	private BufferedWriter warningWriter = null;
 	private BufferedWriter statusWriter = null;
 	
+	/**
+	 * If true each message is flushed as soon as it is written. Set false
+	 * by LogManager in asynchronous mode, where the background writer
+	 * flushes once per batch of messages.
+	 */
+	private volatile boolean flushEachMessage = true;
+	
 	
 	/**
 	 * Create error, warning, and status output log files, after first deleting
@@ -224,7 +232,8 @@ public class FileOutputLog extends AbstractLogOutput {
 		try {
 			errorWriter.write(newLine 
 					+ "-" + prefix + " Error-" + newLine + msg + newLine);
-			errorWriter.flush();
+			if (flushEachMessage)
+				errorWriter.flush();
 
 		} catch (IOException e) {
 			System.err.println("FileOutputLog Error: Failed to write to ERROR log file in: "
@@ -259,7 +268,8 @@ public class FileOutputLog extends AbstractLogOutput {
 		try {
 			statusWriter.write(newLine 
 					+ "-" + prefix + " Status-" + newLine + msg + newLine);
-			statusWriter.flush();
+			if (flushEachMessage)
+				statusWriter.flush();
 
 		} catch (IOException e) {
 			System.err.println("FileOutputLog Error: Failed to write to STATUS log file in: "
@@ -294,7 +304,8 @@ public class FileOutputLog extends AbstractLogOutput {
 		try {
 			warningWriter.write(newLine 
 					+ "-" + prefix + " Warning-" + newLine + msg + newLine);
-			warningWriter.flush();
+			if (flushEachMessage)
+				warningWriter.flush();
 
 		} catch (IOException e) {
 			System.err.println("FileOutputLog Error: Failed to write to WARNING log file in: "
@@ -306,6 +317,29 @@ public class FileOutputLog extends AbstractLogOutput {
 		return true;
 	}
 
+	/**
+	 * Set whether each message is flushed as soon as it is written.
+	 * 
+	 * @param flag true to flush each message (the default)
+	 */
+	void setFlushEachMessage(boolean flag) {
+		flushEachMessage = flag;
+	}
+
+	/**
+	 * Flush all output log files.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (errorWriter != null)
+			errorWriter.flush();
+		if (warningWriter != null && warningWriter != errorWriter)
+			warningWriter.flush();
+		if (statusWriter != null && statusWriter != errorWriter
+				&& statusWriter != warningWriter)
+			statusWriter.flush();
+	}
+
 	/**
 	 * Output exception stack trace using the given writer.
 	 * 
@@ -322,7 +356,8 @@ public class FileOutputLog extends AbstractLogOutput {
 				for (int i=0; i < trace.length; i++)
 					writer.write("        at " + trace[i] + newLine);
 
-				writer.flush();
+				if (flushEachMessage)
+					writer.flush();
 				
 			} catch (IOException e) {
 				// do nothing
@@ -32,6 +32,7 @@
  */
 package gov.sandia.gmp.util.logmanager;
 
+import java.io.Flushable;
 import java.io.IOException;
 
 public class LogManager
@@ -66,6 +67,23 @@ public class LogManager
 	 */
 	private TerminalOutputLog terminalLogger = null;
 	
+	/**
+	 * Background writer used in asynchronous mode (null when messages are
+	 * written synchronously by the calling thread).
+	 */
+	private volatile AsyncLogWriter asyncWriter = null;
+	
+	/**
+	 * Flushes the file and terminal logs after each batch of asynchronous
+	 * messages.
+	 */
+	private final Flushable asyncFlusher = () -> {
+		FileOutputLog f = fileLogger;
+		if(f != null)
+			f.flush();
+		System.err.flush();
+	};
+	
 	/**
 	 * Create a log manager with the given prefix to prepend to log messages.
 	 * 
@@ -127,6 +145,7 @@ public class LogManager
 	
 		try {
 			fileLogger = new FileOutputLog(prefix, errorFilePath, warningFilePath, statusFilePath, appendFiles, header);
+			fileLogger.setFlushEachMessage(asyncWriter == null);
 		} catch (IOException e) {
 			// the constructor throws a generic exception indicating one or more problems occurred, but execution can 
 			// still continue as the FileOutputLog handles errors internally, so simply return false to indicate there
@@ -147,34 +166,80 @@ public class LogManager
 		return true;
 	}
 	
+	/**
+	 * Place this log manager in asynchronous mode, where messages are
+	 * queued to the input background writer (e.g. AsyncLogWriter.getDefault())
+	 * and written and flushed in batches by its thread, or return to
+	 * synchronous mode if writer is null. Any messages pending on the
+	 * previous writer are written before this method returns.
+	 * 
+	 * @param writer the background writer, or null for synchronous output
+	 */
+	public void setAsynchronous(AsyncLogWriter writer) {
+		AsyncLogWriter old = asyncWriter;
+		asyncWriter = writer;
+		if(old != null)
+			old.flush();
+		if(fileLogger != null)
+			fileLogger.setFlushEachMessage(writer == null);
+	}
+	
+	/**
+	 * Returns the background writer, or null if messages are written
+	 * synchronously.
+	 * 
+	 * @return the background writer or null
+	 */
+	public AsyncLogWriter getAsynchronous() {
+		return asyncWriter;
+	}
+	
+	/**
+	 * Perform the output action on the calling thread, or queue it to the
+	 * background writer in asynchronous mode.
+	 */
+	private void output(Runnable action) {
+		AsyncLogWriter writer = asyncWriter;
+		if(writer == null)
+			action.run();
+		else
+			writer.submit(action, asyncFlusher);
+	}
+	
 	/**
 	 * Output error message to the output methods that have been setup.
 	 */
 	public void outputError(String msg) {
-		if(fileLogger != null)
-			fileLogger.outputError(msg);
-		if(terminalLogger != null)
-			terminalLogger.outputError(msg);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputError(msg);
+			if(terminalLogger != null)
+				terminalLogger.outputError(msg);
+		});
 	}
 
 	/**
 	 * Output status message to the output methods that have been setup.
 	 */
 	public void outputStatus(String msg) {
-		if(fileLogger != null)
-			fileLogger.outputStatus(msg);
-		if(terminalLogger != null)
-			terminalLogger.outputStatus(msg);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputStatus(msg);
+			if(terminalLogger != null)
+				terminalLogger.outputStatus(msg);
+		});
 	}
 
 	/**
 	 * Output warning message to the output methods that have been setup.
 	 */
 	public void outputWarning(String msg) {
-		if(fileLogger != null)
-			fileLogger.outputWarning(msg);
-		if(terminalLogger != null)
-			terminalLogger.outputWarning(msg);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputWarning(msg);
+			if(terminalLogger != null)
+				terminalLogger.outputWarning(msg);
+		});
 	}
 
 
@@ -182,30 +247,36 @@ public class LogManager
 	 * Output error message and stack trace to the output methods that have been setup.
 	 */
 	public void outputError(Exception exception) {
-		if(fileLogger != null)
-			fileLogger.outputError(exception);
-		if(terminalLogger != null)
-			terminalLogger.outputError(exception);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputError(exception);
+			if(terminalLogger != null)
+				terminalLogger.outputError(exception);
+		});
 	}
 
 	/**
 	 * Output status message and stack trace to the output methods that have been setup.
 	 */
 	public void outputStatus(Exception exception) {
-		if(fileLogger != null)
-			fileLogger.outputStatus(exception);
-		if(terminalLogger != null)
-			terminalLogger.outputStatus(exception);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputStatus(exception);
+			if(terminalLogger != null)
+				terminalLogger.outputStatus(exception);
+		});
 	}
 
 	/**
 	 * Output warning message and stack trace to the output methods that have been setup.
 	 */
 	public void outputWarning(Exception exception) {
-		if(fileLogger != null)
-			fileLogger.outputWarning(exception);
-		if(terminalLogger != null)
-			terminalLogger.outputWarning(exception);
+		output(() -> {
+			if(fileLogger != null)
+				fileLogger.outputWarning(exception);
+			if(terminalLogger != null)
+				terminalLogger.outputWarning(exception);
+		});
 	}
 	
 	/**
@@ -35,6 +35,7 @@ package gov.sandia.gmp.util.logmanager;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.Serializable;
 
@@ -53,6 +54,16 @@ import gov.sandia.gmp.util.propertiesplus.PropertiesPlus;
  * BufferedWriter object has not been set the call to turn on output
  * to the BufferedWriter will throw an IOException.
  * 
+ * <p> By default output is written, and the BufferedWriter flushed, by the
+ * calling thread. After a call to setAsynchronous(AsyncLogWriter) screen and
+ * BufferedWriter output is queued to the background writer, which writes it
+ * in order and flushes once per batch, so that slow terminals or log files
+ * do not stall the caller. StringBuffer output is always appended
+ * immediately. Queued output holds a reference to the BufferedWriter, so in
+ * asynchronous mode the BufferedWriter should be closed with closeWriter(),
+ * which closes it after the queued output has been written. A caller that
+ * closes the BufferedWriter itself must first call getAsynchronous().flush().
+ * 
  * @author jrhipp
  *
  */
@@ -99,6 +110,18 @@ public class ScreenWriterOutput implements Serializable
 	 */
 	private String  aIndent       = "";
 
+	/**
+	 * Background writer used in asynchronous mode (null when output is
+	 * written synchronously by the calling thread).
+	 */
+	private transient volatile AsyncLogWriter aAsyncWriter = null;
+
+	/**
+	 * Flushes the screen and the BufferedWriter after each batch of
+	 * asynchronous output.
+	 */
+	private transient Flushable aAsyncFlusher = null;
+
 	/**
 	 * Default constructor.
 	 */
@@ -152,18 +175,99 @@ public class ScreenWriterOutput implements Serializable
 		// turn logger off and back on to ensure current status is stored.
 		turnOff();
 		restore();
+
+		if (properties.getBoolean(prefix+"log_asynchronous", false))
+			setAsynchronous(AsyncLogWriter.getDefault());
+	}
+
+	/**
+	 * Places this object in asynchronous mode, where screen and
+	 * BufferedWriter output is queued to the input background writer
+	 * (e.g. AsyncLogWriter.getDefault()), or returns to synchronous mode
+	 * if writer is null. Any output pending on the previous writer is
+	 * written before this method returns.
+	 * 
+	 * @param writer The background writer, or null for synchronous output.
+	 */
+	public void setAsynchronous(AsyncLogWriter writer)
+	{
+		if (aAsyncFlusher == null)
+			aAsyncFlusher = () ->
+			{
+				System.out.flush();
+				BufferedWriter w = aWriter;
+				if (w != null) w.flush();
+			};
+
+		AsyncLogWriter old = aAsyncWriter;
+		aAsyncWriter = writer;
+		if (old != null) old.flush();
+	}
+
+	/**
+	 * Returns the background writer, or null if output is written
+	 * synchronously.
+	 * 
+	 * @return The background writer or null.
+	 */
+	public AsyncLogWriter getAsynchronous()
+	{
+		return aAsyncWriter;
 	}
 	
 	/**
-	 * Sets the user provided BufferedWriter to writer.
+	 * Sets the user provided BufferedWriter to writer. In asynchronous mode
+	 * any output queued for the previous BufferedWriter is written, and the
+	 * previous BufferedWriter flushed, before this method returns.
 	 * 
 	 * @param writer The user provided BufferedWriter object.
 	 */
 	public void setWriter(BufferedWriter writer)
 	{
+		AsyncLogWriter async = aAsyncWriter;
+		if ((async != null) && (aWriter != null) && (aWriter != writer))
+			async.flush();
 		aWriter = writer;
 	}
 
+	/**
+	 * Turns off BufferedWriter output and closes the BufferedWriter, if one
+	 * has been set. In asynchronous mode the close is queued behind the
+	 * pending output so that none of it is lost, and this method does not
+	 * wait for it.
+	 * 
+	 * @throws IOException
+	 */
+	public void closeWriter() throws IOException
+	{
+		final BufferedWriter writer = aWriter;
+		aWriterOutput = false;
+		aWriter = null;
+		if (writer == null) return;
+
+		AsyncLogWriter async = aAsyncWriter;
+		if (async != null)
+		{
+			boolean queued = async.submit(() ->
+			{
+				try
+				{
+					writer.close();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}, null);
+			if (queued) return;
+
+			// the close was dropped because the queue is full; wait for the
+			// pending output instead.
+			async.flush();
+		}
+		writer.close();
+	}
+
 	/**
 	 * Get the buffered writer.
 	 * 
@@ -290,10 +394,37 @@ public class ScreenWriterOutput implements Serializable
 		// write string to screen if on
 
 	  s = aIndent + s;
-		if (aScreenOutput) System.out.print(s);
-
 		if (aBufferOutput) aBuffer.append(s);
 
+		// queue screen and writer output in asynchronous mode
+
+		AsyncLogWriter async = aAsyncWriter;
+		if (async != null)
+		{
+			final String out = s;
+			final boolean screen = aScreenOutput;
+			final BufferedWriter writer = aWriterOutput ? aWriter : null;
+			if (screen || (writer != null))
+				async.submit(() ->
+				{
+					if (screen) System.out.print(out);
+					if (writer != null)
+					{
+						try
+						{
+							writer.write(out);
+						}
+						catch (IOException e)
+						{
+							e.printStackTrace();
+						}
+					}
+				}, aAsyncFlusher);
+			return;
+		}
+
+		if (aScreenOutput) System.out.print(s);
+
 		// write string to buffered writer if on
 
 		if (aWriterOutput && (aWriter != null))
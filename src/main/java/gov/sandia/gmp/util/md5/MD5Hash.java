@@ -38,6 +38,10 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * <p>Wrapper around MessageDigest.getInstance("MD5") that adds
@@ -46,6 +50,12 @@ import java.security.NoSuchAlgorithmException;
  * <p>Also implements toString() that returns a
  * 32 element string containing the 32 hexadecimal characters that
  * represent the byte[16] MD5 hash.
+ * <p>The int[][], float[][] and double[][] updates digest exactly the same
+ * bytes as updating each row in turn, but pack the rows into blocks of
+ * BLOCK_BYTES bytes before digesting them. When the arrays hold at least
+ * PARALLEL_MINIMUM bytes and more than one processor is available, blocks
+ * are packed in parallel on the common ForkJoinPool while the calling thread
+ * digests them in order, so the hash is identical to the sequential hash.
  *
  * <p>Copyright: Copyright (c) 2008</p>
  *
@@ -56,6 +66,32 @@ import java.security.NoSuchAlgorithmException;
  */
 public class MD5Hash
 {
+  /**
+   * The number of bytes packed into each block by the 2D array updates.
+   */
+  public static final int BLOCK_BYTES = 1 << 20;
+
+  /**
+   * 2D arrays with at least this many bytes are packed in parallel.
+   */
+  public static final long PARALLEL_MINIMUM = 1L << 23;
+
+  /**
+   * Writes row i of a 2D array into buf.
+   */
+  private interface RowPacker
+  {
+    void pack(int i, ByteBuffer buf);
+  }
+
+  /**
+   * Returns the number of bytes written for row i of a 2D array.
+   */
+  private interface RowSize
+  {
+    int bytes(int i);
+  }
+
   private MessageDigest msgDigest;
 
   public MD5Hash()
@@ -185,9 +221,10 @@ public class MD5Hash
   */
  public MD5Hash update(int[][] x)
  {
-   for (int i = 0; i < x.length; ++i)
-     update(x[i]);
-   return this;
+   return updateRows(x.length, i -> 4 * x[i].length, (i, buf) ->
+   {
+     for (int v : x[i]) buf.putInt(v);
+   });
  }
 
   /**
@@ -226,9 +263,14 @@ public class MD5Hash
    */
   public MD5Hash update(float[][] x)
   {
-    for (int i = 0; i < x.length; ++i)
-      update(x[i]);
-    return this;
+    // each float occupies 4 bytes followed by 4 zero bytes of padding
+    // (toByteBuffer(float[]) allocates 8 bytes per float)
+
+    return updateRows(x.length, i -> 8 * x[i].length, (i, buf) ->
+    {
+      for (float v : x[i]) buf.putFloat(v);
+      for (int j = 0; j < x[i].length; ++j) buf.putFloat(0F);
+    });
   }
 
   /**
@@ -257,11 +299,109 @@ public class MD5Hash
    */
   public MD5Hash update(double[][] x)
   {
-    for (int i = 0; i < x.length; ++i)
-      update(x[i]);
+    return updateRows(x.length, i -> 8 * x[i].length, (i, buf) ->
+    {
+      for (double v : x[i]) buf.putDouble(v);
+    });
+  }
+
+  /**
+   * Digests the rows 0 to n-1 of a 2D array in order. Rows are grouped into
+   * blocks of about BLOCK_BYTES bytes. If the array holds at least
+   * PARALLEL_MINIMUM bytes and more than one processor is available, up to
+   * two blocks per thread are packed ahead in parallel while this thread
+   * digests completed blocks in order.
+   *
+   * @param n      The number of rows.
+   * @param size   Returns the number of bytes of row i.
+   * @param packer Writes row i into a buffer.
+   * @return this
+   */
+  private MD5Hash updateRows(int n, RowSize size, RowPacker packer)
+  {
+    int nproc = ForkJoinPool.getCommonPoolParallelism();
+    if (nproc < 2 || Runtime.getRuntime().availableProcessors() < 2 ||
+        totalBytes(n, size) < PARALLEL_MINIMUM)
+    {
+      // pack rows into a single reused buffer, digesting it whenever the
+      // next row does not fit
+
+      ByteBuffer buf = ByteBuffer.allocate(BLOCK_BYTES);
+      for (int i = 0; i < n; ++i)
+      {
+        int b = size.bytes(i);
+        if (b > buf.remaining())
+        {
+          msgDigest.update(buf.array(), 0, buf.position());
+          buf.clear();
+          if (b > buf.capacity()) buf = ByteBuffer.allocate(b);
+        }
+        packer.pack(i, buf);
+      }
+      msgDigest.update(buf.array(), 0, buf.position());
+      return this;
+    }
+
+    // find the first row of each block
+
+    int[] first = new int[16];
+    int nBlocks = 0;
+    long blockBytes = BLOCK_BYTES;
+    for (int i = 0; i < n; ++i)
+    {
+      int b = size.bytes(i);
+      if (blockBytes + b > BLOCK_BYTES && b > 0)
+      {
+        if (nBlocks + 1 >= first.length)
+          first = Arrays.copyOf(first, 2 * first.length);
+        first[nBlocks++] = i;
+        blockBytes = 0;
+      }
+      blockBytes += b;
+    }
+    first[nBlocks] = n;
+
+    ArrayDeque<ForkJoinTask<byte[]>> pending =
+        new ArrayDeque<ForkJoinTask<byte[]>>();
+    int next = 0;
+    for (int k = 0; k < nBlocks; ++k)
+    {
+      while (next < nBlocks && next < k + 2 * nproc)
+      {
+        final int b0 = first[next], b1 = first[next + 1];
+        pending.add(ForkJoinPool.commonPool().submit(() ->
+        {
+          ByteBuffer buf = ByteBuffer.allocate(blockSize(size, b0, b1));
+          for (int i = b0; i < b1; ++i) packer.pack(i, buf);
+          return buf.array();
+        }));
+        ++next;
+      }
+      msgDigest.update(pending.poll().join());
+    }
     return this;
   }
 
+  /**
+   * Returns the number of bytes of rows 0 to n-1.
+   */
+  private static long totalBytes(int n, RowSize size)
+  {
+    long bytes = 0;
+    for (int i = 0; i < n; ++i) bytes += size.bytes(i);
+    return bytes;
+  }
+
+  /**
+   * Returns the number of bytes of rows first to last-1.
+   */
+  private static int blockSize(RowSize size, int first, int last)
+  {
+    int bytes = 0;
+    for (int i = first; i < last; ++i) bytes += size.bytes(i);
+    return bytes;
+  }
+
   /**
    *
    * @param file File
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count that can be incremented concurrently from
+ * many threads with very little contention.  Counters are created by, and
+ * registered with, a {@link MetricsRegistry}.
+ */
+public final class Counter
+{
+	private final String name;
+
+	private final String description;
+
+	private final LongAdder count = new LongAdder();
+
+	Counter(String name, String description)
+	{
+		this.name = name;
+		this.description = description;
+	}
+
+	/**
+	 * Increment the count by one.
+	 */
+	public void increment()
+	{
+		count.increment();
+	}
+
+	/**
+	 * Increment the count by the specified amount.
+	 * @param n the amount to add to the count.
+	 */
+	public void add(long n)
+	{
+		count.add(n);
+	}
+
+	/**
+	 * Retrieve the current count.
+	 * @return the current count.
+	 */
+	public long get()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * Set the count back to zero.
+	 */
+	public void reset()
+	{
+		count.reset();
+	}
+
+	/**
+	 * Retrieve the name of this Counter.
+	 * @return the name of this Counter.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Retrieve a description of what this Counter counts.
+	 * @return a description of what this Counter counts.
+	 */
+	public String getDescription()
+	{
+		return description;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s = %d", name, get());
+	}
+}
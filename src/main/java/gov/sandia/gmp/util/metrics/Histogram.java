@@ -0,0 +1,292 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of non-negative long values (step counts,
+ * elapsed times, sizes, etc.) in power-of-two buckets.  Bucket 0 counts
+ * values equal to zero and bucket i &gt; 0 counts values in the range
+ * [2<sup>i-1</sup>, 2<sup>i</sup>-1].  Recording a value costs a couple of
+ * uncontended atomic additions, so Histograms can be updated from hot paths
+ * in many threads at once.  Quantiles are estimated from the bucket
+ * boundaries and are therefore accurate to within a factor of two, which is
+ * plenty for spotting regressions and pathological inputs.
+ */
+public final class Histogram
+{
+	/**
+	 * Number of buckets needed to hold any non-negative long.
+	 */
+	static final int NBUCKETS = 64;
+
+	private final String name;
+
+	private final String description;
+
+	private final String units;
+
+	private final LongAdder[] buckets;
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+	Histogram(String name, String description, String units)
+	{
+		this.name = name;
+		this.description = description;
+		this.units = units;
+		buckets = new LongAdder[NBUCKETS];
+		for (int i = 0; i < NBUCKETS; ++i)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Record a value.  Negative values are recorded as zero.
+	 * @param value the value to record.
+	 */
+	public void record(long value)
+	{
+		if (value < 0L)
+			value = 0L;
+		buckets[bucket(value)].increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Record an elapsed time, in microseconds, given the value of
+	 * System.nanoTime() when the operation started.
+	 * @param startNanos value of System.nanoTime() at the start of the operation.
+	 */
+	public void recordSince(long startNanos)
+	{
+		record((System.nanoTime() - startNanos) / 1000L);
+	}
+
+	/**
+	 * Index of the bucket that holds value.
+	 */
+	static int bucket(long value)
+	{
+		return Math.min(NBUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * Upper bound of the values that can be stored in the specified bucket.
+	 */
+	static long bucketUpperBound(int bucket)
+	{
+		return bucket == 0 ? 0L : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+	}
+
+	/**
+	 * Set all counts back to zero.  Values recorded concurrently with a
+	 * call to reset() may or may not survive.
+	 */
+	public void reset()
+	{
+		for (LongAdder b : buckets)
+			b.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Take a consistent-enough copy of the current state of this Histogram.
+	 * @return a snapshot of the current state of this Histogram.
+	 */
+	public Snapshot snapshot()
+	{
+		long[] counts = new long[NBUCKETS];
+		for (int i = 0; i < NBUCKETS; ++i)
+			counts[i] = buckets[i].sum();
+		return new Snapshot(name, units, counts, sum.sum(), max.get());
+	}
+
+	/**
+	 * Retrieve the name of this Histogram.
+	 * @return the name of this Histogram.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Retrieve a description of what this Histogram measures.
+	 * @return a description of what this Histogram measures.
+	 */
+	public String getDescription()
+	{
+		return description;
+	}
+
+	/**
+	 * Retrieve the units of the recorded values, e.g. "usec" or "steps".
+	 * @return the units of the recorded values.
+	 */
+	public String getUnits()
+	{
+		return units;
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot().toString();
+	}
+
+	/**
+	 * An immutable copy of the state of a Histogram at some instant.
+	 */
+	public static final class Snapshot
+	{
+		private final String name;
+
+		private final String units;
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long sum;
+
+		private final long max;
+
+		Snapshot(String name, String units, long[] counts, long sum, long max)
+		{
+			this.name = name;
+			this.units = units;
+			this.counts = counts;
+			long n = 0;
+			for (long c : counts)
+				n += c;
+			this.count = n;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * @return the name of the Histogram from which this snapshot was taken.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the units of the recorded values.
+		 */
+		public String getUnits()
+		{
+			return units;
+		}
+
+		/**
+		 * @return number of values recorded.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return sum of all values recorded.
+		 */
+		public long getSum()
+		{
+			return sum;
+		}
+
+		/**
+		 * @return the largest value recorded.
+		 */
+		public long getMax()
+		{
+			return max;
+		}
+
+		/**
+		 * @return mean of all values recorded, or NaN if no values were recorded.
+		 */
+		public double getMean()
+		{
+			return count == 0 ? Double.NaN : (double) sum / count;
+		}
+
+		/**
+		 * Estimate the value below which the specified fraction of the
+		 * recorded values fall.  The estimate is the upper bound of the
+		 * bucket that contains the requested quantile, limited by the
+		 * maximum value recorded.
+		 * @param fraction a number in the range [0, 1]
+		 * @return estimated quantile, or NaN if no values were recorded.
+		 */
+		public double getQuantile(double fraction)
+		{
+			if (count == 0)
+				return Double.NaN;
+			long target = (long) Math.ceil(Math.max(0., Math.min(1., fraction)) * count);
+			long cumulative = 0;
+			for (int i = 0; i < counts.length; ++i)
+			{
+				cumulative += counts[i];
+				if (cumulative >= target && cumulative > 0)
+					return Math.min(bucketUpperBound(i), max);
+			}
+			return max;
+		}
+
+		/**
+		 * Retrieve a copy of the bucket counts.  Element 0 is the number of
+		 * zeros recorded, element i &gt; 0 is the number of values in the
+		 * range [2<sup>i-1</sup>, 2<sup>i</sup>-1].
+		 * @return a copy of the bucket counts.
+		 */
+		public long[] getBucketCounts()
+		{
+			return counts.clone();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%s: count=%d mean=%1.3f p50=%1.0f p99=%1.0f max=%d %s",
+					name, count, getMean(), getQuantile(0.5), getQuantile(0.99), max, units);
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * A named collection of Counters and Histograms.  Instruments are created
+ * once, typically in static initializers, and then updated from hot code
+ * paths without any locking.  The current values can be retrieved at any
+ * time with {@link #snapshot()} or, after a call to
+ * {@link #registerMBean(String)}, from any JMX console (jconsole,
+ * VisualVM, etc.).
+ *
+ * <p>
+ * Each Counter is exposed through JMX as a read-only attribute with the
+ * Counter's name.  Each Histogram is exposed as attributes
+ * name.count, name.mean, name.p50, name.p99 and name.max.  The MBean
+ * also has a 'reset' operation that sets all instruments back to zero.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public class MetricsRegistry
+{
+	/**
+	 * Histogram statistics published as JMX attributes.
+	 */
+	private static final String[] HISTOGRAM_FIELDS =
+			new String[] {"count", "mean", "p50", "p99", "max"};
+
+	private final String name;
+
+	private final Map<String, Counter> counters = new LinkedHashMap<String, Counter>();
+
+	private final Map<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+
+	private ObjectName objectName;
+
+	/**
+	 * Constructor.
+	 * @param name the name of this registry.
+	 */
+	public MetricsRegistry(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of this registry.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Retrieve the Counter with the specified name, creating it if it does
+	 * not already exist.
+	 * @param name name of the Counter
+	 * @param description what the Counter counts.  Ignored if the Counter
+	 * already exists.
+	 * @return the Counter with the specified name.
+	 */
+	public synchronized Counter counter(String name, String description)
+	{
+		Counter c = counters.get(name);
+		if (c == null)
+		{
+			if (histograms.containsKey(name))
+				throw new IllegalArgumentException(String.format(
+						"%nMetric %s is already registered as a Histogram%n", name));
+			c = new Counter(name, description);
+			counters.put(name, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Retrieve the Histogram with the specified name, creating it if it
+	 * does not already exist.
+	 * @param name name of the Histogram
+	 * @param description what the Histogram measures.  Ignored if the
+	 * Histogram already exists.
+	 * @param units units of the recorded values, e.g. "usec" or "steps".
+	 * Ignored if the Histogram already exists.
+	 * @return the Histogram with the specified name.
+	 */
+	public synchronized Histogram histogram(String name, String description, String units)
+	{
+		Histogram h = histograms.get(name);
+		if (h == null)
+		{
+			if (counters.containsKey(name))
+				throw new IllegalArgumentException(String.format(
+						"%nMetric %s is already registered as a Counter%n", name));
+			h = new Histogram(name, description, units);
+			histograms.put(name, h);
+		}
+		return h;
+	}
+
+	/**
+	 * Retrieve a copy of the current values of all the instruments in this
+	 * registry.
+	 * @return a copy of the current values of all the instruments in this
+	 * registry.
+	 */
+	public MetricsSnapshot snapshot()
+	{
+		Map<String, Long> c = new TreeMap<String, Long>();
+		Map<String, Histogram.Snapshot> h = new TreeMap<String, Histogram.Snapshot>();
+		for (Counter counter : getCounters())
+			c.put(counter.getName(), counter.get());
+		for (Histogram histogram : getHistograms())
+			h.put(histogram.getName(), histogram.snapshot());
+		return new MetricsSnapshot(name, c, h);
+	}
+
+	/**
+	 * Set all Counters and Histograms back to zero.
+	 */
+	public void reset()
+	{
+		for (Counter counter : getCounters())
+			counter.reset();
+		for (Histogram histogram : getHistograms())
+			histogram.reset();
+	}
+
+	private synchronized ArrayList<Counter> getCounters()
+	{
+		return new ArrayList<Counter>(counters.values());
+	}
+
+	private synchronized ArrayList<Histogram> getHistograms()
+	{
+		return new ArrayList<Histogram>(histograms.values());
+	}
+
+	/**
+	 * Register this registry with the platform MBeanServer so that its
+	 * instruments can be monitored with standard JMX tools.  Calling this
+	 * method more than once has no effect.
+	 * @param objectName the JMX ObjectName, e.g.
+	 * "gov.sandia.geotess:type=Metrics"
+	 * @throws Exception if the name is malformed or already in use.
+	 */
+	public synchronized void registerMBean(String objectName) throws Exception
+	{
+		if (this.objectName != null)
+			return;
+		ObjectName on = new ObjectName(objectName);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), on);
+		this.objectName = on;
+	}
+
+	/**
+	 * Remove this registry from the platform MBeanServer, if it was
+	 * registered.
+	 * @throws Exception
+	 */
+	public synchronized void unregisterMBean() throws Exception
+	{
+		if (objectName == null)
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		objectName = null;
+	}
+
+	/**
+	 * @return true if this registry is currently registered with the
+	 * platform MBeanServer.
+	 */
+	public synchronized boolean isMBeanRegistered()
+	{
+		return objectName != null;
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot().toString();
+	}
+
+	/**
+	 * JMX view of the registry.  The set of attributes is rebuilt on every
+	 * request so instruments created after registration show up too.
+	 */
+	private class MBean implements DynamicMBean
+	{
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException
+		{
+			synchronized (MetricsRegistry.this)
+			{
+				Counter c = counters.get(attribute);
+				if (c != null)
+					return c.get();
+
+				int dot = attribute.lastIndexOf('.');
+				Histogram h = dot < 0 ? null : histograms.get(attribute.substring(0, dot));
+				if (h != null)
+				{
+					Histogram.Snapshot s = h.snapshot();
+					switch (attribute.substring(dot + 1))
+					{
+					case "count":
+						return s.getCount();
+					case "mean":
+						return s.getMean();
+					case "p50":
+						return s.getQuantile(0.5);
+					case "p99":
+						return s.getQuantile(0.99);
+					case "max":
+						return s.getMax();
+					default:
+						break;
+					}
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+		{
+			throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes)
+		{
+			AttributeList list = new AttributeList();
+			for (String a : attributes)
+				try
+				{
+					list.add(new Attribute(a, getAttribute(a)));
+				}
+				catch (AttributeNotFoundException e)
+				{
+					// JMX convention is to silently omit unknown attributes
+				}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes)
+		{
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature)
+				throws ReflectionException
+		{
+			if (actionName.equals("reset"))
+			{
+				reset();
+				return null;
+			}
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo()
+		{
+			ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (Counter c : getCounters())
+				attributes.add(new MBeanAttributeInfo(c.getName(), "long",
+						c.getDescription(), true, false, false));
+			for (Histogram h : getHistograms())
+				for (String field : HISTOGRAM_FIELDS)
+					attributes.add(new MBeanAttributeInfo(h.getName() + "." + field,
+							field.equals("count") || field.equals("max") ? "long" : "double",
+							String.format("%s (%s, %s)", h.getDescription(), field, h.getUnits()),
+							true, false, false));
+
+			MBeanOperationInfo reset = new MBeanOperationInfo("reset",
+					"Set all counters and histograms back to zero", null, "void",
+					MBeanOperationInfo.ACTION);
+
+			return new MBeanInfo(MetricsRegistry.class.getName(),
+					"Metrics " + name,
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+					null, new MBeanOperationInfo[] {reset}, null);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * An immutable copy of the values of all the Counters and Histograms in a
+ * MetricsRegistry at some instant.  Snapshots can be logged, compared
+ * with earlier snapshots, or shipped elsewhere for aggregation.
+ */
+public final class MetricsSnapshot
+{
+	private final String registryName;
+
+	private final long timeMillis;
+
+	private final Map<String, Long> counters;
+
+	private final Map<String, Histogram.Snapshot> histograms;
+
+	MetricsSnapshot(String registryName, Map<String, Long> counters,
+			Map<String, Histogram.Snapshot> histograms)
+	{
+		this.registryName = registryName;
+		this.timeMillis = System.currentTimeMillis();
+		this.counters = Collections.unmodifiableMap(new TreeMap<String, Long>(counters));
+		this.histograms = Collections.unmodifiableMap(
+				new TreeMap<String, Histogram.Snapshot>(histograms));
+	}
+
+	/**
+	 * @return name of the registry from which this snapshot was taken.
+	 */
+	public String getRegistryName()
+	{
+		return registryName;
+	}
+
+	/**
+	 * @return System.currentTimeMillis() when this snapshot was taken.
+	 */
+	public long getTimeMillis()
+	{
+		return timeMillis;
+	}
+
+	/**
+	 * Retrieve the value of the named Counter, or zero if there is no such
+	 * Counter.
+	 * @param name name of the Counter
+	 * @return the value of the named Counter.
+	 */
+	public long getCounter(String name)
+	{
+		Long value = counters.get(name);
+		return value == null ? 0L : value;
+	}
+
+	/**
+	 * Retrieve the snapshot of the named Histogram, or null if there is no
+	 * such Histogram.
+	 * @param name name of the Histogram
+	 * @return the snapshot of the named Histogram, or null.
+	 */
+	public Histogram.Snapshot getHistogram(String name)
+	{
+		return histograms.get(name);
+	}
+
+	/**
+	 * @return unmodifiable map from Counter name to value, sorted by name.
+	 */
+	public Map<String, Long> getCounters()
+	{
+		return counters;
+	}
+
+	/**
+	 * @return unmodifiable map from Histogram name to snapshot, sorted by name.
+	 */
+	public Map<String, Histogram.Snapshot> getHistograms()
+	{
+		return histograms;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuffer buf = new StringBuffer();
+		buf.append(String.format("Metrics %s%n", registryName));
+		for (Entry<String, Long> e : counters.entrySet())
+			buf.append(String.format("  %-40s %12d%n", e.getKey(), e.getValue()));
+		for (Histogram.Snapshot h : histograms.values())
+			buf.append(String.format("  %-40s %12d  mean=%1.3f p50=%1.0f p99=%1.0f max=%d %s%n",
+					h.getName(), h.getCount(), h.getMean(), h.getQuantile(0.5),
+					h.getQuantile(0.99), h.getMax(), h.getUnits()));
+		return buf.toString();
+	}
+}
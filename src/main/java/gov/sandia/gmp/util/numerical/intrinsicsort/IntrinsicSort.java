@@ -32,6 +32,8 @@
  */
 package gov.sandia.gmp.util.numerical.intrinsicsort;
 
+import java.lang.reflect.Array;
+
 /**
  * Intrinsic sorting algorithm that sorts one intrinsic array in-place
  * while simultaneously sorting an additional intrinsic or generic array
@@ -46,11 +48,31 @@ package gov.sandia.gmp.util.numerical.intrinsicsort;
  * generally useful if more than one array must be sorted based on a
  * single arrays sorting permutation.
  * 
+ * <p> The parallelSort() functions sort an int, long, float, or double key
+ * array (or a range of it) while co-permuting any number of companion arrays
+ * of any type. Ranges of PARALLEL_CUTOFF or more entries are sorted with a
+ * parallel radix sort (see ParallelRadixSort) that is always stable, so a
+ * multi-key order can be obtained by sorting on the least significant key
+ * first and the most significant key last. Smaller int and long ranges are
+ * sorted on the calling thread, using the QuickSort functions above when a
+ * single companion is given and stable order is not requested. Float and
+ * double keys are always radix sorted, so at every size they are ordered by
+ * value with -0.0 before 0.0 and NaN last, and every NaN key is replaced
+ * with the canonical NaN. The radix sort uses temporary storage of about two
+ * key arrays and two int arrays of the range length, plus one copy of each
+ * companion range while it is permuted.
+ * 
  * @author jrhipp
  *
  */
 public class IntrinsicSort
 {
+  /**
+   * Ranges with at least this many entries are sorted in parallel by the
+   * parallelSort() functions.
+   */
+  public static final int PARALLEL_CUTOFF = 1 << 16;
+
   /**
    * Sorts the input integer array and the accompanying integer array based
    * on the integer array sort.
@@ -1841,6 +1863,335 @@ public class IntrinsicSort
     if ((s = d-c) > 1) sort(x, v, n-s, s);
   }
 
+  /**
+   * Sets the number of threads used by the parallelSort() functions. A value
+   * of 1 or less sorts on the calling thread. By default the common
+   * ForkJoinPool is used if more than one processor is available.
+   * 
+   * @param nThreads The number of threads.
+   */
+  public static void setParallelism(int nThreads)
+  {
+    ParallelRadixSort.setParallelism(nThreads);
+  }
+
+  /**
+   * Returns the number of threads used by the parallelSort() functions.
+   * 
+   * @return The number of threads used by the parallelSort() functions.
+   */
+  public static int getParallelism()
+  {
+    return ParallelRadixSort.getParallelism();
+  }
+
+  /**
+   * Sorts the input int array into ascending order in parallel and reorders
+   * each companion array in the same way. Companions may be any mix of
+   * primitive or Object arrays at least as long as x. A single Object[]
+   * companion must be cast to Object so that it is not taken as the
+   * companion list.
+   * 
+   * @param x      The array to be sorted.
+   * @param stable If true entries with equal keys keep their relative order.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(int[] x, boolean stable, Object... v)
+  {
+    parallelSort(x, 0, x.length, stable, v);
+  }
+
+  /**
+   * Sorts entries off to off+len-1 of the input int array into ascending
+   * order and reorders the same entries of each companion array in the same
+   * way. Ranges of PARALLEL_CUTOFF or more entries are radix sorted in
+   * parallel and are always stable. Smaller ranges are sorted on the calling
+   * thread, stably if requested.
+   * 
+   * @param x      The array to be sorted.
+   * @param off    The index of the first entry to be sorted.
+   * @param len    The number of entries to be sorted.
+   * @param stable If true entries with equal keys keep their relative order.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(int[] x, int off, int len, boolean stable,
+                                  Object... v)
+  {
+    checkRange(x.length, off, len, v);
+    if (len < 2) return;
+    if ((len < PARALLEL_CUTOFF) && !stable && (v.length == 1) &&
+        serialSort(x, off, len, v[0]))
+      return;
+
+    // map the keys to ints with the same unsigned order, sort them, and
+    // restore the sorted keys
+
+    int[] k = new int [len];
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+        k[i] = x[off + i] ^ Integer.MIN_VALUE;
+      });
+    int[] p = ParallelRadixSort.sort(k, len);
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+          x[off + i] = k[i] ^ Integer.MIN_VALUE;
+      });
+    ParallelRadixSort.permute(p, off, v);
+  }
+
+  /**
+   * Sorts the range of x with the QuickSort function for a single companion
+   * of type int[], long[], float[], double[], or Object[]. Returns false if
+   * the companion is of any other type.
+   */
+  private static boolean serialSort(int[] x, int off, int len, Object v)
+  {
+    if (v instanceof int[])
+      sort(x, (int[]) v, off, len);
+    else if (v instanceof long[])
+      sort(x, (long[]) v, off, len);
+    else if (v instanceof float[])
+      sort(x, (float[]) v, off, len);
+    else if (v instanceof double[])
+      sort(x, (double[]) v, off, len);
+    else if (v instanceof Object[])
+      sort(x, (Object[]) v, off, len);
+    else
+      return false;
+    return true;
+  }
+
+  /**
+   * Sorts the input long array into ascending order in parallel and reorders
+   * each companion array in the same way. Companions may be any mix of
+   * primitive or Object arrays at least as long as x. A single Object[]
+   * companion must be cast to Object so that it is not taken as the
+   * companion list.
+   * 
+   * @param x      The array to be sorted.
+   * @param stable If true entries with equal keys keep their relative order.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(long[] x, boolean stable, Object... v)
+  {
+    parallelSort(x, 0, x.length, stable, v);
+  }
+
+  /**
+   * Sorts entries off to off+len-1 of the input long array into ascending
+   * order and reorders the same entries of each companion array in the same
+   * way. Ranges of PARALLEL_CUTOFF or more entries are radix sorted in
+   * parallel and are always stable. Smaller ranges are sorted on the calling
+   * thread, stably if requested.
+   * 
+   * @param x      The array to be sorted.
+   * @param off    The index of the first entry to be sorted.
+   * @param len    The number of entries to be sorted.
+   * @param stable If true entries with equal keys keep their relative order.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(long[] x, int off, int len, boolean stable,
+                                  Object... v)
+  {
+    checkRange(x.length, off, len, v);
+    if (len < 2) return;
+    if ((len < PARALLEL_CUTOFF) && !stable && (v.length == 1) &&
+        serialSort(x, off, len, v[0]))
+      return;
+
+    // map the keys to longs with the same unsigned order, sort them, and
+    // restore the sorted keys
+
+    long[] k = new long [len];
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+        k[i] = x[off + i] ^ Long.MIN_VALUE;
+      });
+    int[] p = ParallelRadixSort.sort(k, len);
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+          x[off + i] = k[i] ^ Long.MIN_VALUE;
+      });
+    ParallelRadixSort.permute(p, off, v);
+  }
+
+  /**
+   * Sorts the range of x with the QuickSort function for a single companion
+   * of type int[], long[], float[], double[], or Object[]. Returns false if
+   * the companion is of any other type.
+   */
+  private static boolean serialSort(long[] x, int off, int len, Object v)
+  {
+    if (v instanceof int[])
+      sort(x, (int[]) v, off, len);
+    else if (v instanceof long[])
+      sort(x, (long[]) v, off, len);
+    else if (v instanceof float[])
+      sort(x, (float[]) v, off, len);
+    else if (v instanceof double[])
+      sort(x, (double[]) v, off, len);
+    else if (v instanceof Object[])
+      sort(x, (Object[]) v, off, len);
+    else
+      return false;
+    return true;
+  }
+
+  /**
+   * Sorts the input float array into ascending order in parallel and reorders
+   * each companion array in the same way. Companions may be any mix of
+   * primitive or Object arrays at least as long as x. A single Object[]
+   * companion must be cast to Object so that it is not taken as the
+   * companion list.
+   * 
+   * @param x      The array to be sorted.
+   * @param stable Ignored, float sorts are always stable.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(float[] x, boolean stable, Object... v)
+  {
+    parallelSort(x, 0, x.length, stable, v);
+  }
+
+  /**
+   * Sorts entries off to off+len-1 of the input float array into ascending
+   * order and reorders the same entries of each companion array in the same
+   * way. Ranges of every size are radix sorted, in parallel if they have
+   * PARALLEL_CUTOFF or more entries, so the sort is always stable and NaN
+   * keys always sort last.
+   * 
+   * @param x      The array to be sorted.
+   * @param off    The index of the first entry to be sorted.
+   * @param len    The number of entries to be sorted.
+   * @param stable Ignored, float sorts are always stable.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(float[] x, int off, int len, boolean stable,
+                                  Object... v)
+  {
+    checkRange(x.length, off, len, v);
+    if (len < 2) return;
+
+    // map the keys to ints with the same unsigned order, sort them, and
+    // restore the sorted keys. floatToIntBits() maps every NaN, including
+    // those with the sign bit set, to the canonical positive NaN so that
+    // NaNs sort after +Infinity.
+
+    int[] k = new int [len];
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+        {
+          int b = Float.floatToIntBits(x[off + i]);
+          k[i] = b ^ ((b >> 31) | Integer.MIN_VALUE);
+        }
+      });
+    int[] p = ParallelRadixSort.sort(k, len);
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+          x[off + i] = Float.intBitsToFloat((k[i] < 0) ?
+                                            k[i] ^ Integer.MIN_VALUE : ~k[i]);
+      });
+    ParallelRadixSort.permute(p, off, v);
+  }
+
+  /**
+   * Sorts the input double array into ascending order in parallel and reorders
+   * each companion array in the same way. Companions may be any mix of
+   * primitive or Object arrays at least as long as x. A single Object[]
+   * companion must be cast to Object so that it is not taken as the
+   * companion list.
+   * 
+   * @param x      The array to be sorted.
+   * @param stable Ignored, double sorts are always stable.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(double[] x, boolean stable, Object... v)
+  {
+    parallelSort(x, 0, x.length, stable, v);
+  }
+
+  /**
+   * Sorts entries off to off+len-1 of the input double array into ascending
+   * order and reorders the same entries of each companion array in the same
+   * way. Ranges of every size are radix sorted, in parallel if they have
+   * PARALLEL_CUTOFF or more entries, so the sort is always stable and NaN
+   * keys always sort last.
+   * 
+   * @param x      The array to be sorted.
+   * @param off    The index of the first entry to be sorted.
+   * @param len    The number of entries to be sorted.
+   * @param stable Ignored, double sorts are always stable.
+   * @param v      The companion arrays reordered based on x.
+   */
+  public static void parallelSort(double[] x, int off, int len, boolean stable,
+                                  Object... v)
+  {
+    checkRange(x.length, off, len, v);
+    if (len < 2) return;
+
+    // map the keys to longs with the same unsigned order, sort them, and
+    // restore the sorted keys. doubleToLongBits() maps every NaN, including
+    // those with the sign bit set, to the canonical positive NaN so that
+    // NaNs sort after +Infinity.
+
+    long[] k = new long [len];
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+        {
+          long b = Double.doubleToLongBits(x[off + i]);
+          k[i] = b ^ ((b >> 63) | Long.MIN_VALUE);
+        }
+      });
+    int[] p = ParallelRadixSort.sort(k, len);
+    ParallelRadixSort.parallelFor(0, len, ParallelRadixSort.grain(len),
+      (first, last) ->
+      {
+        for (int i = first; i < last; ++i)
+          x[off + i] = Double.longBitsToDouble((k[i] < 0) ?
+                                               k[i] ^ Long.MIN_VALUE : ~k[i]);
+      });
+    ParallelRadixSort.permute(p, off, v);
+  }
+
+  /**
+   * Throws an IllegalArgumentException if the range off to off+len-1 is not
+   * within an array of length n or within each companion array, or if a
+   * companion is not an array.
+   */
+  private static void checkRange(int n, int off, int len, Object[] v)
+  {
+    if ((off < 0) || (len < 0) || (off + len > n))
+      throw new IllegalArgumentException("Range [" + off + ", " + (off + len) +
+                                         ") exceeds array length " + n +
+                                         " ...");
+    for (Object a: v)
+    {
+      if ((a == null) || !a.getClass().isArray())
+        throw new IllegalArgumentException("Companion " + a +
+                                           " is not an array ...");
+      if (off + len > Array.getLength(a))
+        throw new IllegalArgumentException("Range [" + off + ", " +
+                                           (off + len) + ") exceeds " +
+                                           "companion array length " +
+                                           Array.getLength(a) +
+                                           " ...");
+    }
+  }
+
   /**
    * Swaps x[a] with x[b] and v[a] with v[b].
    */
@@ -0,0 +1,522 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.intrinsicsort;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel least-significant-digit radix sort kernels used by the
+ * IntrinsicSort.parallelSort() functions.
+ * 
+ * <p> Keys are first mapped to int or long values whose unsigned order is the
+ * same as the signed (or floating point) order of the original keys. Each
+ * pass sorts on one 8-bit digit: the keys are split into contiguous chunks,
+ * the digit histogram of each chunk is built in parallel, the histograms are
+ * combined into per-chunk starting offsets, and each chunk then scatters its
+ * keys (and their original positions) into the output buffer in parallel.
+ * Passes in which every key shares the same digit (for example the high bytes
+ * of small non-negative indices) are skipped. Since each pass is stable the
+ * sort is stable, and the result does not depend on the number of threads.
+ * 
+ * <p> The sort returns the permutation of the original positions, which is
+ * then applied to any number of companion arrays by permute().
+ * 
+ * <p> Work is processed on a ForkJoinPool whose size can be set with
+ * setParallelism(). By default the common pool is used if more than one
+ * processor is available.
+ */
+final class ParallelRadixSort
+{
+  /**
+   * The number of bits in one digit.
+   */
+  private static final int DIGIT_BITS = 8;
+
+  /**
+   * The number of distinct digits.
+   */
+  private static final int RADIX = 1 << DIGIT_BITS;
+
+  /**
+   * The minimum number of entries assigned to a single parallel task.
+   */
+  private static final int MIN_CHUNK = 1 << 15;
+
+  /**
+   * Ranges with fewer entries than this are insertion sorted.
+   */
+  private static final int INSERTION_SORT_SIZE = 32;
+
+  /**
+   * Applies an operation to the entries first to last-1.
+   */
+  interface RangeOperation
+  {
+    void apply(int first, int last);
+  }
+
+  /**
+   * The pool on which work is processed, or null to process it in the
+   * calling thread.
+   */
+  private static volatile ForkJoinPool pool = defaultPool();
+
+  /**
+   * The number of threads in pool (1 if pool is null).
+   */
+  private static volatile int parallelism =
+      (pool == null) ? 1 : pool.getParallelism();
+
+  private ParallelRadixSort()
+  {
+  }
+
+  /**
+   * Returns the common pool if more than one processor is available, else
+   * null.
+   */
+  private static ForkJoinPool defaultPool()
+  {
+    if (Runtime.getRuntime().availableProcessors() > 1)
+      return ForkJoinPool.commonPool();
+    return null;
+  }
+
+  /**
+   * Sets the number of threads used by the parallel sorts. A value of 1 or
+   * less processes all work in the calling thread. The previous pool is not
+   * shut down because a sort running on another thread may still submit
+   * work to it. Its idle workers terminate on their own.
+   * 
+   * @param nThreads The number of threads.
+   */
+  static synchronized void setParallelism(int nThreads)
+  {
+    if (nThreads <= 1)
+      pool = null;
+    else if (nThreads == ForkJoinPool.getCommonPoolParallelism())
+      pool = ForkJoinPool.commonPool();
+    else
+      pool = new ForkJoinPool(nThreads);
+    parallelism = max(nThreads, 1);
+  }
+
+  /**
+   * Returns the number of threads used by the parallel sorts.
+   * 
+   * @return The number of threads used by the parallel sorts.
+   */
+  static int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * Returns the number of chunks into which n entries are split (about four
+   * per thread but none smaller than MIN_CHUNK).
+   * 
+   * @param n The number of entries.
+   * @return The number of chunks.
+   */
+  private static int chunks(int n)
+  {
+    if (pool == null) return 1;
+    return max(1, min(4 * parallelism, n / MIN_CHUNK));
+  }
+
+  /**
+   * Sorts the first n keys of k into unsigned ascending order and returns the
+   * permutation p where p[i] is the original position of the key now at i.
+   * k is sorted in place on return.
+   * 
+   * @param k The keys.
+   * @param n The number of keys.
+   * @return The sort permutation.
+   */
+  static int[] sort(int[] k, int n)
+  {
+    int[] p = identity(n);
+    if (n < INSERTION_SORT_SIZE)
+    {
+      for (int i = 1; i < n; ++i)
+      {
+        int ki = k[i], pi = p[i], j = i;
+        for (; (j > 0) && (Integer.compareUnsigned(k[j-1], ki) > 0); --j)
+        {
+          k[j] = k[j-1];
+          p[j] = p[j-1];
+        }
+        k[j] = ki;
+        p[j] = pi;
+      }
+      return p;
+    }
+
+    int nc = chunks(n);
+    int[][] counts = new int [nc][RADIX];
+    int[] kb = new int [n];
+    int[] pb = new int [n];
+    int[] ka = k, pa = p;
+    for (int shift = 0; shift < Integer.SIZE; shift += DIGIT_BITS)
+    {
+      final int s = shift;
+      final int[] ks = ka, ps = pa, kd = kb, pd = pb;
+      forEachChunk(n, nc, (c, first, last) ->
+      {
+        int[] cnt = counts[c];
+        Arrays.fill(cnt, 0);
+        for (int i = first; i < last; ++i) ++cnt[(ks[i] >>> s) & (RADIX - 1)];
+      });
+      if (!offsets(counts, n)) continue;
+
+      forEachChunk(n, nc, (c, first, last) ->
+      {
+        int[] pos = counts[c];
+        for (int i = first; i < last; ++i)
+        {
+          int j = pos[(ks[i] >>> s) & (RADIX - 1)]++;
+          kd[j] = ks[i];
+          pd[j] = ps[i];
+        }
+      });
+      kb = ka; ka = kd;
+      pb = pa; pa = pd;
+    }
+
+    if (ka != k)
+    {
+      final int[] ks = ka;
+      parallelFor(0, n, grain(n), (first, last) ->
+          System.arraycopy(ks, first, k, first, last - first));
+    }
+    return pa;
+  }
+
+  /**
+   * Sorts the first n keys of k into unsigned ascending order and returns the
+   * permutation p where p[i] is the original position of the key now at i.
+   * k is sorted in place on return.
+   * 
+   * @param k The keys.
+   * @param n The number of keys.
+   * @return The sort permutation.
+   */
+  static int[] sort(long[] k, int n)
+  {
+    int[] p = identity(n);
+    if (n < INSERTION_SORT_SIZE)
+    {
+      for (int i = 1; i < n; ++i)
+      {
+        long ki = k[i];
+        int pi = p[i], j = i;
+        for (; (j > 0) && (Long.compareUnsigned(k[j-1], ki) > 0); --j)
+        {
+          k[j] = k[j-1];
+          p[j] = p[j-1];
+        }
+        k[j] = ki;
+        p[j] = pi;
+      }
+      return p;
+    }
+
+    int nc = chunks(n);
+    int[][] counts = new int [nc][RADIX];
+    long[] kb = new long [n];
+    int[]  pb = new int [n];
+    long[] ka = k;
+    int[]  pa = p;
+    for (int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS)
+    {
+      final int s = shift;
+      final long[] ks = ka, kd = kb;
+      final int[] ps = pa, pd = pb;
+      forEachChunk(n, nc, (c, first, last) ->
+      {
+        int[] cnt = counts[c];
+        Arrays.fill(cnt, 0);
+        for (int i = first; i < last; ++i)
+          ++cnt[(int) (ks[i] >>> s) & (RADIX - 1)];
+      });
+      if (!offsets(counts, n)) continue;
+
+      forEachChunk(n, nc, (c, first, last) ->
+      {
+        int[] pos = counts[c];
+        for (int i = first; i < last; ++i)
+        {
+          int j = pos[(int) (ks[i] >>> s) & (RADIX - 1)]++;
+          kd[j] = ks[i];
+          pd[j] = ps[i];
+        }
+      });
+      kb = ka; ka = kd;
+      pb = pa; pa = pd;
+    }
+
+    if (ka != k)
+    {
+      final long[] ks = ka;
+      parallelFor(0, n, grain(n), (first, last) ->
+          System.arraycopy(ks, first, k, first, last - first));
+    }
+    return pa;
+  }
+
+  /**
+   * Converts the per-chunk digit histograms into per-chunk starting offsets
+   * (digits in order, and chunks in order within each digit). Returns false,
+   * leaving counts unchanged, if all n keys share the same digit so that the
+   * pass can be skipped.
+   * 
+   * @param counts The per-chunk histograms on entry and offsets on exit.
+   * @param n      The number of keys.
+   * @return True if the pass must be performed.
+   */
+  private static boolean offsets(int[][] counts, int n)
+  {
+    for (int d = 0; d < RADIX; ++d)
+    {
+      int total = 0;
+      for (int[] cnt: counts) total += cnt[d];
+      if (total == n) return false;
+      if (total > 0) break;
+    }
+
+    int pos = 0;
+    for (int d = 0; d < RADIX; ++d)
+      for (int[] cnt: counts)
+      {
+        int c = cnt[d];
+        cnt[d] = pos;
+        pos += c;
+      }
+    return true;
+  }
+
+  /**
+   * Returns the identity permutation of length n.
+   */
+  private static int[] identity(int n)
+  {
+    int[] p = new int [n];
+    parallelFor(0, n, grain(n), (first, last) ->
+    {
+      for (int i = first; i < last; ++i) p[i] = i;
+    });
+    return p;
+  }
+
+  /**
+   * Reorders entries off to off+p.length-1 of each companion array so that
+   * entry off+i receives the entry originally at off+p[i]. Supported
+   * companions are int[], long[], float[], double[], short[], byte[],
+   * boolean[], char[] and Object[] arrays.
+   * 
+   * @param p   The sort permutation returned by sort().
+   * @param off The first entry of each companion to be reordered.
+   * @param v   The companion arrays.
+   */
+  static void permute(int[] p, int off, Object... v)
+  {
+    int n = p.length;
+    for (Object a: v)
+    {
+      if (a instanceof int[])
+      {
+        int[] x = (int[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof long[])
+      {
+        long[] x = (long[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof double[])
+      {
+        double[] x = (double[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof float[])
+      {
+        float[] x = (float[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof short[])
+      {
+        short[] x = (short[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof byte[])
+      {
+        byte[] x = (byte[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof boolean[])
+      {
+        boolean[] x = (boolean[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else if (a instanceof char[])
+      {
+        char[] x = (char[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+      else
+      {
+        Object[] x = (Object[]) a, t = Arrays.copyOfRange(x, off, off + n);
+        parallelFor(0, n, grain(n), (first, last) ->
+        {
+          for (int i = first; i < last; ++i) x[off + i] = t[p[i]];
+        });
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries per task for a range of n entries.
+   */
+  static int grain(int n)
+  {
+    return max(MIN_CHUNK, (n + 4 * parallelism - 1) / (4 * parallelism));
+  }
+
+  /**
+   * Applies an operation to chunk c, which covers the entries first to
+   * last-1.
+   */
+  private interface ChunkOperation
+  {
+    void apply(int c, int first, int last);
+  }
+
+  /**
+   * Splits n entries into nc contiguous chunks of (nearly) equal size and
+   * applies op to each, in parallel if a pool is defined.
+   * 
+   * @param n  The number of entries.
+   * @param nc The number of chunks.
+   * @param op The operation.
+   */
+  private static void forEachChunk(int n, int nc, ChunkOperation op)
+  {
+    parallelFor(0, nc, 1, (c0, c1) ->
+    {
+      for (int c = c0; c < c1; ++c)
+        op.apply(c, (int) ((long) n * c / nc), (int) ((long) n * (c + 1) / nc));
+    });
+  }
+
+  /**
+   * Applies op to the range first to last-1. If a pool is defined and the
+   * range exceeds grain it is split recursively into halves that are
+   * processed in parallel.
+   * 
+   * @param first The first index.
+   * @param last  One past the last index.
+   * @param grain The largest range processed by a single task.
+   * @param op    The operation.
+   */
+  static void parallelFor(int first, int last, int grain, RangeOperation op)
+  {
+    if (last <= first) return;
+
+    ForkJoinPool p = pool;
+    if ((p == null) || (last - first <= grain))
+      op.apply(first, last);
+    else
+      p.invoke(new RangeTask(first, last, grain, op));
+  }
+
+  /**
+   * Recursively splits a range in half until it is no larger than the
+   * grain, which is then processed.
+   */
+  @SuppressWarnings("serial")
+  private static class RangeTask extends RecursiveAction
+  {
+    private final int first, last, grain;
+    private final RangeOperation op;
+
+    RangeTask(int first, int last, int grain, RangeOperation op)
+    {
+      this.first = first;
+      this.last = last;
+      this.grain = grain;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (last - first <= grain)
+        op.apply(first, last);
+      else
+      {
+        int mid = (first + last) >>> 1;
+        invokeAll(new RangeTask(first, mid, grain, op),
+                  new RangeTask(mid, last, grain, op));
+      }
+    }
+  }
+}
@@ -109,6 +109,22 @@ public class CholeskyDecomposition implements MatrixSolver
    *            Matrix must be square.
    */
   public void decompose(double [][] A)
+  {
+    decompose(A, A.length >= DenseKernels.BLOCKED_MINIMUM);
+  }
+
+  /**
+   * Performs the Cholesky decomposition for the input symmetric and positive
+   * definite matrix. The blocked algorithm is cache-blocked and parallel
+   * (see DenseKernels) and is used by default for matrices of dimension
+   * DenseKernels.BLOCKED_MINIMUM or more.
+   * 
+   * @param A       Square, symmetric matrix.
+   * @param blocked If true the blocked algorithm is used.
+   * @exception IllegalArgumentException
+   *            Matrix must be square.
+   */
+  private void decompose(double [][] A, boolean blocked)
   {
     double d, s;
     double [] Lrowj, Lrowk, Arowj;
@@ -125,6 +141,16 @@ public class CholeskyDecomposition implements MatrixSolver
     
     n = A.length;
     L = new double[n][n];
+
+    if (blocked)
+    {
+      // copy the lower triangle of A into L and decompose in place
+
+      for (int j = 0; j < n; j++) System.arraycopy(A[j], 0, L[j], 0, j + 1);
+      isspd = DenseKernels.cholesky(L, n);
+      return;
+    }
+
     isspd = true;
 
     // Main loop.
@@ -275,9 +301,6 @@ public class CholeskyDecomposition implements MatrixSolver
    */
   public void solve(double [][] a)
   {
-    int i, j, k;
-    double [] ak , Lk;
-
     // validate input matrix and matrix L
 
     if (a.length < n)
@@ -293,34 +316,10 @@ public class CholeskyDecomposition implements MatrixSolver
       throw new RuntimeException("Matrix is not symmetric positive definite.");
     }
 
-    // set number of columns to solve for
+    // set number of columns to solve for and solve L*y = b followed by
+    // L'*a = y (row oriented and parallel over blocks of columns)
 
     int ncol = a[0].length;
-
-    // Solve L*y = b;
-
-    for (k = 0; k < n; k++)
-    {
-      ak = a[k];
-      Lk = L[k];
-      for (j = 0; j < ncol; j++)
-      {
-        for (i = 0; i < k; i++) ak[j] -= a[i][j] * Lk[i];
-        ak[j] /= Lk[k];
-      }
-    }
-
-    // Solve L'*a = y;
-
-    for (k = n - 1; k >= 0; k--)
-    {
-      ak = a[k];
-      Lk = L[k];
-      for (j = 0; j < ncol; j++)
-      {
-        for (i = k + 1; i < n; i++) ak[j] -= a[i][j] * L[i][k];
-        ak[j] /= Lk[k];
-      }
-    }
+    DenseKernels.choleskySolve(L, a, n, ncol);
   }
 }
@@ -0,0 +1,577 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.matrix;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cache-blocked and parallel dense kernels used by Matrix,
+ * CholeskyDecomposition and LUDecomposition for large matrices.
+ * 
+ * <p> All kernels operate on row-major double[][] storage. The factorizations
+ * are right-looking and proceed in panels of BLOCK columns: the panel is
+ * factored, the corresponding block row (LU) or block column (Cholesky) is
+ * solved, and the trailing sub-matrix is updated with the panel. The trailing
+ * update performs nearly all of the floating point work and is split into row
+ * ranges that are processed in parallel. Within each row range the columns
+ * are visited in blocks of COL_BLOCK so that the panel rows being applied
+ * remain in cache.
+ * 
+ * <p> The matrix product and the triangular solves accumulate every output
+ * entry in the same order as the original JAMA loops, so they return results
+ * identical to the unblocked code for any number of threads. The blocked
+ * factorizations accumulate the inner products one panel at a time, so their
+ * results differ from the unblocked factorizations by round-off only.
+ * 
+ * <p> Work is processed on a ForkJoinPool whose size can be set with
+ * setParallelism(). By default the common pool is used if more than one
+ * processor is available. Ranges too small to benefit from splitting are
+ * processed in the calling thread.
+ */
+final class DenseKernels
+{
+  /**
+   * The panel width of the blocked factorizations and the inner (k) block
+   * size of the matrix product.
+   */
+  static final int BLOCK = 64;
+
+  /**
+   * The column block size used by the trailing updates, the matrix product
+   * and the triangular solves.
+   */
+  static final int COL_BLOCK = 256;
+
+  /**
+   * Factorizations of matrices with fewer rows or columns than this use the
+   * original unblocked algorithms.
+   */
+  static final int BLOCKED_MINIMUM = 128;
+
+  /**
+   * The approximate minimum number of multiply-adds assigned to a single
+   * parallel task.
+   */
+  private static final long MIN_TASK_WORK = 1L << 16;
+
+  /**
+   * Applies an operation to the rows or columns first to last-1.
+   */
+  interface RangeOperation
+  {
+    void apply(int first, int last);
+  }
+
+  /**
+   * The pool on which work is processed, or null to process it in the
+   * calling thread.
+   */
+  private static volatile ForkJoinPool pool = defaultPool();
+
+  /**
+   * The number of threads in pool (1 if pool is null).
+   */
+  private static volatile int parallelism =
+      (pool == null) ? 1 : pool.getParallelism();
+
+  private DenseKernels()
+  {
+  }
+
+  /**
+   * Returns the common pool if more than one processor is available, else
+   * null.
+   */
+  private static ForkJoinPool defaultPool()
+  {
+    if (Runtime.getRuntime().availableProcessors() > 1)
+      return ForkJoinPool.commonPool();
+    return null;
+  }
+
+  /**
+   * Sets the number of threads used by the dense kernels. A value of 1 or
+   * less processes all work in the calling thread.
+   * 
+   * <p> The previous pool is not shut down. Other threads may have read it
+   * and still be submitting work to it, which a shut down pool would
+   * reject. Its idle worker threads terminate on their own, after which it
+   * is garbage collected.
+   * 
+   * @param nThreads The number of threads.
+   */
+  static synchronized void setParallelism(int nThreads)
+  {
+    if (nThreads <= 1)
+      pool = null;
+    else if (nThreads == ForkJoinPool.getCommonPoolParallelism())
+      pool = ForkJoinPool.commonPool();
+    else
+      pool = new ForkJoinPool(nThreads);
+    parallelism = max(nThreads, 1);
+  }
+
+  /**
+   * Returns the number of threads used by the dense kernels.
+   * 
+   * @return The number of threads used by the dense kernels.
+   */
+  static int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * Computes C = A * B where A is m x n, B is n x p, and C is m x p and
+   * contains zeros on entry. Rows of C are processed in parallel. Each entry
+   * C[i][j] accumulates A[i][k] * B[k][j] for k = 0 to n-1 in order,
+   * exactly as the unblocked dot-product loop does.
+   * 
+   * @param A The left matrix.
+   * @param B The right matrix.
+   * @param C The product.
+   * @param m The rows of A and C.
+   * @param n The columns of A and rows of B.
+   * @param p The columns of B and C.
+   */
+  static void multiply(double[][] A, double[][] B, double[][] C,
+                       int m, int n, int p)
+  {
+    parallelFor(0, m, grain(m, (long) n * p), (i0, i1) ->
+    {
+      for (int j0 = 0; j0 < p; j0 += COL_BLOCK)
+      {
+        int j1 = min(j0 + COL_BLOCK, p);
+        for (int k0 = 0; k0 < n; k0 += BLOCK)
+        {
+          int k1 = min(k0 + BLOCK, n);
+          for (int i = i0; i < i1; ++i)
+          {
+            double[] Ai = A[i];
+            double[] Ci = C[i];
+            for (int k = k0; k < k1; ++k)
+            {
+              double a = Ai[k];
+              double[] Bk = B[k];
+              for (int j = j0; j < j1; ++j) Ci[j] += a * Bk[j];
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Performs an in-place blocked Cholesky decomposition of the n x n matrix
+   * L, which contains the lower triangle of the symmetric input matrix (and
+   * zeros above the diagonal) on entry and the lower triangular factor on
+   * exit. As with the unblocked algorithm a non-positive pivot is replaced
+   * by zero, the decomposition continues, and false is returned.
+   * 
+   * @param L The matrix to be decomposed.
+   * @param n The matrix dimension.
+   * @return True if the matrix is symmetric positive definite.
+   */
+  static boolean cholesky(double[][] L, int n)
+  {
+    boolean isspd = true;
+    for (int k0 = 0; k0 < n; k0 += BLOCK)
+    {
+      final int kb = k0;
+      final int ke = min(k0 + BLOCK, n);
+
+      // factor the diagonal block (all contributions from previous panels
+      // have already been subtracted by the trailing updates)
+
+      for (int j = kb; j < ke; ++j)
+      {
+        double[] Lj = L[j];
+        double d = 0.0;
+        for (int k = kb; k < j; ++k)
+        {
+          double[] Lk = L[k];
+          double s = 0.0;
+          for (int i = kb; i < k; ++i) s += Lk[i] * Lj[i];
+          Lj[k] = s = (Lj[k] - s) / Lk[k];
+          d += s * s;
+        }
+
+        d = Lj[j] - d;
+        isspd = isspd && (d > 0.0);
+        Lj[j] = sqrt(max(d, 0.0));
+      }
+      if (ke == n) break;
+
+      // solve for the block column below the diagonal block
+
+      int nb = ke - kb;
+      parallelFor(ke, n, grain(n - ke, (long) nb * nb / 2), (i0, i1) ->
+      {
+        for (int i = i0; i < i1; ++i)
+        {
+          double[] Li = L[i];
+          for (int k = kb; k < ke; ++k)
+          {
+            double[] Lk = L[k];
+            double s = 0.0;
+            for (int t = kb; t < k; ++t) s += Li[t] * Lk[t];
+            Li[k] = (Li[k] - s) / Lk[k];
+          }
+        }
+      });
+
+      // update the lower triangle of the trailing sub-matrix
+
+      parallelFor(ke, n, grain(n - ke, (long) nb * (n - ke) / 2), (i0, i1) ->
+      {
+        for (int j0 = ke; j0 < i1; j0 += COL_BLOCK)
+        {
+          int j1 = min(j0 + COL_BLOCK, i1);
+          for (int i = max(i0, j0); i < i1; ++i)
+          {
+            double[] Li = L[i];
+            int jmax = min(j1 - 1, i);
+            for (int j = j0; j <= jmax; ++j)
+            {
+              double[] Lj = L[j];
+              double s = 0.0;
+              for (int t = kb; t < ke; ++t) s += Li[t] * Lj[t];
+              Li[j] -= s;
+            }
+          }
+        }
+      });
+    }
+
+    return isspd;
+  }
+
+  /**
+   * Performs an in-place blocked LU decomposition with partial pivoting of
+   * the m x n matrix LU. On exit LU contains the unit lower triangular factor
+   * L below the diagonal and the upper triangular factor U on and above the
+   * diagonal, and piv contains the row permutation (rows are exchanged by
+   * swapping the row arrays of LU). The pivot of each column is the entry of
+   * largest magnitude on or below the diagonal (the first if tied), as in the
+   * unblocked algorithm.
+   * 
+   * @param LU  The matrix to be decomposed.
+   * @param m   The number of rows.
+   * @param n   The number of columns.
+   * @param piv The pivot vector of length m, initialized to 0 ... m-1 on
+   *            entry.
+   * @return The pivot sign (+1 or -1).
+   */
+  static int lu(double[][] LU, int m, int n, int[] piv)
+  {
+    int pivsign = 1;
+    int kn = min(m, n);
+    for (int k0 = 0; k0 < kn; k0 += BLOCK)
+    {
+      final int kb = k0;
+      final int ke = min(k0 + BLOCK, kn);
+
+      // factor the panel (columns kb to ke-1 of rows kb to m-1)
+
+      for (int j = kb; j < ke; ++j)
+      {
+        // find pivot and exchange if necessary
+
+        int p = j;
+        double pmax = abs(LU[j][j]);
+        for (int i = j + 1; i < m; ++i)
+        {
+          double v = abs(LU[i][j]);
+          if (v > pmax)
+          {
+            pmax = v;
+            p = i;
+          }
+        }
+
+        if (p != j)
+        {
+          double[] t = LU[p];
+          LU[p] = LU[j];
+          LU[j] = t;
+          int k = piv[p];
+          piv[p] = piv[j];
+          piv[j] = k;
+          pivsign = -pivsign;
+        }
+
+        // compute multipliers and update the remainder of the panel
+
+        final double[] LUj = LU[j];
+        if (LUj[j] != 0.0)
+        {
+          final int jj = j;
+          parallelFor(j + 1, m, grain(m - j - 1, ke - j), (i0, i1) ->
+          {
+            for (int i = i0; i < i1; ++i)
+            {
+              double[] LUi = LU[i];
+              double l = LUi[jj] /= LUj[jj];
+              for (int c = jj + 1; c < ke; ++c) LUi[c] -= l * LUj[c];
+            }
+          });
+        }
+      }
+      if (ke == n) continue;
+
+      // solve for the block row of U to the right of the panel
+
+      int nb = ke - kb;
+      parallelFor(ke, n, max(COL_BLOCK, grain(n - ke, (long) nb * nb / 2)),
+                  (c0, c1) ->
+      {
+        for (int r = kb + 1; r < ke; ++r)
+        {
+          double[] LUr = LU[r];
+          for (int t = kb; t < r; ++t)
+          {
+            double l = LUr[t];
+            double[] LUt = LU[t];
+            for (int c = c0; c < c1; ++c) LUr[c] -= l * LUt[c];
+          }
+        }
+      });
+
+      // update the trailing sub-matrix
+
+      if (ke == m) continue;
+      parallelFor(ke, m, grain(m - ke, (long) nb * (n - ke)), (i0, i1) ->
+      {
+        for (int c0 = ke; c0 < n; c0 += COL_BLOCK)
+        {
+          int c1 = min(c0 + COL_BLOCK, n);
+          for (int i = i0; i < i1; ++i)
+          {
+            double[] LUi = LU[i];
+            for (int t = kb; t < ke; ++t)
+            {
+              double l = LUi[t];
+              double[] LUt = LU[t];
+              for (int c = c0; c < c1; ++c) LUi[c] -= l * LUt[c];
+            }
+          }
+        }
+      });
+    }
+
+    return pivsign;
+  }
+
+  /**
+   * Solves L * L' * X = B in place for the lower triangular Cholesky factor
+   * L (n x n). a contains B on entry and X on exit. Columns of a are solved
+   * in parallel blocks. Each entry is accumulated in the same order as the
+   * unblocked column-by-column solve.
+   * 
+   * @param L    The Cholesky factor.
+   * @param a    The right hand side on entry and the solution on exit.
+   * @param n    The matrix dimension.
+   * @param ncol The number of columns of a.
+   */
+  static void choleskySolve(double[][] L, double[][] a, int n, int ncol)
+  {
+    parallelFor(0, ncol, columnGrain(ncol, (long) n * n), (j0, j1) ->
+    {
+      // Solve L*y = b;
+
+      for (int k = 0; k < n; k++)
+      {
+        double[] ak = a[k];
+        double[] Lk = L[k];
+        for (int i = 0; i < k; i++)
+        {
+          double l = Lk[i];
+          double[] ai = a[i];
+          for (int j = j0; j < j1; j++) ak[j] -= ai[j] * l;
+        }
+        double d = Lk[k];
+        for (int j = j0; j < j1; j++) ak[j] /= d;
+      }
+
+      // Solve L'*a = y;
+
+      for (int k = n - 1; k >= 0; k--)
+      {
+        double[] ak = a[k];
+        for (int i = k + 1; i < n; i++)
+        {
+          double l = L[i][k];
+          double[] ai = a[i];
+          for (int j = j0; j < j1; j++) ak[j] -= ai[j] * l;
+        }
+        double d = L[k][k];
+        for (int j = j0; j < j1; j++) ak[j] /= d;
+      }
+    });
+  }
+
+  /**
+   * Solves L * U * X = B in place for the (already pivoted) right hand side
+   * B, where L and U are stored in the n x n leading block of LU. a contains
+   * B on entry and X on exit. Columns of a are solved in parallel blocks.
+   * Each entry is accumulated in the same order as the unblocked solve.
+   * 
+   * @param LU   The LU factors.
+   * @param a    The right hand side on entry and the solution on exit.
+   * @param n    The matrix dimension.
+   * @param ncol The number of columns of a.
+   */
+  static void luSolve(double[][] LU, double[][] a, int n, int ncol)
+  {
+    parallelFor(0, ncol, columnGrain(ncol, (long) n * n), (j0, j1) ->
+    {
+      // Solve L*Y = B(piv,:)
+
+      for (int k = 0; k < n; k++)
+      {
+        double[] ak = a[k];
+        for (int i = k + 1; i < n; i++)
+        {
+          double l = LU[i][k];
+          double[] ai = a[i];
+          for (int j = j0; j < j1; j++) ai[j] -= ak[j] * l;
+        }
+      }
+
+      // Solve U*X = Y;
+
+      for (int k = n - 1; k >= 0; k--)
+      {
+        double[] ak = a[k];
+        double d = LU[k][k];
+        for (int j = j0; j < j1; j++) ak[j] /= d;
+
+        for (int i = 0; i < k; i++)
+        {
+          double l = LU[i][k];
+          double[] ai = a[i];
+          for (int j = j0; j < j1; j++) ai[j] -= ak[j] * l;
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the number of items per task for a range of count items that
+   * each require workPerItem multiply-adds. The range is split into about
+   * four tasks per thread, but no task is given less than MIN_TASK_WORK
+   * multiply-adds.
+   * 
+   * @param count       The number of items in the range.
+   * @param workPerItem The multiply-adds per item.
+   * @return The number of items per task.
+   */
+  private static int grain(int count, long workPerItem)
+  {
+    int perThread = (count + 4 * parallelism - 1) / (4 * parallelism);
+    long minItems = MIN_TASK_WORK / max(workPerItem, 1);
+    return (int) max(max(perThread, minItems), 1);
+  }
+
+  /**
+   * Returns the number of columns per task for the triangular solves.
+   * Columns are never split into blocks smaller than BLOCK.
+   * 
+   * @param ncol          The number of columns.
+   * @param workPerColumn The multiply-adds per column.
+   * @return The number of columns per task.
+   */
+  private static int columnGrain(int ncol, long workPerColumn)
+  {
+    return max(BLOCK, grain(ncol, workPerColumn));
+  }
+
+  /**
+   * Applies op to the range first to last-1. If a pool is defined and the
+   * range exceeds grain it is split recursively into halves that are
+   * processed in parallel.
+   * 
+   * @param first The first index.
+   * @param last  One past the last index.
+   * @param grain The largest range processed by a single task.
+   * @param op    The operation.
+   */
+  static void parallelFor(int first, int last, int grain, RangeOperation op)
+  {
+    if (last <= first) return;
+
+    ForkJoinPool p = pool;
+    if ((p == null) || (last - first <= grain))
+      op.apply(first, last);
+    else
+      p.invoke(new RangeTask(first, last, grain, op));
+  }
+
+  /**
+   * Recursively splits a range in half until it is no larger than the
+   * grain, which is then processed.
+   */
+  @SuppressWarnings("serial")
+  private static class RangeTask extends RecursiveAction
+  {
+    private final int first, last, grain;
+    private final RangeOperation op;
+
+    RangeTask(int first, int last, int grain, RangeOperation op)
+    {
+      this.first = first;
+      this.last = last;
+      this.grain = grain;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (last - first <= grain)
+        op.apply(first, last);
+      else
+      {
+        int mid = (first + last) >>> 1;
+        invokeAll(new RangeTask(first, mid, grain, op),
+                  new RangeTask(mid, last, grain, op));
+      }
+    }
+  }
+}
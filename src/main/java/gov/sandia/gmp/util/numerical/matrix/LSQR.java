@@ -38,17 +38,13 @@ import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
 
 import java.io.IOException;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ForkJoinPool;
 
 import gov.sandia.gmp.util.containers.arraylist.ArrayListDouble;
 import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
 import gov.sandia.gmp.util.globals.Globals;
 import gov.sandia.gmp.util.logmanager.ScreenWriterOutput;
+import gov.sandia.gmp.util.numerical.sparse.SparseMatrix;
 
 /**
 * <p> LSQR least-squares matrix solution algorithm as originally defined by
@@ -111,6 +107,26 @@ import gov.sandia.gmp.util.logmanager.ScreenWriterOutput;
 *                          ArrayListDouble bRHS, double[] x, double[] se)
 *                    throws IOException
 *
+* <p> Internally the solver only sees the matrix through the LinearOperator
+* interface (y = y + A * x and x = x + A' * y). The sequential solve wraps the
+* triplet arrays in a sequential operator and the concurrent solve wraps the
+* CSR and CSC arrays in a SparseLinearOperator whose products run on a
+* ForkJoinPool. Callers can also supply their own operator:
+*
+* <p>     public int solve(LinearOperator a, double[] bRHS, double[] x, double[] se)
+*                    throws IOException
+*
+* <p> or solve directly from a SparseMatrix (SparseMatrixStandard or
+* SparseMatrixHuge) in parallel:
+*
+* <p>     public int solve(SparseMatrix a, double[] bRHS, double[] x, double[] se)
+*                    throws IOException
+*
+* <p> The 2-norms and scaling of u and v are always evaluated sequentially, and
+* every entry of a matrix-vector product is accumulated in the same order by
+* every operator, so the convergence diagnostics (aNorm, rNorm, etc.) of a
+* parallel solution are identical to those of the sequential solution.
+*
 * <p> In both cases the bRHS is the rhs vector of the problem definition, x is the
 * solution vector and se is the solution error. Both x and se are solved for and
 * filled on return. The vectors sprsMatrx, in the first case, and sprsRowMtrx in
@@ -144,7 +160,7 @@ import gov.sandia.gmp.util.logmanager.ScreenWriterOutput;
 * <p> where A is a matrix with m rows and n columns, b is an
 *     m-vector, and damp is a scalar.  (All quantities are real.)
 *     The matrix A is intended to be large and sparse.  It is used
-*     in function aprod to update v and u as
+*     in the LinearOperator products to update v and u as
 *     
 * <p>            u[sprsRowIndx[i]] += aSprs[i] * v[sprsColIndx[i]];
 *                
@@ -396,6 +412,8 @@ import gov.sandia.gmp.util.logmanager.ScreenWriterOutput;
 *                  Laboratories).
 *     28 Aug 2009: Added multi-threaded solution of aProd (James R Hipp,
 *                  Sandia National Laboratories).
+*                  Refactored around the LinearOperator interface with a
+*                  parallel CSR/CSC SparseLinearOperator.
 *
 * <p> Michael A. Saunders            (na.saunders @ NA-net.stanford.edu)
 *     Department of Operations Research
@@ -406,42 +424,10 @@ import gov.sandia.gmp.util.logmanager.ScreenWriterOutput;
 public class LSQR
 {
   /**
-   * The row-ordered sparse matrix. This is used by both the sequential solver
-   * aProd and the concurrent solver submitTasks(SolveAProd[] tasks).
-   */
-  private double[] aSprsRow = null;
-
-  /**
-   * The row-ordered u vector (aU) index vector if this is a concurrent
-   * solution, or the column-ordered u vector index vector if this is a
-   * sequential solution.
-   */
-  private int[]    aRowIndx = null;
-
-  /**
-   * The row start index of each new row in the row-ordered sparse matrix
-   * (aSprsRow). This vector is only used by the concurrent solution.
-   */
-  private int[]    aRowPtr  = null;
-
-  /**
-   * The column-ordered sparse matrix. This matrix is only used by the
-   * concurrent solution.
-   */
-  private double[] aSprsCol = null;
-
-  /**
-   * The row-ordered v vector (aV) index vector if this is a concurrent
-   * solution for aU tasks and both sequential aProd solutions for either
-   * aU or aV.
-   */
-  private int[]    aColIndx = null;
-
-  /**
-   * The column start index of each new column in the column-ordered sparse
-   * matrix (aSprsCol). This vector is only used in the concurrent solution.
+   * The matrix A of the problem definition. Supplies the products
+   * u = u + A * v and v = v + A' * u.
    */
-  private int[]    aColPtr  = null;
+  private LinearOperator aOp = null;
 
   /**
    * The solution result vector used by both concurrent and sequential solvers.
@@ -468,22 +454,6 @@ public class LSQR
    */
   private double[] aV       = null;
 
-  /**
-   * The number of entries in the sparse matrices. aSprsRow, aSprsCol,
-   * aRowIndx, and aColIndx all have this same size.
-   */
-  private int      aNSprs   = 0;
-
-  /**
-   * The size of aRowPTr.
-   */
-  private int      aNRowPtr = 0;
-
-  /**
-   * The size of aColPtr.
-   */
-  private int      aNColPtr = 0;
-  
   /**
    * Machine precision.
    */
@@ -919,32 +889,14 @@ public class LSQR
                    ArrayListDouble bRHS, double[] x, double[] se)
              throws IOException
   {
-    // get row, column, and sparse matrix size and set arrays from lists
+    // wrap the triplet arrays in a sequential operator and solve
 
-    aSprsRow = sprsMatrix.getArray();
-    aColIndx = sprsColIndex.getArray();
-    aRowIndx = sprsRowIndex.getArray();
-    aX       = x;
-    aSE      = se;
-    aNSprs   = sprsMatrix.size();
-    lsqrRows = bRHS.size(); // M
-    lsqrCols = x.length; // N
-
-    // create temporary arrays
-
-    aV = new double [lsqrCols];
-
-    // copy bRHS into u
-
-    aU = bRHS.toArray();
-    for (int i = 0; i < lsqrRows; ++i) aU[i] = bRHS.get(i);
-
-    // solve and return
-
-    return solve();
+    aOp = new TripletOperator(sprsMatrix.size(), sprsMatrix.getArray(),
+                              sprsRowIndex.getArray(), sprsColIndex.getArray(),
+                              bRHS.size(), x.length);
+    return solve(bRHS.toArray(), x, se);
   }
 
-  /**
   /**
    * The primary function responsible for performing the concurrent LSQR
    * solution.
@@ -971,48 +923,96 @@ public class LSQR
                    ArrayListDouble bRHS, double[] x, double[] se)
              throws IOException
   {
-    // get row, column, and sparse matrix size and set arrays from lists
+    // wrap the CSR and CSC arrays in a parallel operator ... one block per
+    // thread
+
+    ForkJoinPool pool = seqUpdateFlg ? null : new ForkJoinPool(aNThreads);
+    try
+    {
+      aOp = new SparseLinearOperator(sprsRowPtr.getArray(),
+                                     sprsColIndxMtrx.getArray(),
+                                     sprsRowMtrx.getArray(),
+                                     sprsColPtr.getArray(),
+                                     sprsRowIndxMtrx.getArray(),
+                                     sprsColMtrx.getArray(),
+                                     sprsRowPtr.size() - 1,
+                                     sprsColPtr.size() - 1,
+                                     aNThreads, pool);
+      return solve(bRHS.toArray(), x, se);
+    }
+    finally
+    {
+      if (pool != null) pool.shutdown();
+    }
+  }
 
-    aSprsRow = sprsRowMtrx.getArray();
-    aSprsCol = sprsColMtrx.getArray();
-    aRowIndx = sprsRowIndxMtrx.getArray();
-    aColIndx = sprsColIndxMtrx.getArray();
-    aRowPtr  = sprsRowPtr.getArray();
-    aColPtr  = sprsColPtr.getArray();
-    aNRowPtr = sprsRowPtr.size();
-    aNColPtr = sprsColPtr.size();
+  /**
+   * Solves A*x = b in parallel for a sparse matrix A stored in a SparseMatrix
+   * (SparseMatrixStandard or SparseMatrixHuge). The CSR and CSC forms of A are
+   * created if they do not exist. The products with A and A' are evaluated
+   * on a thread pool (unless setSequentialUpdateOn() was called) but the
+   * result is identical to a sequential solution.
+   * 
+   * @param a The lhs sparse input matrix.
+   * @param bRHS The rhs input vector (not modified).
+   * @param x The output solution vector result.
+   * @param se The output solution vector error estimate.
+   * @return The final stop condition.
+   * @throws IOException
+   */
+  public int solve(SparseMatrix a, double[] bRHS, double[] x, double[] se)
+             throws IOException
+  {
+    ForkJoinPool pool = seqUpdateFlg ? null : new ForkJoinPool(aNThreads);
+    try
+    {
+      return solve(new SparseLinearOperator(a, aNThreads, pool), bRHS, x, se);
+    }
+    finally
+    {
+      if (pool != null) pool.shutdown();
+    }
+  }
+
+  /**
+   * Solves A*x = b where A is supplied as a LinearOperator.
+   * 
+   * @param a The lhs matrix.
+   * @param bRHS The rhs input vector (not modified).
+   * @param x The output solution vector result.
+   * @param se The output solution vector error estimate.
+   * @return The final stop condition.
+   * @throws IOException
+   */
+  public int solve(LinearOperator a, double[] bRHS, double[] x, double[] se)
+             throws IOException
+  {
+    aOp = a;
+    return solve(bRHS.clone(), x, se);
+  }
 
+  /**
+   * Sets the problem vectors and sizes and calls solve().
+   * 
+   * @param u The rhs vector, which becomes (and is overwritten as) aU.
+   * @param x The output solution vector result.
+   * @param se The output solution vector error estimate.
+   * @return The final stop condition.
+   * @throws IOException
+   */
+  private int solve(double[] u, double[] x, double[] se) throws IOException
+  {
     aX       = x;
     aSE      = se;
-    aNSprs   = sprsRowMtrx.size();
-    lsqrRows = bRHS.size(); // M
+    aU       = u;
+    lsqrRows = u.length; // M
     lsqrCols = x.length; // N
 
     // create temporary arrays
 
     aV = new double [lsqrCols];
 
-    // copy bRHS into u
-
-    aU = bRHS.toArray();
-    for (int i = 0; i < lsqrRows; ++i) aU[i] = bRHS.get(i);
-
-    // start threads, create task queue, build tasks
-
-    aThreadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(aNThreads);
-    aQueue = new ExecutorCompletionService<PartialResult>(aThreadPool);
-    buildParallelTasks();
-
-    // solve
-
-    int solvestatus = solve();
-
-    // shutdown and return
-
-    aThreadPool.shutdown();
-    aThreadPool = null;
-    aQueue = null;
-    return solvestatus;
+    return solve();
   }
 
   /**
@@ -1065,46 +1065,19 @@ public class LSQR
     // these satisfy  beta * u = b,  alfa * v = A' * U.
 
     alfa = 0.0;
-    if (aSprsCol == null)
+    beta = dnrm2(aU);
+
+    if (beta > 0.0)
     {
-      beta = dnrm2(aU);
-  
-      if (beta > 0.0)
-      {
-        dscl(1.0 / beta, aU);
-  
-        // use parallel solve if aSprsCol is not null
-  
-        aprod(aNSprs, aSprsRow, aV, aColIndx, aU, aRowIndx);
-        alfa = dnrm2(aV);
-      }
-  
-      if (alfa > 0.0)
-      {
-        dscl(1.0 / alfa, aV);
-        for (i = 0; i < lsqrCols; ++i) w[i] = aV[i];
-      }
+      dscl(1.0 / beta, aU);
+      aOp.transposeMultiplyAdd(aU, aV);
+      alfa = dnrm2(aV);
     }
-    else
+
+    if (alfa > 0.0)
     {
-      //beta = dnrm2(aU);
-      beta = concurrent2Norm(uTasks);
-      
-      if (beta > 0.0)
-      {
-        //dscl(1.0 / beta, aU);
-        concurrentScale(1.0 / beta, uTasks);  
-        concurrentUpdate(vTasks);
-        //alfa = dnrm2(aV);
-        alfa = concurrent2Norm(vTasks);
-      }
-  
-      if (alfa > 0.0)
-      {
-        //dscl(1.0 / alfa, aV);
-        concurrentScale(1.0 / alfa, vTasks);
-        for (i = 0; i < lsqrCols; ++i) w[i] = aV[i];
-      }
+      dscl(1.0 / alfa, aV);
+      for (i = 0; i < lsqrCols; ++i) w[i] = aV[i];
     }
 
     // finish initialization
@@ -1151,47 +1124,18 @@ public class LSQR
       //       beta * u  =  A * v  -  alfa * u,
       //       alfa * v  =  A' * u - beta * v.
 
-      if (aSprsCol == null)
-      {
-        // perform sequential scale/update
+      dscl(-alfa, aU);
+      aOp.multiplyAdd(aV, aU);
+      beta = dnrm2(aU);
+      bbnorm += alfa * alfa + beta * beta + dampSq;
 
-        dscl(-alfa, aU);
-        aprod(aNSprs, aSprsRow, aU, aRowIndx, aV, aColIndx);
-        beta = dnrm2(aU);
-        bbnorm += alfa * alfa + beta * beta + dampSq;
-  
-        if (beta > 0.0)
-        {
-          dscl(1.0 / beta, aU);
-          dscl(-beta, aV);
-          aprod(aNSprs, aSprsRow, aV, aColIndx, aU, aRowIndx);
-          alfa = dnrm2(aV);
-          if (alfa > 0.0) dscl(1.0 / alfa, aV);
-        }
-      }
-      else
+      if (beta > 0.0)
       {
-        // perform concurrent scale/update
-
-        //dscl(-alfa, aU);
-        concurrentScale(-alfa, uTasks);
-        concurrentUpdate(uTasks);
-        //beta = dnrm2(aU);
-        beta = concurrent2Norm(uTasks);
-        bbnorm += alfa * alfa + beta * beta + dampSq;
-
-        if (beta > 0.0)
-        {
-          //dscl(1.0 / beta, aU);
-          //dscl(-beta, aV);
-          concurrentScale(1.0 / beta, uTasks);
-          concurrentScale(-beta, vTasks);
-          concurrentUpdate(vTasks);
-          //alfa = dnrm2(aV);
-          alfa = concurrent2Norm(vTasks);
-          //if (alfa > 0.0) dscl(1.0 / alfa, aV);
-          if (alfa > 0.0) concurrentScale(1.0 / alfa, vTasks);
-        }
+        dscl(1.0 / beta, aU);
+        dscl(-beta, aV);
+        aOp.transposeMultiplyAdd(aU, aV);
+        alfa = dnrm2(aV);
+        if (alfa > 0.0) dscl(1.0 / alfa, aV);
       }
 
       // Use a plane rotation to eliminate the damping parameter.
@@ -1340,39 +1284,6 @@ public class LSQR
     return lsqrIStop;
   }
 
-  /**
-   * Sequential Sparse matrix multiply. Multiplies Asprs[i] * y[iysprs[i]] and
-   * sums the result to x[ixsprs[i]].
-   * 
-   * @param nsprs The number of entries in Asprs.
-   * @param Asprs The sparse matrix.
-   * @param y The vector to be updated.
-   * @param iysprs The indirect address vector into y for each entry, i, in
-   *               Asprs.
-   * @param x The vector multiplying Asprs to update y.
-   * @param ixsprs The indirect address vector into x for each entry, i, in
-   *               Asprs.
-   */
-  private void aprod(int nsprs, double[] Asprs,
-                     double[] y, int[] iysprs,
-                     double[] x, int[] ixsprs)
-  {
-    //for (int i = 0; i < nsprs; ++i) y[iysprs[i]] += Asprs[i] * x[ixsprs[i]];
-    System.out.println("");
-    System.out.println("i, ixsprs[i], x[ixsprs[i]], Asprs[i], iysprs[i], y[iysprs[i]], yafter");
-    for (int i = 0; i < nsprs; ++i)
-    {
-      if (iysprs[i] == 0)
-        System.out.print(i + ", " + ixsprs[i] + ", " + x[ixsprs[i]] + ", " + Asprs[i] + ", " +
-                         iysprs[i] + ", " + y[iysprs[i]]);
-
-      y[iysprs[i]] += Asprs[i] * x[ixsprs[i]];
-
-      if (iysprs[i] == 0)
-        System.out.println(", " + y[iysprs[i]]);
-    }
-  }
-
   /**
    * Finds the 2 norm of the input vector.
    * 
@@ -1509,272 +1420,65 @@ public class LSQR
   //***************************************************************************
 
   /**
-   * A dummy CompletionService<SolveAProd> result class returned to the
-   * caller after each task is finished. The result contains the row/column
-   * start/stop values for each task.
+   * Sequential LinearOperator over a triplet (row, column, value) sparse
+   * matrix. The products are evaluated by scattering each entry into the
+   * output vector in entry order:
    * 
-   * @author jrhipp
-   *
-   */
-  public class PartialResult
-  {
-    /**
-     * Row/column start index.
-     */
-    public int startIndex = 0;
-
-    /**
-     * Row/column end index.
-     */
-    public int stopIndex  = 0;
-
-    /**
-     * Used to return 2 norm and solution norm results. 
-     */
-    public double rslt    = 0.0;
-
-    /**
-     * Standard constructor set the row/column start and stop indices.
-     * 
-     * @param strt The row/column start index.
-     * @param stop The row/column stop index.
-     */
-    public PartialResult(int strt, int stop)
-    {
-      startIndex = strt;
-      stopIndex = stop;
-    }
-  }
-
-  /**
-   * Parallel task that solves aProd in the forward or backward direction for
-   * the row based solution "u" or the column based solution "v". The solution
-   * looks like
-   * 
-   *     for (i = row_start; i < row_stop; ++i)
-   *     {
-   *       int strt = aRowPtr[i];
-   *       int stop = aRowPtr[i+1];
-   *       double r = aU[i];
-   *       for (int j = strt; j < stop; ++j) r += aSprsRow[j] * aV[aColIndx[j]];
-   *       aU[i] = r;
-   *     }
-   *
-   * When updating aU, and
-   * 
-   *     for (i = col_start; i < col_stop; ++i)
-   *     {
-   *       int strt = aColPtr[i];
-   *       int stop = aColPtr[i+1];
-   *       double r = aV[i];
-   *       for (int j = strt; j < stop; ++j) r += aSprsCol[j] * aU[aRowIndx[j]];
-   *       aV[i] = r;
-   *     }
-   * 
-   * When updating aV. Note that each task only solves a subset of the rows
-   * (row_start to row_stop when solving for aU) or columns (col_start to
-   *  col_stop when solving for aV) in a single tasks. The sum of all tasks
-   * solves for all rows or columns. Each task is processed as a thread to
-   * gain parallel performance. Unfortunately, the task are heavily weighted
-   * toward memory access per flop (3) which makes them band-width limited on
-   * multicore computers.
-   * 
-   * <p> The array of tasks for "u" and "v" are contained in uTasks and vTasks
-   * and are constructed in the function buildParallelTasks().
+   * <p>     y[rowIndx[i]] += aSprs[i] * x[colIndx[i]];   (y = y + A * x)
+   * <p>     x[colIndx[i]] += aSprs[i] * y[rowIndx[i]];   (x = x + A' * y)
    * 
    * @author jrhipp
    *
    */
-  public class SolveAProd implements Callable<PartialResult>
+  private static class TripletOperator implements LinearOperator
   {
-    /**
-     * Contains the start and stop indices in aPtr defined for this task.
-     * These are row start and stop indices if this is a uTask or column
-     * start and stop indices if this is a vTask. 
-     */
-    PartialResult aPR = null;
-
-    /**
-     * The vector being solved for (aU for uTasks and aV for vTasks).
-     */
-    double[] aY     = null; //  aU            aV
-
-    /**
-     * The vector multiplying the sparse matrix to update aY (aV for uTasks
-     * and aU for vTasks).
-     */
-    double[] aX     = null; //  aV            aU
-
-    /**
-     * The sparse matrix row or column start index vector (aRowPtr for uTasks
-     * and aColPtr for vTasks). This vector contains the start position in
-     * the sparse matrix for each row or column. For example if this is a
-     * uTask and aPtr[5] = aRowPtr[5] = 2156. Then aSpM[2156] = aSprsRow[2156]
-     * is the first entry for row 5. The last entry for row 5 is given by
-     * aPtr[6]-1. 
-     */
-    int[]    aPtr   = null; //  aRowPtr       aColPtr
-
-    /**
-     * The sparse matrix that multiplies aX to update aY (aSprsRow for uTasks
-     * and aSprsCol for vTasks).
-     */
-    double[] aSpM   = null; //  aSprsRow      aSprsCol
-
-    /**
-     * The index vector into aX for each entry in aSpM (aColIndex for uTasks
-     * and aRowIndex for vTasks)
-     */
-    int[]    aXIndx = null; //  aColIndex     aRowIndex
-
-    /**
-     * Used by the scaling operation to scale the aY vector.
-     */
-    double   aScale = 0.0;
-
-    /**
-     * If true the function scale is called.
-     */
-    boolean aScaleFlg = false;
-
-    /**
-     * If true the function twoNorm is called.
-     */
-    boolean a2NormFlg = false;
-
-    /**
-     * Standard constructor for the parallel aProd task. Sets the input
-     * arguments in preparation for solving for aU or aV. 
-     * 
-     * @param strt First row (in aRowPtr if this is a uTask) or column
-     *             (in aColPtr if this is a vTask) to process by this task.
-     * @param stop Last - 1 row (in aRowPtr if this is a uTask) or column
-     *             (in aColPtr if this is a vTask) to process by this task.
-     * @param y The vector to be updated (aU for uTasks or aV for vTasks).
-     * @param x The vector multiplying the sparse matrix to update y
-     *          (aV for uTasks or aU for vTasks).
-     * @param ptr The row or column pointer vector (aRowPtr for uTasks or
-     *            aColPtr for vTasks).
-     * @param sprs The row oriented or column oriented sparse matrix (aRowSprs
-     *             for uTasks or aColSprs for vTasks).
-     * @param xIndx The column index or row index vector to indirectly address
-     *              into x (aColIndx for uTasks or aRowIndx for vTasks).
-     */
-    public SolveAProd(int strt, int stop, double[] y, double[] x,
-                      int[] ptr, double[] sprs, int[] xIndx)
+    private final int      nSprs;
+    private final double[] aSprs;
+    private final int[]    rowIndx;
+    private final int[]    colIndx;
+    private final int      nRows;
+    private final int      nCols;
+
+    TripletOperator(int nSprs, double[] aSprs, int[] rowIndx, int[] colIndx,
+                    int nRows, int nCols)
     {
-      // set input values into class variables
-
-      aPtr   = ptr;
-      aY     = y;
-      aX     = x;
-      aSpM   = sprs;
-      aXIndx = xIndx;
-
-      aPR = new PartialResult(strt, stop);
-    }
-
-    /**
-     * Puts the task into scale mode. When the concurrent submission calls
-     * the function call() it will calle scale() to scale the aY vector by
-     * the input scale value (scl).
-     * 
-     * @param scl The factor by aY will be scaled.
-     */
-    public void setScale(double scl)
-    {
-      aScale = scl;
-      aScaleFlg = true;
+      this.nSprs   = nSprs;
+      this.aSprs   = aSprs;
+      this.rowIndx = rowIndx;
+      this.colIndx = colIndx;
+      this.nRows   = nRows;
+      this.nCols   = nCols;
     }
 
-    /**
-     * Puts the task into 2 norm mode. When the concurrent submission calls
-     * the function call() it will calculate the sum of squares of aY and
-     * store the result into aPR.rslt for later retrieval.
-     */
-    public void set2Norm()
+    @Override
+    public int rows()
     {
-      a2NormFlg = true;
-    }
-
-    /**
-     * Concurrent entry. Call scale() if aScaleFlg is set. Otherwise call
-     * update.
-     */
-    public PartialResult call()
-    {
-      if (aScaleFlg)
-        scale();
-      else if (a2NormFlg)
-        twoNorm();
-      else
-        update();
-
-      // return partial result
-
-      return aPR;
+      return nRows;
     }
 
-    /**
-     * The parallel call that will perform the aProd multiply of the sparse
-     * matrix aSpM times the aX to update the aY vector. This function is
-     * called by each thread processing one of the tasks in uTasks or vTasks.
-     */
-    private void update()
+    @Override
+    public int columns()
     {
-      // loop over all rows or columns from startIndex to stopIndex-1
-
-      for (int i = aPR.startIndex; i < aPR.stopIndex; ++i)
-      {
-        // get start and stop location in aSpM and aXIndx for all entries
-        // between aPtr[i] (inclusive) and aPtr[i+1] (exclusive).
-
-        int start = aPtr[i];
-        int stop  = aPtr[i+1];
-
-        // loop over all entries between start and stop-1 and calculate the
-        // result r ... save the result into aY at index i and continue
-
-        double r = aY[i];
-        for (int j = start; j < stop; ++j) r += aSpM[j] * aX[aXIndx[j]];
-        aY[i] = r;
-      }
+      return nCols;
     }
 
-    /**
-     * The parallel call that will perform the dscl multiply of the aY
-     * times the input scale factor aScale. This function is called by
-     * each thread processing one of the tasks in uTasks or vTasks.
-     */
-    private void scale()
+    @Override
+    public void multiplyAdd(double[] x, double[] y)
     {
-      // scale each aY entry ... reset scale flag on exit
-
-      for (int i = aPR.startIndex; i < aPR.stopIndex; ++i) aY[i] *= aScale;
-      aScaleFlg = false;
+      for (int i = 0; i < nSprs; ++i) y[rowIndx[i]] += aSprs[i] * x[colIndx[i]];
     }
 
-    /**
-     * The parallel call that will perform the dscl multiply of the aY
-     * times the input scale factor aScale. This function is called by
-     * each thread processing one of the tasks in uTasks or vTasks.
-     */
-    private void twoNorm()
+    @Override
+    public void transposeMultiplyAdd(double[] y, double[] x)
     {
-      // sum the square of each aY entry ... place result in aPR.rslt for
-      // return ... reset 2 norm flag on exit
-
-      double d = 0.0;
-      for (int i = aPR.startIndex; i < aPR.stopIndex; ++i) d += aY[i] * aY[i];
-      aPR.rslt = d;
-
-      a2NormFlg = false;
+      for (int i = 0; i < nSprs; ++i) x[colIndx[i]] += aSprs[i] * y[rowIndx[i]];
     }
   }
 
   /**
    * Used during concurrent solutions to define the number of threads in the
-   * thread pool and the number of tasks assigned to uTasks and vTasks.
+   * thread pool and the number of row/column blocks each product is split
+   * into.
    */
   private static int aNProcessors = Runtime.getRuntime().availableProcessors();
 
@@ -1789,278 +1493,26 @@ public class LSQR
    * equal to the number of available processors times the processor
    * multiplier.
    */
-  private static int aNThreads = (int) (aNProcessors * aProcMult);
-
-  /**
-   * The local thread pool on which the processes will execute the
-   * concurrent uTasks and vTasks (SolveAProd tasks).
-   */
-  private ThreadPoolExecutor aThreadPool = null;
-
-  /**
-   * The completion service results queue used to save the concurrent results
-   * as they return from the thread pool.
-   */
-  private CompletionService<PartialResult> aQueue = null;
+  private static int aNThreads = Math.max(1, (int) (aNProcessors * aProcMult));
 
   /**
-   * Used to execute the concurrent tasks in a sequential manner. This is
-   * purely a debug flag that allows the concurrent tasks to be executed
-   * sequentially for debugging purposes. Normally, it is off. It can be
+   * Used to execute the concurrent solution sequentially (the blocks of each
+   * matrix-vector product are processed one after the other in the calling
+   * thread). This is purely a debug flag. Normally, it is off. It can be
    * set/reset using the functions setSequentialUpdateOn() and
    * setSequentialUpdateOff(). This flag has no effect when running in
    * sequential mode to begin with. 
    */
   private boolean      seqUpdateFlg = false;
 
-  /**
-   * The set of uTasks which solve for aU concurrently given aSprsRow,
-   * aColIndx, and aV in a concurrent fashion (the concurrent version of
-   * aProd).
-   */
-  private SolveAProd[] uTasks = null;
-
-  /**
-   * The set of vTasks which solve for aV concurrently given aSprsCol,
-   * aRowIndx, and aU in a concurrent fashion (the concurrent version of
-   * aProd).
-   */
-  private SolveAProd[] vTasks = null;
-
-  /**
-   * The parallel equivalent of aProd which is used to process the sparse matrix
-   * to obtain aU or aV in a parallel fashion. If the boolean seqUpdateFlg is
-   * true the tasks are processed in a sequential manner (useful for debugging).
-   * 
-   * @param tasks The tasks to be processed (uTasks or vTasks).
-   */
-  private void concurrentUpdate(SolveAProd[] tasks)
-  {
-    if (seqUpdateFlg)
-    {
-      // execute each task sequentially
-
-      for (int i = 0; i < tasks.length; ++i) tasks[i].call();
-    }
-    else
-    {
-      // submit all tasks in concurrent mode
-  
-      for (int i = 0; i < tasks.length; ++i) aQueue.submit(tasks[i]);
-  
-      // wait until all tasks have returned before exiting.
-  
-      int cnt = 0; 
-      while (cnt < tasks.length)
-      {
-        Future<PartialResult> pr = aQueue.poll();
-        if (pr != null) cnt++;
-      }
-    }
-  }
-
-  /**
-   * The parallel equivalent of dscl which is used to scale the aU or aV
-   * vector by the input scl. If the boolean seqUpdateFlg is true the tasks
-   * are processed in a sequential manner (useful for debugging).
-   * 
-   * @param tasks The tasks to be processed (uTasks or vTasks).
-   */
-  private void concurrentScale(double scl, SolveAProd[] tasks)
-  {
-    if (seqUpdateFlg)
-    {
-      // execute each task sequentially
-
-      for (int i = 0; i < tasks.length; ++i)
-      {
-        tasks[i].setScale(scl);
-        tasks[i].call();
-      }
-    }
-    else
-    {
-      // submit all tasks in concurrent mode
-  
-      for (int i = 0; i < tasks.length; ++i)
-      {
-        tasks[i].setScale(scl);
-        aQueue.submit(tasks[i]);
-      }
-  
-      // wait until all tasks have returned before exiting.
-  
-      int cnt = 0; 
-      while (cnt < tasks.length)
-      {
-        Future<PartialResult> pr = aQueue.poll();
-        if (pr != null) cnt++;
-      }
-    }
-  }
-
-  /**
-   * The parallel equivalent of dscl which is used to scale the aU or aV
-   * vector by the input scl. If the boolean seqUpdateFlg is true the tasks
-   * are processed in a sequential manner (useful for debugging).
-   * 
-   * @param tasks The tasks to be processed (uTasks or vTasks).
-   */
-  private double concurrent2Norm(SolveAProd[] tasks)
-  {
-    double d = 0.0;
-    if (seqUpdateFlg)
-    {
-      // execute each task sequentially
-
-      for (int i = 0; i < tasks.length; ++i)
-      {
-        tasks[i].set2Norm();
-        d += tasks[i].call().rslt;
-      }
-    }
-    else
-    {
-      // submit all tasks in concurrent mode
-  
-      for (int i = 0; i < tasks.length; ++i)
-      {
-        tasks[i].set2Norm();
-        aQueue.submit(tasks[i]);
-      }
-  
-      // sum result from each task to d
-  
-      int cnt = 0; 
-      try
-      {
-        while (cnt < tasks.length)
-        {
-          Future<PartialResult> pr = aQueue.poll();
-          if (pr != null)
-          {
-            cnt++;
-            d += pr.get().rslt;          
-          }
-        }
-      }
-      catch (Exception ex)
-      {
-        ex.printStackTrace();
-      }
-    }
-
-    // return sqrt(d)
-
-    return sqrt(d);
-  }
-
-  /**
-   * Builds the parallel U and V tasks (uTasks, and vTasks) which will be
-   * submitted to multiple threads for parallel solution.
-   */
-  private void buildParallelTasks()
-  {
-    // use number of processors as target number of tasks to create ...
-    // nEntsPerTask is the rough number of entries in the sparse matrix that
-    // will be assigned to an individual task. It is usually slightly larger
-    // or smaller than this number as row and column boundaries are where the
-    // tasks actually stop which don't usually coincide with nEntsPerTask
-    // exactly
-
-    int trgtTaskCnt = aNThreads;
-    int nEntsPerTask = aNSprs / trgtTaskCnt;
-    if (nEntsPerTask == 0) nEntsPerTask = 1;
-    if (nEntsPerTask * trgtTaskCnt < aNSprs) ++nEntsPerTask;
-
-    // create a temporary start / stop count vector to hold the task stop and
-    // start entries. These are row start and stop points for each uTask and
-    // column start and stop points for each vTask ... set the first entry to
-    // zero and set the entry cutoff (entStep) to nEntsPerTask ... loop over
-    // all row pointer entries.
-
-    ArrayListInt cnt = new ArrayListInt(trgtTaskCnt);
-    cnt.add(0);
-    int entStep = nEntsPerTask;
-    for (int i = 0; i < aNRowPtr; ++i)
-    {
-      // if aRowPtr[i] is equal or exceeds the current entry cutoff then
-      // save index i as a task cutoff point and increment the cutoff
-      // count until it exceeds the current entry index in aRowPtr[i].
-
-      if (aRowPtr[i] >= entStep)
-      {
-        cnt.add(i);
-        while (entStep <= aRowPtr[i]) entStep += nEntsPerTask;
-      }
-    }
-
-    // done ... if the cutoff vector does not have aNRowPtr-1 as its last entry
-    // then add it
-
-    if (cnt.getLast() < aNRowPtr-1) cnt.add(aNRowPtr-1);
-
-    // create the uTasks array and fill it with tasks
-
-    uTasks = new SolveAProd [cnt.size() - 1];
-    for (int i = 0; i < cnt.size() - 1; ++i)
-    {
-      uTasks[i] = new SolveAProd(cnt.get(i), cnt.get(i+1), aU, aV,
-                                 aRowPtr, aSprsRow, aColIndx);
-    }
-
-    // clear the temporary curoff vector to hold the task stop and start
-    // entries ... set the first entry to zero and set the entry cutoff
-    // (entStep) to nEntsPerTask ... loop over all column pointer entries.
-
-    cnt.clear();
-    cnt.add(0);
-    entStep = nEntsPerTask;
-    for (int i = 0; i < aNColPtr; ++i)
-    {
-      // if aColPtr[i] is equal or exceeds the current entry cutoff then
-      // save index i as a task cutoff point and increment the cutoff
-      // count until it exceeds the current entry index in aColPtr[i].
-
-      if (aColPtr[i] >= entStep)
-      {
-        cnt.add(i);
-        while (entStep <= aColPtr[i]) entStep += nEntsPerTask;
-      }
-    }
-
-    // done ... if the cutoff vector does not have aNColPtr-1 as its last entry
-    // then add it
-
-    if (cnt.getLast() < aNColPtr-1) cnt.add(aNColPtr-1);
-
-    // create the vTasks array and fill it with tasks
-
-    vTasks = new SolveAProd [cnt.size() - 1];
-    for (int i = 0; i < cnt.size() - 1; ++i)
-    {
-      vTasks[i] = new SolveAProd(cnt.get(i), cnt.get(i+1), aV, aU,
-                                 aColPtr, aSprsCol, aRowIndx);
-    }
-  }
-
   /**
    * Resets all large matrix/vector assignments to null to free memory.
    */
   private void resetLargeReferences()
   {
-    uTasks   = null;
-    vTasks   = null;
+    aOp      = null;
     aU       = null;
     aV       = null;
-
-    aSprsRow = null;
-    aRowIndx = null;
-    aRowPtr  = null;
-  
-    aSprsCol = null;
-    aColIndx = null;
-    aColPtr  = null;
   }
 
   /**
@@ -2096,6 +1548,6 @@ public class LSQR
   public static void setThreadCountMultiplier(double tmc)
   {
     aProcMult = tmc;    
-    aNThreads = (int) (aNProcessors * aProcMult);
+    aNThreads = Math.max(1, (int) (aNProcessors * aProcMult));
   }
 }
@@ -106,7 +106,7 @@ public class LUDecomposition implements MatrixSolver, Serializable
     
     // decompose
     
-    decomposeLU();
+    decomposeLU(min(m, n) >= DenseKernels.BLOCKED_MINIMUM);
   }
 
   /**
@@ -125,6 +125,19 @@ public class LUDecomposition implements MatrixSolver, Serializable
    * @param A Rectangular matrix
    */
   public void decompose(double [][] A)
+  {
+    // copy A into LU and decompose
+
+    copy(A);
+    decomposeLU(min(m, n) >= DenseKernels.BLOCKED_MINIMUM);
+  }
+
+  /**
+   * Sets the size and copies A into LU.
+   * 
+   * @param A Rectangular matrix
+   */
+  private void copy(double [][] A)
   {
     int i, j;
 
@@ -140,16 +153,6 @@ public class LUDecomposition implements MatrixSolver, Serializable
     {
       for (j = 0; j < n; ++j) LU[i][j] = A[i][j];  
     }
-
-    // decompose
-    
-//    System.out.println("");
-//    System.out.println("Before:");
-//    outputNonZero();
-    decomposeLU();
-//    System.out.println("");
-//    System.out.println("After:");
-//    outputNonZero();
   }
 
   private void outputNonZero()
@@ -173,13 +176,16 @@ public class LUDecomposition implements MatrixSolver, Serializable
 
   /**
    * LU Decomposition using a "left-looking", dot-product,
-   * Crout/Doolittle algorithm.
+   * Crout/Doolittle algorithm, or the right-looking cache-blocked and
+   * parallel algorithm (see DenseKernels), which is used by default for
+   * matrices with DenseKernels.BLOCKED_MINIMUM or more rows and columns.
+   * 
+   * @param blocked If true the blocked algorithm is used.
    */
-  private void decomposeLU()
+  private void decomposeLU(boolean blocked)
   {
     int i, j, k;
     double[] LUrowi, LUrowj, LUrowp;
-    double[] LUcolj = new double[m];
 
     // initialize pivot vector
 
@@ -187,6 +193,14 @@ public class LUDecomposition implements MatrixSolver, Serializable
     for (i = 0; i < m; i++) piv[i] = i;
     pivsign = 1;
 
+    if (blocked)
+    {
+      pivsign = DenseKernels.lu(LU, m, n, piv);
+      return;
+    }
+
+    double[] LUcolj = new double[m];
+
     // Outer loop.
 
     for (j = 0; j < n; j++)
@@ -541,8 +555,6 @@ public class LUDecomposition implements MatrixSolver, Serializable
    */
   public void solvenopiv(double [][] a)
   {
-    double [] LUi, ai, LUk, ak;
-
     // validate input matrix and matrix L
 
     if (a.length < m)
@@ -558,39 +570,11 @@ public class LUDecomposition implements MatrixSolver, Serializable
       throw new RuntimeException("Matrix is singular.");
     }
 
-    // set number of columns to solve for
+    // set number of columns to solve for and solve L*Y = B(piv,:) followed
+    // by U*X = Y (parallel over blocks of columns)
 
     int ncol = a[0].length;
-
-    // Copy right hand side with pivoting
-    // Solve L*Y = B(piv,:)
-    
-    for (int k = 0; k < n; k++)
-    {
-      ak = a[k];
-      for (int i = k + 1; i < n; i++)
-      {
-        LUi = LU[i];
-        ai  = a[i];
-        for (int j = 0; j < ncol; j++) ai[j] -= ak[j] * LUi[k];
-      }
-    }
-    
-    // Solve U*X = Y;
-    
-    for (int k = n - 1; k >= 0; k--)
-    {
-      LUk = LU[k];
-      ak  = a[k];
-      for (int j = 0; j < ncol; j++) ak[j] /= LUk[k];
-
-      for (int i = 0; i < k; i++)
-      {
-        LUi = LU[i];
-        ai  = a[i];
-        for (int j = 0; j < ncol; j++) ai[j] -= ak[j] * LUi[k];
-      }
-    }
+    DenseKernels.luSolve(LU, a, n, ncol);
   }
   
   /**
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.matrix;
+
+/**
+ * A linear operator A that supplies the two products required by iterative
+ * least-squares solvers such as LSQR:
+ * 
+ * <p>     y = y + A * x     (multiplyAdd)
+ * <p>     x = x + A' * y    (transposeMultiplyAdd)
+ * 
+ * <p> where A has rows() rows and columns() columns. Implementations decide
+ * how A is stored and whether the products are evaluated on more than one
+ * thread. The solver only sees this interface.
+ */
+public interface LinearOperator
+{
+  /**
+   * Returns the number of rows of A (the size of y).
+   * 
+   * @return The number of rows of A.
+   */
+  public int rows();
+
+  /**
+   * Returns the number of columns of A (the size of x).
+   * 
+   * @return The number of columns of A.
+   */
+  public int columns();
+
+  /**
+   * Adds A * x to y.
+   * 
+   * @param x The vector multiplying A (length &gt;= columns()).
+   * @param y The vector to which A * x is added (length &gt;= rows()).
+   */
+  public void multiplyAdd(double[] x, double[] y);
+
+  /**
+   * Adds A' * y to x.
+   * 
+   * @param y The vector multiplying A' (length &gt;= rows()).
+   * @param x The vector to which A' * y is added (length &gt;= columns()).
+   */
+  public void transposeMultiplyAdd(double[] y, double[] x);
+}
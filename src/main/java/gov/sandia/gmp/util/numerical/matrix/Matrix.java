@@ -998,26 +998,37 @@ public Object clone()
       throw new IllegalArgumentException("Matrix inner dimensions must agree.");
     }
 
-    Matrix X = new Matrix(m, B.n);
-    double[][] C = X.getArray();
-    double[] Bcolj = new double[n];
-    for (int j = 0; j < B.n; j++)
-    {
-      for (int k = 0; k < n; k++)
-        Bcolj[k] = B.A[k][j];
+    // cache-blocked and parallel for large matrices ... see DenseKernels
 
-      for (int i = 0; i < m; i++)
-      {
-        double[] Arowi = A[i];
-        double s = 0;
-        for (int k = 0; k < n; k++)
-          s += Arowi[k] * Bcolj[k];
-        C[i][j] = s;
-      }
-    }
+    Matrix X = new Matrix(m, B.n);
+    DenseKernels.multiply(A, B.A, X.getArray(), m, n, B.n);
     return X;
   }
 
+  /**
+   * Sets the number of threads used by the matrix product (times) and by
+   * the Cholesky and LU decompositions and solves of large matrices. A
+   * value of 1 or less performs all work in the calling thread. By default
+   * the common ForkJoinPool is used if more than one processor is
+   * available.
+   * 
+   * @param nThreads The number of threads.
+   */
+  public static void setParallelism(int nThreads)
+  {
+    DenseKernels.setParallelism(nThreads);
+  }
+
+  /**
+   * Returns the number of threads used by the dense matrix kernels.
+   * 
+   * @return The number of threads used by the dense matrix kernels.
+   */
+  public static int getParallelism()
+  {
+    return DenseKernels.getParallelism();
+  }
+
   /**
    * LU Decomposition
    * 
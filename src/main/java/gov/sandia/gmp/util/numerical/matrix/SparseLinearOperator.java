@@ -0,0 +1,348 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.matrix;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToLongFunction;
+
+import gov.sandia.gmp.util.numerical.sparse.SparseMatrix;
+
+/**
+ * A LinearOperator backed by the Compressed Sparse Row (CSR) and Compressed
+ * Sparse Column (CSC) forms of a sparse matrix. The matrix can be a
+ * SparseMatrix (SparseMatrixStandard or SparseMatrixHuge) or a set of raw CSR
+ * and CSC arrays.
+ * 
+ * <p> Both products are evaluated as gathers: A * x is computed row by row
+ * from the CSR form and A' * y column by column from the CSC form, so every
+ * entry of the output vector is written by exactly one task and no locking,
+ * atomic updates or per-thread copies of the output vector are needed. The
+ * rows (columns) are partitioned into contiguous blocks holding roughly equal
+ * numbers of matrix entries. Each block writes only its own contiguous range
+ * of the output vector, so the transpose product does not suffer the false
+ * sharing that a parallel scatter over the CSR form would.
+ * 
+ * <p> If a ForkJoinPool is supplied the blocks are processed on that pool,
+ * otherwise they are processed sequentially in the calling thread. Each
+ * output entry is accumulated in the same order whether the blocks run
+ * concurrently or not, so the results are identical for any number of
+ * threads.
+ */
+public class SparseLinearOperator implements LinearOperator
+{
+  /**
+   * Evaluates a single row or column sum.
+   */
+  private interface Kernel
+  {
+    /**
+     * Returns sum plus the dot product of row i with x.
+     */
+    double row(int i, double[] x, double sum);
+
+    /**
+     * Returns sum plus the dot product of column j with y.
+     */
+    double column(int j, double[] y, double sum);
+  }
+
+  /**
+   * Applies an operation to the rows or columns first to last-1.
+   */
+  private interface BlockOperation
+  {
+    void apply(int first, int last);
+  }
+
+  /**
+   * The number of rows of A.
+   */
+  private final int nRows;
+
+  /**
+   * The number of columns of A.
+   */
+  private final int nCols;
+
+  /**
+   * Row and column sums.
+   */
+  private final Kernel kernel;
+
+  /**
+   * Block k spans rows rowBlocks[k] to rowBlocks[k+1]-1.
+   */
+  private final int[] rowBlocks;
+
+  /**
+   * Block k spans columns colBlocks[k] to colBlocks[k+1]-1.
+   */
+  private final int[] colBlocks;
+
+  /**
+   * The pool on which blocks are processed, or null to process them
+   * sequentially.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Builds an operator over the input sparse matrix. The CSR and CSC forms
+   * of the matrix are created if they do not already exist and must not be
+   * modified while this operator is in use.
+   * 
+   * @param a       The sparse matrix (SparseMatrixStandard or
+   *                SparseMatrixHuge).
+   * @param nBlocks The target number of row (and column) blocks.
+   * @param pool    The pool on which blocks are processed, or null to
+   *                process them sequentially.
+   * @throws IOException
+   */
+  public SparseLinearOperator(SparseMatrix a, int nBlocks, ForkJoinPool pool)
+         throws IOException
+  {
+    a.createCSR();
+    a.createCSC();
+
+    nRows = a.getMaxRow();
+    nCols = a.getMaxCol();
+    kernel = new Kernel()
+    {
+      @Override
+      public double row(int i, double[] x, double sum)
+      {
+        return a.accumulateCSRRow(i, x, sum);
+      }
+
+      @Override
+      public double column(int j, double[] y, double sum)
+      {
+        return a.accumulateCSCColumn(j, y, sum);
+      }
+    };
+
+    long[] rowPtr = new long [nRows + 1];
+    for (int i = 0; i < nRows; ++i)
+      rowPtr[i+1] = rowPtr[i] + a.getCSRVectorLength(i);
+    long[] colPtr = new long [nCols + 1];
+    for (int j = 0; j < nCols; ++j)
+      colPtr[j+1] = colPtr[j] + a.getCSCVectorLength(j);
+
+    rowBlocks = partition(i -> rowPtr[i], nRows, nBlocks);
+    colBlocks = partition(j -> colPtr[j], nCols, nBlocks);
+    this.pool = pool;
+  }
+
+  /**
+   * Builds an operator over raw CSR and CSC arrays. The arrays are referenced,
+   * not copied.
+   * 
+   * @param rowPtr  The start of each row in colIndx and rowVals (nRows+1
+   *                entries are used).
+   * @param colIndx The column index of each CSR entry.
+   * @param rowVals The value of each CSR entry.
+   * @param colPtr  The start of each column in rowIndx and colVals (nCols+1
+   *                entries are used).
+   * @param rowIndx The row index of each CSC entry.
+   * @param colVals The value of each CSC entry.
+   * @param nRows   The number of rows of A.
+   * @param nCols   The number of columns of A.
+   * @param nBlocks The target number of row (and column) blocks.
+   * @param pool    The pool on which blocks are processed, or null to
+   *                process them sequentially.
+   */
+  public SparseLinearOperator(int[] rowPtr, int[] colIndx, double[] rowVals,
+                              int[] colPtr, int[] rowIndx, double[] colVals,
+                              int nRows, int nCols, int nBlocks,
+                              ForkJoinPool pool)
+  {
+    this.nRows = nRows;
+    this.nCols = nCols;
+    kernel = new Kernel()
+    {
+      @Override
+      public double row(int i, double[] x, double sum)
+      {
+        int stop = rowPtr[i+1];
+        for (int k = rowPtr[i]; k < stop; ++k) sum += rowVals[k] * x[colIndx[k]];
+        return sum;
+      }
+
+      @Override
+      public double column(int j, double[] y, double sum)
+      {
+        int stop = colPtr[j+1];
+        for (int k = colPtr[j]; k < stop; ++k) sum += colVals[k] * y[rowIndx[k]];
+        return sum;
+      }
+    };
+
+    rowBlocks = partition(i -> rowPtr[i], nRows, nBlocks);
+    colBlocks = partition(j -> colPtr[j], nCols, nBlocks);
+    this.pool = pool;
+  }
+
+  @Override
+  public int rows()
+  {
+    return nRows;
+  }
+
+  @Override
+  public int columns()
+  {
+    return nCols;
+  }
+
+  /**
+   * Returns the number of row blocks.
+   * 
+   * @return The number of row blocks.
+   */
+  public int rowBlockCount()
+  {
+    return rowBlocks.length - 1;
+  }
+
+  /**
+   * Returns the number of column blocks.
+   * 
+   * @return The number of column blocks.
+   */
+  public int columnBlockCount()
+  {
+    return colBlocks.length - 1;
+  }
+
+  @Override
+  public void multiplyAdd(double[] x, double[] y)
+  {
+    process(rowBlocks, (first, last) ->
+    {
+      for (int i = first; i < last; ++i) y[i] = kernel.row(i, x, y[i]);
+    });
+  }
+
+  @Override
+  public void transposeMultiplyAdd(double[] y, double[] x)
+  {
+    process(colBlocks, (first, last) ->
+    {
+      for (int j = first; j < last; ++j) x[j] = kernel.column(j, y, x[j]);
+    });
+  }
+
+  /**
+   * Applies op to every block, on the pool if there is one.
+   * 
+   * @param blocks The block boundaries.
+   * @param op     The operation to apply.
+   */
+  private void process(int[] blocks, BlockOperation op)
+  {
+    if ((pool == null) || (blocks.length <= 2))
+    {
+      for (int k = 0; k < blocks.length - 1; ++k) op.apply(blocks[k], blocks[k+1]);
+    }
+    else
+      pool.invoke(new BlockTask(blocks, 0, blocks.length - 1, op));
+  }
+
+  /**
+   * Partitions n rows (or columns) into at most nBlocks contiguous blocks
+   * with roughly equal numbers of entries. ptr.applyAsLong(i) is the number
+   * of entries in rows 0 to i-1.
+   * 
+   * @param ptr     Cumulative entry count.
+   * @param n       The number of rows (or columns).
+   * @param nBlocks The target number of blocks.
+   * @return The block boundaries. Block k spans blocks[k] to blocks[k+1]-1.
+   */
+  private static int[] partition(IntToLongFunction ptr, int n, int nBlocks)
+  {
+    if (nBlocks < 1) nBlocks = 1;
+    long total = ptr.applyAsLong(n) - ptr.applyAsLong(0);
+
+    int[] blocks = new int [nBlocks + 1];
+    int nb = 0;
+    int i = 0;
+    for (int k = 1; k < nBlocks; ++k)
+    {
+      // find the first row at which the cumulative entry count reaches
+      // k / nBlocks of the total.
+
+      long target = ptr.applyAsLong(0) + total * k / nBlocks;
+      while ((i < n) && (ptr.applyAsLong(i) < target)) ++i;
+      if (i > blocks[nb]) blocks[++nb] = i;
+    }
+    if (n > blocks[nb]) blocks[++nb] = n;
+
+    int[] b = new int [nb + 1];
+    System.arraycopy(blocks, 0, b, 0, nb + 1);
+    return b;
+  }
+
+  /**
+   * Recursively splits a range of blocks until a single block remains,
+   * which is then processed.
+   */
+  @SuppressWarnings("serial")
+  private static class BlockTask extends RecursiveAction
+  {
+    private final int[] blocks;
+    private final int first, last;
+    private final BlockOperation op;
+
+    BlockTask(int[] blocks, int first, int last, BlockOperation op)
+    {
+      this.blocks = blocks;
+      this.first = first;
+      this.last = last;
+      this.op = op;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (last - first == 1)
+        op.apply(blocks[first], blocks[last]);
+      else
+      {
+        int mid = (first + last) >>> 1;
+        invokeAll(new BlockTask(blocks, first, mid, op),
+                  new BlockTask(blocks, mid, last, op));
+      }
+    }
+  }
+}
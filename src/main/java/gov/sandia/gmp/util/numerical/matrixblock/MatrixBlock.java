@@ -1396,19 +1396,7 @@ public class MatrixBlock implements Serializable
     if (aSubBlks == null)
     {
       if (isSourcePathFileNameDefined())
-      {
-        requestIO();
-        notifyIOAllocate(-aAllocatedMem, false);
-        readBlockCatch();
-        defineMemoryAllocation();
-        notifyIOAllocate(aAllocatedMem, true);
-        completedIO("READ", MatrixBlockFileServer.getPathTag(aSrcPath));
-        if (aSubBlks == null)
-        {
-        	throw new IOException("Read Failed for Block " + aBlkRow +
-        			                  "," + aBlkCol + " ...");
-        }
-      }
+        loadBlock();
       else
       {
         if (aSubBlks == null)
@@ -1426,6 +1414,32 @@ public class MatrixBlock implements Serializable
     return obtainFillReleaseSubBlocks("OBTAIN", transpose, (new Date()).getTime());
   }
   
+  /**
+   * Reads the sub-blocks of this block from the source path if they have not
+   * been loaded and the source file exists. Otherwise nothing is done. This
+   * is the load performed on demand by the locking functions. It is public so
+   * that a MatrixBlockCache can read a block ahead of its use on an IO thread.
+   * 
+   * @throws IOException If the read fails.
+   */
+  public synchronized void loadBlock() throws IOException
+  {
+    if ((aSubBlks == null) && isSourcePathFileNameDefined())
+    {
+      requestIO();
+      notifyIOAllocate(-aAllocatedMem, false);
+      readBlockCatch();
+      defineMemoryAllocation();
+      notifyIOAllocate(aAllocatedMem, true);
+      completedIO("READ", MatrixBlockFileServer.getPathTag(aSrcPath));
+      if (aSubBlks == null)
+      {
+      	throw new IOException("Read Failed for Block " + aBlkRow +
+      			                  "," + aBlkCol + " ...");
+      }
+    }
+  }
+
   /**
    * Retrieves, releases, or fills the sub-blocks of this MatrixBlock given
    * the input mode. If retrieval is requested (mode = "OBTAIN") a lock is set
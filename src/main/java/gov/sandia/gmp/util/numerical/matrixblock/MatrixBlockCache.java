@@ -0,0 +1,914 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.matrixblock;
+
+import static gov.sandia.gmp.util.globals.Globals.NL;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A memory bounded cache of MatrixBlock objects that overlaps block IO with
+ * computation. Blocks are obtained with acquire(row, col) and returned with
+ * release(row, col, modified). While acquired (pinned) a block is never
+ * evicted. The cache provides
+ * 
+ *   // memory budget and LRU eviction
+ * 
+ *     The total in-core size of all resident blocks is held below a user
+ *     defined memory budget by unloading the least recently used blocks that
+ *     are neither pinned nor locked.
+ * 
+ *   // asynchronous read-ahead
+ * 
+ *     If a sweep order is defined (see setSweepOrder(), choleskySweepOrder(),
+ *     and forwardSubstitutionSweepOrder()) each acquire() advances a cursor
+ *     in the sweep and schedules reads of the next read-ahead blocks that are
+ *     not resident. A subsequent acquire() of a block that is being read
+ *     waits only for the remainder of the read.
+ * 
+ *   // write-behind
+ * 
+ *     Blocks released as modified are marked dirty. A dirty block selected
+ *     for eviction is written to its destination path on an IO thread and
+ *     unloaded when the write completes (unless it was acquired again in the
+ *     meantime). flush() writes all dirty blocks. A block whose write fails
+ *     (after the MatrixBlock retry limit) is not evicted but is marked dirty
+ *     again, and the failure is thrown by the next acquire() or flush().
+ * 
+ * All reads and writes are performed on a bounded thread pool owned by each
+ * file server (see MatrixBlockFileServer), so that a slow server can not
+ * starve the others. Reads and writes use the standard MatrixBlock
+ * loadBlock() and writeBlockCatch() functions so that the existing IO
+ * timing, failure counts, and retry mechanisms apply unchanged.
+ */
+public class MatrixBlockCache
+{
+  /**
+   * The matrix block definition of all cached blocks.
+   */
+  private MatrixBlockDefinition                aMtrxBlkDefn    = null;
+
+  /**
+   * The file server that maps each block to a server path.
+   */
+  private MatrixBlockFileServer                aFileServer     = null;
+
+  /**
+   * The secondary path tag from which blocks are read.
+   */
+  private String                               aSrcTag         = "";
+
+  /**
+   * The secondary path tag to which modified blocks are written, or null if
+   * modified blocks are never written.
+   */
+  private String                               aDstTag         = null;
+
+  /**
+   * The block file header.
+   */
+  private String                               aFilHdr         = "";
+
+  /**
+   * The in-core memory budget (bytes).
+   */
+  private long                                 aMemoryBudget   = 0;
+
+  /**
+   * The number of IO threads assigned to each file server.
+   */
+  private int                                  aIOThreads      = 1;
+
+  /**
+   * The number of blocks read ahead of the current sweep position.
+   */
+  private int                                  aReadAhead      = 2;
+
+  /**
+   * The resident blocks in least recently used order (block index keyed).
+   */
+  private LinkedHashMap<Integer, MatrixBlock>  aResident       =
+          new LinkedHashMap<Integer, MatrixBlock>(16, 0.75f, true);
+
+  /**
+   * The memory charged to each resident block.
+   */
+  private HashMap<Integer, Long>               aCharge         =
+          new HashMap<Integer, Long>();
+
+  /**
+   * The file server index of each resident block.
+   */
+  private HashMap<Integer, Integer>            aServer         =
+          new HashMap<Integer, Integer>();
+
+  /**
+   * The pin count of each acquired block.
+   */
+  private HashMap<Integer, Integer>            aPins           =
+          new HashMap<Integer, Integer>();
+
+  /**
+   * The indexes of all modified (dirty) blocks.
+   */
+  private HashSet<Integer>                     aDirty          =
+          new HashSet<Integer>();
+
+  /**
+   * The indexes of all blocks selected for eviction whose write-behind has not
+   * completed.
+   */
+  private HashSet<Integer>                     aEvicting       =
+          new HashSet<Integer>();
+
+  /**
+   * The in-flight read or write of each block.
+   */
+  private HashMap<Integer, Future<?>>          aPending        =
+          new HashMap<Integer, Future<?>>();
+
+  /**
+   * The indexes of blocks that were read ahead and have not yet been
+   * acquired.
+   */
+  private HashSet<Integer>                     aReadAheadSet   =
+          new HashSet<Integer>();
+
+  /**
+   * The IO thread pool of each file server (server index keyed).
+   */
+  private HashMap<Integer, ExecutorService>    aServerPools    =
+          new HashMap<Integer, ExecutorService>();
+
+  /**
+   * The sum of all charged block memory.
+   */
+  private long                                 aResidentMemory = 0;
+
+  /**
+   * The block index sweep order, or null if no read-ahead is performed.
+   */
+  private int[]                                aSweep          = null;
+
+  /**
+   * The position in aSweep following the last acquired block.
+   */
+  private int                                  aSweepPos       = 0;
+
+  /**
+   * The first write-behind failure not yet reported by flush(), or null.
+   */
+  private IOException                          aWriteError     = null;
+
+  /**
+   * Cache statistics.
+   */
+  private long                                 aHits           = 0;
+  private long                                 aMisses         = 0;
+  private long                                 aReadAheads     = 0;
+  private long                                 aReadAheadHits  = 0;
+  private long                                 aEvictions      = 0;
+  private long                                 aWritesBehind   = 0;
+  private long                                 aIOWaitTime     = 0;
+
+  /**
+   * Standard constructor.
+   * 
+   * @param mbd       The matrix block definition of all cached blocks.
+   * @param mbfs      The file server that maps each block to a server path.
+   * @param srcTag    The secondary path tag from which blocks are read.
+   * @param dstTag    The secondary path tag to which modified blocks are
+   *                  written (null if modified blocks are never written).
+   * @param filHdr    The block file header.
+   * @param memBudget The in-core memory budget (bytes).
+   * @param ioThreads The number of IO threads assigned to each file server.
+   */
+  public MatrixBlockCache(MatrixBlockDefinition mbd, MatrixBlockFileServer mbfs,
+                          String srcTag, String dstTag, String filHdr,
+                          long memBudget, int ioThreads)
+  {
+    aMtrxBlkDefn  = mbd;
+    aFileServer   = mbfs;
+    aSrcTag       = srcTag;
+    aDstTag       = dstTag;
+    aFilHdr       = filHdr;
+    aMemoryBudget = memBudget;
+    aIOThreads    = Math.max(1, ioThreads);
+  }
+
+  /**
+   * Sets the number of blocks read ahead of the current sweep position.
+   * 
+   * @param readAhead The number of blocks read ahead.
+   */
+  public synchronized void setReadAhead(int readAhead)
+  {
+    aReadAhead = Math.max(0, readAhead);
+  }
+
+  /**
+   * Sets the order in which blocks will be acquired. Each acquire() of the
+   * next block in this order schedules reads of the blocks that follow it.
+   * Blocks acquired out of order are served normally but do not advance the
+   * sweep. Use null to turn read-ahead off.
+   * 
+   * @param blkIndices The sweep order as MatrixBlock block indices.
+   */
+  public synchronized void setSweepOrder(int[] blkIndices)
+  {
+    aSweep    = blkIndices;
+    aSweepPos = 0;
+  }
+
+  /**
+   * Returns the order in which blocks are accessed by a left-looking lower
+   * triangular block Cholesky decomposition of a matrix with nBlocks block
+   * rows. Block (i, j) is computed from blocks (i, k) and (j, k) for all
+   * k < j, and for an off-diagonal block, the diagonal block (j, j):
+   * 
+   *   for i = 0 to nBlocks - 1
+   *     for j = 0 to i
+   *       for k = 0 to j - 1: (i, k), (j, k)
+   *       if j < i: (j, j)
+   *       (i, j)
+   * 
+   * @param nBlocks The number of block rows.
+   * @return The Cholesky sweep order as MatrixBlock block indices.
+   */
+  public static int[] choleskySweepOrder(int nBlocks)
+  {
+    ArrayList<Integer> sweep = new ArrayList<Integer>();
+    for (int i = 0; i < nBlocks; ++i)
+    {
+      for (int j = 0; j <= i; ++j)
+      {
+        for (int k = 0; k < j; ++k)
+        {
+          sweep.add(MatrixBlock.getBlockIndex(i, k));
+          sweep.add(MatrixBlock.getBlockIndex(j, k));
+        }
+        if (j < i) sweep.add(MatrixBlock.getBlockIndex(j, j));
+        sweep.add(MatrixBlock.getBlockIndex(i, j));
+      }
+    }
+    return toArray(sweep);
+  }
+
+  /**
+   * Returns the order in which blocks are accessed by a block forward
+   * substitution with a lower triangular matrix of nBlocks block rows (block
+   * row by block row, ending each row with its diagonal block).
+   * 
+   * @param nBlocks The number of block rows.
+   * @return The forward substitution sweep order as MatrixBlock block
+   *         indices.
+   */
+  public static int[] forwardSubstitutionSweepOrder(int nBlocks)
+  {
+    ArrayList<Integer> sweep = new ArrayList<Integer>();
+    for (int i = 0; i < nBlocks; ++i)
+      for (int j = 0; j <= i; ++j) sweep.add(MatrixBlock.getBlockIndex(i, j));
+    return toArray(sweep);
+  }
+
+  /**
+   * Converts the input list to an int array.
+   */
+  private static int[] toArray(ArrayList<Integer> list)
+  {
+    int[] a = new int [list.size()];
+    for (int i = 0; i < a.length; ++i) a[i] = list.get(i);
+    return a;
+  }
+
+  /**
+   * Returns the loaded block (row, col) and pins it in the cache until
+   * release(row, col, modified) is called. If the block is being read ahead
+   * this function waits for the read to complete. If the block is not
+   * resident it is read by the calling thread. If an earlier write-behind
+   * failed, and the failure has not yet been reported by flush(), it is
+   * thrown here.
+   * 
+   * @param row The block row.
+   * @param col The block column.
+   * @return The loaded block.
+   * @throws IOException
+   */
+  public MatrixBlock acquire(int row, int col) throws IOException
+  {
+    int bi = MatrixBlock.getBlockIndex(row, col);
+    MatrixBlock blk;
+    Future<?> pending;
+    synchronized (this)
+    {
+      if (aWriteError != null)
+        throw new IOException(String.format("%nError in MatrixBlockCache." +
+                  "acquire(%d, %d): a block write-behind failed " +
+                  "(the block is still dirty and will be rewritten by " +
+                  "flush()).%n", row, col), aWriteError);
+
+      blk = aResident.get(bi);
+      if (blk == null)
+      {
+        ++aMisses;
+        blk = admit(row, col, bi);
+      }
+      else
+      {
+        ++aHits;
+        if (aReadAheadSet.remove(bi)) ++aReadAheadHits;
+      }
+
+      aPins.merge(bi, 1, Integer::sum);
+      aEvicting.remove(bi);
+      pending = aPending.get(bi);
+      advanceSweep(bi);
+    }
+
+    // wait (outside of the cache lock) for any in-flight IO on this block and
+    // then make sure it is loaded
+
+    if (pending != null)
+    {
+      long strt = System.nanoTime();
+      waitFor(pending);
+      synchronized (this)
+      {
+        aIOWaitTime += System.nanoTime() - strt;
+      }
+    }
+    blk.loadBlock();
+    return blk;
+  }
+
+  /**
+   * Releases a block pinned by acquire(row, col). If modified is true the
+   * block is marked dirty and will be written to its destination before it
+   * is evicted.
+   * 
+   * @param row      The block row.
+   * @param col      The block column.
+   * @param modified True if the block was modified.
+   */
+  public synchronized void release(int row, int col, boolean modified)
+  {
+    int bi = MatrixBlock.getBlockIndex(row, col);
+    Integer pins = aPins.get(bi);
+    if (pins == null) return;
+
+    if (pins == 1)
+      aPins.remove(bi);
+    else
+      aPins.put(bi, pins - 1);
+    if (modified) aDirty.add(bi);
+
+    // the pinned block may have kept the cache over budget
+
+    makeRoom(0, bi);
+  }
+
+  /**
+   * Creates the block (row, col), sets its source and destination paths,
+   * charges its memory, and makes it resident. Room is made first by
+   * evicting least recently used blocks.
+   */
+  private MatrixBlock admit(int row, int col, int bi) throws IOException
+  {
+    long mem = blockMemory();
+    makeRoom(mem, bi);
+
+    int srvr = serverIndex(row, col);
+    MatrixBlock blk = new MatrixBlock(row, col, aMtrxBlkDefn);
+    blk.setSourcePathFileHeader(aFileServer.getPath(aSrcTag, srvr), aFilHdr);
+    if (aDstTag != null)
+      blk.setDestinationPathFileHeader(aFileServer.getPath(aDstTag, srvr),
+                                       aFilHdr);
+    aResident.put(bi, blk);
+    aServer.put(bi, srvr);
+    aCharge.put(bi, mem);
+    aResidentMemory += mem;
+    return blk;
+  }
+
+  /**
+   * Returns the in-core memory charged to each block (a full square block of
+   * doubles).
+   */
+  private long blockMemory()
+  {
+    long n = aMtrxBlkDefn.blockSize();
+    return 8 * n * n;
+  }
+
+  /**
+   * Evicts least recently used blocks until mem more bytes fit within the
+   * memory budget. Pinned, locked, in-flight, and read-ahead window blocks,
+   * and the block keep, are never evicted. A dirty block is written behind
+   * and is unloaded when its write completes. If not enough blocks can be
+   * evicted the cache is temporarily allowed to exceed its budget.
+   */
+  private void makeRoom(long mem, int keep)
+  {
+    if (aResidentMemory + mem <= aMemoryBudget) return;
+
+    HashSet<Integer> window = readAheadWindow();
+    ArrayList<Integer> unload = new ArrayList<Integer>();
+    long freed = 0;
+    for (Map.Entry<Integer, MatrixBlock> e : aResident.entrySet())
+    {
+      if (aResidentMemory - freed + mem <= aMemoryBudget) break;
+
+      int bi = e.getKey();
+      MatrixBlock blk = e.getValue();
+      if ((bi == keep) || aPins.containsKey(bi) || blk.isLocked() ||
+          aPending.containsKey(bi) || aEvicting.contains(bi) ||
+          window.contains(bi))
+        continue;
+
+      if (aDirty.contains(bi) && (aDstTag != null))
+      {
+        // write behind ... the block memory is freed when the write completes
+
+        aEvicting.add(bi);
+        scheduleWrite(bi, blk, true);
+      }
+      else
+      {
+        unload.add(bi);
+        freed += aCharge.get(bi);
+      }
+    }
+
+    for (int bi : unload) evict(bi);
+  }
+
+  /**
+   * Unloads and removes the resident block bi.
+   */
+  private void evict(int bi)
+  {
+    MatrixBlock blk = aResident.remove(bi);
+    aResidentMemory -= aCharge.remove(bi);
+    aServer.remove(bi);
+    aDirty.remove(bi);
+    aEvicting.remove(bi);
+    aReadAheadSet.remove(bi);
+    blk.unLoad();
+    ++aEvictions;
+  }
+
+  /**
+   * Submits a write of block bi to its server IO pool. If evictAfter is true
+   * the block is evicted when the write completes, unless it was acquired in
+   * the meantime. If the write fails the block stays resident, is marked
+   * dirty again, and the failure is saved in aWriteError. The caller must
+   * make sure that no other IO on block bi is in flight.
+   */
+  private void scheduleWrite(final int bi, final MatrixBlock blk,
+                             final boolean evictAfter)
+  {
+    aDirty.remove(bi);
+    ++aWritesBehind;
+    submit(bi, () ->
+    {
+      boolean written = false;
+      try
+      {
+        blk.writeBlockCatch();
+        written = true;
+      }
+      catch (IOException | RuntimeException ex)
+      {
+        synchronized (MatrixBlockCache.this)
+        {
+          if (aWriteError == null)
+            aWriteError = (ex instanceof IOException) ? (IOException) ex :
+                          new IOException(ex);
+        }
+        throw ex;
+      }
+      finally
+      {
+        synchronized (MatrixBlockCache.this)
+        {
+          if (!written)
+          {
+            // keep the modified block resident so that it is not lost
+
+            aDirty.add(bi);
+            aEvicting.remove(bi);
+          }
+          else if (evictAfter && aEvicting.contains(bi) &&
+                   !aPins.containsKey(bi) && !blk.isLocked())
+            evict(bi);
+        }
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Submits io on block bi to the block's server IO pool and records it as
+   * the in-flight IO of bi until it completes. Completion removes only this
+   * IO from aPending, never a later IO submitted for the same block.
+   */
+  private void submit(final int bi, Callable<Object> io)
+  {
+    FutureTask<Object> f = new FutureTask<Object>(io)
+    {
+      @Override
+      protected void done()
+      {
+        synchronized (MatrixBlockCache.this)
+        {
+          aPending.remove(bi, this);
+        }
+      }
+    };
+    aPending.put(bi, f);
+    serverPool(bi).execute(f);
+  }
+
+  /**
+   * Moves the sweep cursor past block bi if it is the next block (or one of
+   * the next read-ahead blocks) in the sweep, and schedules the read-ahead of
+   * the blocks that follow.
+   */
+  private void advanceSweep(int bi)
+  {
+    if (aSweep == null) return;
+
+    int lim = Math.min(aSweep.length, aSweepPos + aReadAhead + 1);
+    for (int i = aSweepPos; i < lim; ++i)
+    {
+      if (aSweep[i] == bi)
+      {
+        aSweepPos = i + 1;
+        readAhead();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the indexes of the next aReadAhead distinct blocks in the sweep.
+   */
+  private HashSet<Integer> readAheadWindow()
+  {
+    HashSet<Integer> window = new HashSet<Integer>();
+    if (aSweep != null)
+    {
+      for (int i = aSweepPos; (i < aSweep.length) && (window.size() < aReadAhead); ++i)
+        window.add(aSweep[i]);
+    }
+    return window;
+  }
+
+  /**
+   * Schedules reads of the blocks in the read-ahead window that are not
+   * resident, as long as they fit in the memory budget.
+   */
+  private void readAhead()
+  {
+    for (int bi : readAheadWindow())
+    {
+      if (aResident.containsKey(bi)) continue;
+
+      makeRoom(blockMemory(), bi);
+      if (aResidentMemory + blockMemory() > aMemoryBudget) return;
+
+      int[] rc = MatrixBlock.getBlockRowCol(bi);
+      final MatrixBlock blk;
+      try
+      {
+        blk = admit(rc[0], rc[1], bi);
+      }
+      catch (IOException ex)
+      {
+        return;
+      }
+
+      ++aReadAheads;
+      aReadAheadSet.add(bi);
+      submit(bi, () ->
+      {
+        blk.loadBlock();
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Returns the IO thread pool of the server that stores resident block bi.
+   */
+  private ExecutorService serverPool(int bi)
+  {
+    int srvr = aServer.get(bi);
+    ExecutorService pool = aServerPools.get(srvr);
+    if (pool == null)
+    {
+      final String name = "MatrixBlockCache-IO-" + srvr;
+      pool = Executors.newFixedThreadPool(aIOThreads, r ->
+      {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+      });
+      aServerPools.put(srvr, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Returns the index of the server that stores block (row, col), or 0 if
+   * no servers are defined (all blocks are stored in the secondary paths).
+   */
+  private int serverIndex(int row, int col) throws IOException
+  {
+    if (aFileServer.getServerCount() == 0) return 0;
+    return aFileServer.getServerIndex(row, col);
+  }
+
+  /**
+   * Waits for the input future. Any IO failure is ignored here since the
+   * caller retries the load (and receives the error) directly.
+   */
+  private static void waitFor(Future<?> f) throws IOException
+  {
+    try
+    {
+      f.get();
+    }
+    catch (ExecutionException ex)
+    {
+      // the caller reloads synchronously and reports the failure
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Writes all dirty resident blocks to their destination paths and waits
+   * for all in-flight IO to complete. If any write failed since the last
+   * call to flush() (including an earlier write-behind) the failure is
+   * thrown. Failed blocks remain dirty and are rewritten by the next
+   * flush(). A dirty block that is still being written behind is written
+   * again after that write completes.
+   * 
+   * @throws IOException
+   */
+  public void flush() throws IOException
+  {
+    ArrayList<Future<?>> pending = new ArrayList<Future<?>>();
+    IOException ioe = null;
+    boolean deferred = true;
+    while (deferred)
+    {
+      deferred = false;
+      pending.clear();
+      synchronized (this)
+      {
+        if (aDstTag != null)
+        {
+          for (int bi : new ArrayList<Integer>(aDirty))
+          {
+            // never write a block concurrently with an earlier write of the
+            // same block ... it stays dirty and is written on the next pass
+
+            Future<?> f = aPending.get(bi);
+            if ((f != null) && !f.isDone())
+              deferred = true;
+            else
+              scheduleWrite(bi, aResident.get(bi), false);
+          }
+        }
+        pending.addAll(aPending.values());
+      }
+
+      for (Future<?> f : pending)
+      {
+        try
+        {
+          f.get();
+        }
+        catch (ExecutionException ex)
+        {
+          ioe = new IOException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          throw new IOException(ex);
+        }
+      }
+    }
+
+    // report the first write failure since the last flush, if any
+
+    synchronized (this)
+    {
+      if (aWriteError != null)
+      {
+        ioe = new IOException(String.format("%nError in MatrixBlockCache." +
+                  "flush(): a block write failed (the block is still " +
+                  "dirty).%n"), aWriteError);
+        aWriteError = null;
+      }
+    }
+    if (ioe != null) throw ioe;
+  }
+
+  /**
+   * Flushes the cache, unloads all unpinned blocks, and shuts down the IO
+   * thread pools.
+   * 
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    try
+    {
+      flush();
+    }
+    finally
+    {
+      synchronized (this)
+      {
+        Iterator<Integer> it = new ArrayList<Integer>(aResident.keySet()).iterator();
+        while (it.hasNext())
+        {
+          int bi = it.next();
+          if (!aPins.containsKey(bi) && !aResident.get(bi).isLocked()) evict(bi);
+        }
+        for (ExecutorService pool : aServerPools.values()) pool.shutdown();
+      }
+      for (ExecutorService pool : aServerPools.values())
+      {
+        try
+        {
+          pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of the memory charged to all resident blocks.
+   * 
+   * @return The sum of the memory charged to all resident blocks.
+   */
+  public synchronized long getResidentMemory()
+  {
+    return aResidentMemory;
+  }
+
+  /**
+   * Returns the number of resident blocks.
+   * 
+   * @return The number of resident blocks.
+   */
+  public synchronized int getResidentBlockCount()
+  {
+    return aResident.size();
+  }
+
+  /**
+   * Returns the number of acquire() calls that found the block resident.
+   * 
+   * @return The number of cache hits.
+   */
+  public synchronized long getHitCount()
+  {
+    return aHits;
+  }
+
+  /**
+   * Returns the number of acquire() calls that did not find the block
+   * resident.
+   * 
+   * @return The number of cache misses.
+   */
+  public synchronized long getMissCount()
+  {
+    return aMisses;
+  }
+
+  /**
+   * Returns the number of blocks read ahead.
+   * 
+   * @return The number of blocks read ahead.
+   */
+  public synchronized long getReadAheadCount()
+  {
+    return aReadAheads;
+  }
+
+  /**
+   * Returns the number of blocks read ahead that were subsequently acquired.
+   * 
+   * @return The number of blocks read ahead that were subsequently acquired.
+   */
+  public synchronized long getReadAheadHitCount()
+  {
+    return aReadAheadHits;
+  }
+
+  /**
+   * Returns the number of evicted blocks.
+   * 
+   * @return The number of evicted blocks.
+   */
+  public synchronized long getEvictionCount()
+  {
+    return aEvictions;
+  }
+
+  /**
+   * Returns the number of blocks written behind (including flush()).
+   * 
+   * @return The number of blocks written behind.
+   */
+  public synchronized long getWriteBehindCount()
+  {
+    return aWritesBehind;
+  }
+
+  /**
+   * Returns the total time (ms) acquire() waited for in-flight IO.
+   * 
+   * @return The total time (ms) acquire() waited for in-flight IO.
+   */
+  public synchronized long getIOWaitTime()
+  {
+    return aIOWaitTime / 1000000;
+  }
+
+  /**
+   * Returns a summary of the cache statistics.
+   */
+  @Override
+  public synchronized String toString()
+  {
+    return "MatrixBlockCache:" + NL +
+           "  Memory Budget (MB)   = " + (aMemoryBudget / 1048576) + NL +
+           "  Resident Memory (MB) = " + (aResidentMemory / 1048576) + NL +
+           "  Resident Blocks      = " + aResident.size() + NL +
+           "  Hits                 = " + aHits + NL +
+           "  Misses               = " + aMisses + NL +
+           "  Read Ahead           = " + aReadAheads + NL +
+           "  Read Ahead Hits      = " + aReadAheadHits + NL +
+           "  Evictions            = " + aEvictions + NL +
+           "  Writes Behind        = " + aWritesBehind + NL +
+           "  IO Wait (ms)         = " + getIOWaitTime() + NL;
+  }
+}
@@ -61,10 +61,12 @@ import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
 import gov.sandia.gmp.util.numerical.polygon.GreatCircle.GreatCircleException;
 import gov.sandia.gmp.util.numerical.vector.VectorGeo;
 
@@ -108,6 +110,12 @@ import gov.sandia.gmp.util.numerical.vector.VectorGeo;
  * less than 1e-7 radians or 5.7e-6 degrees. For a sphere with the radius of the Earth
  * (6371 km), this corresponds to a linear distance of about 60 cm.
  * 
+ * <p>
+ * Polygons with many edges build a hierarchy of bounding caps over their edges the
+ * first time a point is evaluated, so that contains() and onBoundary() only examine
+ * edges that are near the evaluation point, or near the great circle from the 
+ * reference point to the evaluation point.
+ * 
  * @author sballar
  */
 public class Polygon implements Cloneable, Callable<Polygon>
@@ -172,6 +180,12 @@ public class Polygon implements Cloneable, Callable<Polygon>
 	 */
 	protected String name = "";
 
+	/**
+	 * Bounding cap hierarchy over the edges, built the first time it is needed
+	 * by polygons with many edges.  Set back to null whenever the edges change.
+	 */
+	private volatile PolygonEdgeIndex edgeIndex;
+
 	/**
 	 * Default constructor. Does nothing.
 	 */
@@ -368,6 +382,7 @@ public class Polygon implements Cloneable, Callable<Polygon>
 
 					referencePoint = new double[] { 1, 0, 0 };
 					edges = new ArrayList<GreatCircle>();
+					edgeIndex = null;
 					return;
 				}
 				else if (tokens[0].startsWith("lat"))
@@ -726,6 +741,7 @@ public class Polygon implements Cloneable, Callable<Polygon>
 		{
 			// there will be a GreatCircle edge for every vertex
 			edges = new ArrayList<GreatCircle>(points.size() + 1);
+			edgeIndex = null;
 
 			Iterator<double[]> it = points.iterator();
 			double[] next, previous = it.next();
@@ -870,8 +886,13 @@ public class Polygon implements Cloneable, Callable<Polygon>
 	public boolean[] contains(double[]... points)
 	{
 		boolean[] contained = new boolean[points.length];
-		for (int i=0; i<points.length; ++i)
-			contained[i] = contains(points[i]);
+		if (points.length < 2*pointsPerTask)
+			for (int i=0; i<points.length; ++i)
+				contained[i] = contains(points[i]);
+		else
+			// large batches are evaluated in parallel on the common fork-join pool.
+			IntStream.range(0, points.length).parallel()
+			.forEach(i -> contained[i] = contains(points[i]));
 		return contained;
 	}
 
@@ -968,6 +989,10 @@ public class Polygon implements Cloneable, Callable<Polygon>
 		// evaluation point
 		GreatCircle gc = new GreatCircle(referencePoint, x);
 
+		PolygonEdgeIndex index = getEdgeIndex();
+		if (index != null)
+			return edgeCrossings(gc, index);
+
 		int ncrossings = 0;
 		int first = -1;
 		ON_GREAT_CIRCLE on1 = null, on2 = null, on3 = null;
@@ -1044,6 +1069,77 @@ public class Polygon implements Cloneable, Callable<Polygon>
 		return ncrossings;
 	}
 
+	/**
+	 * Same as edgeCrossings(x) but only the edges that come close to the great
+	 * circle through the reference point and x are visited.  Every other edge
+	 * lies entirely on one side of the great circle, so it cannot be crossed and
+	 * it cannot change the ON/LEFT/RIGHT state carried from edge to edge.
+	 * @param gc great circle from the reference point to the point being evaluated
+	 * @param index the edge index
+	 * @return int number of times great circle intersects the polygon
+	 */
+	private int edgeCrossings(GreatCircle gc, PolygonEdgeIndex index)
+	{
+		int n = edges.size();
+
+		int ncrossings = 0;
+		int first = -1;
+		ON_GREAT_CIRCLE on1 = null, on2 = null, on3 = null;
+		GreatCircle edge;
+
+		for (int i=0; i<n; ++i)
+		{
+			on2 = isOnGreatCicle(gc, edges.get(i).getFirst());
+			if (on2 != ON_GREAT_CIRCLE.ON)
+			{
+				first = i;
+				break;
+			}
+		}
+
+		ArrayListInt candidates = new ArrayListInt(64);
+		index.getEdgesNearGreatCircle(gc.getNormal(), candidates);
+		int m = candidates.size();
+		if (m == 0)
+			return 0;
+
+		// position in candidates of the first edge at or after edge 'first'.
+		int start = 0;
+		while (start < m && candidates.get(start) < first)
+			++start;
+
+		int previous = (first + n - 1) % n;
+		for (int k=0; k<m; ++k)
+		{
+			int i = candidates.get((start+k) % m);
+			edge = edges.get(i);
+
+			// if edges were skipped, on2 was not updated while skipping them.
+			// The skipped edges all lie on the same side of the great circle
+			// as the first point of this edge.
+			if (i != (previous+1) % n)
+				on2 = isOnGreatCicle(gc, edge.getFirst());
+			previous = i;
+
+			on3 = isOnGreatCicle(gc, edge.getLast());
+
+			if (on3 == ON_GREAT_CIRCLE.ON && on2 != ON_GREAT_CIRCLE.ON)
+				on1 = on2;
+			else if (on3 != ON_GREAT_CIRCLE.ON && on2 == ON_GREAT_CIRCLE.ON)
+			{
+				if (on3 != on1 && gc.getDistance(edge.getFirst()) < gc.getDistance())
+					++ncrossings;
+			}
+			else if (on3 != ON_GREAT_CIRCLE.ON && on2 != ON_GREAT_CIRCLE.ON)
+			{
+				if (gc.getIntersection(edge, true) != null)
+					++ncrossings;
+			}
+			on2 = on3;
+		}
+		return ncrossings;
+	}
+
 	/**
 	 * Return true if evaluation point is very close to being on the boundary of the
 	 * polygon.
@@ -1055,6 +1151,23 @@ public class Polygon implements Cloneable, Callable<Polygon>
 	 */
 	public boolean onBoundary(double[] x)
 	{
+		PolygonEdgeIndex index = getEdgeIndex();
+		if (index != null)
+		{
+			// only edges in ranges whose bounding caps contain x can be close to x.
+			ArrayListInt candidates = new ArrayListInt(64);
+			index.getEdgesNear(x, candidates);
+			for (int k=0; k<candidates.size(); ++k)
+			{
+				GreatCircle edge = edges.get(candidates.get(k));
+				if (VectorGeo.dot(x, edge.getFirst()) >= cos(TOLERANCE)
+						|| (edge.getDistance(x) < edge.getDistance() 
+								&& abs(VectorGeo.dot(x, edge.getNormal())) < TOLERANCE))
+					return true;
+			}
+			return false;
+		}
+
 		// if point is very close to any of the polygon points, return true
 		for (GreatCircle edge : edges)
 			if (VectorGeo.dot(x, edge.getFirst()) >= cos(TOLERANCE))
@@ -1373,6 +1486,19 @@ public class Polygon implements Cloneable, Callable<Polygon>
 			}
 		}
 		edges.addAll(newEdges);
+		edgeIndex = null;
+	}
+
+	/**
+	 * Retrieve the edge index, building it if necessary.  Returns null if this
+	 * polygon has too few edges to benefit from an index.
+	 */
+	private PolygonEdgeIndex getEdgeIndex()
+	{
+		PolygonEdgeIndex index = edgeIndex;
+		if (index == null && edges != null && edges.size() >= PolygonEdgeIndex.MIN_EDGES)
+			edgeIndex = index = new PolygonEdgeIndex(edges);
+		return index;
 	}
 
 	/**
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.polygon;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+import java.util.List;
+
+import gov.sandia.gmp.util.containers.arraylist.ArrayListInt;
+import gov.sandia.gmp.util.numerical.vector.VectorGeo;
+
+/**
+ * Hierarchy of bounding caps over the edges of a Polygon.  The edges are
+ * recursively split into contiguous ranges and, for each range, the index
+ * stores a spherical cap that contains every point of every edge in the
+ * range.  Queries descend only into ranges whose caps could be close to
+ * the query point or query great circle, so only a small fraction of the
+ * edges of a large polygon have to be examined.
+ * 
+ * <p>
+ * Instances are immutable and can be shared by multiple threads.
+ */
+class PolygonEdgeIndex
+{
+	/**
+	 * Polygons with fewer edges than this are not indexed.
+	 */
+	static final int MIN_EDGES = 32;
+
+	/**
+	 * Maximum number of edges in a leaf range.
+	 */
+	private static final int LEAF_SIZE = 8;
+
+	/**
+	 * Caps are padded by this amount, in radians, which is much larger than
+	 * Polygon.TOLERANCE.  Points outside a padded cap are well clear of all
+	 * the edges in the range.
+	 */
+	private static final double MARGIN = 1e-6;
+
+	private final List<GreatCircle> edges;
+
+	/**
+	 * For each node: first edge index, last edge index + 1, index of the left
+	 * child (-1 for leaves).  The right child of node k is always left[k]+1.
+	 */
+	private final int[] first, last, left;
+
+	/**
+	 * Unit vector at the center of each node's cap.
+	 */
+	private final double[][] center;
+
+	/**
+	 * Cosine of the padded cap radius, or -2 if the cap covers the whole
+	 * sphere.
+	 */
+	private final double[] cosRadius;
+
+	/**
+	 * Sine of the padded cap radius, or 2 if the cap reaches a hemisphere.
+	 */
+	private final double[] sinRadius;
+
+	private int nNodes;
+
+	PolygonEdgeIndex(List<GreatCircle> edges)
+	{
+		this.edges = edges;
+		// halving produces leaves with more than LEAF_SIZE/2 edges.
+		int capacity = 2 * (edges.size() / (LEAF_SIZE / 2) + 1);
+		first = new int[capacity];
+		last = new int[capacity];
+		left = new int[capacity];
+		center = new double[capacity][];
+		cosRadius = new double[capacity];
+		sinRadius = new double[capacity];
+		build(0, edges.size(), addNode());
+	}
+
+	private int addNode()
+	{
+		return nNodes++;
+	}
+
+	private void build(int from, int to, int node)
+	{
+		first[node] = from;
+		last[node] = to;
+		setCap(node);
+		if (to - from <= LEAF_SIZE)
+			left[node] = -1;
+		else
+		{
+			int l = addNode();
+			addNode();
+			left[node] = l;
+			int middle = (from + to) >>> 1;
+			build(from, middle, l);
+			build(middle, to, l + 1);
+		}
+	}
+
+	/**
+	 * Find a cap centered on the normalized vector sum of the edge end points
+	 * that contains every edge in the node's range.  Each edge lies within
+	 * half its length of its midpoint.
+	 */
+	private void setCap(int node)
+	{
+		double[] c = new double[3];
+		for (int i = first[node]; i < last[node]; ++i)
+		{
+			double[] a = edges.get(i).getFirst(), b = edges.get(i).getLast();
+			c[0] += a[0] + b[0];
+			c[1] += a[1] + b[1];
+			c[2] += a[2] + b[2];
+		}
+		center[node] = c;
+
+		double radius = VectorGeo.normalize(c) == 0. ? PI : 0.;
+		double[] mid = new double[3];
+		for (int i = first[node]; i < last[node] && radius < PI; ++i)
+		{
+			GreatCircle edge = edges.get(i);
+			double[] a = edge.getFirst(), b = edge.getLast();
+			mid[0] = a[0] + b[0];
+			mid[1] = a[1] + b[1];
+			mid[2] = a[2] + b[2];
+			if (VectorGeo.normalize(mid) == 0.)
+				radius = PI;
+			else
+				radius = Math.max(radius, VectorGeo.angle(c, mid) + 0.5 * edge.getDistance());
+		}
+		radius += MARGIN;
+
+		cosRadius[node] = radius >= PI ? -2. : cos(radius);
+		sinRadius[node] = radius >= 0.5 * PI ? 2. : sin(radius);
+	}
+
+	/**
+	 * Retrieve, in increasing order, the indices of all the edges that reside
+	 * in ranges whose caps contain x.  Edges that are not returned are all
+	 * much more than Polygon.TOLERANCE from x.
+	 * 
+	 * @param x unit vector
+	 * @param candidates the edge indices are added to this list.
+	 */
+	void getEdgesNear(double[] x, ArrayListInt candidates)
+	{
+		getEdgesNear(0, x, candidates);
+	}
+
+	private void getEdgesNear(int node, double[] x, ArrayListInt candidates)
+	{
+		if (VectorGeo.dot(x, center[node]) < cosRadius[node])
+			return;
+		if (left[node] < 0)
+			for (int i = first[node]; i < last[node]; ++i)
+				candidates.add(i);
+		else
+		{
+			getEdgesNear(left[node], x, candidates);
+			getEdgesNear(left[node] + 1, x, candidates);
+		}
+	}
+
+	/**
+	 * Retrieve, in increasing order, the indices of all the edges that reside
+	 * in ranges whose caps come close to the great circle with the specified
+	 * normal.  Every point on every edge that is not returned lies on the
+	 * same side of the great circle, much more than Polygon.TOLERANCE from
+	 * it, as the other points in its range.
+	 * 
+	 * @param normal unit vector normal to a great circle.
+	 * @param candidates the edge indices are added to this list.
+	 */
+	void getEdgesNearGreatCircle(double[] normal, ArrayListInt candidates)
+	{
+		getEdgesNearGreatCircle(0, normal, candidates);
+	}
+
+	private void getEdgesNearGreatCircle(int node, double[] normal, ArrayListInt candidates)
+	{
+		if (Math.abs(VectorGeo.dot(normal, center[node])) > sinRadius[node])
+			return;
+		if (left[node] < 0)
+			for (int i = first[node]; i < last[node]; ++i)
+				candidates.add(i);
+		else
+		{
+			getEdgesNearGreatCircle(left[node], normal, candidates);
+			getEdgesNearGreatCircle(left[node] + 1, normal, candidates);
+		}
+	}
+}
@@ -35,9 +35,9 @@ package gov.sandia.gmp.util.numerical.sparse;
 import java.io.IOException;
 
 /**
- * SparseMatrix and SparseMatrixHuge both inherit this interface. Either
- * concrete class can be instantiated and used in code that manipulates a
- * SparseMatrix object.
+ * SparseMatrixStandard, SparseMatrixHuge, and SparseMatrixMapped (off-heap,
+ * memory-mapped storage) all inherit this interface. Any concrete class can
+ * be instantiated and used in code that manipulates a SparseMatrix object.
  * 
  * Concrete classes store a sparse matrix in one or more of three standard
  * sparse matrix representations including triplet (row, column, value arrays),
@@ -265,6 +265,21 @@ public abstract class SparseMatrix
    */
   public abstract void sortCSRRow(int row) throws IOException;
 
+  /**
+   * Returns sum plus the products of the entries of CSR 'row' with the
+   * corresponding entries of x. The products are added to sum one at a time
+   * in CSR (column) order so the result is bit-for-bit identical to
+   * accumulating the entries of the row in order. The CSR representation
+   * must exist (see createCSR()). This method only reads the matrix and may
+   * be called concurrently.
+   * 
+   * @param row The matrix row index.
+   * @param x   The vector multiplying the row (one entry per column).
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSR 'row' with x.
+   */
+  public abstract double accumulateCSRRow(int row, double[] x, double sum);
+
   /**
    * Returns the length of the vector assigned to input CSC 'col'.
    * 
@@ -339,6 +354,19 @@ public abstract class SparseMatrix
    */
   public abstract void sortCSCCol(int col) throws IOException;
 
+  /**
+   * Returns sum plus the products of the entries of CSC 'col' with the
+   * corresponding entries of y. The products are added to sum one at a time
+   * in CSC (row) order. The CSC representation must exist (see createCSC()).
+   * This method only reads the matrix and may be called concurrently.
+   * 
+   * @param col The matrix column index.
+   * @param y   The vector multiplying the column (one entry per row).
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSC 'col' with y.
+   */
+  public abstract double accumulateCSCColumn(int col, double[] y, double sum);
+
   /**
    * Reads the sparse matrix from the input file filename.
    * 
@@ -36,8 +36,11 @@ import java.io.File;
 import java.io.IOException;
 
 import gov.sandia.gmp.util.containers.arraylist.ArrayListLong;
+import gov.sandia.gmp.util.containers.arraylisthuge.ArrayListHugeAbstract;
 import gov.sandia.gmp.util.containers.arraylisthuge.ArrayListHugeDouble;
+import gov.sandia.gmp.util.containers.arraylisthuge.ArrayListHugeDoubleOffHeap;
 import gov.sandia.gmp.util.containers.arraylisthuge.ArrayListHugeInt;
+import gov.sandia.gmp.util.containers.arraylisthuge.ArrayListHugeIntOffHeap;
 import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
 import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
 
@@ -109,6 +112,11 @@ import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
 *      // Clears the entire array and readies for triplet input
 *      clear()
 *      
+*      // Stores all lists created from here on off the Java heap, in direct
+*      // buffers (directory == null) or in temporary files mapped from
+*      // directory, or back on the heap (offHeap == false).
+*      setOffHeap(offHeap, directory)
+*      
 *      // Clears just the triplet storage.
 *      clearTriplet()
 * 
@@ -220,6 +228,17 @@ public class SparseMatrixHuge extends SparseMatrix
 	 */
 	private ArrayListHugeDouble valsCSC     = null; // = valsTRP with column/row sort
 
+	/**
+	 * If true new lists are created as ArrayListHugeXXXOffHeap objects.
+	 */
+	private boolean             offHeap     = false;
+
+	/**
+	 * The directory in which off-heap lists map their backing files, or null
+	 * for direct buffers.
+	 */
+	private File                offHeapDir  = null;
+
 	/**
 	 * Standard constructor. Creates a new empty sparse matrix in triplet form.
 	 */
@@ -239,6 +258,87 @@ public class SparseMatrixHuge extends SparseMatrix
   	read(filename);
   }
 
+  /**
+   * Selects the storage used by all lists created from here on (existing
+   * lists are unchanged, except that an empty triplet form is recreated with
+   * the new storage). If offHeap is true lists store their segments outside
+   * of the Java heap, in direct buffers if directory is null, or otherwise
+   * in temporary files mapped from directory, so that the index and value
+   * vectors can exceed physical memory and are never scanned by the garbage
+   * collector. If offHeap is false lists are standard on-heap lists.
+   * 
+   * @param offHeap   True to store new lists off-heap.
+   * @param directory The backing file directory for off-heap lists, or null
+   *                  for direct buffers.
+   */
+  public void setOffHeap(boolean offHeap, File directory)
+  {
+  	this.offHeap = offHeap;
+  	offHeapDir = offHeap ? directory : null;
+  	if (tripletExists() && (valsTRP.size() == 0) && !CSRExists() &&
+  			!CSCExists())
+  	{
+  		release(rowsTRP);
+  		release(colsTRP);
+  		release(valsTRP);
+  		resetTRPEmpty();
+  	}
+  }
+
+  /**
+   * Returns true if new lists are created off-heap.
+   * 
+   * @return True if new lists are created off-heap.
+   */
+  public boolean isOffHeap()
+  {
+  	return offHeap;
+  }
+
+  /**
+   * Returns a new empty index list with the input capacity using the current
+   * storage selection.
+   * 
+   * @param capacity The initial capacity.
+   * @return A new empty index list.
+   */
+  private ArrayListHugeInt newIntList(long capacity)
+  {
+  	if (offHeap)
+  		return new ArrayListHugeIntOffHeap(capacity, offHeapDir);
+  	else
+  		return new ArrayListHugeInt(capacity);
+  }
+
+  /**
+   * Returns a new empty value list with the input capacity using the current
+   * storage selection.
+   * 
+   * @param capacity The initial capacity.
+   * @return A new empty value list.
+   */
+  private ArrayListHugeDouble newDoubleList(long capacity)
+  {
+  	if (offHeap)
+  		return new ArrayListHugeDoubleOffHeap(capacity, offHeapDir);
+  	else
+  		return new ArrayListHugeDouble(capacity);
+  }
+
+  /**
+   * Releases the storage of an off-heap list that is being discarded (its
+   * backing file, if any, is deleted immediately rather than at exit).
+   * 
+   * @param x The list being discarded (may be null).
+   */
+  private static void release(ArrayListHugeAbstract x)
+  {
+  	if (x instanceof ArrayListHugeIntOffHeap)
+  		((ArrayListHugeIntOffHeap) x).close();
+  	else if (x instanceof ArrayListHugeDoubleOffHeap)
+  		((ArrayListHugeDoubleOffHeap) x).close();
+  }
+
   /**
    * Builds an array of SparseVector objects, one for each row in
    * the sparse matrix.
@@ -437,6 +537,21 @@ public class SparseMatrixHuge extends SparseMatrix
   	}
   }
 
+  /**
+   * Returns sum plus the dot product of CSR 'row' with x.
+   * 
+   * @param row The matrix row index.
+   * @param x   The vector multiplying the row.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSR 'row' with x.
+   */
+  @Override
+  public double accumulateCSRRow(int row, double[] x, double sum)
+  {
+  	return accumulate(valsCSR, colsCSR, rowsPtrsCSR.get(row),
+  			              rowsPtrsCSR.get(row + 1), x, sum);
+  }
+
   /**
    * Returns the length of the vector assigned to input CSC 'col'.
    * 
@@ -535,6 +650,58 @@ public class SparseMatrixHuge extends SparseMatrix
   	return tmp;
   }
 
+  /**
+   * Returns sum plus the dot product of CSC 'col' with y.
+   * 
+   * @param col The matrix column index.
+   * @param y   The vector multiplying the column.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSC 'col' with y.
+   */
+  @Override
+  public double accumulateCSCColumn(int col, double[] y, double sum)
+  {
+  	return accumulate(valsCSC, rowsCSC, colsPtrsCSC.get(col),
+  			              colsPtrsCSC.get(col + 1), y, sum);
+  }
+
+  /**
+   * Adds vals[i] * x[indx[i]] to sum for i = start to stop-1, in order. The
+   * loop runs directly over the backing segment arrays, one segment at a
+   * time, instead of calling get(long) for each entry.
+   * 
+   * @param vals  The CSR or CSC values.
+   * @param indx  The CSR column or CSC row indices.
+   * @param start The first entry.
+   * @param stop  One past the last entry.
+   * @param x     The vector multiplying the entries.
+   * @param sum   The initial value of the sum.
+   * @return The accumulated sum.
+   */
+  private static double accumulate(ArrayListHugeDouble vals,
+  		                             ArrayListHugeInt indx, long start, long stop,
+  		                             double[] x, double sum)
+  {
+  	int segSize = vals.getSegmentArraySize();
+  	long i = start;
+  	while (i < stop)
+  	{
+  		int si = vals.getSegmentIndex(i);
+  		int ei = vals.getElementIndex(i);
+  		int ee = (int) Math.min(stop - i + ei, segSize);
+  		if (vals.isOffHeap())
+  			for (int j = ei; j < ee; ++j) sum += vals.get(si, j) * x[indx.get(si, j)];
+  		else
+  		{
+  			double[] v = vals.getArraySegment(si);
+  			int[]    c = indx.getArraySegment(si);
+  			for (int j = ei; j < ee; ++j) sum += v[j] * x[c[j]];
+  		}
+  		i += ee - ei;
+  	}
+  	return sum;
+  }
+
   /**
    * Sorts the sparse vector associated with the input column. If CSC does not
    * exist it is created (which automatically sorts at creation).
@@ -638,6 +805,7 @@ public class SparseMatrixHuge extends SparseMatrix
     valsCSC = valsTRP;
     colsPtrsCSC = compressTripletToCS(colsTRP);
 
+    release(colsTRP);
     rowsTRP = colsTRP = null;
     valsTRP = null;
 	}
@@ -678,6 +846,7 @@ public class SparseMatrixHuge extends SparseMatrix
     valsCSR = valsTRP;
     rowsPtrsCSR = compressTripletToCS(rowsTRP );
 
+    release(rowsTRP);
     rowsTRP = colsTRP = null;
     valsTRP = null;
 	}
@@ -730,9 +899,9 @@ public class SparseMatrixHuge extends SparseMatrix
   @Override
   protected void resetTRPEmpty()
   {
-  	rowsTRP = new ArrayListHugeInt();
-  	colsTRP = new ArrayListHugeInt();
-  	valsTRP = new ArrayListHugeDouble();
+  	rowsTRP = newIntList(0);
+  	colsTRP = newIntList(0);
+  	valsTRP = newDoubleList(0);
  
   	maxColIndex = maxRowIndex = 0;
 		transposed = addedInput = false;
@@ -746,9 +915,9 @@ public class SparseMatrixHuge extends SparseMatrix
    * @param xPtrs Input compressed vector.
    * @return Decompressed vector.
    */
-  private static ArrayListHugeInt decompressCSToTriplet(ArrayListLong xPtrs, long decompressSize)
+  private ArrayListHugeInt decompressCSToTriplet(ArrayListLong xPtrs, long decompressSize)
   {
-  	ArrayListHugeInt x = new ArrayListHugeInt(decompressSize);
+  	ArrayListHugeInt x = newIntList(decompressSize);
   	for (int ix = 0; ix < xPtrs.size() - 1; ++ix)
   	{
   		long ixstrt   = xPtrs.get(ix);
@@ -826,6 +995,8 @@ public class SparseMatrixHuge extends SparseMatrix
   @Override
   public void clearCSR()
   {
+  	release(colsCSR);
+  	release(valsCSR);
   	rowsPtrsCSR = null;
   	colsCSR = null;
   	valsCSR = null;
@@ -838,6 +1009,8 @@ public class SparseMatrixHuge extends SparseMatrix
   @Override
   public void clearCSC()
   {
+  	release(rowsCSC);
+  	release(valsCSC);
   	colsPtrsCSC = null;
   	rowsCSC = null;
   	valsCSC = null;
@@ -1038,28 +1211,44 @@ public class SparseMatrixHuge extends SparseMatrix
   		// type is CSC ... read in the array lists.
   		
   		colsPtrsCSC = new ArrayListLong(fib);
-  		rowsCSC = new ArrayListHugeInt(fib);
-  		valsCSC = new ArrayListHugeDouble(fib);
+  		rowsCSC = (ArrayListHugeInt) read(newIntList(0), fib);
+  		valsCSC = (ArrayListHugeDouble) read(newDoubleList(0), fib);
   	}
   	else if (type.equals("CSR"))
   	{
   		// type is CSR ... read in the array lists.
   		
   		rowsPtrsCSR = new ArrayListLong(fib);
-  		colsCSR = new ArrayListHugeInt(fib);
-  		valsCSR = new ArrayListHugeDouble(fib);
+  		colsCSR = (ArrayListHugeInt) read(newIntList(0), fib);
+  		valsCSR = (ArrayListHugeDouble) read(newDoubleList(0), fib);
   	}
   	else if (type.equals("TRIPLET"))
   	{
   		// type is Triplet ... read in the array lists.
   		
-  		rowsTRP = new ArrayListHugeInt(fib);
-  		colsTRP = new ArrayListHugeInt(fib);
-  		valsTRP = new ArrayListHugeDouble(fib);
+  		rowsTRP = (ArrayListHugeInt) read(newIntList(0), fib);
+  		colsTRP = (ArrayListHugeInt) read(newIntList(0), fib);
+  		valsTRP = (ArrayListHugeDouble) read(newDoubleList(0), fib);
   	}
   	fib.close();
   }
 
+  /**
+   * Fills the input list from the input file buffer and returns it.
+   * 
+   * @param x   The list to be filled.
+   * @param fib The file buffer from which the list is read.
+   * @return The input list x.
+   * @throws IOException
+   */
+  private static ArrayListHugeAbstract read(ArrayListHugeAbstract x,
+  		                                      FileInputBuffer fib)
+  		    throws IOException
+  {
+  	x.read(fib);
+  	return x;
+  }
+
   /**
    * Reads an old style tomography sparseMatrix of the form
    *      SparseMatrix sm = ArrayList<SparseMatrixVector>();
@@ -1096,8 +1285,8 @@ public class SparseMatrixHuge extends SparseMatrix
   	// create the column and value array lists given the entry count from the
   	// size array
 
-  	colsCSR = new ArrayListHugeInt(sze[2]);
-  	valsCSR = new ArrayListHugeDouble(sze[2]);
+  	colsCSR = newIntList(sze[2]);
+  	valsCSR = newDoubleList(sze[2]);
 
   	// read in the number of rows ... create the rowsPtrsCSR array and add 0
   	// as the first entry ... assign maxRowIndex ... validate n equals sze[0]
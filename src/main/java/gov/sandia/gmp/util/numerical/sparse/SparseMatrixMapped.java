@@ -0,0 +1,1385 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.sparse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
+import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
+import gov.sandia.gmp.util.filebuffer.MappedFileBuffer;
+
+/**
+* Stores a sparse matrix off-heap in a directory of memory-mapped files. The
+* Compressed Sparse Row (CSR) and Compressed Sparse Column (CSC) pointer, index
+* and value arrays are each stored in their own file and are accessed through
+* a MappedFileBuffer, so the matrix is sized by disk rather than by the Java
+* heap and is never scanned by the garbage collector. The only heap storage is
+* a temporary pointer array used while a representation is built.
+* 
+* The directory contains the following files:
+* 
+*      header                      row/column counts and transpose flag
+*      triplet                     appended (row, column, value) entries
+*      csr.ptr, csr.idx, csr.val   CSR row pointers, columns and values
+*      csc.ptr, csc.idx, csc.val   CSC column pointers, rows and values
+* 
+* New entries are appended to the triplet file by add(). Unlike
+* SparseMatrixStandard and SparseMatrixHuge the CSR and CSC forms are not
+* created on demand by the element accessors. They must be built explicitly
+* by calling createCSR() and/or createCSC(). The first form built consumes
+* the triplet file (a counting sort by row or column followed by a sort of
+* each vector). The second form is built directly from the first and needs
+* no sort. Each form is built into temporary files that are renamed once
+* complete, so an interrupted build never leaves a partial form behind.
+* 
+* A matrix is persisted by calling flush() (or close()). Constructing a
+* SparseMatrixMapped on an existing directory maps the existing forms
+* without reading them, so reopening is immediate regardless of size. A
+* matrix opened read-only (see SparseMatrixMapped(String, boolean)) can be
+* shared by any number of processes, which then share the same physical
+* pages. Methods that would modify a read-only matrix throw an IOException.
+* 
+* The file names always describe the matrix as it was built. transpose()
+* simply swaps the roles of the two forms and sets the transposed flag, which
+* is saved in the header.
+* 
+* Additional public methods available to a client beyond SparseMatrix:
+* 
+*      // Creates a mapped copy of any existing sparse matrix.
+*      SparseMatrixMapped(String directory, SparseMatrix a)
+* 
+*      // Returns the directory in which the matrix is stored.
+*      getDirectory()
+*      
+*      // Saves the header, pending triplets, and all mapped changes.
+*      flush()
+*      
+*      // Flushes and closes the triplet output stream.
+*      close()
+*/
+public class SparseMatrixMapped extends SparseMatrix
+{
+  /**
+   * The header file name.
+   */
+  private static final String HEADER       = "header";
+
+  /**
+   * The triplet file name.
+   */
+  private static final String TRIPLET      = "triplet";
+
+  /**
+   * The byte size of a single triplet entry (row, column, value).
+   */
+  private static final int    TRIPLET_SIZE = 16;
+
+  /**
+   * Vectors shorter than this are sorted in place with an insertion sort.
+   * Longer vectors are copied to the heap and sorted there.
+   */
+  private static final int    INSERTION_SORT_LIMIT = 16;
+
+  /**
+   * A single mapped compressed form (CSR or CSC).
+   */
+  private static class Compressed
+  {
+    /**
+     * The file name prefix ("csr" or "csc") as built.
+     */
+    private String           prefix;
+
+    /**
+     * The number of compressed vectors (rows for CSR, columns for CSC).
+     */
+    private int              vectorCount;
+
+    /**
+     * The vector start pointers (vectorCount + 1 longs).
+     */
+    private MappedFileBuffer ptrs;
+
+    /**
+     * The column (CSR) or row (CSC) indexes.
+     */
+    private MappedFileBuffer indx;
+
+    /**
+     * The values.
+     */
+    private MappedFileBuffer vals;
+
+    /**
+     * Returns the start of vector k.
+     */
+    private long start(int k)
+    {
+      return ptrs.getLong(k);
+    }
+
+    /**
+     * Returns the length of vector k.
+     */
+    private int length(int k)
+    {
+      return (int) (ptrs.getLong(k + 1) - ptrs.getLong(k));
+    }
+
+    /**
+     * Returns the total number of entries.
+     */
+    private long entries()
+    {
+      return ptrs.getLong(vectorCount);
+    }
+
+    /**
+     * Returns the total byte size of the mapped files.
+     */
+    private long byteSize()
+    {
+      return ptrs.size() + indx.size() + vals.size();
+    }
+  }
+
+  /**
+   * The directory containing the mapped files.
+   */
+  private String           directory    = null;
+
+  /**
+   * True if the matrix was opened for writing.
+   */
+  private boolean          writable     = true;
+
+  /**
+   * The current CSR form, or null if it has not been built.
+   */
+  private Compressed       csr          = null;
+
+  /**
+   * The current CSC form, or null if it has not been built.
+   */
+  private Compressed       csc          = null;
+
+  /**
+   * The number of entries in the triplet file (including those still
+   * buffered in tripletOut).
+   */
+  private long             tripletCount = 0;
+
+  /**
+   * The open triplet output stream, or null if no entries are being added.
+   */
+  private DataOutputStream tripletOut   = null;
+
+  /**
+   * Opens (or creates) the writable sparse matrix stored in the input
+   * directory.
+   * 
+   * @param directory The directory in which the matrix is stored.
+   * @throws IOException
+   */
+  public SparseMatrixMapped(String directory) throws IOException
+  {
+    this(directory, true);
+  }
+
+  /**
+   * Opens the sparse matrix stored in the input directory. If writable is
+   * false the existing forms are mapped read-only and the directory must
+   * exist. If writable is true the directory is created if necessary.
+   * 
+   * @param directory The directory in which the matrix is stored.
+   * @param writable  True if the matrix may be modified.
+   * @throws IOException
+   */
+  public SparseMatrixMapped(String directory, boolean writable)
+         throws IOException
+  {
+    this.directory = directory;
+    this.writable  = writable;
+
+    File dir = new File(directory);
+    if (!dir.exists())
+    {
+      if (!writable || !dir.mkdirs())
+        throw new IOException(String.format("%nError: Can't open SparseMatrixMapped " +
+                                            "directory \"%s\" ...%n", directory));
+    }
+
+    // read the header (physical dimensions and transpose flag) if it exists
+
+    maxRowIndex = maxColIndex = 0;
+    if (file(HEADER).exists())
+    {
+      FileInputBuffer fib = new FileInputBuffer(path(HEADER));
+      maxRowIndex = fib.readInt();
+      maxColIndex = fib.readInt();
+      transposed  = fib.readBoolean();
+      fib.close();
+    }
+
+    // map any existing forms ... the file names describe the untransposed
+    // matrix so swap the forms and dimensions if the matrix is transposed
+
+    csr = openCompressed("csr");
+    csc = openCompressed("csc");
+    tripletCount = file(TRIPLET).length() / TRIPLET_SIZE;
+    addedInput = (tripletCount > 0);
+    if (transposed)
+    {
+      Compressed tmp = csr;
+      csr = csc;
+      csc = tmp;
+
+      int itmp = maxRowIndex;
+      maxRowIndex = maxColIndex;
+      maxColIndex = itmp;
+    }
+  }
+
+  /**
+   * Creates a new mapped sparse matrix in the input directory containing a
+   * copy of the input sparse matrix a. The CSR form of a is copied (and
+   * created if necessary) and the CSC form is then built from it. Any
+   * existing matrix in the directory is replaced.
+   * 
+   * @param directory The directory in which the matrix is stored.
+   * @param a         The sparse matrix to be copied.
+   * @throws IOException
+   */
+  public SparseMatrixMapped(String directory, SparseMatrix a) throws IOException
+  {
+    this(directory, true);
+    clear();
+
+    a.createCSR();
+    maxRowIndex = a.getMaxRow();
+    maxColIndex = a.getMaxCol();
+
+    long[] ptr = new long [maxRowIndex + 1];
+    for (int row = 0; row < maxRowIndex; ++row)
+      ptr[row + 1] = ptr[row] + a.getCSRVectorLength(row);
+
+    Compressed c = allocate(prefix(true), ptr);
+    for (int row = 0; row < maxRowIndex; ++row)
+    {
+      long p = ptr[row];
+      int n = (int) (ptr[row + 1] - p);
+      for (int j = 0; j < n; ++j)
+      {
+        c.indx.putInt(p + j, (int) a.getCSRColumn(row, j));
+        c.vals.putDouble(p + j, a.getCSRValue(row, j));
+      }
+    }
+    csr = commit(c);
+    createCSC();
+    flush();
+  }
+
+  /**
+   * Returns the directory in which the matrix is stored.
+   * 
+   * @return The directory in which the matrix is stored.
+   */
+  public String getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Builds an array of SparseVector objects, one for each row in the sparse
+   * matrix. The CSR form is built if it does not exist.
+   * 
+   * @return The array of SparseVector objects.
+   * @throws IOException
+   */
+  @Override
+  public SparseVector[] buildCSR_SV() throws IOException
+  {
+    createCSR();
+    return buildSV(csr);
+  }
+
+  /**
+   * Builds an array of SparseVector objects, one for each column in the
+   * sparse matrix. The CSC form is built if it does not exist.
+   * 
+   * @return The array of SparseVector objects.
+   * @throws IOException
+   */
+  @Override
+  public SparseVector[] buildCSC_SV() throws IOException
+  {
+    createCSC();
+    return buildSV(csc);
+  }
+
+  /**
+   * Returns a SparseVectorMapped for each vector of the input form.
+   */
+  private static SparseVector[] buildSV(Compressed c)
+  {
+    SparseVector[] sv = new SparseVector [c.vectorCount];
+    for (int k = 0; k < c.vectorCount; ++k)
+      sv[k] = new SparseVectorMapped(k, c.length(k), c.start(k), c.indx, c.vals);
+    return sv;
+  }
+
+  /**
+   * Appends a new entry to the triplet file. If the CSR or CSC forms exist
+   * their entries are first written to the triplet file and the forms are
+   * removed, as they are no longer valid.
+   * 
+   * @param row   The row index of the new entry.
+   * @param col   The column index of the new entry.
+   * @param value The new entries value.
+   * @throws IOException
+   */
+  @Override
+  public void add(int row, int col, double value) throws IOException
+  {
+    if (tripletOut == null) openTriplet();
+
+    addedInput = true;
+    if (maxRowIndex < row + 1) maxRowIndex = row + 1;
+    if (maxColIndex < col + 1) maxColIndex = col + 1;
+
+    // triplets are always stored untransposed
+
+    if (transposed)
+    {
+      tripletOut.writeInt(col);
+      tripletOut.writeInt(row);
+    }
+    else
+    {
+      tripletOut.writeInt(row);
+      tripletOut.writeInt(col);
+    }
+    tripletOut.writeDouble(value);
+    ++tripletCount;
+  }
+
+  /**
+   * Returns the length of the vector assigned to input CSR 'row'.
+   * 
+   * @param row The row for which the vector length will be returned.
+   * @return The length of the vector assigned to input CSR 'row'.
+   * @throws IOException
+   */
+  @Override
+  public int getCSRVectorLength(int row) throws IOException
+  {
+    return built(csr, "CSR").length(row);
+  }
+
+  /**
+   * Return the value stored at the input 'row' index and the column offset
+   * 'index' from a CSR representation.
+   * 
+   * @param row    The matrix row index,
+   * @param index  The Sparse Vector (SV) column index from a CSR
+   *               sorted representation.
+   * @return       The value stored at the input 'row' index and the column
+   *               offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double getCSRValue(int row, int index) throws IOException
+  {
+    long i = elementIndex(built(csr, "CSR"), row, index);
+    return csr.vals.getDouble(i);
+  }
+
+  /**
+   * Sets the input 'val' into the location at the input 'row' index and the
+   * column offset 'index' for a CSR representation.
+   * 
+   * @param row    The matrix row index,
+   * @param index  The Sparse Vector (SV) column index from a CSR
+   *               sorted representation.
+   * @param val    The new value to be set.
+   * @return       The previous value stored at the input 'row' index and the
+   *               column offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double setCSRValue(int row, int index, double val) throws IOException
+  {
+    checkWritable();
+    long i = elementIndex(built(csr, "CSR"), row, index);
+    double tmp = csr.vals.getDouble(i);
+    csr.vals.putDouble(i, val);
+    return tmp;
+  }
+
+  /**
+   * Return the column stored at the input 'row' index and the column offset
+   * 'index' from a CSR representation.
+   * 
+   * @param row    The matrix row index,
+   * @param index  The Sparse Vector (SV) column index from a CSR
+   *               sorted representation.
+   * @return       The column index stored at the input 'row' index and the
+   *               the column offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double getCSRColumn(int row, int index) throws IOException
+  {
+    long i = elementIndex(built(csr, "CSR"), row, index);
+    return csr.indx.getInt(i);
+  }
+
+  /**
+   * Sets the column index stored at the input 'row' index and the column offset
+   * 'index' for a CSR representation. Note: This destroys the sort order of the
+   * Sparse Vector (SV) for the input 'row'. Call sortCSRRow(int row) after
+   * finishing to restore the SV for the input 'row' to sorted order.
+   * 
+   * @param row    The matrix row index,
+   * @param index  The Sparse Vector (SV) column index from a CSR
+   *               sorted representation.
+   * @param column The column index to be set.
+   * @return       The previous column index stored at the input 'row' index
+   *               and the column offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public int setCSRColumn(int row, int index, int column) throws IOException
+  {
+    checkWritable();
+    long i = elementIndex(built(csr, "CSR"), row, index);
+    int tmp = csr.indx.getInt(i);
+    csr.indx.putInt(i, column);
+    return tmp;
+  }
+
+  /**
+   * Sorts the sparse vector associated with the input row. The CSR form must
+   * have been built.
+   * 
+   * @param row The CSR row to be sorted.
+   * @throws IOException
+   */
+  @Override
+  public void sortCSRRow(int row) throws IOException
+  {
+    checkWritable();
+    Compressed c = built(csr, "CSR");
+    sortVector(c, c.start(row), c.length(row), false, row);
+  }
+
+  /**
+   * Returns sum plus the dot product of CSR 'row' with x.
+   * 
+   * @param row The matrix row index.
+   * @param x   The vector multiplying the row.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSR 'row' with x.
+   */
+  @Override
+  public double accumulateCSRRow(int row, double[] x, double sum)
+  {
+    return accumulate(csr, row, x, sum);
+  }
+
+  /**
+   * Returns the length of the vector assigned to input CSC 'col'.
+   * 
+   * @param col The column for which the vector length will be returned.
+   * @return The length of the vector assigned to input CSC 'col'.
+   * @throws IOException
+   */
+  @Override
+  public int getCSCVectorLength(int col) throws IOException
+  {
+    return built(csc, "CSC").length(col);
+  }
+
+  /**
+   * Return the value stored at the input 'col' index and the row offset
+   * 'index' from a CSC representation.
+   * 
+   * @param col    The matrix column index,
+   * @param index  The Sparse Vector (SV) row index from a CSC
+   *               sorted representation.
+   * @return       The value stored at the input 'col' index and the row
+   *               offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double getCSCValue(int col, int index) throws IOException
+  {
+    long i = elementIndex(built(csc, "CSC"), col, index);
+    return csc.vals.getDouble(i);
+  }
+
+  /**
+   * Sets the input 'val' into the location at the input 'col' index and the
+   * row offset 'index' for a CSC representation.
+   * 
+   * @param col    The matrix column index,
+   * @param index  The Sparse Vector (SV) row index from a CSC
+   *               sorted representation.
+   * @param val    The new value to be set.
+   * @return       The previous value stored at the input 'col' index and the
+   *               row offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double setCSCValue(int col, int index, double val) throws IOException
+  {
+    checkWritable();
+    long i = elementIndex(built(csc, "CSC"), col, index);
+    double tmp = csc.vals.getDouble(i);
+    csc.vals.putDouble(i, val);
+    return tmp;
+  }
+
+  /**
+   * Return the row stored at the input 'col' index and the row offset
+   * 'index' from a CSC representation.
+   * 
+   * @param col    The matrix column index,
+   * @param index  The Sparse Vector (SV) row index from a CSC
+   *               sorted representation.
+   * @return       The row index stored at the input 'col' index and the
+   *               the row offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public double getCSCRow(int col, int index) throws IOException
+  {
+    long i = elementIndex(built(csc, "CSC"), col, index);
+    return csc.indx.getInt(i);
+  }
+
+  /**
+   * Sets the row index stored at the input 'col' index and the row offset
+   * 'index' for a CSC representation. Note: This destroys the sort order of the
+   * Sparse Vector (SV) for the input 'col'. Call sortCSCCol(int col) after
+   * finishing to restore the SV for the input 'col' to sorted order.
+   * 
+   * @param col    The matrix column index,
+   * @param index  The Sparse Vector (SV) row index from a CSC
+   *               sorted representation.
+   * @param row    The row index to be set.
+   * @return       The previous row index stored at the input 'col' index
+   *               and the row offset 'index'.
+   * @throws IOException
+   */
+  @Override
+  public int setCSCRow(int col, int index, int row) throws IOException
+  {
+    checkWritable();
+    long i = elementIndex(built(csc, "CSC"), col, index);
+    int tmp = csc.indx.getInt(i);
+    csc.indx.putInt(i, row);
+    return tmp;
+  }
+
+  /**
+   * Sorts the sparse vector associated with the input column. The CSC form
+   * must have been built.
+   * 
+   * @param col The CSC column to be sorted.
+   * @throws IOException
+   */
+  @Override
+  public void sortCSCCol(int col) throws IOException
+  {
+    checkWritable();
+    Compressed c = built(csc, "CSC");
+    sortVector(c, c.start(col), c.length(col), false, col);
+  }
+
+  /**
+   * Returns sum plus the dot product of CSC 'col' with y.
+   * 
+   * @param col The matrix column index.
+   * @param y   The vector multiplying the column.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSC 'col' with y.
+   */
+  @Override
+  public double accumulateCSCColumn(int col, double[] y, double sum)
+  {
+    return accumulate(csc, col, y, sum);
+  }
+
+  /**
+   * Adds vals[i] * x[indx[i]] to sum, in order, for each entry i of vector k
+   * of the input form.
+   */
+  private static double accumulate(Compressed c, int k, double[] x, double sum)
+  {
+    long stop = c.ptrs.getLong(k + 1);
+    for (long i = c.ptrs.getLong(k); i < stop; ++i)
+      sum += c.vals.getDouble(i) * x[c.indx.getInt(i)];
+    return sum;
+  }
+
+  /**
+   * Returns the entry index of offset 'index' in vector k of the input form.
+   */
+  private static long elementIndex(Compressed c, int k, int index)
+         throws IOException
+  {
+    if ((k < 0) || (k >= c.vectorCount) || (index < 0) || (index >= c.length(k)))
+      throw new IOException(String.format("%nError: Invalid vector/index %d, %d ...%n",
+                                          k, index));
+    return c.start(k) + index;
+  }
+
+  /**
+   * Returns c if it is not null. Otherwise an IOException is thrown stating
+   * that the named form must be built first.
+   */
+  private static Compressed built(Compressed c, String name) throws IOException
+  {
+    if (c == null)
+      throw new IOException(String.format("%nError: %s form has not been built " +
+                                          "(call create%s() first) ...%n",
+                                          name, name));
+    return c;
+  }
+
+  /**
+   * Throws an IOException if the matrix was opened read-only.
+   */
+  private void checkWritable() throws IOException
+  {
+    if (!writable)
+      throw new IOException(String.format("%nError: SparseMatrixMapped \"%s\" " +
+                                          "was opened read-only ...%n", directory));
+  }
+
+  /**
+   * Builds the CSC representation if it does not exist. If the CSR form
+   * exists CSC is built from it, otherwise it is built from the triplet
+   * file, which is then removed.
+   * 
+   * @throws IOException
+   */
+  @Override
+  public void createCSC() throws IOException
+  {
+    if (CSCExists()) return;
+    csc = build(false);
+  }
+
+  /**
+   * Builds the CSR representation if it does not exist. If the CSC form
+   * exists CSR is built from it, otherwise it is built from the triplet
+   * file, which is then removed.
+   * 
+   * @throws IOException
+   */
+  @Override
+  public void createCSR() throws IOException
+  {
+    if (CSRExists()) return;
+    csr = build(true);
+  }
+
+  /**
+   * Builds the CSR (byRow = true) or CSC (byRow = false) form from the
+   * triplet file or, if there are no triplets, from the opposite form.
+   */
+  private Compressed build(boolean byRow) throws IOException
+  {
+    checkWritable();
+    Compressed other = byRow ? csc : csr;
+    if (tripletCount > 0)
+      return buildFromTriplet(byRow);
+    else if (other != null)
+      return buildFromCompressed(other, byRow ? maxRowIndex : maxColIndex,
+                                 prefix(byRow));
+    else
+      throw new IOException(String.format("%nError: Can't create %s from empty " +
+                                          "SparseMatrix ...%n", byRow ? "CSR" : "CSC"));
+  }
+
+  /**
+   * Builds a compressed form from the triplet file with a counting sort on
+   * the major index followed by a sort of each vector on the minor index.
+   * The triplet file is removed on completion.
+   */
+  private Compressed buildFromTriplet(boolean byRow) throws IOException
+  {
+    closeTriplet();
+    MappedFileBuffer trp = new MappedFileBuffer(path(TRIPLET), false);
+
+    // triplets are stored untransposed (int row, int col, double value) ...
+    // select the int offset of the major index
+
+    int majorOffset = (byRow != transposed) ? 0 : 1;
+    int n = byRow ? maxRowIndex : maxColIndex;
+
+    // count the entries of each vector and convert to start pointers
+
+    long[] ptr = new long [n + 1];
+    for (long k = 0; k < tripletCount; ++k)
+      ++ptr[trp.getInt(4 * k + majorOffset) + 1];
+    for (int i = 0; i < n; ++i) ptr[i + 1] += ptr[i];
+
+    // scatter each triplet into its vector
+
+    Compressed c = allocate(prefix(byRow), ptr);
+    long[] next = Arrays.copyOf(ptr, n);
+    for (long k = 0; k < tripletCount; ++k)
+    {
+      int  major = trp.getInt(4 * k + majorOffset);
+      long p     = next[major]++;
+      c.indx.putInt(p, trp.getInt(4 * k + 1 - majorOffset));
+      c.vals.putDouble(p, trp.getDouble(2 * k + 1));
+    }
+
+    // sort each vector and check for double entries
+
+    for (int i = 0; i < n; ++i)
+      sortVector(c, ptr[i], (int) (ptr[i + 1] - ptr[i]), true, i);
+
+    // the triplets have been consumed ... remove the triplet file
+
+    file(TRIPLET).delete();
+    tripletCount = 0;
+    addedInput = false;
+    return commit(c);
+  }
+
+  /**
+   * Builds a compressed form from the opposite form (CSR from CSC or CSC from
+   * CSR). The other form is traversed in vector order so each new vector is
+   * filled in sorted order.
+   */
+  private Compressed buildFromCompressed(Compressed other, int n, String prefix)
+          throws IOException
+  {
+    long[] ptr = new long [n + 1];
+    long nnz = other.entries();
+    for (long i = 0; i < nnz; ++i) ++ptr[other.indx.getInt(i) + 1];
+    for (int i = 0; i < n; ++i) ptr[i + 1] += ptr[i];
+
+    Compressed c = allocate(prefix, ptr);
+    long[] next = Arrays.copyOf(ptr, n);
+    for (int k = 0; k < other.vectorCount; ++k)
+    {
+      long stop = other.start(k + 1);
+      for (long i = other.start(k); i < stop; ++i)
+      {
+        long p = next[other.indx.getInt(i)]++;
+        c.indx.putInt(p, k);
+        c.vals.putDouble(p, other.vals.getDouble(i));
+      }
+    }
+    return commit(c);
+  }
+
+  /**
+   * Sorts the len entries of a vector, beginning at entry start, on their
+   * index. If checkInput is true an IOException is thrown if a double entry
+   * is discovered.
+   */
+  private static void sortVector(Compressed c, long start, int len,
+                                 boolean checkInput, int k) throws IOException
+  {
+    if (len < 2) return;
+
+    if (len < INSERTION_SORT_LIMIT)
+    {
+      for (long i = start + 1; i < start + len; ++i)
+      {
+        int    ii = c.indx.getInt(i);
+        double vi = c.vals.getDouble(i);
+        long j = i - 1;
+        while ((j >= start) && (c.indx.getInt(j) > ii))
+        {
+          c.indx.putInt(j + 1, c.indx.getInt(j));
+          c.vals.putDouble(j + 1, c.vals.getDouble(j));
+          --j;
+        }
+        c.indx.putInt(j + 1, ii);
+        c.vals.putDouble(j + 1, vi);
+      }
+    }
+    else
+    {
+      // sort (index, position) keys on the heap and write back in order
+
+      long[]   key = new long [len];
+      double[] val = new double [len];
+      for (int i = 0; i < len; ++i)
+      {
+        key[i] = ((long) c.indx.getInt(start + i) << 32) | i;
+        val[i] = c.vals.getDouble(start + i);
+      }
+      Arrays.sort(key);
+      for (int i = 0; i < len; ++i)
+      {
+        c.indx.putInt(start + i, (int) (key[i] >> 32));
+        c.vals.putDouble(start + i, val[(int) key[i]]);
+      }
+    }
+
+    if (checkInput)
+    {
+      for (long i = start + 1; i < start + len; ++i)
+        if (c.indx.getInt(i) == c.indx.getInt(i - 1))
+          throw new IOException(String.format("%nError: Double Entry for vector, " +
+                                              "index: %d, %d ...%n",
+                                              k, c.indx.getInt(i)));
+    }
+  }
+
+  /**
+   * Creates the temporary files of a new compressed form with the input
+   * vector start pointers and writes the pointers.
+   */
+  private Compressed allocate(String prefix, long[] ptr) throws IOException
+  {
+    int n = ptr.length - 1;
+    long nnz = ptr[n];
+
+    Compressed c = new Compressed();
+    c.prefix      = prefix;
+    c.vectorCount = n;
+    c.ptrs = new MappedFileBuffer(path(prefix + ".ptr.tmp"), 8L * (n + 1));
+    c.indx = new MappedFileBuffer(path(prefix + ".idx.tmp"), 4L * nnz);
+    c.vals = new MappedFileBuffer(path(prefix + ".val.tmp"), 8L * nnz);
+    for (int i = 0; i <= n; ++i) c.ptrs.putLong(i, ptr[i]);
+    return c;
+  }
+
+  /**
+   * Forces the temporary files of a newly built form to disk, renames them to
+   * their final names, saves the header, and maps the final files.
+   */
+  private Compressed commit(Compressed c) throws IOException
+  {
+    c.ptrs.force();
+    c.indx.force();
+    c.vals.force();
+    for (String ext : new String[] {".ptr", ".idx", ".val"})
+    {
+      File dest = file(c.prefix + ext);
+      dest.delete();
+      if (!file(c.prefix + ext + ".tmp").renameTo(dest))
+        throw new IOException(String.format("%nError: Can't rename \"%s\" ...%n",
+                                            c.prefix + ext + ".tmp"));
+    }
+    writeHeader();
+    return openCompressed(c.prefix);
+  }
+
+  /**
+   * Maps the form stored with the input file prefix, or returns null if it
+   * does not exist.
+   */
+  private Compressed openCompressed(String prefix) throws IOException
+  {
+    if (!file(prefix + ".ptr").exists() || !file(prefix + ".idx").exists() ||
+        !file(prefix + ".val").exists())
+      return null;
+
+    Compressed c = new Compressed();
+    c.prefix      = prefix;
+    c.ptrs        = new MappedFileBuffer(path(prefix + ".ptr"), writable);
+    c.indx        = new MappedFileBuffer(path(prefix + ".idx"), writable);
+    c.vals        = new MappedFileBuffer(path(prefix + ".val"), writable);
+    c.vectorCount = (int) (c.ptrs.size() / 8) - 1;
+    return c;
+  }
+
+  /**
+   * Returns the file prefix of the logical CSR (csr = true) or CSC form. The
+   * file names describe the untransposed matrix.
+   */
+  private String prefix(boolean csr)
+  {
+    return (csr != transposed) ? "csr" : "csc";
+  }
+
+  /**
+   * Opens the triplet output stream for appending. If the CSR or CSC form
+   * exists its entries are written to the triplet file first and both forms
+   * are removed.
+   */
+  private void openTriplet() throws IOException
+  {
+    checkWritable();
+    tripletOut = new DataOutputStream(new BufferedOutputStream(
+                   new FileOutputStream(path(TRIPLET), true), 1 << 16));
+
+    Compressed c = (csr != null) ? csr : csc;
+    if ((tripletCount == 0) && (c != null))
+    {
+      // untransposed rows are the major index of the form stored as "csr"
+
+      boolean majorIsRow = c.prefix.equals("csr");
+      for (int k = 0; k < c.vectorCount; ++k)
+      {
+        long stop = c.start(k + 1);
+        for (long i = c.start(k); i < stop; ++i)
+        {
+          int minor = c.indx.getInt(i);
+          tripletOut.writeInt(majorIsRow ? k : minor);
+          tripletOut.writeInt(majorIsRow ? minor : k);
+          tripletOut.writeDouble(c.vals.getDouble(i));
+          ++tripletCount;
+        }
+      }
+      tripletOut.flush();
+    }
+    clearCSR();
+    clearCSC();
+  }
+
+  /**
+   * Flushes and closes the triplet output stream if it is open.
+   */
+  private void closeTriplet() throws IOException
+  {
+    if (tripletOut != null)
+    {
+      tripletOut.close();
+      tripletOut = null;
+    }
+  }
+
+  /**
+   * The triplet form exists until it is consumed by building a compressed
+   * form. Opens the triplet file for appending, converting any existing
+   * compressed form to triplets.
+   */
+  @Override
+  protected void createTriplet()
+  {
+    try
+    {
+      if (tripletOut == null) openTriplet();
+    }
+    catch (IOException ex)
+    {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Removes any pending triplets and resets the matrix to an empty triplet
+   * representation.
+   */
+  @Override
+  protected void resetTRPEmpty()
+  {
+    try
+    {
+      closeTriplet();
+    }
+    catch (IOException ex)
+    {
+      throw new RuntimeException(ex);
+    }
+    file(TRIPLET).delete();
+    tripletCount = 0;
+
+    maxColIndex = maxRowIndex = 0;
+    transposed = addedInput = false;
+  }
+
+  /**
+   * Clears all representations, including pending triplets, and removes
+   * their files.
+   */
+  @Override
+  public void clear()
+  {
+    super.clear();
+    resetTRPEmpty();
+  }
+
+  /**
+   * Transpose the matrix.
+   */
+  @Override
+  public void transpose()
+  {
+    Compressed tmp = csr;
+    csr = csc;
+    csc = tmp;
+
+    int itmp = maxRowIndex;
+    maxRowIndex = maxColIndex;
+    maxColIndex = itmp;
+
+    transposed = !transposed;
+  }
+
+  /**
+   * Clears the CSR representation and removes its files.
+   */
+  @Override
+  public void clearCSR()
+  {
+    if (csr != null) deleteFiles(csr);
+    csr = null;
+  }
+
+  /**
+   * Clears the CSC representation and removes its files.
+   */
+  @Override
+  public void clearCSC()
+  {
+    if (csc != null) deleteFiles(csc);
+    csc = null;
+  }
+
+  /**
+   * Removes the files of the input form.
+   */
+  private void deleteFiles(Compressed c)
+  {
+    if (writable)
+    {
+      file(c.prefix + ".ptr").delete();
+      file(c.prefix + ".idx").delete();
+      file(c.prefix + ".val").delete();
+    }
+  }
+
+  /**
+   * Returns true if the triplet form exists.
+   * 
+   * @return True if the triplet form exists.
+   */
+  @Override
+  public boolean tripletExists()
+  {
+    return (tripletOut != null) || (tripletCount > 0);
+  }
+
+  /**
+   * Returns true if the CSR form exists.
+   * 
+   * @return True if the CSR form exists.
+   */
+  @Override
+  public boolean CSRExists()
+  {
+    return (csr != null);
+  }
+
+  /**
+   * Returns true if the CSC form exists.
+   * 
+   * @return True if the CSC form exists.
+   */
+  @Override
+  public boolean CSCExists()
+  {
+    return (csc != null);
+  }
+
+  /**
+   * Returns the entry count as a double.
+   */
+  @Override
+  public double entries()
+  {
+    return entryCount();
+  }
+
+  /**
+   * Returns the total number of unique entries in the sparse matrix.
+   * 
+   * @return The total number of unique entries in the sparse matrix.
+   */
+  @Override
+  public long entryCount()
+  {
+    if (CSCExists())
+      return csc.entries();
+    else if (CSRExists())
+      return csr.entries();
+    else
+      return tripletCount;
+  }
+
+  /**
+   * Saves the header, flushes pending triplets to the triplet file, and
+   * forces all changes to the mapped forms to disk. Does nothing if the
+   * matrix was opened read-only.
+   * 
+   * @throws IOException
+   */
+  public void flush() throws IOException
+  {
+    if (!writable) return;
+
+    if (tripletOut != null) tripletOut.flush();
+    if (csr != null)
+    {
+      csr.indx.force();
+      csr.vals.force();
+    }
+    if (csc != null)
+    {
+      csc.indx.force();
+      csc.vals.force();
+    }
+    writeHeader();
+  }
+
+  /**
+   * Flushes the matrix (see flush()) and closes the triplet output stream.
+   * The matrix remains usable; a subsequent add() reopens the stream.
+   * 
+   * @throws IOException
+   */
+  public void close() throws IOException
+  {
+    flush();
+    closeTriplet();
+  }
+
+  /**
+   * Writes the untransposed dimensions and the transpose flag to the header
+   * file.
+   */
+  private void writeHeader() throws IOException
+  {
+    FileOutputBuffer fob = new FileOutputBuffer(path(HEADER));
+    fob.writeInt(transposed ? maxColIndex : maxRowIndex);
+    fob.writeInt(transposed ? maxRowIndex : maxColIndex);
+    fob.writeBoolean(transposed);
+    fob.close();
+  }
+
+  /**
+   * Writes the sparse matrix to the file given by filename in the same format
+   * as SparseMatrixHuge.write(), so that it can be read by a SparseMatrixHuge.
+   * CSC is preferred, then CSR, then triplet.
+   * 
+   * @param filename The name of the file into which the sparse matrix is
+   *                 written.
+   * @throws IOException
+   */
+  @Override
+  public void write(String filename) throws IOException
+  {
+    FileOutputBuffer fob = new FileOutputBuffer(filename);
+    fob.writeInt(maxRowIndex);
+    fob.writeInt(maxColIndex);
+    fob.writeBoolean(addedInput);
+    fob.writeBoolean(transposed);
+    if (CSCExists() || CSRExists())
+    {
+      Compressed c = CSCExists() ? csc : csr;
+      fob.writeString(CSCExists() ? "CSC" : "CSR");
+      fob.writeInt(c.vectorCount + 1);
+      for (int i = 0; i <= c.vectorCount; ++i) fob.writeLong(c.ptrs.getLong(i));
+      long nnz = c.entries();
+      fob.writeLong(nnz);
+      for (long i = 0; i < nnz; ++i) fob.writeInt(c.indx.getInt(i));
+      fob.writeLong(nnz);
+      for (long i = 0; i < nnz; ++i) fob.writeDouble(c.vals.getDouble(i));
+    }
+    else if (tripletExists())
+    {
+      if (tripletOut != null) tripletOut.flush();
+      MappedFileBuffer trp = new MappedFileBuffer(path(TRIPLET), false);
+      int rowOffset = transposed ? 1 : 0;
+
+      fob.writeString("TRIPLET");
+      fob.writeLong(tripletCount);
+      for (long k = 0; k < tripletCount; ++k) fob.writeInt(trp.getInt(4 * k + rowOffset));
+      fob.writeLong(tripletCount);
+      for (long k = 0; k < tripletCount; ++k) fob.writeInt(trp.getInt(4 * k + 1 - rowOffset));
+      fob.writeLong(tripletCount);
+      for (long k = 0; k < tripletCount; ++k) fob.writeDouble(trp.getDouble(2 * k + 1));
+    }
+    fob.close();
+  }
+
+  /**
+   * Replaces the contents of this matrix with the sparse matrix in the input
+   * file filename, which was written by SparseMatrixHuge.write() (or
+   * write() above). The arrays are streamed directly into mapped files.
+   * 
+   * @param filename
+   * @throws IOException
+   */
+  @Override
+  public void read(String filename) throws IOException
+  {
+    checkWritable();
+    clear();
+
+    FileInputBuffer fib = new FileInputBuffer(filename);
+    maxRowIndex = fib.readInt();
+    maxColIndex = fib.readInt();
+    addedInput  = fib.readBoolean();
+    transposed  = fib.readBoolean();
+    String type = fib.readString();
+    if (type.equals("CSC") || type.equals("CSR"))
+    {
+      boolean isCSR = type.equals("CSR");
+      long[] ptr = new long [fib.readInt()];
+      for (int i = 0; i < ptr.length; ++i) ptr[i] = fib.readLong();
+
+      Compressed c = allocate(prefix(isCSR), ptr);
+      long nnz = fib.readLong();
+      for (long i = 0; i < nnz; ++i) c.indx.putInt(i, fib.readInt());
+      nnz = fib.readLong();
+      for (long i = 0; i < nnz; ++i) c.vals.putDouble(i, fib.readDouble());
+      fib.close();
+
+      if (isCSR)
+        csr = commit(c);
+      else
+        csc = commit(c);
+    }
+    else if (type.equals("TRIPLET"))
+    {
+      // the rows, columns, and values are stored one after the other ...
+      // interleave them into the triplet file
+
+      long n = fib.readLong();
+      MappedFileBuffer trp = new MappedFileBuffer(path(TRIPLET), TRIPLET_SIZE * n);
+      int rowOffset = transposed ? 1 : 0;
+      for (long k = 0; k < n; ++k) trp.putInt(4 * k + rowOffset, fib.readInt());
+      fib.readLong();
+      for (long k = 0; k < n; ++k) trp.putInt(4 * k + 1 - rowOffset, fib.readInt());
+      fib.readLong();
+      for (long k = 0; k < n; ++k) trp.putDouble(2 * k + 1, fib.readDouble());
+      fib.close();
+
+      trp.force();
+      tripletCount = n;
+      addedInput = true;
+      writeHeader();
+    }
+    else
+      fib.close();
+  }
+
+  /**
+   * Reads an old style tomography sparseMatrix of the form
+   *      SparseMatrix sm = ArrayList<SparseMatrixVector>();
+   * The entries are added as triplets and the CSR form is built.
+   * 
+   * @param filepath The path to where the "sparseMatrix" file name and its
+   *                 size array ("sparseMatrixSize") are written.
+   * @throws IOException
+   */
+  @Override
+  public void readOldSparseMatrix(String filepath) throws IOException
+  {
+    // read the size array [maxRowIndex, maxColIndex, entryCount, ...]
+
+    checkWritable();
+    clear();
+    String fn = filepath + File.separator + "sparseMatrixSize";
+    FileInputBuffer fib = new FileInputBuffer(fn);
+    long[] sze = new long [5];
+    for (int i = 0; i < 5; ++i) sze[i] = fib.readLong();
+    fib.close();
+
+    // read each row (column indexes followed by values) and add its entries
+
+    fn = filepath + File.separator + "sparseMatrix";
+    fib = new FileInputBuffer(fn);
+    int n = fib.readInt();
+    if (n != (int) sze[0])
+      throw new IOException("Error: Max Row Index does not match Size[0] array ...");
+
+    for (int i = 0; i < n; ++i)
+    {
+      int m = fib.readInt();
+      int[] cols = new int [m];
+      for (int j = 0; j < m; ++j) cols[j] = fib.readInt();
+      for (int j = 0; j < m; ++j) add(i, cols[j], fib.readDouble());
+    }
+    fib.close();
+
+    maxRowIndex = n;
+    if (tripletCount != sze[2])
+      throw new IOException("Error: Entry Count does not match Size[2] ...");
+    if (maxColIndex != (int) sze[1])
+      throw new IOException("Error: Max Column Index does not match Size[1] array ...");
+
+    createCSR();
+  }
+
+  /**
+   * Returns the total size in bytes of the mapped files of all existing
+   * representations. This storage is off-heap (it is managed by the
+   * operating system page cache).
+   * 
+   * @return The total size in bytes of the mapped files.
+   */
+  @Override
+  public long memoryAllocationSize()
+  {
+    long msze = tripletCount * TRIPLET_SIZE;
+    if (csr != null) msze += csr.byteSize();
+    if (csc != null) msze += csc.byteSize();
+    return msze;
+  }
+
+  /**
+   * Returns the file with the input name in the matrix directory.
+   */
+  private File file(String name)
+  {
+    return new File(directory, name);
+  }
+
+  /**
+   * Returns the path of the file with the input name in the matrix directory.
+   */
+  private String path(String name)
+  {
+    return file(name).getPath();
+  }
+}
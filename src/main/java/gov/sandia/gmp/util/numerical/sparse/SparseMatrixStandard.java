@@ -437,6 +437,24 @@ public class SparseMatrixStandard extends SparseMatrix
   	}
   }
 
+  /**
+   * Returns sum plus the dot product of CSR 'row' with x.
+   * 
+   * @param row The matrix row index.
+   * @param x   The vector multiplying the row.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSR 'row' with x.
+   */
+  @Override
+  public double accumulateCSRRow(int row, double[] x, double sum)
+  {
+  	int stop = rowsPtrsCSR.get(row + 1);
+  	int[] cols = colsCSR.getArray();
+  	double[] vals = valsCSR.getArray();
+  	for (int i = rowsPtrsCSR.get(row); i < stop; ++i) sum += vals[i] * x[cols[i]];
+  	return sum;
+  }
+
   /**
    * Returns the length of the vector assigned to input CSC 'col'.
    * 
@@ -535,6 +553,24 @@ public class SparseMatrixStandard extends SparseMatrix
   	return tmp;
   }
 
+  /**
+   * Returns sum plus the dot product of CSC 'col' with y.
+   * 
+   * @param col The matrix column index.
+   * @param y   The vector multiplying the column.
+   * @param sum The initial value of the sum.
+   * @return sum plus the dot product of CSC 'col' with y.
+   */
+  @Override
+  public double accumulateCSCColumn(int col, double[] y, double sum)
+  {
+  	int stop = colsPtrsCSC.get(col + 1);
+  	int[] rows = rowsCSC.getArray();
+  	double[] vals = valsCSC.getArray();
+  	for (int i = colsPtrsCSC.get(col); i < stop; ++i) sum += vals[i] * y[rows[i]];
+  	return sum;
+  }
+
   /**
    * Sorts the sparse vector associated with the input column. If CSC does not
    * exist it is created (which automatically sorts at creation).
@@ -97,6 +97,24 @@ public class SparseVectorHuge extends SparseVector
 		// get the standard elements of the CSV
 
 		int vLen       = (int) (ptrsX.get(k + 1) - ptrsX.get(k));
+
+		// off-heap lists have no backing arrays ... copy the vector into new
+		// arrays and return a CSV that writes changes made through it, e.g. by
+		// scale(), back to the value list
+
+		if (x.isOffHeap())
+		{
+			int[]    indxA = new int [vLen];
+			double[] valsA = new double [vLen];
+			long j0 = ptrsX.get(k);
+			for (int j = 0; j < vLen; ++j)
+			{
+				indxA[j] = x.get(j0 + j);
+				valsA[j] = v.get(j0 + j);
+			}
+			return new OffHeapCopy(k, vLen, indxA, valsA, v, j0);
+		}
+
 		int offstIndx  = x.getElementIndex(ptrsX.get(k));
 		int segIndx0   = x.getSegmentIndex(ptrsX.get(k));
 		int[]    indxA = x.getArraySegment(segIndx0);
@@ -413,4 +431,61 @@ public class SparseVectorHuge extends SparseVector
   {
   	return indxArray1[endIndex - 1];
   }
+
+  /**
+   * A CSV copied from an off-heap value list. The functions that change the
+   * values of the vector change the copy and then write it back to the
+   * list, so that they behave as they do for CSVs that reference the
+   * list's backing arrays.
+   */
+  private static class OffHeapCopy extends SparseVector
+  {
+    /**
+     * The value list from which the copy was made.
+     */
+    private final ArrayListHugeDouble values;
+
+    /**
+     * The index of the first value of this vector in values.
+     */
+    private final long first;
+
+    OffHeapCopy(int vecIndx, int vecLen, int[] indxA, double[] valsA,
+                ArrayListHugeDouble values, long first)
+    {
+      super(vecIndx, vecLen, 0, indxA, valsA);
+      this.values = values;
+      this.first  = first;
+    }
+
+    /**
+     * Writes the values of the copy back to the value list.
+     */
+    private void writeBack()
+    {
+      for (int j = startIndex; j < endIndex; ++j)
+        values.set(first + j, valsArray[j]);
+    }
+
+    @Override
+    public void normalizeIndex(double[] aNorm)
+    {
+      super.normalizeIndex(aNorm);
+      writeBack();
+    }
+
+    @Override
+    public void normalize(double aNorm)
+    {
+      super.normalize(aNorm);
+      writeBack();
+    }
+
+    @Override
+    public void scale(double scl)
+    {
+      super.scale(scl);
+      writeBack();
+    }
+  }
 }
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.sparse;
+
+import gov.sandia.gmp.util.filebuffer.MappedFileBuffer;
+import gov.sandia.gmp.util.numerical.doubledouble.DoubleDouble;
+
+/**
+ * Compressed Sparse Vector object that represents a single row (if created
+ * from CSR) or column (if created from CSC) of a SparseMatrixMapped. The
+ * index and value entries are read directly from the memory-mapped index and
+ * value files of the matrix (no copying). The vector may span any number of
+ * mapped segments.
+ * 
+ * The base class startIndex and endIndex are 0 and the vector length. The
+ * offset of the first entry in the mapped files is stored in fileOffset.
+ * 
+ * If the matrix was opened read-only the methods normalizeIndex(),
+ * normalize() and scale() throw a ReadOnlyBufferException.
+ */
+public class SparseVectorMapped extends SparseVector
+{
+  /**
+   * The mapped file of column (CSR) or row (CSC) indexes.
+   */
+  private MappedFileBuffer indxFile   = null;
+
+  /**
+   * The mapped file of values.
+   */
+  private MappedFileBuffer valsFile   = null;
+
+  /**
+   * The element offset of the first entry of this vector in indxFile and
+   * valsFile.
+   */
+  private long             fileOffset = 0;
+
+  /**
+   * Standard constructor.
+   * 
+   * @param vecIndx The row (CSR) or column (CSC) index represented by this
+   *                compressed sparse vector.
+   * @param vecLen  The number of entries in this vector.
+   * @param offst   The offset of the first entry in the mapped files.
+   * @param indx    The mapped column (CSR) or row (CSC) index file.
+   * @param vals    The mapped value file.
+   */
+  public SparseVectorMapped(int vecIndx, int vecLen, long offst,
+                            MappedFileBuffer indx, MappedFileBuffer vals)
+  {
+    vectorIndex = vecIndx;
+    startIndex  = 0;
+    endIndex    = vecLen;
+    fileOffset  = offst;
+    indxFile    = indx;
+    valsFile    = vals;
+  }
+
+  /**
+   * Returns the jth vector value entry.
+   * 
+   * @param j The index of the entry in the vector to return.
+   * @return The jth vector value entry.
+   */
+  @Override
+  public double getValue(int j)
+  {
+    return valsFile.getDouble(fileOffset + j);
+  }
+
+  /**
+   * Returns the jth vector index entry (a column index if CSR or a row index
+   * if CSC).
+   * 
+   * @param j The index of the entry in the vector to return.
+   * @return The jth vector index entry.
+   */
+  @Override
+  public int getIndex(int j)
+  {
+    return indxFile.getInt(fileOffset + j);
+  }
+
+  /**
+   * Performs a binary search to locate the input key i within the index array.
+   * This method assumes the SparseVector has been sorted. If the input key is
+   * not contained in the SparseVector then -(insertion point) - 1 is returned
+   * (see java.util.Arrays.binarySearch()).
+   * 
+   * @param i The index searched for in the index array of this SparseVector.
+   * @return The index containing i, or -(insertion point) - 1.
+   */
+  @Override
+  public int findIndex(int i)
+  {
+    int lo = 0;
+    int hi = endIndex - 1;
+    while (lo <= hi)
+    {
+      int mid = (lo + hi) >>> 1;
+      int v = getIndex(mid);
+      if (v < i)
+        lo = mid + 1;
+      else if (v > i)
+        hi = mid - 1;
+      else
+        return mid;
+    }
+    return -(lo + 1);
+  }
+
+  /**
+   * Normalizes each value by the entry in aNorm selected by its index.
+   * 
+   * @param aNorm The index normalization array.
+   */
+  @Override
+  public void normalizeIndex(double[] aNorm)
+  {
+    for (long j = fileOffset; j < fileOffset + endIndex; ++j)
+      valsFile.putDouble(j, valsFile.getDouble(j) / aNorm[indxFile.getInt(j)]);
+  }
+
+  /**
+   * Normalizes each value by aNorm.
+   * 
+   * @param aNorm The normalization factor.
+   */
+  @Override
+  public void normalize(double aNorm)
+  {
+    for (long j = fileOffset; j < fileOffset + endIndex; ++j)
+      valsFile.putDouble(j, valsFile.getDouble(j) / aNorm);
+  }
+
+  /**
+   * Returns the sum of all elements in the value array.
+   * 
+   * @return The sum of all elements in the value array.
+   */
+  @Override
+  public double sum()
+  {
+    double rslt = 0.0;
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+      rslt += valsFile.getDouble(i);
+    return rslt;
+  }
+
+  /**
+   * Returns the sum-of-squares of all elements in the value array.
+   * 
+   * @return The sum-of-squares of all elements in the value array.
+   */
+  @Override
+  public double sumOfSquares()
+  {
+    double rslt = 0.0;
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+    {
+      double v = valsFile.getDouble(i);
+      rslt += v * v;
+    }
+    return rslt;
+  }
+
+  /**
+   * Scales all elements in the value array for this CSV.
+   * 
+   * @param scl The value by which each element is scaled.
+   */
+  @Override
+  public void scale(double scl)
+  {
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+      valsFile.putDouble(i, valsFile.getDouble(i) * scl);
+  }
+
+  /**
+   * Returns the sum-of-squares of all elements in the value array
+   * whose index is less than the input maximum maxVecIndex.
+   * 
+   * @param maxVecIndex The maximum index value for which elements
+   *                    whose index equals or exceeds this value are
+   *                    not included in the result.
+   * 
+   * @return The sum-of-squares of all elements in the value array
+   *         whose index is less than the input maximum maxVecIndex.
+   */
+  @Override
+  public double sumOfSquaresPartial(int maxVecIndex)
+  {
+    double rslt = 0.0;
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+    {
+      if (indxFile.getInt(i) >= maxVecIndex) break;
+      double v = valsFile.getDouble(i);
+      rslt += v * v;
+    }
+    return rslt;
+  }
+
+  /**
+   * Performs a double precision update of this sparse vector with the input
+   * vector vec. The results are summed to the input value (val) and returned
+   * on completion.
+   * 
+   * @param val The initial value of the returned result.
+   * @param vec The vector that will multiply this sparse vector.
+   * @return The final vector product
+   *           val += sum(getValue(i) * vec[getIndex(i)]; i = 0; i < size());
+   */
+  @Override
+  public double update(double val, double[] vec)
+  {
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+      val += valsFile.getDouble(i) * vec[indxFile.getInt(i)];
+    return val;
+  }
+
+  /**
+   * Peforms a DoubleDouble precision update of this sparse vector with the
+   * input vector v(hi,lo). The results are summed to the input value
+   * (val(hi,lo)).
+   * 
+   * @param val The initial value of the returned result (hi,lo).
+   * @param vhi The DoubleDouble high component of the multiplying vector.
+   * @param vlo The DoubleDouble low component of the multiplying vector.
+   */
+  @Override
+  public void update(double[] val, double[] vhi, double[] vlo)
+  {
+    for (long i = fileOffset; i < fileOffset + endIndex; ++i)
+    {
+      int j = indxFile.getInt(i);
+      DoubleDouble.addMultFast(val, valsFile.getDouble(i), vhi[j], vlo[j]);
+    }
+  }
+
+  /**
+   * Returns the maximum index in the index array (sorted so last position).
+   * 
+   * @return The maximum index in the index array (sorted so last position).
+   */
+  @Override
+  public int getMaxIndex()
+  {
+    return indxFile.getInt(fileOffset + endIndex - 1);
+  }
+
+  /**
+   * Returns the minimum index in the index array (sorted so first position).
+   * 
+   * @return The minimum index in the index array (sorted so first position).
+   */
+  @Override
+  public int getMinIndex()
+  {
+    return indxFile.getInt(fileOffset);
+  }
+}
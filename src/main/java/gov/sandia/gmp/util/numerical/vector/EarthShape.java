@@ -120,6 +120,17 @@ public enum EarthShape
 	 */
 	public static boolean approximateLatitudes=false;
 
+	/**
+	 * If true, the batch conversion functions (getVectors(), getLatLon() and
+	 * their Degrees variants) replace sin, cos and atan2 with range reduced
+	 * polynomial approximations. The error of the fast conversions is less
+	 * than 5e-12 radians in latitude and longitude (about 0.03 mm at the
+	 * surface of the Earth) and less than 5e-12 in each unit vector component.
+	 * Single point functions are not affected. As with approximateLatitudes,
+	 * this static, mutable variable is shared by all threads.
+	 */
+	public static boolean fastBatchMath=false;
+
 	/**
 	 * True for EarthShapes that assume that the Earth has constant radius
 	 * for purposes of converting between radius and depth.
@@ -366,6 +377,91 @@ public enum EarthShape
 		v[0] = lat * cos(lon);
 		v[1] = lat * sin(lon);
 	}
+
+	/**
+	 * Convert arrays of geographic latitude and longitude into packed unit
+	 * vectors. The unit vector of point i is stored in v[3*i], v[3*i+1] and
+	 * v[3*i+2]. The geocentric latitude correction is computed algebraically
+	 * (approximateLatitudes is not used), so results agree with
+	 * getVector(lat, lon, v) to within round-off, or to within the bounds
+	 * given for fastBatchMath if it is true. Large arrays are converted in
+	 * parallel.
+	 * 
+	 * @param lat the geographic latitudes, in radians.
+	 * @param lon the geographic longitudes, in radians.
+	 * @param v the packed unit vectors (length at least 3*lat.length).
+	 */
+	public void getVectors(double[] lat, double[] lon, double[] v)
+	{
+		checkBatch(lat, lon, v);
+		GeoVectorKernels.toVectors(e1, lat, lon, v, lat.length, false,
+				fastBatchMath);
+	}
+
+	/**
+	 * Convert arrays of geographic latitude and longitude into packed unit
+	 * vectors. See getVectors(double[], double[], double[]).
+	 * 
+	 * @param lat the geographic latitudes, in degrees.
+	 * @param lon the geographic longitudes, in degrees.
+	 * @param v the packed unit vectors (length at least 3*lat.length).
+	 */
+	public void getVectorsDegrees(double[] lat, double[] lon, double[] v)
+	{
+		checkBatch(lat, lon, v);
+		GeoVectorKernels.toVectors(e1, lat, lon, v, lat.length, true,
+				fastBatchMath);
+	}
+
+	/**
+	 * Convert packed unit vectors into arrays of geographic latitude and
+	 * longitude. The unit vector of point i is v[3*i], v[3*i+1] and v[3*i+2].
+	 * Latitudes are computed with atan2 rather than asin, so they agree with
+	 * getLat(v) to within round-off except near the poles, where they are
+	 * more accurate than getLat(v) (differences up to about 4e-10 radians).
+	 * If fastBatchMath is true the bounds given there apply. Large arrays are
+	 * converted in parallel.
+	 * 
+	 * @param v the packed unit vectors (length at least 3*lat.length).
+	 * @param lat the geographic latitudes, in radians.
+	 * @param lon the geographic longitudes, in radians. Values range from -PI
+	 * to PI.
+	 */
+	public void getLatLon(double[] v, double[] lat, double[] lon)
+	{
+		checkBatch(lat, lon, v);
+		GeoVectorKernels.toLatLon(e1, v, lat, lon, lat.length, false,
+				fastBatchMath);
+	}
+
+	/**
+	 * Convert packed unit vectors into arrays of geographic latitude and
+	 * longitude. See getLatLon(double[], double[], double[]).
+	 * 
+	 * @param v the packed unit vectors (length at least 3*lat.length).
+	 * @param lat the geographic latitudes, in degrees.
+	 * @param lon the geographic longitudes, in degrees. Values range from -180
+	 * to 180.
+	 */
+	public void getLatLonDegrees(double[] v, double[] lat, double[] lon)
+	{
+		checkBatch(lat, lon, v);
+		GeoVectorKernels.toLatLon(e1, v, lat, lon, lat.length, true,
+				fastBatchMath);
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if lon is shorter than lat or v is
+	 * shorter than 3*lat.length.
+	 */
+	private static void checkBatch(double[] lat, double[] lon, double[] v)
+	{
+		if (lon.length < lat.length || v.length / 3 < lat.length)
+			throw new IllegalArgumentException(String.format(
+					"%nError: batch of %d points requires lon.length >= %d and "
+					+ "v.length >= %d (lon.length = %d, v.length = %d)%n",
+					lat.length, lat.length, 3L * lat.length, lon.length, v.length));
+	}
 	
 	/**
 	 * Convert a unit vector to a String representation of lat, lon formated
@@ -0,0 +1,361 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.numerical.vector;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.rint;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Array based kernels that convert between geographic latitude, longitude
+ * and packed geocentric unit vectors for the EarthShape batch functions.
+ * 
+ * <p>
+ * The geographic/geocentric latitude conversion is done algebraically rather
+ * than with tan() and atan(). Since tan(geocentric) = e1 * tan(geographic),
+ * the unit vector of geographic latitude lat is proportional to
+ * [cos(lat)cos(lon), cos(lat)sin(lon), e1*sin(lat)], and the geographic
+ * latitude of unit vector [x, y, z] is atan2(z, e1*sqrt(x*x + y*y)). The
+ * exact kernels therefore call sin, cos and sqrt once per latitude (or atan2
+ * and sqrt once in reverse). Unit vectors agree with the scalar EarthShape
+ * functions to within round-off (about 4e-16). Latitudes are more accurate
+ * than the scalar asin() based conversion, which loses precision near the
+ * poles, and differ from it by up to about 4e-10 radians there.
+ * 
+ * <p>
+ * The fast kernels replace sin, cos and atan2 with range reduced polynomials
+ * whose truncation error is below 1e-12 radians. The combined error of the
+ * fast kernels, measured against the exact kernels, is less than 5e-12
+ * radians in latitude and longitude (about 0.03 mm at the Earth's surface)
+ * and less than 5e-12 in each unit vector component.
+ * 
+ * <p>
+ * Each loop is a simple counted loop over primitive arrays without
+ * allocation or virtual calls. Arrays of at least PARALLEL_MINIMUM points
+ * are split into blocks that are processed in parallel on the common
+ * ForkJoinPool when more than one processor is available.
+ */
+final class GeoVectorKernels
+{
+	/**
+	 * Arrays with at least this many points are converted in parallel.
+	 */
+	static final int PARALLEL_MINIMUM = 1 << 15;
+
+	/**
+	 * The number of points converted by a single parallel task.
+	 */
+	private static final int BLOCK = 1 << 13;
+
+	/**
+	 * High and low parts of PI/2 for range reduction in radians.
+	 */
+	private static final double PIO2_HI = 1.5707963267341256;
+	private static final double PIO2_LO = 6.077100506506192e-11;
+
+	/**
+	 * The reference points of the arctangent reduction: tan(j*PI/8) and the
+	 * selection thresholds tan(PI/16) and tan(3*PI/16).
+	 */
+	private static final double TAN_PI_8 = 0.41421356237309503;
+	private static final double TAN_PI_16 = 0.19891236737965800;
+	private static final double TAN_3PI_16 = 0.66817863791929890;
+
+	/**
+	 * Applies a conversion to the points first to last-1.
+	 */
+	private interface Block
+	{
+		void apply(int first, int last);
+	}
+
+	private GeoVectorKernels()
+	{
+	}
+
+	/**
+	 * Converts n geographic latitudes and longitudes into packed unit
+	 * vectors v[3*i .. 3*i+2].
+	 * 
+	 * @param e1        1 - eccentricity squared of the EarthShape.
+	 * @param lat       The geographic latitudes.
+	 * @param lon       The longitudes.
+	 * @param v         The packed unit vectors.
+	 * @param n         The number of points.
+	 * @param inDegrees True if lat and lon are in degrees, else radians.
+	 * @param fast      True to use the fast kernel.
+	 */
+	static void toVectors(double e1, double[] lat, double[] lon, double[] v,
+			int n, boolean inDegrees, boolean fast)
+	{
+		if (fast)
+			run(n, (first, last) -> toVectorsFast(e1, lat, lon, v, first, last,
+					inDegrees));
+		else
+			run(n, (first, last) -> toVectorsExact(e1, lat, lon, v, first, last,
+					inDegrees));
+	}
+
+	/**
+	 * Converts n packed unit vectors v[3*i .. 3*i+2] into geographic
+	 * latitudes and longitudes.
+	 * 
+	 * @param e1        1 - eccentricity squared of the EarthShape.
+	 * @param v         The packed unit vectors.
+	 * @param lat       The geographic latitudes.
+	 * @param lon       The longitudes.
+	 * @param n         The number of points.
+	 * @param inDegrees True if lat and lon are returned in degrees, else
+	 *                  radians.
+	 * @param fast      True to use the fast kernel.
+	 */
+	static void toLatLon(double e1, double[] v, double[] lat, double[] lon,
+			int n, boolean inDegrees, boolean fast)
+	{
+		if (fast)
+			run(n, (first, last) -> toLatLonFast(e1, v, lat, lon, first, last,
+					inDegrees));
+		else
+			run(n, (first, last) -> toLatLonExact(e1, v, lat, lon, first, last,
+					inDegrees));
+	}
+
+	private static void toVectorsExact(double e1, double[] lat, double[] lon,
+			double[] v, int first, int last, boolean inDegrees)
+	{
+		double scale = inDegrees ? PI / 180. : 1.;
+		for (int i = first, j = 3 * first; i < last; ++i, j += 3)
+		{
+			double a = lat[i] * scale, b = lon[i] * scale;
+			double c = cos(a), z = e1 * sin(a);
+			double h = 1. / sqrt(c * c + z * z);
+			c *= h;
+			v[j] = c * cos(b);
+			v[j + 1] = c * sin(b);
+			v[j + 2] = z * h;
+		}
+	}
+
+	private static void toLatLonExact(double e1, double[] v, double[] lat,
+			double[] lon, int first, int last, boolean inDegrees)
+	{
+		for (int i = first, j = 3 * first; i < last; ++i, j += 3)
+		{
+			double x = v[j], y = v[j + 1];
+			lat[i] = atan2(v[j + 2], e1 * sqrt(x * x + y * y));
+			lon[i] = atan2(y, x);
+		}
+		if (inDegrees)
+			for (int i = first; i < last; ++i)
+			{
+				lat[i] = toDegrees(lat[i]);
+				lon[i] = toDegrees(lon[i]);
+			}
+	}
+
+	private static void toVectorsFast(double e1, double[] lat, double[] lon,
+			double[] v, int first, int last, boolean inDegrees)
+	{
+		double[] sc = new double[4];
+		for (int i = first, j = 3 * first; i < last; ++i, j += 3)
+		{
+			sinCos(lat[i], lon[i], inDegrees, sc);
+			double c = sc[1], z = e1 * sc[0];
+			double h = 1. / sqrt(c * c + z * z);
+			c *= h;
+			v[j] = c * sc[3];
+			v[j + 1] = c * sc[2];
+			v[j + 2] = z * h;
+		}
+	}
+
+	private static void toLatLonFast(double e1, double[] v, double[] lat,
+			double[] lon, int first, int last, boolean inDegrees)
+	{
+		double scale = inDegrees ? 180. / PI : 1.;
+		for (int i = first, j = 3 * first; i < last; ++i, j += 3)
+		{
+			double x = v[j], y = v[j + 1];
+			lat[i] = fastAtan2(v[j + 2], e1 * sqrt(x * x + y * y)) * scale;
+			lon[i] = fastAtan2(y, x) * scale;
+		}
+	}
+
+	/**
+	 * Sets sc to [sin(a), cos(a), sin(b), cos(b)] using range reduced
+	 * polynomials. Degree arguments are reduced exactly by multiples of 90
+	 * degrees before conversion to radians.
+	 */
+	private static void sinCos(double a, double b, boolean inDegrees,
+			double[] sc)
+	{
+		double ka, kb, ra, rb;
+		if (inDegrees)
+		{
+			ka = rint(a / 90.);
+			kb = rint(b / 90.);
+			ra = toRadians(a - 90. * ka);
+			rb = toRadians(b - 90. * kb);
+		}
+		else
+		{
+			ka = rint(a / PIO2_HI);
+			kb = rint(b / PIO2_HI);
+			ra = (a - ka * PIO2_HI) - ka * PIO2_LO;
+			rb = (b - kb * PIO2_HI) - kb * PIO2_LO;
+		}
+		quadrant(ra, (int) (((long) ka) & 3), sc, 0);
+		quadrant(rb, (int) (((long) kb) & 3), sc, 2);
+	}
+
+	/**
+	 * Sets sc[k] and sc[k+1] to the sine and cosine of r + q*PI/2 where
+	 * |r| <= PI/4.
+	 */
+	private static void quadrant(double r, int q, double[] sc, int k)
+	{
+		double r2 = r * r;
+		double s = r * (1. + r2 * (-1. / 6. + r2 * (1. / 120. + r2 * (-1. / 5040.
+				+ r2 * (1. / 362880. + r2 * (-1. / 39916800. + r2 / 6227020800.))))));
+		double c = 1. + r2 * (-0.5 + r2 * (1. / 24. + r2 * (-1. / 720. + r2
+				* (1. / 40320. + r2 * (-1. / 3628800. + r2 / 479001600.)))));
+		switch (q)
+		{
+		case 0:
+			sc[k] = s;
+			sc[k + 1] = c;
+			break;
+		case 1:
+			sc[k] = c;
+			sc[k + 1] = -s;
+			break;
+		case 2:
+			sc[k] = -s;
+			sc[k + 1] = -c;
+			break;
+		default:
+			sc[k] = -c;
+			sc[k + 1] = s;
+		}
+	}
+
+	/**
+	 * Returns atan2(y, x) computed with a reduced arctangent series.
+	 */
+	static double fastAtan2(double y, double x)
+	{
+		double ax = abs(x), ay = abs(y);
+		boolean swap = ay > ax;
+		double t = swap ? ax / ay : (ax == 0. ? 0. : ay / ax);
+
+		// reduce t in [0, 1] to |u| <= tan(PI/16) about tan(j*PI/8)
+
+		double base, ref;
+		if (t < TAN_PI_16)
+		{
+			base = 0.;
+			ref = 0.;
+		}
+		else if (t < TAN_3PI_16)
+		{
+			base = PI / 8.;
+			ref = TAN_PI_8;
+		}
+		else
+		{
+			base = PI / 4.;
+			ref = 1.;
+		}
+		double u = (t - ref) / (1. + t * ref);
+		double u2 = u * u;
+		double a = base + u * (1. + u2 * (-1. / 3. + u2 * (1. / 5. + u2
+				* (-1. / 7. + u2 * (1. / 9. + u2 * (-1. / 11. + u2 / 13.))))));
+
+		if (swap) a = PI / 2. - a;
+		if (x < 0. || (x == 0. && 1. / x < 0.)) a = PI - a;
+		return (y < 0. || (y == 0. && 1. / y < 0.)) ? -a : a;
+	}
+
+	/**
+	 * Applies block to the points 0 to n-1, in parallel blocks if n is at
+	 * least PARALLEL_MINIMUM and more than one processor is available.
+	 */
+	private static void run(int n, Block block)
+	{
+		if ((n < PARALLEL_MINIMUM) ||
+				(Runtime.getRuntime().availableProcessors() < 2))
+			block.apply(0, n);
+		else
+			ForkJoinPool.commonPool().invoke(new BlockTask(0, n, block));
+	}
+
+	/**
+	 * Recursively splits a range of points in half until it is no larger than
+	 * BLOCK, which is then converted.
+	 */
+	@SuppressWarnings("serial")
+	private static class BlockTask extends RecursiveAction
+	{
+		private final int first, last;
+		private final Block block;
+
+		BlockTask(int first, int last, Block block)
+		{
+			this.first = first;
+			this.last = last;
+			this.block = block;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (last - first <= BLOCK)
+				block.apply(first, last);
+			else
+			{
+				int mid = (first + last) >>> 1;
+				invokeAll(new BlockTask(first, mid, block),
+						new BlockTask(mid, last, block));
+			}
+		}
+	}
+}
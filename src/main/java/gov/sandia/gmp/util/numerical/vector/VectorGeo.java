@@ -62,6 +62,15 @@ public class VectorGeo extends VectorUnit
 	
 	public static void setApproximateLatitudes(boolean approximateLatitudes) 
 	{ earthShape.approximateLatitudes = approximateLatitudes; }
+
+	/**
+	 * Enables the polynomial approximations used by the batch conversion
+	 * functions. See EarthShape.fastBatchMath for error bounds.
+	 * 
+	 * @param fastBatchMath true to use the approximations.
+	 */
+	public static void setFastBatchMath(boolean fastBatchMath) 
+	{ EarthShape.fastBatchMath = fastBatchMath; }
 	
 	/**
 	 * Retrieve the radius of the Earth in km at the position specified by an
@@ -196,6 +205,62 @@ public class VectorGeo extends VectorUnit
 	 */
 	public static void getVector(double lat, double lon, double[] vector)
 	{ earthShape.getVector(lat, lon, vector); }
+
+	/**
+	 * Convert arrays of geographic lat, lon into packed geocentric unit
+	 * vectors, where the unit vector of point i is vectors[3*i .. 3*i+2].
+	 * 
+	 * @param lat
+	 *            geographic latitudes in degrees.
+	 * @param lon
+	 *            longitudes in degrees.
+	 * @param vectors
+	 *            packed unit vectors (length at least 3*lat.length).
+	 */
+	public static void getVectorsDegrees(double[] lat, double[] lon, double[] vectors)
+	{ earthShape.getVectorsDegrees(lat, lon, vectors); }
+
+	/**
+	 * Convert arrays of geographic lat, lon into packed geocentric unit
+	 * vectors, where the unit vector of point i is vectors[3*i .. 3*i+2].
+	 * 
+	 * @param lat
+	 *            geographic latitudes in radians.
+	 * @param lon
+	 *            longitudes in radians.
+	 * @param vectors
+	 *            packed unit vectors (length at least 3*lat.length).
+	 */
+	public static void getVectors(double[] lat, double[] lon, double[] vectors)
+	{ earthShape.getVectors(lat, lon, vectors); }
+
+	/**
+	 * Convert packed geocentric unit vectors into arrays of geographic lat,
+	 * lon.
+	 * 
+	 * @param vectors
+	 *            packed unit vectors (length at least 3*lat.length).
+	 * @param lat
+	 *            geographic latitudes in degrees.
+	 * @param lon
+	 *            longitudes in degrees.
+	 */
+	public static void getLatLonDegrees(double[] vectors, double[] lat, double[] lon)
+	{ earthShape.getLatLonDegrees(vectors, lat, lon); }
+
+	/**
+	 * Convert packed geocentric unit vectors into arrays of geographic lat,
+	 * lon.
+	 * 
+	 * @param vectors
+	 *            packed unit vectors (length at least 3*lat.length).
+	 * @param lat
+	 *            geographic latitudes in radians.
+	 * @param lon
+	 *            longitudes in radians.
+	 */
+	public static void getLatLon(double[] vectors, double[] lat, double[] lon)
+	{ earthShape.getLatLon(vectors, lat, lon); }
 	
 	/**
 	 * Return geocentric latitude given a geographic latitude
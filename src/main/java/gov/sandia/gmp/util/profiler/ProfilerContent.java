@@ -34,8 +34,14 @@ package gov.sandia.gmp.util.profiler;
 
 import static gov.sandia.gmp.util.globals.Globals.NL;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -56,6 +62,13 @@ import gov.sandia.gmp.util.numerical.intrinsicsort.IntrinsicSort;
  * A user can also add other ProfilerContent objects to this one
  * to form a single ProfilerContent summary of many independent
  * samples taken of the same code base.
+ * 
+ * <p> Optionally (see accumulateStack(...)) this object also counts whole
+ * call stacks in collapsed form ("frame1;frame2;...;frameN"), which can be
+ * written with writeCollapsedStacks(...) as input for flame graph tools.
+ * The number of distinct stacks retained is bounded by setMaxStackCount(...).
+ * Samples of new stacks beyond that bound are counted under the single
+ * stack OTHER_STACKS.
  *  
  * @author jrhipp
  *
@@ -90,6 +103,25 @@ public class ProfilerContent implements Serializable
    */
   private long                                aAccumulateTime  = 0;
 
+  /**
+   * The collapsed stack name under which samples of new stacks are counted
+   * once the maximum stack count has been reached.
+   */
+  public static final String                  OTHER_STACKS     = "[other]";
+
+  /**
+   * The sample count of each collapsed stack. Null until the first call to
+   * accumulateStack(...) or the first merge of content containing stacks.
+   */
+  private HashMap<String, int[]>              aStackMap        = null;
+
+  /**
+   * The maximum number of distinct collapsed stacks retained in aStackMap
+   * (not counting OTHER_STACKS).
+   */
+  private int                                 aMaxStackCount   =
+                                                Integer.MAX_VALUE;
+
   /**
    * Standard constructor. Constructs a new map and a class and method sample
    * set.
@@ -151,10 +183,158 @@ public class ProfilerContent implements Serializable
   public void clearAccumulation()
   {
     aClassMap.clear();
+    if (aStackMap != null) aStackMap.clear();
     aAccumulateTime = 0;
     aSampleCount = 0;
   }
 
+  /**
+   * Sets the maximum number of distinct collapsed stacks retained by this
+   * object. Samples of stacks not already retained are counted under
+   * OTHER_STACKS once this limit is reached. Stacks already retained are
+   * unaffected.
+   * 
+   * @param maxStacks The maximum number of distinct collapsed stacks.
+   */
+  public void setMaxStackCount(int maxStacks)
+  {
+    aMaxStackCount = Math.max(maxStacks, 0);
+  }
+
+  /**
+   * Returns the maximum number of distinct collapsed stacks retained by this
+   * object.
+   * 
+   * @return The maximum number of distinct collapsed stacks.
+   */
+  public int getMaxStackCount()
+  {
+    return aMaxStackCount;
+  }
+
+  /**
+   * Returns the number of distinct collapsed stacks currently stored
+   * (including OTHER_STACKS if any samples overflowed).
+   * 
+   * @return The number of distinct collapsed stacks.
+   */
+  public int getStackCount()
+  {
+    return (aStackMap == null) ? 0 : aStackMap.size();
+  }
+
+  /**
+   * Returns the number of samples recorded for the input collapsed stack.
+   * 
+   * @param stack The collapsed stack ("frame1;frame2;...;frameN").
+   * @return The number of samples recorded for the stack.
+   */
+  public int getStackSampleCount(String stack)
+  {
+    int[] c = (aStackMap == null) ? null : aStackMap.get(stack);
+    return (c == null) ? 0 : c[0];
+  }
+
+  /**
+   * Called by a sampling profiler to count one sample of the input collapsed
+   * call stack, written from the outermost frame to the innermost frame with
+   * frames separated by ';'. Note that this function does not increment the
+   * sample count (see initializeSampleAccumulation()).
+   * 
+   * @param stack The collapsed stack ("frame1;frame2;...;frameN").
+   */
+  public void accumulateStack(String stack)
+  {
+    addStack(stack, 1);
+  }
+
+  /**
+   * Adds count samples of the input collapsed stack to the stack map,
+   * counting them under OTHER_STACKS if the stack is new and the map is
+   * full.
+   * 
+   * @param stack The collapsed stack.
+   * @param count The number of samples to add.
+   */
+  private void addStack(String stack, int count)
+  {
+    if (aStackMap == null) aStackMap = new HashMap<String, int[]>(256);
+
+    int[] c = aStackMap.get(stack);
+    if (c == null)
+    {
+      int n = aStackMap.size();
+      if (aStackMap.containsKey(OTHER_STACKS)) --n;
+      if (n >= aMaxStackCount) stack = OTHER_STACKS;
+      c = aStackMap.get(stack);
+      if (c == null)
+      {
+        c = new int [1];
+        aStackMap.put(stack, c);
+      }
+    }
+    c[0] += count;
+  }
+
+  /**
+   * Returns the collapsed stacks as a string containing one line per stack
+   * of the form "frame1;frame2;...;frameN count", sorted by stack. This is
+   * the input format of common flame graph tools (e.g. flamegraph.pl).
+   * 
+   * @return The collapsed stacks string.
+   */
+  public String getCollapsedStacks()
+  {
+    StringWriter sw = new StringWriter(4096);
+    try
+    {
+      writeCollapsedStacks(sw);
+    }
+    catch (IOException ex)
+    {
+      // never thrown by a StringWriter
+    }
+    return sw.toString();
+  }
+
+  /**
+   * Writes the collapsed stacks to the input file in the format described
+   * by getCollapsedStacks().
+   * 
+   * @param fileName The output file name.
+   * @throws IOException
+   */
+  public void writeCollapsedStacks(String fileName) throws IOException
+  {
+    BufferedWriter bw = new BufferedWriter(new FileWriter(fileName));
+    try
+    {
+      writeCollapsedStacks(bw);
+    }
+    finally
+    {
+      bw.close();
+    }
+  }
+
+  /**
+   * Writes the collapsed stacks to the input writer in the format described
+   * by getCollapsedStacks(). The writer is not closed.
+   * 
+   * @param w The writer to which the stacks are written.
+   * @throws IOException
+   */
+  public void writeCollapsedStacks(Writer w) throws IOException
+  {
+    if (aStackMap == null) return;
+
+    String[] stacks = aStackMap.keySet().toArray(new String [aStackMap.size()]);
+    Arrays.sort(stacks);
+    for (String stack: stacks)
+      w.write(stack + " " + aStackMap.get(stack)[0] + NL);
+    w.flush();
+  }
+
   /**
    * Adds the input ProfilerContent to this ProfilerContent. This function
    * is used to add many profiles together to form a single common profile.
@@ -171,6 +351,14 @@ public class ProfilerContent implements Serializable
     aSampleCount += pc.aSampleCount;
     aAccumulateTime += pc.aAccumulateTime;
 
+    // add the input collapsed stacks, if any
+
+    if (pc.aStackMap != null)
+    {
+      for (Map.Entry<String, int[]> e: pc.aStackMap.entrySet())
+        addStack(e.getKey(), e.getValue()[0]);
+    }
+
     // loop over all class entries of the input ProfilerContent class map
 
     for (Map.Entry<String, ProfilerClassEntry> e: pc.aClassMap.entrySet())
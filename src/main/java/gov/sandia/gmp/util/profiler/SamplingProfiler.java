@@ -0,0 +1,605 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.profiler;
+
+import static gov.sandia.gmp.util.globals.Globals.NL;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.function.Predicate;
+
+import gov.sandia.gmp.util.globals.Globals;
+
+/**
+ * A low overhead sampling profiler that samples the stacks of many threads
+ * at once, such as all worker threads of a thread pool, and is intended to
+ * be left running in production. Where a Profiler samples a single thread
+ * each period, this object takes one stack sample of every selected thread
+ * that is running (thread state RUNNABLE) each period using a single
+ * ThreadMXBean.getThreadInfo(...) call, so idle (parked or waiting) pool
+ * workers cost nothing and are not recorded.
+ * 
+ * <p> Samples are accumulated into a ProfilerContent object, both as the
+ * usual class/method/line counts and as collapsed call stacks. Calls to
+ * snapshot() or snapshotAndClear() return independent ProfilerContent
+ * copies that can be added to other Profilers or ProfilerContent objects
+ * (e.g. from other nodes of a distributed task), output with
+ * getAccumulationString(...), or written as collapsed stacks for flame
+ * graph tools with writeCollapsedStacks(...). Note that the sample count
+ * of the content is the number of thread samples, not the number of
+ * sampling periods.
+ * 
+ * <p> Memory is bounded by the maximum stack depth recorded per sample and
+ * the maximum number of distinct collapsed stacks retained (see
+ * setMaxStackDepth(...) and setMaxStackCount(...)). The class/method/line
+ * maps are bounded by the size of the sampled code base.
+ * 
+ * <p> The set of sampled threads is given by a thread selector (e.g.
+ * threadNamePrefix("pool-", "ForkJoinPool")) and is refreshed about once a
+ * second so that threads added to a pool after construction are included.
+ */
+public class SamplingProfiler
+{
+  /**
+   * The default sample period (milliseconds).
+   */
+  public static final long   DEFAULT_PERIOD      = 50;
+
+  /**
+   * The default maximum number of frames recorded per stack sample.
+   */
+  public static final int    DEFAULT_MAX_DEPTH   = 128;
+
+  /**
+   * The default maximum number of distinct collapsed stacks retained.
+   */
+  public static final int    DEFAULT_MAX_STACKS  = 4096;
+
+  /**
+   * The root frame prepended to collapsed stacks whose outermost frames were
+   * dropped because the stack was deeper than the maximum stack depth.
+   */
+  public static final String TRUNCATED_FRAME     = "[truncated]";
+
+  /**
+   * The interval (milliseconds) between refreshes of the sampled thread set.
+   */
+  private static final long  REFRESH_PERIOD      = 1000;
+
+  /**
+   * Used to name sampling profiler timer threads.
+   */
+  private static int         aProfilerCount      = 0;
+
+  /**
+   * The sampling task called by the profiler timer (aTimer).
+   */
+  private class SampleTask extends TimerTask
+  {
+    @Override
+    public void run()
+    {
+      sample();
+    }
+  }
+
+  /**
+   * The name of this profiler assigned by the caller at construction.
+   */
+  private String             aName               = "";
+
+  /**
+   * The time (milliseconds) between each consecutive sample.
+   */
+  private long               aPeriod             = DEFAULT_PERIOD;
+
+  /**
+   * Selects the threads sampled by this profiler.
+   */
+  private Predicate<Thread>  aSelector           = null;
+
+  /**
+   * The timer used to call the sampling task. Null once stop() is called.
+   */
+  private Timer              aTimer              = null;
+
+  /**
+   * The timer thread (never sampled).
+   */
+  private Thread             aTimerThread        = null;
+
+  /**
+   * Used to retrieve the stack traces of all sampled threads in one call.
+   */
+  private ThreadMXBean       aThreadMXBean       = null;
+
+  /**
+   * The ids of the currently sampled threads.
+   */
+  private long[]             aThreadIds          = new long [0];
+
+  /**
+   * The time (milliseconds) at which the sampled thread set was last
+   * refreshed.
+   */
+  private long               aRefreshTime        = 0;
+
+  /**
+   * The maximum number of frames recorded per stack sample.
+   */
+  private int                aMaxDepth           = DEFAULT_MAX_DEPTH;
+
+  /**
+   * If true (the default) only threads in the RUNNABLE state are recorded.
+   * If false blocked and waiting threads are recorded as well.
+   */
+  private boolean            aRunnableOnly       = true;
+
+  /**
+   * If true each collapsed stack starts with the thread name with all
+   * trailing digits removed (e.g. "pool-3-thread-" or
+   * "ForkJoinPool-1-worker-"), so that a flame graph separates pools
+   * while combining the workers of each pool.
+   */
+  private boolean            aThreadFrame        = false;
+
+  /**
+   * The sample content accumulated since construction or the last call to
+   * snapshotAndClear().
+   */
+  private ProfilerContent    aProfilerContent    = null;
+
+  /**
+   * The time (milliseconds) at which the current accumulation started.
+   */
+  private long               aStartTime          = 0;
+
+  /**
+   * The total time (nanoseconds) spent sampling since construction. This is
+   * CPU time of the timer thread if the JVM supports it, otherwise elapsed
+   * time.
+   */
+  private long               aSampleTime         = 0;
+
+  /**
+   * The time (milliseconds) at which this profiler was constructed.
+   */
+  private long               aCreateTime         = 0;
+
+  /**
+   * The number of sampling periods executed since construction.
+   */
+  private long               aPeriodCount        = 0;
+
+  /**
+   * Creates and starts a new sampling profiler that samples all threads
+   * with the default period.
+   * 
+   * @param name The user assigned name of this profiler.
+   */
+  public SamplingProfiler(String name)
+  {
+    this(name, DEFAULT_PERIOD, null);
+  }
+
+  /**
+   * Creates and starts a new sampling profiler that samples all threads
+   * accepted by the input selector every period milliseconds.
+   * 
+   * @param name     The user assigned name of this profiler.
+   * @param period   The time (in milliseconds) between each consecutive
+   *                 sample. Production use should keep this at tens of
+   *                 milliseconds or more.
+   * @param selector Selects the threads to be sampled. If null all threads
+   *                 are sampled.
+   */
+  public SamplingProfiler(String name, long period, Predicate<Thread> selector)
+  {
+    if (period < 1)
+      throw new IllegalArgumentException("Sample period must be at least " +
+                                         "1 millisecond: " + period);
+
+    aName            = name;
+    aPeriod          = period;
+    aSelector        = selector;
+    aThreadMXBean    = ManagementFactory.getThreadMXBean();
+    aProfilerContent = new ProfilerContent();
+    aProfilerContent.setMaxStackCount(DEFAULT_MAX_STACKS);
+    aCreateTime      = System.currentTimeMillis();
+    aStartTime       = aCreateTime;
+
+    aTimer = new Timer("SamplingProfiler_" + nextProfilerIndex(), true);
+    aTimer.schedule(new SampleTask(), period, period);
+  }
+
+  /**
+   * Returns the next profiler index used to name the timer thread.
+   * 
+   * @return The next profiler index.
+   */
+  private static synchronized int nextProfilerIndex()
+  {
+    return aProfilerCount++;
+  }
+
+  /**
+   * Returns a thread selector that accepts all threads whose name starts
+   * with one of the input prefixes (e.g. "pool-" for the default
+   * Executors thread factory, or "ForkJoinPool" for fork/join workers).
+   * 
+   * @param prefixes The accepted thread name prefixes.
+   * @return The thread selector.
+   */
+  public static Predicate<Thread> threadNamePrefix(String... prefixes)
+  {
+    return t ->
+    {
+      String n = t.getName();
+      for (String p: prefixes) if (n.startsWith(p)) return true;
+      return false;
+    };
+  }
+
+  /**
+   * Returns a thread selector that accepts all threads in the input thread
+   * group or any of its subgroups.
+   * 
+   * @param group The accepted thread group.
+   * @return The thread selector.
+   */
+  public static Predicate<Thread> threadGroup(ThreadGroup group)
+  {
+    return t ->
+    {
+      for (ThreadGroup g = t.getThreadGroup(); g != null; g = g.getParent())
+        if (g == group) return true;
+      return false;
+    };
+  }
+
+  /**
+   * Sets the maximum number of frames recorded per stack sample. Deeper
+   * stacks lose their outermost frames and their collapsed stack starts
+   * with TRUNCATED_FRAME.
+   * 
+   * @param maxDepth The maximum stack depth (at least 1).
+   */
+  public synchronized void setMaxStackDepth(int maxDepth)
+  {
+    aMaxDepth = Math.max(maxDepth, 1);
+  }
+
+  /**
+   * Returns the maximum number of frames recorded per stack sample.
+   * 
+   * @return The maximum number of frames recorded per stack sample.
+   */
+  public synchronized int getMaxStackDepth()
+  {
+    return aMaxDepth;
+  }
+
+  /**
+   * Sets the maximum number of distinct collapsed stacks retained (see
+   * ProfilerContent.setMaxStackCount(...)).
+   * 
+   * @param maxStacks The maximum number of distinct collapsed stacks.
+   */
+  public synchronized void setMaxStackCount(int maxStacks)
+  {
+    aProfilerContent.setMaxStackCount(maxStacks);
+  }
+
+  /**
+   * Sets whether only running threads are recorded (the default), or
+   * blocked and waiting threads as well.
+   * 
+   * @param runnableOnly True to record only RUNNABLE threads.
+   */
+  public synchronized void setRunnableOnly(boolean runnableOnly)
+  {
+    aRunnableOnly = runnableOnly;
+  }
+
+  /**
+   * Sets whether each collapsed stack starts with a frame naming the thread
+   * (with trailing digits removed so that the workers of a pool share one
+   * frame). Off by default.
+   * 
+   * @param threadFrame True to start each collapsed stack with the thread
+   *                    name.
+   */
+  public synchronized void setThreadFrame(boolean threadFrame)
+  {
+    aThreadFrame = threadFrame;
+  }
+
+  /**
+   * Takes one sample of all selected running threads. Called by the
+   * sampling task.
+   */
+  private synchronized void sample()
+  {
+    if (aTimer == null) return;
+
+    long t0 = sampleTime();
+    if (aTimerThread == null) aTimerThread = Thread.currentThread();
+    long now = System.currentTimeMillis();
+    if (now - aRefreshTime >= REFRESH_PERIOD) refreshThreads(now);
+
+    ++aPeriodCount;
+    if (aThreadIds.length > 0)
+    {
+      ThreadInfo[] info = aThreadMXBean.getThreadInfo(aThreadIds, aMaxDepth);
+      StringBuilder sb = new StringBuilder(1024);
+      for (ThreadInfo ti: info)
+      {
+        // skip threads that have died or are not running (unless requested)
+
+        if ((ti == null) || (aRunnableOnly &&
+            (ti.getThreadState() != Thread.State.RUNNABLE))) continue;
+        StackTraceElement[] ste = ti.getStackTrace();
+        if (ste.length == 0) continue;
+
+        // record the stack from the outermost frame to the innermost frame
+
+        sb.setLength(0);
+        if (aThreadFrame) sb.append(poolName(ti.getThreadName())).append(';');
+        if (ste.length >= aMaxDepth) sb.append(TRUNCATED_FRAME).append(';');
+
+        aProfilerContent.initializeSampleAccumulation();
+        for (int i = ste.length - 1; i > -1; --i)
+        {
+          StackTraceElement stei = ste[i];
+          aProfilerContent.accumulateSample(stei.getClassName(),
+                                            stei.getMethodName(),
+                                            stei.getLineNumber());
+          sb.append(stei.getClassName()).append('.').
+             append(stei.getMethodName());
+          if (i > 0) sb.append(';');
+        }
+        aProfilerContent.accumulateStack(sb.toString());
+      }
+    }
+
+    aSampleTime += sampleTime() - t0;
+  }
+
+  /**
+   * Returns the current CPU time of the calling thread (nanoseconds) if the
+   * JVM supports it, otherwise System.nanoTime(). Used to measure the
+   * sampling overhead without counting time the timer thread spends
+   * waiting for a processor.
+   * 
+   * @return The current thread CPU time or System.nanoTime().
+   */
+  private long sampleTime()
+  {
+    if (aThreadMXBean.isCurrentThreadCpuTimeSupported())
+    {
+      long t = aThreadMXBean.getCurrentThreadCpuTime();
+      if (t >= 0) return t;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Returns the input thread name with all trailing digits removed.
+   * 
+   * @param name The thread name.
+   * @return The thread name with all trailing digits removed.
+   */
+  private static String poolName(String name)
+  {
+    int n = name.length();
+    while ((n > 0) && Character.isDigit(name.charAt(n - 1))) --n;
+    return (n == 0) ? name : name.substring(0, n);
+  }
+
+  /**
+   * Rebuilds the set of sampled thread ids from all live threads accepted by
+   * the selector (excluding the timer thread).
+   * 
+   * @param now The current time (milliseconds).
+   */
+  private void refreshThreads(long now)
+  {
+    aRefreshTime = now;
+
+    // find the root thread group and enumerate all of its threads ... if the
+    // returned count fills the array then size twice as large and try again
+
+    ThreadGroup root = Thread.currentThread().getThreadGroup();
+    while (root.getParent() != null) root = root.getParent();
+
+    int tc = 2 * root.activeCount() + 1;
+    Thread[] threads = new Thread [tc];
+    int cnt;
+    while ((cnt = root.enumerate(threads)) == tc)
+    {
+      tc *= 2;
+      threads = new Thread [tc];
+    }
+
+    long[] ids = new long [cnt];
+    int n = 0;
+    for (int i = 0; i < cnt; ++i)
+    {
+      Thread t = threads[i];
+      if ((t != aTimerThread) && t.isAlive() &&
+          ((aSelector == null) || aSelector.test(t)))
+        ids[n++] = t.getId();
+    }
+    aThreadIds = (n == cnt) ? ids : Arrays.copyOf(ids, n);
+  }
+
+  /**
+   * Returns the number of threads currently selected for sampling.
+   * 
+   * @return The number of threads currently selected for sampling.
+   */
+  public synchronized int getSampledThreadCount()
+  {
+    return aThreadIds.length;
+  }
+
+  /**
+   * Returns the processor time spent sampling since construction as a
+   * fraction of the elapsed time (e.g. 0.001 = 0.1% of one processor).
+   * 
+   * @return The fraction of elapsed time spent sampling.
+   */
+  public synchronized double getOverhead()
+  {
+    long elapsed = System.currentTimeMillis() - aCreateTime;
+    return (elapsed <= 0) ? 0.0 : aSampleTime / (1.0e6 * elapsed);
+  }
+
+  /**
+   * Returns the number of sampling periods executed since construction.
+   * 
+   * @return The number of sampling periods executed since construction.
+   */
+  public synchronized long getPeriodCount()
+  {
+    return aPeriodCount;
+  }
+
+  /**
+   * Returns true if this profiler is still sampling (stop() has not been
+   * called).
+   * 
+   * @return True if this profiler is still sampling.
+   */
+  public synchronized boolean isRunning()
+  {
+    return aTimer != null;
+  }
+
+  /**
+   * Returns a copy of the content accumulated since construction or the
+   * last call to snapshotAndClear(). Sampling continues undisturbed.
+   * 
+   * @return A copy of the accumulated content.
+   */
+  public synchronized ProfilerContent snapshot()
+  {
+    ProfilerContent pc = new ProfilerContent();
+    pc.setMaxStackCount(aProfilerContent.getMaxStackCount());
+    pc.addProfilerContent(aProfilerContent);
+    if (aTimer != null)
+      pc.incrementAccumulationTime(System.currentTimeMillis() - aStartTime);
+    return pc;
+  }
+
+  /**
+   * Returns a copy of the content accumulated since construction or the
+   * last call to this function and clears the accumulation. Used to
+   * produce consecutive, non-overlapping snapshots that can be merged
+   * later.
+   * 
+   * @return A copy of the accumulated content.
+   */
+  public synchronized ProfilerContent snapshotAndClear()
+  {
+    ProfilerContent pc = snapshot();
+    aProfilerContent.clearAccumulation();
+    aStartTime = System.currentTimeMillis();
+    return pc;
+  }
+
+  /**
+   * Writes the collapsed stacks accumulated since construction or the last
+   * call to snapshotAndClear() to the input file (see
+   * ProfilerContent.getCollapsedStacks()).
+   * 
+   * @param fileName The output file name.
+   * @throws IOException
+   */
+  public void writeCollapsedStacks(String fileName) throws IOException
+  {
+    snapshot().writeCollapsedStacks(fileName);
+  }
+
+  /**
+   * Stops sampling. The accumulated content remains available.
+   */
+  public synchronized void stop()
+  {
+    if (aTimer == null) return;
+
+    aTimer.cancel();
+    aTimer = null;
+    aProfilerContent.incrementAccumulationTime(System.currentTimeMillis() -
+                                               aStartTime);
+  }
+
+  /**
+   * Build and return profiler content as a formatted string. Each line is
+   * prepended with prepnd.
+   * 
+   * @param prepnd Buffer string prepended to each line.
+   * @return The formatted profiler content string. 
+   */
+  public String getAccumulationString(String prepnd)
+  {
+    ProfilerContent pc = snapshot();
+    if (pc.getSampleCount() == 0) return "";
+
+    StringBuffer sb = new StringBuffer(4096);
+    sb.append(NL + prepnd + "SamplingProfiler \"" + aName + "\" Output ..." +
+              NL);
+    sb.append(prepnd + "    Current Time = " + Globals.getTimeStamp() + NL);
+    sb.append(prepnd + "    Elapsed Time = " +
+              Globals.elapsedTimeString2(0, pc.getAccumulationTime()) + NL);
+    sb.append(prepnd + "    Threads      = " + getSampledThreadCount() + NL);
+    sb.append(prepnd + String.format("    Overhead     = %.3f%%",
+              100.0 * getOverhead()) + NL);
+    sb.append(pc.getAccumulationString(prepnd));
+    return sb.toString();
+  }
+
+  /**
+   * Outputs the profilers content as a formatted string.
+   */
+  @Override
+  public String toString()
+  {
+    return getAccumulationString("    ");
+  }
+}
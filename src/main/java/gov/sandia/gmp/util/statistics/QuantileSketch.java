@@ -0,0 +1,551 @@
+/**
+ * Copyright 2009 Sandia Corporation. Under the terms of Contract
+ * DE-AC04-94AL85000 with Sandia Corporation, the U.S. Government
+ * retains certain rights in this software.
+ * 
+ * BSD Open Source License.
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *    * Redistributions of source code must retain the above copyright notice,
+ *      this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the name of Sandia National Laboratories nor the names of its
+ *      contributors may be used to endorse or promote products derived from
+ *      this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package gov.sandia.gmp.util.statistics;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
+import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
+import gov.sandia.gmp.util.numerical.intrinsicsort.IntrinsicSort;
+
+/**
+ * A bounded memory streaming quantile sketch (the KLL sketch of Karnin, Lang,
+ * and Liberty). Any number of values can be added while the sketch retains
+ * only O(k log(n/k)) of them, and any quantile (median, percentile) can be
+ * requested with a normalized rank error of roughly 1.7/k (about 0.8% for the
+ * default k of 200).
+ * 
+ * The retained values are organized in levels called compactors. A value
+ * stored at level h represents 2^h input values. Level h has a capacity of
+ * about k * (2/3)^(H-1-h), where H is the current number of levels, so the
+ * highest levels are largest. When the total retained count exceeds the sum
+ * of the capacities the lowest full level is sorted and every other value
+ * (starting at a randomly chosen even or odd offset) is promoted to the next
+ * level, halving the level while preserving the expected rank of all values.
+ * 
+ * Sketches are mergeable: merge(other) combines two sketches into one whose
+ * error is the same as if all values had been added to a single sketch, so
+ * independent threads or nodes can each build a sketch and merge the results.
+ * A sketch is not thread-safe itself. Sketches are written and read with
+ * FileOutputBuffer and FileInputBuffer. The random coin used for compaction
+ * is an internal xorshift generator whose state is saved with the sketch, so
+ * results are reproducible.
+ */
+@SuppressWarnings("serial")
+public class QuantileSketch implements Serializable
+{
+  /**
+   * The default accuracy parameter.
+   */
+  public  static final int    DEFAULT_K   = 200;
+
+  /**
+   * The smallest capacity of any level.
+   */
+  private static final int    MIN_LEVEL_CAPACITY = 8;
+
+  /**
+   * The level capacity decay factor.
+   */
+  private static final double DECAY       = 2.0 / 3.0;
+
+  /**
+   * The accuracy parameter (capacity of the highest level).
+   */
+  private int        aK;
+
+  /**
+   * The number of values added to this sketch.
+   */
+  private long       aCount     = 0;
+
+  /**
+   * The minimum value added.
+   */
+  private double     aMinimum   = Double.MAX_VALUE;
+
+  /**
+   * The maximum value added.
+   */
+  private double     aMaximum   = -Double.MAX_VALUE;
+
+  /**
+   * The retained values of each level (aLevels[h] is at least aSizes[h]
+   * long).
+   */
+  private double[][] aLevels;
+
+  /**
+   * The number of retained values at each level.
+   */
+  private int[]      aSizes;
+
+  /**
+   * The number of levels in use.
+   */
+  private int        aNumLevels;
+
+  /**
+   * The total number of retained values (sum of aSizes).
+   */
+  private int        aRetained  = 0;
+
+  /**
+   * The total capacity of all levels.
+   */
+  private int        aCapacity;
+
+  /**
+   * The xorshift state of the compaction coin.
+   */
+  private long       aSeed      = 0x9E3779B97F4A7C15L;
+
+  /**
+   * The sorted retained values, built on demand by a quantile query and
+   * discarded by any change.
+   */
+  private transient double[] aSorted = null;
+
+  /**
+   * The cumulative weight of each entry of aSorted.
+   */
+  private transient long[]   aCumWeight = null;
+
+  /**
+   * Default constructor. Uses the default accuracy parameter k.
+   */
+  public QuantileSketch()
+  {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * Standard constructor. A larger k gives a more accurate sketch at the cost
+   * of more memory (the normalized rank error is roughly 1.7/k).
+   * 
+   * @param k The accuracy parameter (>= MIN_LEVEL_CAPACITY).
+   */
+  public QuantileSketch(int k)
+  {
+    if (k < MIN_LEVEL_CAPACITY)
+      throw new IllegalArgumentException("Sketch parameter k must be >= " +
+                                         MIN_LEVEL_CAPACITY + " ...");
+    aK = k;
+    initialize();
+  }
+
+  /**
+   * Constructs a sketch read from the input file input buffer.
+   * 
+   * @param fib The input buffer from which this sketch is read.
+   * @throws IOException
+   */
+  public QuantileSketch(FileInputBuffer fib) throws IOException
+  {
+    read(fib);
+  }
+
+  /**
+   * Sets the sketch to a single empty level.
+   */
+  private void initialize()
+  {
+    aLevels    = new double [1][MIN_LEVEL_CAPACITY];
+    aSizes     = new int [1];
+    aNumLevels = 1;
+    aRetained  = 0;
+    aCapacity  = levelCapacity(0);
+    aSorted    = null;
+  }
+
+  /**
+   * Resets the sketch to empty.
+   */
+  public void reset()
+  {
+    aCount   = 0;
+    aMinimum = Double.MAX_VALUE;
+    aMaximum = -Double.MAX_VALUE;
+    initialize();
+  }
+
+  /**
+   * Returns the accuracy parameter k.
+   * 
+   * @return The accuracy parameter k.
+   */
+  public int getK()
+  {
+    return aK;
+  }
+
+  /**
+   * Returns the number of values added to this sketch.
+   * 
+   * @return The number of values added to this sketch.
+   */
+  public long getCount()
+  {
+    return aCount;
+  }
+
+  /**
+   * Returns the number of values retained by this sketch.
+   * 
+   * @return The number of values retained by this sketch.
+   */
+  public int getRetainedCount()
+  {
+    return aRetained;
+  }
+
+  /**
+   * Returns true if no values have been added.
+   * 
+   * @return True if no values have been added.
+   */
+  public boolean isEmpty()
+  {
+    return aCount == 0;
+  }
+
+  /**
+   * Returns the minimum value added.
+   * 
+   * @return The minimum value added.
+   */
+  public double getMinimum()
+  {
+    return aMinimum;
+  }
+
+  /**
+   * Returns the maximum value added.
+   * 
+   * @return The maximum value added.
+   */
+  public double getMaximum()
+  {
+    return aMaximum;
+  }
+
+  /**
+   * Returns the capacity of level h given the current number of levels.
+   * 
+   * @param h The level.
+   * @return The capacity of level h.
+   */
+  private int levelCapacity(int h)
+  {
+    return Math.max(MIN_LEVEL_CAPACITY,
+                    (int) Math.ceil(aK * Math.pow(DECAY, aNumLevels - h - 1)));
+  }
+
+  /**
+   * Adds a new empty level on top and recomputes the total capacity.
+   */
+  private void addLevel()
+  {
+    aLevels = Arrays.copyOf(aLevels, aNumLevels + 1);
+    aSizes  = Arrays.copyOf(aSizes, aNumLevels + 1);
+    aLevels[aNumLevels] = new double [MIN_LEVEL_CAPACITY];
+    ++aNumLevels;
+
+    aCapacity = 0;
+    for (int h = 0; h < aNumLevels; ++h) aCapacity += levelCapacity(h);
+  }
+
+  /**
+   * Appends value to level h.
+   * 
+   * @param h     The level.
+   * @param value The value to append.
+   */
+  private void append(int h, double value)
+  {
+    double[] lvl = aLevels[h];
+    if (aSizes[h] == lvl.length)
+      aLevels[h] = lvl = Arrays.copyOf(lvl, 2 * lvl.length);
+    lvl[aSizes[h]++] = value;
+  }
+
+  /**
+   * Adds the input value to the sketch. NaN values are ignored.
+   * 
+   * @param value The value to be added.
+   */
+  public void add(double value)
+  {
+    if (Double.isNaN(value)) return;
+
+    ++aCount;
+    if (value < aMinimum) aMinimum = value;
+    if (value > aMaximum) aMaximum = value;
+
+    append(0, value);
+    ++aRetained;
+    aSorted = null;
+    if (aRetained >= aCapacity) compress();
+  }
+
+  /**
+   * Merges the input sketch into this sketch. The input sketch is unchanged.
+   * The accuracy of the result is governed by this sketch's k. A sketch may
+   * be merged with itself (doubling the weight of every value).
+   * 
+   * @param s The sketch to be merged into this one.
+   */
+  public void merge(QuantileSketch s)
+  {
+    if ((s == null) || (s.aCount == 0)) return;
+
+    // copy the input levels first since s may be this sketch
+
+    int        nLevels  = s.aNumLevels;
+    int[]      sizes    = Arrays.copyOf(s.aSizes, nLevels);
+    double[][] levels   = new double [nLevels][];
+    for (int h = 0; h < nLevels; ++h)
+      levels[h] = Arrays.copyOf(s.aLevels[h], sizes[h]);
+    long       count    = s.aCount;
+    int        retained = s.aRetained;
+    double     minimum  = s.aMinimum;
+    double     maximum  = s.aMaximum;
+
+    while (aNumLevels < nLevels) addLevel();
+    for (int h = 0; h < nLevels; ++h)
+      for (int i = 0; i < sizes[h]; ++i) append(h, levels[h][i]);
+
+    aCount    += count;
+    aRetained += retained;
+    if (minimum < aMinimum) aMinimum = minimum;
+    if (maximum > aMaximum) aMaximum = maximum;
+    aSorted = null;
+    while (aRetained >= aCapacity) compress();
+  }
+
+  /**
+   * Compacts the lowest level that is at or above its capacity, adding a new
+   * top level first if necessary.
+   */
+  private void compress()
+  {
+    for (int h = 0; h < aNumLevels; ++h)
+    {
+      if (aSizes[h] >= levelCapacity(h))
+      {
+        if (h + 1 == aNumLevels) addLevel();
+        compact(h);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sorts level h and promotes every other value to level h + 1. If level h
+   * holds an odd number of values its largest value remains at level h.
+   * 
+   * @param h The level to be compacted.
+   */
+  private void compact(int h)
+  {
+    double[] lvl = aLevels[h];
+    int n = aSizes[h];
+    Arrays.sort(lvl, 0, n);
+
+    int keep = n & 1;
+    int pairs = (n - keep) / 2;
+    for (int i = nextCoin(); i < n - keep; i += 2) append(h + 1, lvl[i]);
+    if (keep == 1) lvl[0] = lvl[n - 1];
+    aSizes[h] = keep;
+    aRetained -= pairs;
+  }
+
+  /**
+   * Returns the next random compaction offset (0 or 1).
+   * 
+   * @return The next random compaction offset.
+   */
+  private int nextCoin()
+  {
+    aSeed ^= aSeed << 13;
+    aSeed ^= aSeed >>> 7;
+    aSeed ^= aSeed << 17;
+    return (int) (aSeed >>> 63);
+  }
+
+  /**
+   * Builds the sorted retained values and their cumulative weights if they
+   * do not exist.
+   */
+  private void buildSorted()
+  {
+    if (aSorted != null) return;
+
+    double[] v = new double [aRetained];
+    long[]   w = new long [aRetained];
+    int k = 0;
+    for (int h = 0; h < aNumLevels; ++h)
+      for (int i = 0; i < aSizes[h]; ++i)
+      {
+        v[k]   = aLevels[h][i];
+        w[k++] = 1L << h;
+      }
+    if (k > 1) IntrinsicSort.sort(v, w);
+    for (int i = 1; i < k; ++i) w[i] += w[i - 1];
+
+    aCumWeight = w;
+    aSorted    = v;
+  }
+
+  /**
+   * Returns the approximate q quantile (0 <= q <= 1) of the added values.
+   * The minimum is returned for q <= 0 and the maximum for q >= 1. NaN is
+   * returned if the sketch is empty.
+   * 
+   * @param q The quantile fraction.
+   * @return The approximate q quantile.
+   */
+  public double getQuantile(double q)
+  {
+    if (aCount == 0) return Double.NaN;
+    if (q <= 0.0) return aMinimum;
+    if (q >= 1.0) return aMaximum;
+
+    // find the first retained value whose cumulative weight reaches the
+    // requested rank (the total weight of all retained values equals the
+    // count)
+
+    buildSorted();
+    long rank = (long) Math.ceil(q * aCumWeight[aCumWeight.length - 1]);
+    int i = Arrays.binarySearch(aCumWeight, rank);
+    if (i < 0) i = -i - 1;
+    return aSorted[Math.min(i, aSorted.length - 1)];
+  }
+
+  /**
+   * Returns the approximate median of the added values.
+   * 
+   * @return The approximate median of the added values.
+   */
+  public double getMedian()
+  {
+    return getQuantile(0.5);
+  }
+
+  /**
+   * Returns the approximate p percentile (0 <= p <= 100) of the added values.
+   * 
+   * @param p The percentile.
+   * @return The approximate p percentile.
+   */
+  public double getPercentile(double p)
+  {
+    return getQuantile(p / 100.0);
+  }
+
+  /**
+   * Returns the approximate fraction of the added values that are less than
+   * or equal to the input value.
+   * 
+   * @param value The value whose rank is returned.
+   * @return The approximate normalized rank of value.
+   */
+  public double getRank(double value)
+  {
+    if (aCount == 0) return Double.NaN;
+
+    buildSorted();
+    int lo = 0, hi = aSorted.length;
+    while (lo < hi)
+    {
+      int mid = (lo + hi) >>> 1;
+      if (aSorted[mid] <= value)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return (lo == 0) ? 0.0 :
+           (double) aCumWeight[lo - 1] / aCumWeight[aCumWeight.length - 1];
+  }
+
+  /**
+   * Writes this sketch to the file output buffer.
+   * 
+   * @param fob The file output buffer into which this sketch is written.
+   * @throws IOException
+   */
+  public void write(FileOutputBuffer fob) throws IOException
+  {
+    fob.writeInt(aK);
+    fob.writeLong(aCount);
+    fob.writeDouble(aMinimum);
+    fob.writeDouble(aMaximum);
+    fob.writeLong(aSeed);
+    fob.writeInt(aNumLevels);
+    for (int h = 0; h < aNumLevels; ++h)
+      fob.writeDoubles(Arrays.copyOf(aLevels[h], aSizes[h]));
+  }
+
+  /**
+   * Reads this sketch from the file input buffer.
+   * 
+   * @param fib The input buffer from which this sketch is initialized.
+   * @throws IOException
+   */
+  public void read(FileInputBuffer fib) throws IOException
+  {
+    aK         = fib.readInt();
+    aCount     = fib.readLong();
+    aMinimum   = fib.readDouble();
+    aMaximum   = fib.readDouble();
+    aSeed      = fib.readLong();
+    aNumLevels = fib.readInt();
+    aLevels    = new double [aNumLevels][];
+    aSizes     = new int [aNumLevels];
+    aRetained  = 0;
+    for (int h = 0; h < aNumLevels; ++h)
+    {
+      double[] lvl = fib.readDoubles();
+      if (lvl == null) lvl = new double [0];
+      aSizes[h]  = lvl.length;
+      aLevels[h] = Arrays.copyOf(lvl, Math.max(MIN_LEVEL_CAPACITY, lvl.length));
+      aRetained += lvl.length;
+    }
+
+    aCapacity = 0;
+    for (int h = 0; h < aNumLevels; ++h) aCapacity += levelCapacity(h);
+    aSorted = null;
+  }
+}
@@ -32,15 +32,25 @@
  */
 package gov.sandia.gmp.util.statistics;
 
+import java.io.IOException;
 import java.util.Arrays;
 
 import gov.sandia.gmp.util.containers.arraylist.ArrayListDouble;
+import gov.sandia.gmp.util.filebuffer.FileInputBuffer;
+import gov.sandia.gmp.util.filebuffer.FileOutputBuffer;
 
 /**
- * An extension of Statistic that stores input values for Statistic in a
- * sorted manner form which the median can be extracted. The object currently
- * overrides add(double value) and reset(). It should also override read() and
- * write() but as yet does not.
+ * An extension of Statistic that also stores input values from which the
+ * median, or any other quantile, can be extracted. The object overrides
+ * add(double value), add(Statistic s), reset(), read(), and write().
+ * 
+ * By default every input value is saved and sorted on demand so that the
+ * median is exact. For very large or unbounded streams a QuantileSketch can
+ * be used instead (see StatisticMedian(boolean, int)), which retains a
+ * bounded number of values and returns approximate quantiles. Either form
+ * can be merged with add(Statistic) (e.g. one StatisticMedian per thread or
+ * node, combined at the end). If an exact StatisticMedian is merged with a
+ * sketch the exact values are added to a sketch and the result is a sketch.
  * 
  * @author jrhipp
  *
@@ -60,12 +70,20 @@ public class StatisticMedian extends Statistic
 	private boolean setAbsolute = false;
 	
 	/**
-	 * The set of values saved in an ArrayListDouble
+	 * The set of values saved in an ArrayListDouble (null if a sketch is
+	 * used).
 	 */
   ArrayListDouble values = new ArrayListDouble();
 
   /**
-   * Standard constructor.
+   * The streaming quantile sketch used in place of values (null if all
+   * values are saved).
+   */
+  QuantileSketch sketch = null;
+
+  /**
+   * Standard constructor. All input values are saved and the median is
+   * exact.
    * 
    * @param absolute Sets setAbsolute with this value.
    */
@@ -75,6 +93,32 @@ public class StatisticMedian extends Statistic
   	setAbsolute = absolute;
   }
 
+  /**
+   * Streaming constructor. Input values are added to a QuantileSketch with
+   * accuracy parameter sketchK (e.g. QuantileSketch.DEFAULT_K) and the
+   * median and other quantiles are approximate.
+   * 
+   * @param absolute Sets setAbsolute with this value.
+   * @param sketchK  The QuantileSketch accuracy parameter.
+   */
+  public StatisticMedian(boolean absolute, int sketchK)
+  {
+  	super();
+  	setAbsolute = absolute;
+  	values = null;
+  	sketch = new QuantileSketch(sketchK);
+  }
+
+  /**
+   * Returns true if this StatisticMedian uses a QuantileSketch.
+   * 
+   * @return True if this StatisticMedian uses a QuantileSketch.
+   */
+  public boolean isSketch()
+  {
+  	return (sketch != null);
+  }
+
   /**
    * Adds the input value into the Statistic and into the sorted values map.
    * If setAbsolute is true the values are added into the map as the absolute
@@ -85,12 +129,55 @@ public class StatisticMedian extends Statistic
   {
   	super.add(val);
   	changed = true;
-  	if (setAbsolute)
-  		values.add(Math.abs(val));
+  	if (setAbsolute) val = Math.abs(val);
+  	if (sketch != null)
+  		sketch.add(val);
   	else
   		values.add(val);
   }
 
+  /**
+   * Adds the input Statistic into this one. If s is a StatisticMedian its
+   * values (or sketch) are merged into this one. If either is a sketch the
+   * result is a sketch. A StatisticMedian may be added to itself.
+   */
+  @Override
+  public void add(Statistic s)
+  {
+  	super.add(s);
+  	if (!(s instanceof StatisticMedian)) return;
+
+  	StatisticMedian sm = (StatisticMedian) s;
+  	changed = true;
+  	if (sm.sketch != null)
+  	{
+  		if (sketch == null) toSketch(sm.sketch.getK());
+  		sketch.merge(sm.sketch);
+  	}
+  	else if (sketch != null)
+  	{
+  		int n = sm.values.size();
+  		for (int i = 0; i < n; ++i) sketch.add(sm.values.get(i));
+  	}
+  	else
+  	{
+  		int n = sm.values.size();
+  		for (int i = 0; i < n; ++i) values.add(sm.values.get(i));
+  	}
+  }
+
+  /**
+   * Converts the saved values into a new sketch with accuracy parameter k.
+   * 
+   * @param k The QuantileSketch accuracy parameter.
+   */
+  private void toSketch(int k)
+  {
+  	sketch = new QuantileSketch(k);
+  	for (int i = 0; i < values.size(); ++i) sketch.add(values.get(i));
+  	values = null;
+  }
+
   /**
    * Returns the median of the input values.
    * 
@@ -100,14 +187,13 @@ public class StatisticMedian extends Statistic
   {
   	if (getCount() == 0.0)
   		return 0.0;
+  	else if (sketch != null)
+  		return sketch.getMedian();
   	else
   	{
   		// sort if changed is true
 
-  		if (changed)
-  		  Arrays.sort(values.getArray(), 0, values.size());
-
-	  	changed = false;
+  		sort();
   		int midIndex = (int) (values.size() / 2);
 	  	boolean even = (values.size() % 2 == 0);
 
@@ -118,6 +204,54 @@ public class StatisticMedian extends Statistic
   	}
   }
 
+  /**
+   * Returns the q quantile (0 <= q <= 1) of the input values. For saved
+   * values the result is linearly interpolated between the two bracketing
+   * sorted values (q = 0.5 returns the median). For a sketch the result is
+   * the approximate quantile returned by the sketch. 0.0 is returned if no
+   * values have been added.
+   * 
+   * @param q The quantile fraction.
+   * @return The q quantile of the input values.
+   */
+  public double getQuantile(double q)
+  {
+  	if (getCount() == 0.0)
+  		return 0.0;
+  	else if (sketch != null)
+  		return sketch.getQuantile(q);
+  	else
+  	{
+  		sort();
+  		double pos = Math.min(Math.max(q, 0.0), 1.0) * (values.size() - 1);
+  		int lo = (int) pos;
+  		if (lo >= values.size() - 1) return values.get(values.size() - 1);
+  		double f = pos - lo;
+  		return values.get(lo) + f * (values.get(lo + 1) - values.get(lo));
+  	}
+  }
+
+  /**
+   * Returns the p percentile (0 <= p <= 100) of the input values.
+   * 
+   * @param p The percentile.
+   * @return The p percentile of the input values.
+   */
+  public double getPercentile(double p)
+  {
+  	return getQuantile(p / 100.0);
+  }
+
+  /**
+   * Sorts the saved values if they have changed since the last sort.
+   */
+  private void sort()
+  {
+  	if (changed)
+  	  Arrays.sort(values.getArray(), 0, values.size());
+  	changed = false;
+  }
+
   /**
    * Resets the Statistic to empty.
    */
@@ -125,7 +259,54 @@ public class StatisticMedian extends Statistic
   public void reset()
   {
   	super.reset();
-  	values.clear();
+  	if (sketch != null)
+  		sketch.reset();
+  	else
+  		values.clear();
+  	changed = true;
+  }
+
+  /**
+   * Writes this StatisticMedian to the file output buffer.
+   * 
+   * @param fob The file output buffer into which this StatisticMedian is
+   *            written.
+   * @throws IOException
+   */
+  @Override
+  public void write(FileOutputBuffer fob) throws IOException
+  {
+  	super.write(fob);
+  	fob.writeBoolean(setAbsolute);
+  	fob.writeBoolean(sketch != null);
+  	if (sketch != null)
+  		sketch.write(fob);
+  	else
+  		values.write(fob);
+  }
+
+  /**
+   * Reads this StatisticMedian from the input file input buffer.
+   * 
+   * @param fib The input buffer from which this StatisticMedian is
+   *            initialized.
+   * @throws IOException
+   */
+  @Override
+  public void read(FileInputBuffer fib) throws IOException
+  {
+  	super.read(fib);
+  	setAbsolute = fib.readBoolean();
+  	if (fib.readBoolean())
+  	{
+  		values = null;
+  		sketch = new QuantileSketch(fib);
+  	}
+  	else
+  	{
+  		sketch = null;
+  		values = new ArrayListDouble(fib);
+  	}
   	changed = true;
   }
 }